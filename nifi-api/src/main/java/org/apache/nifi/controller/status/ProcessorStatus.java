@@ -42,6 +42,8 @@ public class ProcessorStatus implements Cloneable {
     private long bytesReceived;
     private int flowFilesSent;
     private long bytesSent;
+    private long runDurationNanos;
+    private double commitsPerSecond;
 
     public String getId() {
         return id;
@@ -211,6 +213,29 @@ public class ProcessorStatus implements Cloneable {
         this.bytesSent = bytesSent;
     }
 
+    /**
+     * @param timeUnit the desired time unit
+     * @return the Run Duration that is currently in effect for the Processor, whether it was configured or chosen by the framework
+     */
+    public long getRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(runDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setRunDuration(final long runDuration, final TimeUnit timeUnit) {
+        this.runDurationNanos = timeUnit.toNanos(runDuration);
+    }
+
+    /**
+     * @return the number of times per second that the framework has recently committed a batched session for the Processor
+     */
+    public double getCommitsPerSecond() {
+        return commitsPerSecond;
+    }
+
+    public void setCommitsPerSecond(final double commitsPerSecond) {
+        this.commitsPerSecond = commitsPerSecond;
+    }
+
     @Override
     public ProcessorStatus clone() {
         final ProcessorStatus clonedObj = new ProcessorStatus();
@@ -221,6 +246,8 @@ public class ProcessorStatus implements Cloneable {
         clonedObj.bytesReceived = bytesReceived;
         clonedObj.flowFilesSent = flowFilesSent;
         clonedObj.bytesSent = bytesSent;
+        clonedObj.runDurationNanos = runDurationNanos;
+        clonedObj.commitsPerSecond = commitsPerSecond;
         clonedObj.groupId = groupId;
         clonedObj.id = id;
         clonedObj.inputBytes = inputBytes;
@@ -268,6 +295,10 @@ public class ProcessorStatus implements Cloneable {
         builder.append(processingNanos);
         builder.append(", activeThreadCount=");
         builder.append(activeThreadCount);
+        builder.append(", runDurationNanos=");
+        builder.append(runDurationNanos);
+        builder.append(", commitsPerSecond=");
+        builder.append(commitsPerSecond);
         builder.append("]");
         return builder.toString();
     }
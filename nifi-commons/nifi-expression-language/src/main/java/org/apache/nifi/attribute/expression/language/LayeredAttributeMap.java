@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.nifi.flowfile.FlowFile;
+
+/**
+ * A read-only view of the values that are made available to the Expression Language.
+ * Values are resolved lazily, in order of precedence, from the following layers:
+ * <ol>
+ * <li>Additional attributes supplied by the caller</li>
+ * <li>The FlowFile's attributes</li>
+ * <li>The FlowFile's properties (flowFileId, fileSize, entryDate, lineageStartDate)</li>
+ * <li>Environment variables</li>
+ * <li>System properties</li>
+ * </ol>
+ *
+ * No layer is copied when the view is created, so looking up a single key such as
+ * <code>filename</code> costs only a few hash lookups regardless of how many attributes
+ * the FlowFile has. Operations that need to see every entry, such as {@link #entrySet()},
+ * merge the layers when they are called.
+ */
+final class LayeredAttributeMap extends AbstractMap<String, String> {
+
+    static final String FLOWFILE_ID = "flowFileId";
+    static final String FILE_SIZE = "fileSize";
+    static final String ENTRY_DATE = "entryDate";
+    static final String LINEAGE_START_DATE = "lineageStartDate";
+
+    private final Map<String, String> additional;
+    private final Map<String, String> attributes;
+    private final FlowFile flowFile;
+    private final Map<String, String> env;
+    private final Map<?, ?> sysProps;
+
+    LayeredAttributeMap(final FlowFile flowFile, final Map<String, String> additionalAttributes) {
+        this.flowFile = flowFile;
+        this.attributes = flowFile == null ? Collections.<String, String> emptyMap() : flowFile.getAttributes();
+        this.additional = additionalAttributes == null ? Collections.<String, String> emptyMap() : additionalAttributes;
+        this.env = System.getenv();
+        this.sysProps = System.getProperties();
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null Keys are not allowed");
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        String value = additional.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = attributes.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = getFlowFileProperty((String) key);
+        if (value != null) {
+            return value;
+        }
+
+        value = env.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        final Object sysPropValue = sysProps.get(key);
+        return sysPropValue == null ? null : String.valueOf(sysPropValue);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+
+        return additional.containsKey(key) || attributes.containsKey(key) || getFlowFileProperty((String) key) != null
+            || env.containsKey(key) || sysProps.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return additional.isEmpty() && attributes.isEmpty() && flowFile == null && env.isEmpty() && sysProps.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return merge().size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return Collections.unmodifiableMap(merge()).entrySet();
+    }
+
+    private String getFlowFileProperty(final String key) {
+        if (flowFile == null) {
+            return null;
+        }
+
+        switch (key) {
+            case FLOWFILE_ID:
+                return String.valueOf(flowFile.getId());
+            case FILE_SIZE:
+                return String.valueOf(flowFile.getSize());
+            case ENTRY_DATE:
+                return String.valueOf(flowFile.getEntryDate());
+            case LINEAGE_START_DATE:
+                return String.valueOf(flowFile.getLineageStartDate());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return a new Map containing the entries of all layers, with entries from higher-precedence
+     *         layers replacing those of lower-precedence layers
+     */
+    private Map<String, String> merge() {
+        final Map<String, String> merged = new HashMap<>();
+        for (final Map.Entry<?, ?> entry : sysProps.entrySet()) {
+            if (entry.getKey() instanceof String && entry.getValue() != null) {
+                merged.put((String) entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+
+        merged.putAll(env);
+
+        if (flowFile != null) {
+            merged.put(FLOWFILE_ID, getFlowFileProperty(FLOWFILE_ID));
+            merged.put(FILE_SIZE, getFlowFileProperty(FILE_SIZE));
+            merged.put(ENTRY_DATE, getFlowFileProperty(ENTRY_DATE));
+            merged.put(LINEAGE_START_DATE, getFlowFileProperty(LINEAGE_START_DATE));
+        }
+
+        merged.putAll(attributes);
+        merged.putAll(additional);
+        return merged;
+    }
+}
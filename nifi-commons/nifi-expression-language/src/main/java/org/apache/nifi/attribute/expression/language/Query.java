@@ -18,13 +18,9 @@ package org.apache.nifi.attribute.expression.language;
 
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionLexer;
@@ -363,6 +359,20 @@ public class Query {
 
     static String evaluateExpression(final Tree tree, final String queryText, final Map<String, String> expressionMap, final AttributeValueDecorator decorator) throws ProcessException {
         final Object evaluated = Query.fromTree(tree, queryText).evaluate(expressionMap).getValue();
+        return toExpressionValue(evaluated, decorator);
+    }
+
+    /**
+     * Evaluates an Evaluator that was obtained from {@link #buildReusableEvaluator(Tree)}. Unlike
+     * {@link #evaluateExpression(Tree, String, Map, AttributeValueDecorator)}, this does not rebuild
+     * the Evaluator graph for each invocation.
+     */
+    static String evaluateExpression(final Evaluator<?> evaluator, final Map<String, String> expressionMap, final AttributeValueDecorator decorator) throws ProcessException {
+        final Object evaluated = evaluator.evaluate(expressionMap).getValue();
+        return toExpressionValue(evaluated, decorator);
+    }
+
+    private static String toExpressionValue(final Object evaluated, final AttributeValueDecorator decorator) {
         if (evaluated == null) {
             return null;
         }
@@ -425,148 +435,48 @@ public class Query {
     }
 
     static Map<String, String> createExpressionMap(final FlowFile flowFile, final Map<String, String> additionalAttributes) {
-        final Map<String, String> attributeMap = flowFile == null ? Collections.<String, String> emptyMap() : flowFile.getAttributes();
-        final Map<String, String> additionalOrEmpty = additionalAttributes == null ? Collections.<String, String> emptyMap() : additionalAttributes;
-        final Map<String, String> envMap = System.getenv();
-        final Map<?, ?> sysProps = System.getProperties();
-
-        final Map<String, String> flowFileProps = new HashMap<>();
-        if (flowFile != null) {
-            flowFileProps.put("flowFileId", String.valueOf(flowFile.getId()));
-            flowFileProps.put("fileSize", String.valueOf(flowFile.getSize()));
-            flowFileProps.put("entryDate", String.valueOf(flowFile.getEntryDate()));
-            flowFileProps.put("lineageStartDate", String.valueOf(flowFile.getLineageStartDate()));
-        }
-
-        return wrap(additionalOrEmpty, attributeMap, flowFileProps, envMap, sysProps);
+        return new LayeredAttributeMap(flowFile, additionalAttributes);
     }
 
-    private static Map<String, String> wrap(final Map<String, String> additional, final Map<String, String> attributes, final Map<String, String> flowFileProps,
-        final Map<String, String> env, final Map<?, ?> sysProps) {
-        @SuppressWarnings("rawtypes")
-        final Map[] maps = new Map[] {additional, attributes, flowFileProps, env, sysProps};
-
-        return new Map<String, String>() {
-            @Override
-            public int size() {
-                int size = 0;
-                for (final Map<?, ?> map : maps) {
-                    size += map.size();
-                }
-                return size;
-            }
+    public static Query fromTree(final Tree tree, final String text) {
+        return new Query(text, tree, buildEvaluator(tree));
+    }
 
-            @Override
-            public boolean isEmpty() {
-                for (final Map<?, ?> map : maps) {
-                    if (!map.isEmpty()) {
-                        return false;
-                    }
-                }
-                return true;
-            }
+    /**
+     * Builds an Evaluator for the given Tree that may be evaluated any number of times and
+     * by any number of threads concurrently. If the expression makes use of an Evaluator that
+     * keeps state between invocations (multi-attribute references such as allAttributes(...)
+     * and the reducing functions count() and join()), <code>null</code> is returned and the
+     * caller must build a new Evaluator for each evaluation.
+     *
+     * @param tree the compiled expression
+     * @return an Evaluator that can be shared, or <code>null</code> if the expression is stateful
+     */
+    static Evaluator<?> buildReusableEvaluator(final Tree tree) {
+        if (!isStateless(tree)) {
+            return null;
+        }
 
-            @Override
-            public boolean containsKey(final Object key) {
-                if (key == null) {
-                    return false;
-                }
-                if (!(key instanceof String)) {
-                    return false;
-                }
+        return buildEvaluator(tree);
+    }
 
-                for (final Map<?, ?> map : maps) {
-                    if (map.containsKey(key)) {
-                        return true;
-                    }
-                }
+    private static boolean isStateless(final Tree tree) {
+        switch (tree.getType()) {
+            case MULTI_ATTRIBUTE_REFERENCE:
+            case JOIN:
+            case COUNT:
                 return false;
-            }
+            default:
+                break;
+        }
 
-            @Override
-            public boolean containsValue(final Object value) {
-                for (final Map<?, ?> map : maps) {
-                    if (map.containsValue(value)) {
-                        return true;
-                    }
-                }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (!isStateless(tree.getChild(i))) {
                 return false;
             }
+        }
 
-            @Override
-            @SuppressWarnings("rawtypes")
-            public String get(final Object key) {
-                if (key == null) {
-                    throw new IllegalArgumentException("Null Keys are not allowed");
-                }
-                if (!(key instanceof String)) {
-                    return null;
-                }
-
-                for (final Map map : maps) {
-                    final Object val = map.get(key);
-                    if (val != null) {
-                        return String.valueOf(val);
-                    }
-                }
-                return null;
-            }
-
-            @Override
-            public String put(String key, String value) {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public String remove(final Object key) {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public void putAll(final Map<? extends String, ? extends String> m) {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public void clear() {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Set<String> keySet() {
-                final Set<String> keySet = new HashSet<>();
-                for (final Map map : maps) {
-                    keySet.addAll(map.keySet());
-                }
-                return keySet;
-            }
-
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Collection<String> values() {
-                final Set<String> values = new HashSet<>();
-                for (final Map map : maps) {
-                    values.addAll(map.values());
-                }
-                return values;
-            }
-
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Set<java.util.Map.Entry<String, String>> entrySet() {
-                final Set<java.util.Map.Entry<String, String>> entrySet = new HashSet<>();
-                for (final Map map : maps) {
-                    entrySet.addAll(map.entrySet());
-                }
-                return entrySet;
-            }
-
-        };
-    }
-
-    public static Query fromTree(final Tree tree, final String text) {
-        return new Query(text, tree, buildEvaluator(tree));
+        return true;
     }
 
     public static Tree compileTree(final String query) throws AttributeExpressionLanguageParsingException {
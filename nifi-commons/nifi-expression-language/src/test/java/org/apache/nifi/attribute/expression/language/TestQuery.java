@@ -314,6 +314,36 @@ public class TestQuery {
         return Query.evaluateExpressions(queryString, mockFlowFile);
     }
 
+    @Test
+    public void testExpressionMapPrecedence() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("attr", "from flowfile");
+        attributes.put("java.version", "overridden");
+
+        final FlowFile mockFlowFile = Mockito.mock(FlowFile.class);
+        Mockito.when(mockFlowFile.getAttributes()).thenReturn(attributes);
+        Mockito.when(mockFlowFile.getId()).thenReturn(7L);
+        Mockito.when(mockFlowFile.getSize()).thenReturn(42L);
+
+        final Map<String, String> additional = new HashMap<>();
+        additional.put("attr", "from additional");
+
+        final Map<String, String> expressionMap = Query.createExpressionMap(mockFlowFile, additional);
+        assertEquals("from additional", expressionMap.get("attr"));
+        assertEquals("overridden", expressionMap.get("java.version"));
+        assertEquals("7", expressionMap.get("flowFileId"));
+        assertEquals("42", expressionMap.get("fileSize"));
+        assertEquals(System.getProperty("user.dir"), expressionMap.get("user.dir"));
+        assertTrue(expressionMap.containsKey("fileSize"));
+        assertFalse(expressionMap.containsKey("no.such.attribute"));
+
+        assertTrue(expressionMap.keySet().contains("attr"));
+        assertTrue(expressionMap.keySet().contains("user.dir"));
+        assertEquals("from additional", new HashMap<>(expressionMap).get("attr"));
+
+        assertEquals("from additional-42", Query.evaluateExpressions("${attr}-${fileSize}", expressionMap));
+    }
+
     @Test
     public void testGetAttributeValue() {
         final Map<String, String> attributes = new HashMap<>();
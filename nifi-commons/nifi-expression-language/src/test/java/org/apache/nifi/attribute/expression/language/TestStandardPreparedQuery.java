@@ -84,6 +84,80 @@ public class TestStandardPreparedQuery {
 
     }
 
+    @Test
+    public void testPreparedQueryEvaluatedRepeatedly() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "abc.txt");
+        attributes.put("size", "100");
+
+        final StandardPreparedQuery prepared = (StandardPreparedQuery) Query.prepare("${filename:toUpper()}-${size:plus(1)}-${filename:substringAfter('.')}");
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ABC.TXT-101-txt", prepared.evaluateExpressions(attributes, null));
+        }
+
+        attributes.put("filename", "xyz.csv");
+        assertEquals("XYZ.CSV-101-csv", prepared.evaluateExpressions(attributes, null));
+    }
+
+    @Test
+    public void testStatefulExpressionsEvaluatedRepeatedly() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("a", "x");
+        attributes.put("b", "y");
+
+        final StandardPreparedQuery countQuery = (StandardPreparedQuery) Query.prepare("${allAttributes('a', 'b'):isEmpty():not():count()}");
+        final StandardPreparedQuery joinQuery = (StandardPreparedQuery) Query.prepare("${allAttributes('a', 'b'):join('-')}");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("2", countQuery.evaluateExpressions(attributes, null));
+            assertEquals("x-y", joinQuery.evaluateExpressions(attributes, null));
+        }
+    }
+
+    @Test
+    @Ignore("Intended only for manual performance testing")
+    public void testThroughputOfCommonExpressions() {
+        final Map<String, String> attrs = new HashMap<>();
+        attrs.put("filename", "1234567890.txt");
+        attrs.put("path", "/data/in/");
+        attrs.put("fileSize", "4096");
+        attrs.put("mime.type", "text/plain");
+
+        final String[] expressions = new String[] {
+            "${filename}",
+            "${path}${filename:substringBeforeLast('.')}.csv",
+            "${fileSize:toNumber():gt(1024)}",
+            "${mime.type:startsWith('text'):and(${filename:endsWith('.txt')})}",
+            "${filename:replaceAll('[0-9]', 'x'):toUpper()}"
+        };
+
+        final int iterations = 1000000;
+        for (final String expression : expressions) {
+            final String expected = Query.evaluateExpressions(expression, attrs);
+            final StandardPreparedQuery prepared = (StandardPreparedQuery) Query.prepare(expression);
+
+            // warm up both code paths before measuring
+            for (int i = 0; i < iterations / 10; i++) {
+                assertEquals(expected, Query.evaluateExpressions(expression, attrs));
+                assertEquals(expected, prepared.evaluateExpressions(attrs, null));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                Query.evaluateExpressions(expression, attrs);
+            }
+            final long uncachedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                prepared.evaluateExpressions(attrs, null);
+            }
+            final long preparedNanos = System.nanoTime() - start;
+
+            System.out.println(expression + ": re-compiled " + (iterations * 1000000000L / uncachedNanos) + " ops/sec, prepared "
+                + (iterations * 1000000000L / preparedNanos) + " ops/sec");
+        }
+    }
+
     private String evaluate(final String query, final Map<String, String> attrs) {
         final String evaluated = ((StandardPreparedQuery) Query.prepare(query)).evaluateExpressions(attrs, null);
         return evaluated;
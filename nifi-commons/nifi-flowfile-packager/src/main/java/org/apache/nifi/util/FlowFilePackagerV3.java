@@ -29,6 +29,20 @@ public class FlowFilePackagerV3 implements FlowFilePackager {
 
     @Override
     public void packageFlowFile(final InputStream in, final OutputStream out, final Map<String, String> attributes, final long fileSize) throws IOException {
+        writeHeader(out, attributes, fileSize);
+        copy(in, out);//write out the actual flow file payload
+    }
+
+    /**
+     * Writes everything that precedes a FlowFile's content in the package, so that the caller can then write
+     * the <code>fileSize</code> bytes of content to the stream itself
+     *
+     * @param out the stream to write to
+     * @param attributes the FlowFile's attributes
+     * @param fileSize the number of bytes of content that will follow
+     * @throws IOException if unable to write to the stream
+     */
+    public void writeHeader(final OutputStream out, final Map<String, String> attributes, final long fileSize) throws IOException {
         out.write(MAGIC_HEADER);
 
         if (attributes == null) {
@@ -42,7 +56,6 @@ public class FlowFilePackagerV3 implements FlowFilePackager {
         }
 
         writeLong(out, fileSize);//write out length of data
-        copy(in, out);//write out the actual flow file payload
     }
 
     private void copy(final InputStream in, final OutputStream out) throws IOException {
@@ -44,6 +44,8 @@ import org.apache.nifi.processor.util.StandardValidators;
 /**
  * Base class for file-binning processors.
  *
+ * The bins are held by a {@link BinManager}, which locks only the portion of its bins that a FlowFile's group maps to,
+ * so that concurrent tasks can bin FlowFiles and process different ready bins in parallel.
  */
 public abstract class BinFiles extends AbstractSessionFactoryProcessor {
 
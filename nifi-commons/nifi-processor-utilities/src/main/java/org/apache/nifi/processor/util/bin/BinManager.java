@@ -19,6 +19,7 @@ package org.apache.nifi.processor.util.bin;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -26,18 +27,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.util.FlowFileSessionWrapper;
 
 /**
- * This class is thread safe
+ * This class is thread safe. Bins are partitioned into stripes by group identifier, each guarded by its own lock, so
+ * that FlowFiles for different groups can be binned, and ready bins removed, concurrently.
  *
  */
 public class BinManager {
 
+    private static final int STRIPE_COUNT = 16;
+
     private final AtomicLong minSizeBytes = new AtomicLong(0L);
     private final AtomicLong maxSizeBytes = new AtomicLong(Long.MAX_VALUE);
     private final AtomicInteger minEntries = new AtomicInteger(0);
@@ -45,30 +49,40 @@ public class BinManager {
     private final AtomicReference<String> fileCountAttribute = new AtomicReference<>(null);
 
     private final AtomicInteger maxBinAgeSeconds = new AtomicInteger(Integer.MAX_VALUE);
-    private final Map<String, List<Bin>> groupBinMap = new HashMap<>();
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
-    private final Lock rLock = rwLock.readLock();
-    private final Lock wLock = rwLock.writeLock();
-
-    private int binCount = 0;   // guarded by read/write lock
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final AtomicInteger binCount = new AtomicInteger(0);
 
     public BinManager() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe getStripe(final String groupIdentifier) {
+        if (groupIdentifier == null) {
+            return stripes[0];
+        }
+
+        final int hash = groupIdentifier.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
     }
 
     public void purge() {
-        wLock.lock();
-        try {
-            for (final List<Bin> binList : groupBinMap.values()) {
-                for (final Bin bin : binList) {
-                    for (final FlowFileSessionWrapper wrapper : bin.getContents()) {
-                        wrapper.getSession().rollback();
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (final List<Bin> binList : stripe.groupBinMap.values()) {
+                    for (final Bin bin : binList) {
+                        for (final FlowFileSessionWrapper wrapper : bin.getContents()) {
+                            wrapper.getSession().rollback();
+                        }
                     }
+                    binCount.addAndGet(-binList.size());
                 }
+                stripe.groupBinMap.clear();
+            } finally {
+                stripe.lock.unlock();
             }
-            groupBinMap.clear();
-            binCount = 0;
-        } finally {
-            wLock.unlock();
         }
     }
 
@@ -85,12 +99,7 @@ public class BinManager {
     }
 
     public int getBinCount() {
-        rLock.lock();
-        try {
-            return binCount;
-        } finally {
-            rLock.unlock();
-        }
+        return binCount.get();
     }
 
     public void setMinimumSize(final long numBytes) {
@@ -118,16 +127,14 @@ public class BinManager {
         if (flowFile.getSize() > currentMaxSizeBytes) { //won't fit into any new bins (and probably none existing)
             return false;
         }
-        wLock.lock();
+
+        final Stripe stripe = getStripe(groupIdentifier);
+        stripe.lock.lock();
         try {
-            final List<Bin> currentBins = groupBinMap.get(groupIdentifier);
+            List<Bin> currentBins = stripe.groupBinMap.get(groupIdentifier);
             if (currentBins == null) { // this is a new group we need to register
-                final List<Bin> bins = new ArrayList<>();
-                final Bin bin = new Bin(minSizeBytes.get(), currentMaxSizeBytes, minEntries.get(), maxEntries.get(), fileCountAttribute.get());
-                bins.add(bin);
-                groupBinMap.put(groupIdentifier, bins);
-                binCount++;
-                return bin.offer(flowFile, session);
+                currentBins = new ArrayList<>();
+                stripe.groupBinMap.put(groupIdentifier, currentBins);
             } else {
                 for (final Bin bin : currentBins) {
                     final boolean accepted = bin.offer(flowFile, session);
@@ -135,15 +142,15 @@ public class BinManager {
                         return true;
                     }
                 }
-
-                //if we've reached this point then we couldn't fit it into any existing bins - gotta make a new one
-                final Bin bin = new Bin(minSizeBytes.get(), currentMaxSizeBytes, minEntries.get(), maxEntries.get(), fileCountAttribute.get());
-                currentBins.add(bin);
-                binCount++;
-                return bin.offer(flowFile, session);
             }
+
+            //if we've reached this point then we couldn't fit it into any existing bins - gotta make a new one
+            final Bin bin = new Bin(minSizeBytes.get(), currentMaxSizeBytes, minEntries.get(), maxEntries.get(), fileCountAttribute.get());
+            currentBins.add(bin);
+            binCount.incrementAndGet();
+            return bin.offer(flowFile, session);
         } finally {
-            wLock.unlock();
+            stripe.lock.unlock();
         }
     }
 
@@ -155,47 +162,60 @@ public class BinManager {
      * @return bins that are considered full
      */
     public Collection<Bin> removeReadyBins(boolean relaxFullnessConstraint) {
-        final Map<String, List<Bin>> newGroupMap = new HashMap<>();
         final List<Bin> readyBins = new ArrayList<>();
+        final int maxBinAge = maxBinAgeSeconds.get();
 
-        wLock.lock();
-        try {
-            for (final Map.Entry<String, List<Bin>> group : groupBinMap.entrySet()) {
-                final List<Bin> remainingBins = new ArrayList<>();
-                for (final Bin bin : group.getValue()) {
-                    if (relaxFullnessConstraint && (bin.isFullEnough() || bin.isOlderThan(maxBinAgeSeconds.get(), TimeUnit.SECONDS))) { //relaxed check
-                        readyBins.add(bin);
-                    } else if (!relaxFullnessConstraint && bin.isFull()) { //strict check
-                        readyBins.add(bin);
-                    } else { //it isn't time yet...
-                        remainingBins.add(bin);
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                final Iterator<List<Bin>> groupItr = stripe.groupBinMap.values().iterator();
+                while (groupItr.hasNext()) {
+                    final List<Bin> bins = groupItr.next();
+                    final Iterator<Bin> binItr = bins.iterator();
+                    while (binItr.hasNext()) {
+                        final Bin bin = binItr.next();
+                        if (relaxFullnessConstraint && (bin.isFullEnough() || bin.isOlderThan(maxBinAge, TimeUnit.SECONDS))) { //relaxed check
+                            readyBins.add(bin);
+                            binItr.remove();
+                        } else if (!relaxFullnessConstraint && bin.isFull()) { //strict check
+                            readyBins.add(bin);
+                            binItr.remove();
+                        }
+                    }
+
+                    if (bins.isEmpty()) {
+                        groupItr.remove();
                     }
                 }
-                if (!remainingBins.isEmpty()) {
-                    newGroupMap.put(group.getKey(), remainingBins);
-                }
+            } finally {
+                stripe.lock.unlock();
             }
-            groupBinMap.clear();
-            groupBinMap.putAll(newGroupMap);
-            binCount -= readyBins.size();
-        } finally {
-            wLock.unlock();
         }
+
+        binCount.addAndGet(-readyBins.size());
         return readyBins;
     }
 
     public Bin removeOldestBin() {
-        wLock.lock();
-        try {
+        while (true) {
             Bin oldestBin = null;
             String oldestBinGroup = null;
+            Stripe oldestBinStripe = null;
 
-            for (final Map.Entry<String, List<Bin>> group : groupBinMap.entrySet()) {
-                for (final Bin bin : group.getValue()) {
-                    if (oldestBin == null || bin.isOlderThan(oldestBin)) {
-                        oldestBin = bin;
-                        oldestBinGroup = group.getKey();
+            for (final Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    for (final Map.Entry<String, List<Bin>> group : stripe.groupBinMap.entrySet()) {
+                        for (final Bin bin : group.getValue()) {
+                            if (oldestBin == null || bin.isOlderThan(oldestBin)) {
+                                oldestBin = bin;
+                                oldestBinGroup = group.getKey();
+                                oldestBinStripe = stripe;
+                            }
+                        }
                     }
+                } finally {
+                    stripe.lock.unlock();
                 }
             }
 
@@ -203,15 +223,21 @@ public class BinManager {
                 return null;
             }
 
-            binCount--;
-            final List<Bin> bins = groupBinMap.get(oldestBinGroup);
-            bins.remove(oldestBin);
-            if (bins.isEmpty()) {
-                groupBinMap.remove(oldestBinGroup);
+            oldestBinStripe.lock.lock();
+            try {
+                // another thread may have removed the bin while we were searching the other stripes
+                final List<Bin> bins = oldestBinStripe.groupBinMap.get(oldestBinGroup);
+                if (bins != null && bins.remove(oldestBin)) {
+                    if (bins.isEmpty()) {
+                        oldestBinStripe.groupBinMap.remove(oldestBinGroup);
+                    }
+
+                    binCount.decrementAndGet();
+                    return oldestBin;
+                }
+            } finally {
+                oldestBinStripe.lock.unlock();
             }
-            return oldestBin;
-        } finally {
-            wLock.unlock();
         }
     }
 
@@ -219,18 +245,27 @@ public class BinManager {
      * @return true if any current bins are older than the allowable max
      */
     public boolean containsOldBins() {
-        rLock.lock();
-        try {
-            for (final List<Bin> bins : groupBinMap.values()) {
-                for (final Bin bin : bins) {
-                    if (bin.isOlderThan(maxBinAgeSeconds.get(), TimeUnit.SECONDS)) {
-                        return true;
+        final int maxBinAge = maxBinAgeSeconds.get();
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (final List<Bin> bins : stripe.groupBinMap.values()) {
+                    for (final Bin bin : bins) {
+                        if (bin.isOlderThan(maxBinAge, TimeUnit.SECONDS)) {
+                            return true;
+                        }
                     }
                 }
+            } finally {
+                stripe.lock.unlock();
             }
-        } finally {
-            rLock.unlock();
         }
+
         return false;
     }
+
+    private static class Stripe {
+        private final Map<String, List<Bin>> groupBinMap = new HashMap<>();
+        private final Lock lock = new ReentrantLock();
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processor.util.bin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.ProcessSession;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBinManager {
+
+    private BinManager binManager;
+    private ProcessSession session;
+
+    @Before
+    public void setup() {
+        binManager = new BinManager();
+        binManager.setMinimumEntries(2);
+        binManager.setMaximumEntries(2);
+        binManager.setMinimumSize(0L);
+        binManager.setMaximumSize(1000L);
+        binManager.setMaxBinAge(300);
+        session = mock(ProcessSession.class);
+    }
+
+    @Test
+    public void testBinsAreSeparatedByGroup() {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(binManager.offer("group-" + i, createFlowFile(10L), session));
+        }
+        assertTrue(binManager.offer(null, createFlowFile(10L), session));
+        assertEquals(21, binManager.getBinCount());
+        assertTrue(binManager.removeReadyBins(false).isEmpty());
+
+        // fill the bin of every other group
+        for (int i = 0; i < 20; i += 2) {
+            assertTrue(binManager.offer("group-" + i, createFlowFile(10L), session));
+        }
+        assertTrue(binManager.offer(null, createFlowFile(10L), session));
+        assertEquals(21, binManager.getBinCount());
+
+        final Collection<Bin> readyBins = binManager.removeReadyBins(false);
+        assertEquals(11, readyBins.size());
+        for (final Bin bin : readyBins) {
+            assertEquals(2, bin.getContents().size());
+        }
+        assertEquals(10, binManager.getBinCount());
+
+        // the remaining bins have met their minimum size but not their minimum number of entries
+        assertTrue(binManager.removeReadyBins(true).isEmpty());
+    }
+
+    @Test
+    public void testNewBinCreatedWhenFull() {
+        assertTrue(binManager.offer("group", createFlowFile(10L), session));
+        assertTrue(binManager.offer("group", createFlowFile(10L), session));
+        assertTrue(binManager.offer("group", createFlowFile(10L), session));
+        assertEquals(2, binManager.getBinCount());
+        assertEquals(1, binManager.removeReadyBins(false).size());
+        assertEquals(1, binManager.getBinCount());
+    }
+
+    @Test
+    public void testFlowFileLargerThanMaxSize() {
+        assertFalse(binManager.offer("group", createFlowFile(1001L), session));
+        assertEquals(0, binManager.getBinCount());
+    }
+
+    @Test
+    public void testRemoveOldestBin() throws InterruptedException {
+        assertNull(binManager.removeOldestBin());
+
+        assertTrue(binManager.offer("first", createFlowFile(10L), session));
+        Thread.sleep(5L);
+        assertTrue(binManager.offer("second", createFlowFile(10L), session));
+        Thread.sleep(5L);
+        assertTrue(binManager.offer("third", createFlowFile(10L), session));
+
+        final Bin oldest = binManager.removeOldestBin();
+        assertNotNull(oldest);
+        assertEquals(2, binManager.getBinCount());
+
+        // a new FlowFile for the group of the removed bin goes to a new, younger bin
+        assertTrue(binManager.offer("first", createFlowFile(10L), session));
+        assertEquals(3, binManager.getBinCount());
+        assertTrue(oldest.isOlderThan(binManager.removeOldestBin()));
+        assertEquals(2, binManager.getBinCount());
+
+        binManager.purge();
+        assertEquals(0, binManager.getBinCount());
+        assertNull(binManager.removeOldestBin());
+    }
+
+    @Test
+    public void testConcurrentOffers() throws InterruptedException {
+        final int threadCount = 8;
+        final int flowFilesPerThread = 1000;
+        final FlowFile flowFile = createFlowFile(1L);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger(0);
+        final AtomicInteger binned = new AtomicInteger(0);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int i = 0; i < flowFilesPerThread; i++) {
+                            if (!binManager.offer("group-" + (i % 50), flowFile, session)) {
+                                failures.incrementAndGet();
+                            }
+
+                            if (i % 100 == 0) {
+                                for (final Bin bin : binManager.removeReadyBins(false)) {
+                                    binned.addAndGet(bin.getContents().size());
+                                }
+                            }
+                        }
+                    } catch (final InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        startLatch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failures.get());
+        for (final Bin bin : binManager.removeReadyBins(false)) {
+            binned.addAndGet(bin.getContents().size());
+        }
+        assertEquals(threadCount * flowFilesPerThread, binned.get());
+        assertEquals(0, binManager.getBinCount());
+    }
+
+    private FlowFile createFlowFile(final long size) {
+        final FlowFile flowFile = mock(FlowFile.class);
+        when(flowFile.getSize()).thenReturn(size);
+        return flowFile;
+    }
+}
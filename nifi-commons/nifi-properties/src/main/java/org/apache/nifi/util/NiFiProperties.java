@@ -67,6 +67,8 @@ public class NiFiProperties extends Properties {
     public static final String ADMINISTRATIVE_YIELD_DURATION = "nifi.administrative.yield.duration";
     public static final String PERSISTENT_STATE_DIRECTORY = "nifi.persistent.state.directory";
     public static final String BORED_YIELD_DURATION = "nifi.bored.yield.duration";
+    public static final String PROCESSOR_ADAPTIVE_RUN_DURATION_MAX = "nifi.processor.adaptive.run.duration.max";
+    public static final String TIMER_DRIVEN_WORK_STEALING_ENABLED = "nifi.timer.driven.work.stealing.enabled";
     public static final String PROCESSOR_SCHEDULING_TIMEOUT = "nifi.processor.scheduling.timeout";
 
     // content repository properties
@@ -79,16 +81,20 @@ public class NiFiProperties extends Properties {
     public static final String CONTENT_ARCHIVE_BACK_PRESSURE_PERCENTAGE = "nifi.content.repository.archive.backpressure.percentage";
     public static final String CONTENT_ARCHIVE_ENABLED = "nifi.content.repository.archive.enabled";
     public static final String CONTENT_ARCHIVE_CLEANUP_FREQUENCY = "nifi.content.repository.archive.cleanup.frequency";
+    public static final String CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE = "nifi.content.repository.read.channel.cache.size";
+    public static final String CONTENT_REPOSITORY_READ_MMAP_THRESHOLD = "nifi.content.repository.read.mmap.threshold";
     public static final String CONTENT_VIEWER_URL = "nifi.content.viewer.url";
 
     // flowfile repository properties
     public static final String FLOWFILE_REPOSITORY_IMPLEMENTATION = "nifi.flowfile.repository.implementation";
     public static final String FLOWFILE_REPOSITORY_ALWAYS_SYNC = "nifi.flowfile.repository.always.sync";
+    public static final String FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW = "nifi.flowfile.repository.group.commit.window";
     public static final String FLOWFILE_REPOSITORY_DIRECTORY = "nifi.flowfile.repository.directory";
     public static final String FLOWFILE_REPOSITORY_PARTITIONS = "nifi.flowfile.repository.partitions";
     public static final String FLOWFILE_REPOSITORY_CHECKPOINT_INTERVAL = "nifi.flowfile.repository.checkpoint.interval";
     public static final String FLOWFILE_SWAP_MANAGER_IMPLEMENTATION = "nifi.swap.manager.implementation";
     public static final String QUEUE_SWAP_THRESHOLD = "nifi.queue.swap.threshold";
+    public static final String QUEUE_STRIPE_COUNT = "nifi.queue.stripe.count";
     public static final String SWAP_IN_THREADS = "nifi.swap.in.threads";
     public static final String SWAP_IN_PERIOD = "nifi.swap.in.period";
     public static final String SWAP_OUT_THREADS = "nifi.swap.out.threads";
@@ -217,6 +223,8 @@ public class NiFiProperties extends Properties {
     public static final String DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL = "2 min";
     public static final int DEFAULT_MAX_FLOWFILES_PER_CLAIM = 100;
     public static final int DEFAULT_QUEUE_SWAP_THRESHOLD = 20000;
+    public static final int DEFAULT_QUEUE_STRIPE_COUNT = 1;
+    public static final int DEFAULT_CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE = 256;
     public static final String DEFAULT_SWAP_STORAGE_LOCATION = "./flowfile_repository/swap";
     public static final String DEFAULT_SWAP_IN_PERIOD = "1 sec";
     public static final String DEFAULT_SWAP_OUT_PERIOD = "5 sec";
@@ -226,6 +234,8 @@ public class NiFiProperties extends Properties {
     public static final String DEFAULT_PERSISTENT_STATE_DIRECTORY = "./conf/state";
     public static final String DEFAULT_COMPONENT_STATUS_SNAPSHOT_FREQUENCY = "5 mins";
     public static final String DEFAULT_BORED_YIELD_DURATION = "10 millis";
+    public static final String DEFAULT_PROCESSOR_ADAPTIVE_RUN_DURATION_MAX = "0 millis";
+    public static final String DEFAULT_TIMER_DRIVEN_WORK_STEALING_ENABLED = "false";
     public static final String DEFAULT_ZOOKEEPER_CONNECT_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_SESSION_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_ROOT_NODE = "/nifi";
@@ -359,6 +369,42 @@ public class NiFiProperties extends Properties {
         }
     }
 
+    /**
+     * @return the number of independently locked stripes that each FlowFile Queue should be split into.
+     *         A value of 1 indicates that the standard, single-lock queue should be used
+     */
+    public int getQueueStripeCount() {
+        final String stripeValue = getProperty(QUEUE_STRIPE_COUNT);
+        if (stripeValue == null) {
+            return DEFAULT_QUEUE_STRIPE_COUNT;
+        }
+
+        try {
+            final int stripeCount = Integer.parseInt(stripeValue.trim());
+            return stripeCount < 1 ? DEFAULT_QUEUE_STRIPE_COUNT : stripeCount;
+        } catch (final NumberFormatException e) {
+            return DEFAULT_QUEUE_STRIPE_COUNT;
+        }
+    }
+
+    /**
+     * @return the maximum number of content repository files that are kept open for reading
+     *         when not in use; 0 disables caching of open files
+     */
+    public int getContentRepositoryReadChannelCacheSize() {
+        final String cacheSizeValue = getProperty(CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE);
+        if (cacheSizeValue == null) {
+            return DEFAULT_CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE;
+        }
+
+        try {
+            final int cacheSize = Integer.parseInt(cacheSizeValue.trim());
+            return cacheSize < 0 ? DEFAULT_CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE : cacheSize;
+        } catch (final NumberFormatException e) {
+            return DEFAULT_CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE;
+        }
+    }
+
     public Integer getIntegerProperty(final String propertyName, final Integer defaultValue) {
         final String value = getProperty(propertyName);
         if (value == null) {
@@ -1022,6 +1068,14 @@ public class NiFiProperties extends Properties {
         return getProperty(BORED_YIELD_DURATION, DEFAULT_BORED_YIELD_DURATION);
     }
 
+    public String getMaxAdaptiveRunDuration() {
+        return getProperty(PROCESSOR_ADAPTIVE_RUN_DURATION_MAX, DEFAULT_PROCESSOR_ADAPTIVE_RUN_DURATION_MAX);
+    }
+
+    public boolean isTimerDrivenWorkStealingEnabled() {
+        return Boolean.parseBoolean(getProperty(TIMER_DRIVEN_WORK_STEALING_ENABLED, DEFAULT_TIMER_DRIVEN_WORK_STEALING_ENABLED).trim());
+    }
+
     public File getStateManagementConfigFile() {
         return new File(getProperty(STATE_MANAGEMENT_CONFIG_FILE, DEFAULT_STATE_MANAGEMENT_CONFIG_FILE));
     }
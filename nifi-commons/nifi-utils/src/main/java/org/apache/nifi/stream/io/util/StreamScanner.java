@@ -16,13 +16,15 @@
  */
 package org.apache.nifi.stream.io.util;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- *
+ * Splits an {@link InputStream} into the segments between the occurrences of a
+ * delimiter. The stream is read in blocks into a single buffer that is reused
+ * for all segments, so only the returned segments are allocated.
  */
 public class StreamScanner {
 
@@ -34,8 +36,21 @@ public class StreamScanner {
 
     private final int maxDataSize;
 
+    /*
+     * Holds the bytes read from the stream. The bytes between tokenStart and
+     * the position of the buffer have not been returned yet.
+     */
     private ByteBuffer buffer;
 
+    private int tokenStart;
+
+    /*
+     * The position from which to continue searching for the delimiter
+     */
+    private int scanPosition;
+
+    private boolean endOfStream;
+
     private byte[] data;
 
     /**
@@ -75,8 +90,8 @@ public class StreamScanner {
      *
      */
     public StreamScanner(InputStream is, byte[] delimiterBytes, int maxDataSize, int initialBufferSize) {
-        this.is = new BufferedInputStream(is);
-        this.delimiterBytes = delimiterBytes;
+        this.is = is;
+        this.delimiterBytes = delimiterBytes != null && delimiterBytes.length > 0 ? delimiterBytes : null;
         this.buffer = ByteBuffer.allocate(initialBufferSize);
         this.maxDataSize = maxDataSize;
     }
@@ -90,32 +105,33 @@ public class StreamScanner {
      *         element was retrieved via {@link #next()} operation.
      */
     public boolean hasNext() {
-        int j = 0;
-        int readVal = 0;
-        while (this.data == null && readVal != EOF) {
-            this.expandBufferIfNecessary();
-            try {
-                readVal = this.is.read();
-            } catch (IOException e) {
-                throw new IllegalStateException("Failed while reading InputStream", e);
-            }
-            if (readVal == EOF) {
-                this.extractDataToken(0);
-            } else {
-                byte byteVal = (byte)readVal;
-                this.buffer.put(byteVal);
-                if (this.buffer.position() > this.maxDataSize) {
-                    throw new IllegalStateException("Maximum allowed data size of " + this.maxDataSize + " exceeded.");
+        while (this.data == null) {
+            final int end = this.buffer.position();
+            if (this.delimiterBytes != null) {
+                final int delimiterIndex = this.indexOfDelimiter(end);
+                if (delimiterIndex != EOF) {
+                    final int tokenEnd = delimiterIndex + this.delimiterBytes.length;
+                    this.checkDataSize(tokenEnd - this.tokenStart);
+                    this.data = Arrays.copyOfRange(this.buffer.array(), this.tokenStart, delimiterIndex);
+                    this.tokenStart = tokenEnd;
+                    this.scanPosition = tokenEnd;
+                    break;
                 }
-                if (this.delimiterBytes != null && this.delimiterBytes[j] == byteVal) {
-                    if (++j == this.delimiterBytes.length) {
-                        this.extractDataToken(this.delimiterBytes.length);
-                        j = 0;
-                    }
-                } else {
-                    j = 0;
+                // the end of the buffer may hold the beginning of a delimiter
+                this.scanPosition = Math.max(this.tokenStart, end - this.delimiterBytes.length + 1);
+            }
+
+            this.checkDataSize(end - this.tokenStart);
+            if (this.endOfStream) {
+                if (end > this.tokenStart) {
+                    this.data = Arrays.copyOfRange(this.buffer.array(), this.tokenStart, end);
                 }
+                this.buffer.clear();
+                this.tokenStart = 0;
+                this.scanPosition = 0;
+                break;
             }
+            this.fill();
         }
         return this.data != null;
     }
@@ -133,32 +149,78 @@ public class StreamScanner {
     }
 
     /**
-     *
+     * Reads the next block of the stream into the buffer, first making room by
+     * discarding the bytes that were already returned or, if there are none,
+     * by expanding the buffer.
      */
-    private void expandBufferIfNecessary() {
-        if (this.buffer.position() == Integer.MAX_VALUE ){
-            throw new IllegalStateException("Internal buffer has reached the capacity and can not be expended any further");
+    private void fill() {
+        if (!this.buffer.hasRemaining()) {
+            if (this.tokenStart > 0) {
+                this.buffer.flip();
+                this.buffer.position(this.tokenStart);
+                this.buffer.compact();
+                this.scanPosition -= this.tokenStart;
+                this.tokenStart = 0;
+            } else {
+                this.expandBuffer();
+            }
+        }
+
+        final int readCount;
+        try {
+            readCount = this.is.read(this.buffer.array(), this.buffer.position(), this.buffer.remaining());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed while reading InputStream", e);
         }
-        if (this.buffer.remaining() == 0) {
-            this.buffer.flip();
-            int pos = this.buffer.capacity();
-            int newSize = this.buffer.capacity() * 2 > Integer.MAX_VALUE ? Integer.MAX_VALUE : this.buffer.capacity() * 2;
-            ByteBuffer bb = ByteBuffer.allocate(newSize);
-            bb.put(this.buffer);
-            this.buffer = bb;
-            this.buffer.position(pos);
+        if (readCount == EOF) {
+            this.endOfStream = true;
+        } else {
+            this.buffer.position(this.buffer.position() + readCount);
         }
     }
 
+    /**
+     * @return the index of the first delimiter between the scan position and
+     *         the given end of the buffer or -1 if there is none
+     */
+    private int indexOfDelimiter(int end) {
+        final byte[] array = this.buffer.array();
+        final byte first = this.delimiterBytes[0];
+        final int lastStart = end - this.delimiterBytes.length;
+        for (int i = this.scanPosition; i <= lastStart; i++) {
+            if (array[i] == first) {
+                int j = 1;
+                while (j < this.delimiterBytes.length && array[i + j] == this.delimiterBytes[j]) {
+                    j++;
+                }
+                if (j == this.delimiterBytes.length) {
+                    return i;
+                }
+            }
+        }
+        return EOF;
+    }
+
     /**
      *
      */
-    private void extractDataToken(int lengthSubtract) {
-        this.buffer.flip();
-        if (this.buffer.limit() > 0){ // something must be in the buffer; at least delimiter (e.g., \n)
-            this.data = new byte[this.buffer.limit() - lengthSubtract];
-            this.buffer.get(this.data);
+    private void checkDataSize(int size) {
+        if (size > this.maxDataSize) {
+            throw new IllegalStateException("Maximum allowed data size of " + this.maxDataSize + " exceeded.");
         }
-        this.buffer.clear();
+    }
+
+    /**
+     *
+     */
+    private void expandBuffer() {
+        if (this.buffer.position() == Integer.MAX_VALUE ){
+            throw new IllegalStateException("Internal buffer has reached the capacity and can not be expended any further");
+        }
+        this.buffer.flip();
+        int newSize = this.buffer.capacity() > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : this.buffer.capacity() * 2;
+        ByteBuffer bb = ByteBuffer.allocate(newSize);
+        bb.put(this.buffer);
+        this.buffer = bb;
     }
 }
@@ -102,6 +102,46 @@ public class AhoCorasick<T> implements Search<T> {
         }
     }
 
+    /**
+     * @return the node at which every search begins
+     * @throws IllegalStateException if the dictionary has not been initialized
+     */
+    public Node getRootNode() {
+        if (root == null) {
+            throw new IllegalStateException();
+        }
+        return root;
+    }
+
+    /**
+     * Returns the node that a search moves to from the given node upon reading the given byte. This allows callers that
+     * already hold the data in memory to walk the automaton directly, without wrapping the data in a stream or collecting
+     * results in a {@link SearchState}. The term of the returned node, if it has one, and the terms of the nodes in its
+     * chain of output nodes have been matched.
+     *
+     * @param current the node that the search is currently at
+     * @param nextByte the next byte of the data being searched, in the range 0 - 255
+     * @return the node that the search moves to
+     */
+    public Node nextNode(final Node current, final int nextByte) {
+        Node next = current.getNeighbor(nextByte);
+        if (next == null) {
+            next = current.getFailureNode();
+            while ((next != null) && next.getNeighbor(nextByte) == null) {
+                next = next.getFailureNode();
+            }
+            if (next != null) {
+                next = next.getNeighbor(nextByte);
+            } else {
+                next = root;
+            }
+        }
+        if (next == null) {
+            throw new IllegalStateException("tree out of sync");
+        }
+        return next;
+    }
+
     @Override
     public SearchState search(final InputStream stream, final boolean findAll) throws IOException {
         return search(stream, findAll, null);
@@ -119,29 +159,13 @@ public class AhoCorasick<T> implements Search<T> {
         int currentChar;
         while ((currentChar = stream.read()) >= 0) {
             currentState.incrementBytesRead(1L);
-            Node next = current.getNeighbor(currentChar);
-            if (next == null) {
-                next = current.getFailureNode();
-                while ((next != null) && next.getNeighbor(currentChar) == null) {
-                    next = next.getFailureNode();
-                }
-                if (next != null) {
-                    next = next.getNeighbor(currentChar);
-                } else {
-                    next = root;
-                }
-            }
-            if (next == null) {
-                throw new IllegalStateException("tree out of sync");
-            }
+            final Node next = nextNode(current, currentChar);
             //Accept condition
             if (next.hasMatch()) {
                 currentState.addResult(next.getMatchingTerm());
             }
-            for (Node failNode = next.getFailureNode(); failNode != null; failNode = failNode.getFailureNode()) {
-                if (failNode.hasMatch()) {
-                    currentState.addResult(failNode.getMatchingTerm());
-                }
+            for (Node outputNode = next.getOutputNode(); outputNode != null; outputNode = outputNode.getOutputNode()) {
+                currentState.addResult(outputNode.getMatchingTerm());
             }
             current = next;
             if (currentState.foundMatch() && !findAll) {
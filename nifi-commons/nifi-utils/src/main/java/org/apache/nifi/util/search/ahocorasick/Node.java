@@ -16,8 +16,7 @@
  */
 package org.apache.nifi.util.search.ahocorasick;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import org.apache.nifi.util.search.SearchTerm;
 
@@ -26,8 +25,16 @@ import org.apache.nifi.util.search.SearchTerm;
  */
 public class Node {
 
-    private final Map<Integer, Node> neighborMap;
+    // Most nodes have very few neighbors, so they are kept in small parallel arrays that are scanned linearly. A node
+    // with many neighbors switches to an array that is indexed directly by the value of the byte.
+    private static final int MAX_SPARSE_NEIGHBORS = 16;
+
+    private byte[] neighborIndices;
+    private Node[] neighbors;
+    private int neighborCount;
+    private Node[] denseNeighbors;
     private Node failureNode;
+    private Node outputNode;
     private SearchTerm<?> term;
 
     Node(final SearchTerm<?> term) {
@@ -36,18 +43,32 @@ public class Node {
     }
 
     Node() {
-        neighborMap = new HashMap<>();
+        neighborIndices = new byte[2];
+        neighbors = new Node[2];
         term = null;
     }
 
     void setFailureNode(final Node fail) {
         failureNode = fail;
+        if (fail == null) {
+            outputNode = null;
+        } else {
+            outputNode = fail.hasMatch() ? fail : fail.getOutputNode();
+        }
     }
 
     public Node getFailureNode() {
         return failureNode;
     }
 
+    /**
+     * @return the nearest node in the chain of failure nodes that has a matching term, or <code>null</code> if no
+     *         node in the chain has a matching term
+     */
+    public Node getOutputNode() {
+        return outputNode;
+    }
+
     public boolean hasMatch() {
         return term != null;
     }
@@ -61,11 +82,48 @@ public class Node {
     }
 
     public Node getNeighbor(final int index) {
-        return neighborMap.get(index);
+        if (denseNeighbors != null) {
+            return denseNeighbors[index];
+        }
+
+        for (int i = 0; i < neighborCount; i++) {
+            if ((neighborIndices[i] & 0xFF) == index) {
+                return neighbors[i];
+            }
+        }
+        return null;
     }
 
     void setNeighbor(final Node neighbor, final int index) {
-        neighborMap.put(index, neighbor);
+        if (denseNeighbors != null) {
+            denseNeighbors[index] = neighbor;
+            return;
+        }
+
+        for (int i = 0; i < neighborCount; i++) {
+            if ((neighborIndices[i] & 0xFF) == index) {
+                neighbors[i] = neighbor;
+                return;
+            }
+        }
+
+        if (neighborCount == MAX_SPARSE_NEIGHBORS) {
+            denseNeighbors = new Node[256];
+            for (int i = 0; i < neighborCount; i++) {
+                denseNeighbors[neighborIndices[i] & 0xFF] = neighbors[i];
+            }
+            denseNeighbors[index] = neighbor;
+            neighborIndices = null;
+            neighbors = null;
+            return;
+        }
+
+        if (neighborCount == neighbors.length) {
+            neighborIndices = Arrays.copyOf(neighborIndices, neighborCount * 2);
+            neighbors = Arrays.copyOf(neighbors, neighborCount * 2);
+        }
+        neighborIndices[neighborCount] = (byte) index;
+        neighbors[neighborCount++] = neighbor;
     }
 
 }
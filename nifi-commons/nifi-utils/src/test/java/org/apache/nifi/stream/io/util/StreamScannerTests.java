@@ -21,6 +21,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
@@ -127,4 +128,54 @@ public class StreamScannerTests {
         buffer = (ByteBuffer) bufferField.get(scanner);
         assertEquals(128, buffer.capacity());
     }
+
+    @Test
+    public void validateDelimiterSpanningReads() {
+        String data = "THIS IS MY TEXT<MY DEIMITER>THIS IS MY NEW TEXT<MY DEIMITER><MY DEIMITER>THIS IS MY NEWEST TEXT<MY DEIMITER>";
+        // returns a single byte per read, so the delimiter is never read at once
+        InputStream is = new ByteArrayInputStream(data.getBytes()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        StreamScanner scanner = new StreamScanner(is, "<MY DEIMITER>".getBytes(StandardCharsets.UTF_8), 1000, 4);
+        assertTrue(scanner.hasNext());
+        assertEquals("THIS IS MY TEXT", new String(scanner.next(), StandardCharsets.UTF_8));
+        assertTrue(scanner.hasNext());
+        assertEquals("THIS IS MY NEW TEXT", new String(scanner.next(), StandardCharsets.UTF_8));
+        assertTrue(scanner.hasNext());
+        assertEquals(0, scanner.next().length);
+        assertTrue(scanner.hasNext());
+        assertEquals("THIS IS MY NEWEST TEXT", new String(scanner.next(), StandardCharsets.UTF_8));
+        assertFalse(scanner.hasNext());
+    }
+
+    @Test
+    public void validateDelimiterAfterPartialMatch() {
+        ByteArrayInputStream is = new ByteArrayInputStream("1aaab2aab3".getBytes(StandardCharsets.UTF_8));
+        StreamScanner scanner = new StreamScanner(is, "aab".getBytes(StandardCharsets.UTF_8), 1000);
+        assertTrue(scanner.hasNext());
+        assertEquals("1a", new String(scanner.next(), StandardCharsets.UTF_8));
+        assertTrue(scanner.hasNext());
+        assertEquals("2", new String(scanner.next(), StandardCharsets.UTF_8));
+        assertTrue(scanner.hasNext());
+        assertEquals("3", new String(scanner.next(), StandardCharsets.UTF_8));
+        assertFalse(scanner.hasNext());
+    }
+
+    @Test
+    public void validateSegmentsLargerThanInitialBuffer() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("segment-").append(i).append('\n');
+        }
+        ByteArrayInputStream is = new ByteArrayInputStream(builder.toString().getBytes(StandardCharsets.UTF_8));
+        StreamScanner scanner = new StreamScanner(is, "\n".getBytes(StandardCharsets.UTF_8), 20, 16);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(scanner.hasNext());
+            assertEquals("segment-" + i, new String(scanner.next(), StandardCharsets.UTF_8));
+        }
+        assertFalse(scanner.hasNext());
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * <p>
+ * A {@link SerDe} that is able to read an Edit Record without knowing the current state of the record that
+ * it modifies, deferring the merge of the edit with that state until later. This allows a Write-Ahead Log
+ * to read the edit logs of its partitions concurrently and then apply the edits in the order in which the
+ * transactions occurred.
+ * </p>
+ *
+ * <p>
+ * For any edit, calling {@link #applyEdit(Object, Object)} with the current state of the record and the
+ * result of {@link #readEdit(DataInputStream, int)} must produce the same record as
+ * {@link #deserializeEdit(DataInputStream, java.util.Map, int)} would have.
+ * </p>
+ *
+ * @param <T> the type of record that is to be Serialized and De-Serialized by
+ * this object
+ */
+public interface MergeableSerDe<T> extends SerDe<T> {
+
+    /**
+     * <p>
+     * Reads an Edit Record from the given {@link DataInputStream}. The returned
+     * object must provide the identifier of the record via
+     * {@link #getRecordIdentifier(Object)} but need not be usable in any other
+     * way until it has been passed to {@link #applyEdit(Object, Object)}. This
+     * method must never return <code>null</code>.
+     * </p>
+     *
+     * <p>
+     * This method may be called concurrently for different streams, but will
+     * not be called concurrently for the same stream.
+     * </p>
+     *
+     * @param in to deserialize from
+     * @param version the version of the SerDe that was used to serialize the
+     * edit record
+     * @return the edit that was read
+     * @throws IOException if failure reading
+     */
+    T readEdit(DataInputStream in, int version) throws IOException;
+
+    /**
+     * Merges an edit that was obtained from {@link #readEdit(DataInputStream, int)}
+     * with the current state of the record that it modifies
+     *
+     * @param currentRecordState the current state of the record, or
+     * <code>null</code> if the record is not known
+     * @param edit the edit to apply
+     * @return the new, merged version of the record. If the edit indicates that
+     * the entity was deleted, must return a Record with an UpdateType of
+     * {@link UpdateType#DELETE}
+     */
+    T applyEdit(T currentRecordState, T edit);
+}
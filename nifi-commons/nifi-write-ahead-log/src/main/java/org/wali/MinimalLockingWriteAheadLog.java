@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.FileChannel;
@@ -40,17 +41,23 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -72,6 +79,18 @@ import org.slf4j.LoggerFactory;
  * updates for a given Record at any one time.
  * </p>
  *
+ * <p>
+ * If the SerDe that is provided is a {@link MergeableSerDe}, the edit logs of the
+ * Partitions are read concurrently on recovery and the transactions are merged by
+ * Transaction ID, so that they are still applied in the order in which they occurred.
+ * Otherwise, the edit logs are read one transaction at a time by a single thread.
+ * </p>
+ *
+ * <p>
+ * If the SerDe that is provided is a {@link StreamScopedSerDe}, the streams of the
+ * edit logs and snapshots are obtained from the SerDe.
+ * </p>
+ *
  * @param <T> type of record this WAL is for
  */
 public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepository<T> {
@@ -104,10 +123,17 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     private volatile boolean updated = false;
     private volatile boolean recovered = false;
 
+    private final long groupCommitWindowNanos;
+
     public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
         this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener);
     }
 
+    public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+        final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
+        this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener, groupCommitWindow, timeUnit);
+    }
+
     /**
      *
      * @param paths a sorted set of Paths to use for the partitions/journals and
@@ -120,9 +146,37 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
      * @param syncListener the listener
      * @throws IOException if unable to initialize due to IO issue
      */
-    @SuppressWarnings("unchecked")
     public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
+        this(paths, partitionCount, serde, syncListener, -1L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a Write-Ahead Log that uses group commit for updates that are forced to sync. Rather than
+     * each such update syncing its partition on its own, the first update to request a sync of a partition
+     * waits up to the given window for other threads to write to the same partition and then performs a
+     * single sync on behalf of all of them. An update does not return until the data that it wrote has been
+     * synced to disk, so the durability guarantee is unchanged, but the cost of a sync is shared by all
+     * updates that arrive within the window.
+     *
+     * @param paths a sorted set of Paths to use for the partitions/journals and
+     * the snapshot. The snapshot will always be written to the first path
+     * specified.
+     * @param partitionCount the number of partitions/journals to use. For best
+     * performance, this should be close to the number of threads that are
+     * expected to update the repository simultaneously
+     * @param serde the serializer/deserializer for records
+     * @param syncListener the listener
+     * @param groupCommitWindow the amount of time to wait for other updates before syncing a partition. A value of 0
+     * syncs immediately but still allows updates that are written while a sync is in progress to share the next sync.
+     * A negative value disables group commit, so that each update is synced individually
+     * @param timeUnit the unit of the group commit window
+     * @throws IOException if unable to initialize due to IO issue
+     */
+    @SuppressWarnings("unchecked")
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+        final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
         this.syncListener = syncListener;
+        this.groupCommitWindowNanos = groupCommitWindow < 0 ? -1L : timeUnit.toNanos(groupCommitWindow);
 
         requireNonNull(paths);
         requireNonNull(serde);
@@ -218,6 +272,8 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 final int resolvedIdx = (int) (partitionIdx % partitions.length);
                 final Partition<T> partition = partitions[resolvedIdx];
                 if (partition.tryClaim()) {
+                    final boolean groupCommit = forceSync && groupCommitWindowNanos >= 0;
+                    final long writeSequence;
                     try {
                         final long transactionId = transactionIdGenerator.getAndIncrement();
                         if (logger.isTraceEnabled()) {
@@ -227,20 +283,38 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         }
 
                         try {
-                            partition.update(records, transactionId, unmodifiableRecordMap, forceSync);
+                            writeSequence = partition.update(records, transactionId, unmodifiableRecordMap, forceSync && !groupCommit);
                         } catch (final Throwable t) {
                             partition.blackList();
                             numberBlackListedPartitions.incrementAndGet();
                             throw t;
                         }
 
-                        if (forceSync && syncListener != null) {
+                        if (forceSync && !groupCommit && syncListener != null) {
                             syncListener.onSync(resolvedIdx);
                         }
                     } finally {
                         partition.releaseClaim();
                     }
 
+                    // Wait for the group sync without holding the claim, so that other threads can write to this
+                    // partition in the meantime and share the sync. We still hold the read lock, so the partition
+                    // cannot be rolled over before the journal that we wrote to has been synced.
+                    if (groupCommit) {
+                        try {
+                            partition.awaitSync(writeSequence, groupCommitWindowNanos);
+                        } catch (final Throwable t) {
+                            if (partition.blackList()) {
+                                numberBlackListedPartitions.incrementAndGet();
+                            }
+                            throw t;
+                        }
+
+                        if (syncListener != null) {
+                            syncListener.onSync(resolvedIdx);
+                        }
+                    }
+
                     for (final T record : records) {
                         final UpdateType updateType = serde.getUpdateType(record);
                         final Object recordIdentifier = serde.getRecordIdentifier(record);
@@ -307,7 +381,8 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
         final long recoverNanos = System.nanoTime() - recoverStart;
         final long recoveryMillis = TimeUnit.MILLISECONDS.convert(recoverNanos, TimeUnit.NANOSECONDS);
-        logger.info("Successfully recovered {} records in {} milliseconds", recordMap.size(), recoveryMillis);
+        logger.info("Successfully recovered {} records in {} milliseconds ({} records per second)",
+            new Object[] {recordMap.size(), recoveryMillis, perSecond(recordMap.size(), recoveryMillis)});
         checkpoint();
 
         recovered = true;
@@ -346,7 +421,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
         // at this point, we know the snapshotPath exists because if it didn't, then we either returned null
         // or we renamed partialPath to snapshotPath. So just Recover from snapshotPath.
-        try (final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath, StandardOpenOption.READ)))) {
+        try (final DataInputStream dataIn = createDataInputStream(serde, new BufferedInputStream(Files.newInputStream(snapshotPath, StandardOpenOption.READ)))) {
             final String waliImplementationClass = dataIn.readUTF();
             final int waliImplementationVersion = dataIn.readInt();
 
@@ -404,6 +479,28 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
      * @throws IOException if unable to recover from edits
      */
     private void recoverFromEdits(final Map<Object, T> modifiableRecordMap, final Long maxTransactionIdRestored) throws IOException {
+        final long recoverStart = System.nanoTime();
+        final long transactionCount;
+        final int threadCount;
+        if (serde instanceof MergeableSerDe) {
+            threadCount = Math.max(1, Math.min(partitions.length, Runtime.getRuntime().availableProcessors()));
+            transactionCount = recoverFromEditsConcurrently(modifiableRecordMap, maxTransactionIdRestored, threadCount);
+        } else {
+            threadCount = 1;
+            transactionCount = recoverFromEditsSerially(modifiableRecordMap, maxTransactionIdRestored);
+        }
+
+        for (final Partition<T> partition : partitions) {
+            partition.endRecovery();
+        }
+
+        final long recoverMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoverStart);
+        logger.info("{} recovered {} transactions from {} partitions in {} milliseconds ({} transactions per second) using {} threads",
+            new Object[] {this, transactionCount, partitions.length, recoverMillis, perSecond(transactionCount, recoverMillis), threadCount});
+    }
+
+    private long recoverFromEditsSerially(final Map<Object, T> modifiableRecordMap, final Long maxTransactionIdRestored) throws IOException {
+        long transactionCount = 0L;
         final Map<Object, T> updateMap = new HashMap<>();
         final Map<Object, T> unmodifiableRecordMap = Collections.unmodifiableMap(modifiableRecordMap);
         final Map<Object, T> ignorableMap = new HashMap<>();
@@ -450,6 +547,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 for (final Object id : idsRemoved) {
                     modifiableRecordMap.remove(id);
                 }
+                transactionCount++;
             } catch (final EOFException e) {
                 logger.error("{} unexpectedly reached End-of-File when reading from {} for Transaction ID {}; "
                         + "assuming crash and ignoring this transaction",
@@ -472,8 +570,266 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             }
         }
 
-        for (final Partition<T> partition : partitions) {
-            partition.endRecovery();
+        return transactionCount;
+    }
+
+    /**
+     * Recovers records from the edit logs by reading each Partition's edit log
+     * in a background thread. Each Partition's transactions are already ordered
+     * by Transaction ID, so the transactions that are read are merged by
+     * Transaction ID and applied to the record map in order by this thread.
+     *
+     * @param modifiableRecordMap map
+     * @param maxTransactionIdRestored index of max restored transaction
+     * @param threadCount the number of threads to use for reading the edit logs
+     * @return the number of transactions that were recovered
+     * @throws IOException if unable to recover from edits
+     */
+    private long recoverFromEditsConcurrently(final Map<Object, T> modifiableRecordMap, final Long maxTransactionIdRestored, final int threadCount) throws IOException {
+        final MergeableSerDe<T> mergeableSerde = (MergeableSerDe<T>) serde;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private final AtomicInteger threadIndex = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Write-Ahead Log Recovery Thread-" + threadIndex.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try {
+            final List<PartitionReader> readers = new ArrayList<>(partitions.length);
+            for (final Partition<T> partition : partitions) {
+                final PartitionReader reader = new PartitionReader(partition, readers.size(), maxTransactionIdRestored, executor);
+                readers.add(reader);
+                reader.scheduleIfNecessary();
+            }
+
+            final Queue<RecoveredTransaction> transactionQueue = new PriorityQueue<>(partitions.length, new Comparator<RecoveredTransaction>() {
+                @Override
+                public int compare(final RecoveredTransaction o1, final RecoveredTransaction o2) {
+                    final int transactionComparison = Long.compare(o1.transactionId, o2.transactionId);
+                    if (transactionComparison != 0) {
+                        return transactionComparison;
+                    }
+
+                    return Integer.compare(o1.reader.readerIndex, o2.reader.readerIndex);
+                }
+            });
+
+            for (final PartitionReader reader : readers) {
+                final RecoveredTransaction transaction = reader.nextTransaction();
+                if (transaction != null) {
+                    transactionQueue.add(transaction);
+                }
+            }
+
+            final Map<Object, T> updateMap = new HashMap<>();
+            final Set<Object> idsRemoved = new HashSet<>();
+            long transactionCount = 0L;
+            RecoveredTransaction transaction;
+            while ((transaction = transactionQueue.poll()) != null) {
+                updateMap.clear();
+                idsRemoved.clear();
+
+                // edits are applied to the state of the record as of the previous transaction, just as if
+                // they had been deserialized against the record map.
+                final Partition<T> partition = transaction.reader.partition;
+                for (final T edit : transaction.edits) {
+                    final T record = mergeableSerde.applyEdit(modifiableRecordMap.get(serde.getRecordIdentifier(edit)), edit);
+                    partition.applyRecoveredRecord(record, transaction.transactionId, updateMap, idsRemoved, recoveredExternalLocations);
+                }
+
+                modifiableRecordMap.putAll(updateMap);
+                for (final Object id : idsRemoved) {
+                    modifiableRecordMap.remove(id);
+                }
+                transactionCount++;
+
+                final RecoveredTransaction subsequentTransaction = transaction.reader.nextTransaction();
+                if (subsequentTransaction != null) {
+                    transactionQueue.add(subsequentTransaction);
+                }
+            }
+
+            return transactionCount;
+        } finally {
+            executor.shutdownNow();
+            try {
+                // ensure that no background thread is still reading from a Partition before ending recovery
+                if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.warn("{} timed out waiting for Recovery Threads to finish", this);
+                }
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static long perSecond(final long count, final long millis) {
+        return millis == 0L ? count * 1000L : count * 1000L / millis;
+    }
+
+    private static DataOutputStream createDataOutputStream(final SerDe<?> serde, final OutputStream out) {
+        if (serde instanceof StreamScopedSerDe) {
+            return ((StreamScopedSerDe<?>) serde).createOutputStream(out);
+        }
+        return new DataOutputStream(out);
+    }
+
+    private static DataInputStream createDataInputStream(final SerDe<?> serde, final InputStream in) {
+        if (serde instanceof StreamScopedSerDe) {
+            return ((StreamScopedSerDe<?>) serde).createInputStream(in);
+        }
+        return new DataInputStream(in);
+    }
+
+    /**
+     * A transaction that was read from a Partition's edit log but not yet
+     * applied
+     */
+    private class RecoveredTransaction {
+        private final long transactionId;
+        private final List<T> edits;
+        private final PartitionReader reader;
+        private final Throwable failure;
+
+        RecoveredTransaction(final long transactionId, final List<T> edits, final PartitionReader reader, final Throwable failure) {
+            this.transactionId = transactionId;
+            this.edits = edits;
+            this.reader = reader;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Reads transactions from a single Partition in the background, in batches,
+     * so that the thread that applies the transactions never waits for a
+     * Partition that has already been read ahead. A reader is scheduled at most
+     * once at any time, so the Partition is only ever read by one thread at a
+     * time.
+     */
+    private class PartitionReader implements Runnable {
+        private static final int BATCH_SIZE = 256;
+
+        private final Partition<T> partition;
+        private final int readerIndex;
+        private final Long maxTransactionIdRestored;
+        private final ExecutorService executor;
+        private final BlockingQueue<RecoveredTransaction> transactions = new LinkedBlockingQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        // a null transaction list marks the end of the Partition
+        private final RecoveredTransaction endOfPartition;
+
+        private volatile boolean finished = false;
+        private boolean skippingRestoredTransactions = true;
+
+        PartitionReader(final Partition<T> partition, final int readerIndex, final Long maxTransactionIdRestored, final ExecutorService executor) {
+            this.partition = partition;
+            this.readerIndex = readerIndex;
+            this.maxTransactionIdRestored = maxTransactionIdRestored;
+            this.executor = executor;
+            this.endOfPartition = new RecoveredTransaction(-1L, null, this, null);
+        }
+
+        void scheduleIfNecessary() {
+            if (!finished && transactions.size() < BATCH_SIZE && scheduled.compareAndSet(false, true)) {
+                executor.submit(this);
+            }
+        }
+
+        /**
+         * @return the next transaction from the Partition, or <code>null</code>
+         *         if there are no more transactions
+         * @throws IOException if unable to read from the Partition
+         */
+        RecoveredTransaction nextTransaction() throws IOException {
+            scheduleIfNecessary();
+
+            final RecoveredTransaction transaction;
+            try {
+                transaction = transactions.take();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to recover transactions from " + partition);
+            }
+
+            if (transaction.failure != null) {
+                if (transaction.failure instanceof IOException) {
+                    throw (IOException) transaction.failure;
+                }
+                throw new IOException("Failed to recover transactions from " + partition, transaction.failure);
+            }
+            if (transaction.edits == null) {
+                return null;
+            }
+
+            scheduleIfNecessary();
+            return transaction;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    final RecoveredTransaction transaction = readTransaction();
+                    if (transaction == null) {
+                        finished = true;
+                        transactions.add(endOfPartition);
+                        break;
+                    }
+
+                    transactions.add(transaction);
+                }
+            } catch (final Throwable t) {
+                finished = true;
+                transactions.add(new RecoveredTransaction(-1L, null, this, t));
+            } finally {
+                scheduled.set(false);
+            }
+
+            // the applying thread may have drained the queue before 'scheduled' was cleared
+            scheduleIfNecessary();
+        }
+
+        private RecoveredTransaction readTransaction() throws IOException {
+            while (true) {
+                final Long transactionId;
+                if (skippingRestoredTransactions) {
+                    transactionId = partition.getNextRecoverableTransactionId();
+                } else {
+                    try {
+                        transactionId = partition.getNextRecoverableTransactionId();
+                    } catch (final IOException e) {
+                        logger.error("{} unexpectedly found End-of-File when reading from {}; assuming crash and ignoring the remainder of the Partition",
+                            MinimalLockingWriteAheadLog.this, partition);
+                        return null;
+                    }
+                }
+
+                if (transactionId == null) {
+                    return null;
+                }
+
+                // transactions that the snapshot already contains are read but not applied
+                final boolean keepTransaction = maxTransactionIdRestored == null || transactionId > maxTransactionIdRestored;
+                if (keepTransaction) {
+                    skippingRestoredTransactions = false;
+                }
+
+                try {
+                    final List<T> edits = partition.readNextTransaction();
+                    if (keepTransaction) {
+                        return new RecoveredTransaction(transactionId, edits, this, null);
+                    }
+                } catch (final EOFException e) {
+                    logger.error("{} unexpectedly reached End-of-File when reading from {} for Transaction ID {}; "
+                            + "assuming crash and ignoring this transaction",
+                            new Object[]{MinimalLockingWriteAheadLog.this, partition, transactionId});
+                }
+            }
         }
     }
 
@@ -533,7 +889,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             // perform checkpoint, writing to .partial file
             fileOut = new FileOutputStream(partialPath.toFile());
-            dataOut = new DataOutputStream(fileOut);
+            dataOut = createDataOutputStream(serde, fileOut);
             dataOut.writeUTF(MinimalLockingWriteAheadLog.class.getName());
             dataOut.writeInt(getVersion());
             dataOut.writeUTF(serde.getClass().getName());
@@ -650,6 +1006,15 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
         private final Queue<Path> recoveryFiles;
 
+        // Group commit state, guarded by synchronizing on syncMonitor. The write sequence is incremented while holding
+        // the claim, after the transaction has been flushed to the journal, so any sync that begins after a transaction's
+        // sequence number has been recorded covers that transaction.
+        private final Object syncMonitor = new Object();
+        private long lastWriteSequence = 0L;
+        private long lastSyncedSequence = 0L;
+        private boolean syncInProgress = false;
+        private FileOutputStream fileToSync = null;
+
         public Partition(final Path path, final SerDe<S> serde, final int partitionIndex, final int writeAheadLogVersion) throws IOException {
             this.editDirectory = path;
             this.serde = serde;
@@ -728,14 +1093,22 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             this.fileOut = null;
         }
 
-        public void blackList() {
+        /**
+         * Blacklists the partition so that it cannot be claimed until it is rolled over
+         *
+         * @return <code>true</code> if the partition was not already blacklisted
+         */
+        public boolean blackList() {
+            final boolean wasBlackListed;
             lock.lock();
             try {
+                wasBlackListed = blackListed;
                 blackListed = true;
             } finally {
                 lock.unlock();
             }
             logger.debug("Blacklisted {}", this);
+            return !wasBlackListed;
         }
 
         /**
@@ -765,7 +1138,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 final Path editPath = getNewEditPath();
                 final FileOutputStream fos = new FileOutputStream(editPath.toFile());
                 try {
-                    final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(fos));
+                    final DataOutputStream outStream = createDataOutputStream(serde, new BufferedOutputStream(fos));
                     outStream.writeUTF(MinimalLockingWriteAheadLog.class.getName());
                     outStream.writeInt(writeAheadLogVersion);
                     outStream.writeUTF(serde.getClass().getName());
@@ -900,7 +1273,12 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             return true;
         }
 
-        public void update(final Collection<S> records, final long transactionId, final Map<Object, S> recordMap, final boolean forceSync)
+        /**
+         * Writes the given records to the journal as a single transaction.
+         *
+         * @return the sequence number of the write, which may be passed to {@link #awaitSync(long, long)}
+         */
+        public long update(final Collection<S> records, final long transactionId, final Map<Object, S> recordMap, final boolean forceSync)
                 throws IOException {
             if (this.closed) {
                 throw new IllegalStateException("Partition is closed");
@@ -928,10 +1306,83 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             if (forceSync) {
                 fileOut.getFD().sync();
             }
+
+            synchronized (syncMonitor) {
+                fileToSync = fileOut;
+                return ++lastWriteSequence;
+            }
+        }
+
+        /**
+         * Waits until the write with the given sequence number has been synced to disk. If no other thread is
+         * currently syncing the partition, this thread becomes responsible for the sync: it waits up to the given
+         * window for other threads to write to the partition and then syncs once on behalf of all of them. This
+         * method may be called without holding the claim on the partition, but the partition must not be rolled
+         * over until it returns.
+         *
+         * @param writeSequence the sequence number returned by {@link #update(Collection, long, Map, boolean)}
+         * @param windowNanos the number of nanoseconds to wait for other writes before syncing
+         * @throws IOException if unable to sync the journal
+         */
+        public void awaitSync(final long writeSequence, final long windowNanos) throws IOException {
+            synchronized (syncMonitor) {
+                while (lastSyncedSequence < writeSequence) {
+                    if (!syncInProgress) {
+                        syncInProgress = true;
+                        break;
+                    }
+
+                    try {
+                        syncMonitor.wait();
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for " + this + " to be synced to disk");
+                    }
+                }
+
+                if (lastSyncedSequence >= writeSequence) {
+                    return;
+                }
+
+                // Give other threads a chance to write to the partition before we sync.
+                final long deadline = System.nanoTime() + windowNanos;
+                long remaining = windowNanos;
+                while (remaining > 0L) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(syncMonitor, remaining);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    remaining = deadline - System.nanoTime();
+                }
+            }
+
+            final long syncSequence;
+            final FileOutputStream out;
+            synchronized (syncMonitor) {
+                syncSequence = lastWriteSequence;
+                out = fileToSync;
+            }
+
+            boolean synced = false;
+            try {
+                out.getFD().sync();
+                synced = true;
+            } finally {
+                // If the sync failed, waiting threads will attempt to sync the partition themselves.
+                synchronized (syncMonitor) {
+                    if (synced) {
+                        lastSyncedSequence = Math.max(lastSyncedSequence, syncSequence);
+                    }
+                    syncInProgress = false;
+                    syncMonitor.notifyAll();
+                }
+            }
         }
 
         private DataInputStream createDataInputStream(final Path path) throws IOException {
-            return new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            return MinimalLockingWriteAheadLog.createDataInputStream(serde, new BufferedInputStream(Files.newInputStream(path)));
         }
 
         private DataInputStream getRecoveryStream() throws IOException {
@@ -1010,7 +1461,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             final Path newEditPath = getNewEditPath();
 
             final FileOutputStream fos = new FileOutputStream(newEditPath.toFile());
-            final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(fos));
+            final DataOutputStream outStream = createDataOutputStream(serde, new BufferedOutputStream(fos));
             outStream.writeUTF(MinimalLockingWriteAheadLog.class.getName());
             outStream.writeInt(writeAheadLogVersion);
             outStream.writeUTF(serde.getClass().getName());
@@ -1026,42 +1477,78 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             int transactionFlag;
             do {
                 final S record = serde.deserializeEdit(recoveryIn, currentRecordMap, recoveryVersion);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("{} Recovering Transaction {}: {}", new Object[] { this, maxTransactionId.get(), record });
-                }
+                applyRecoveredRecord(record, maxTransactionId.get(), updatedRecordMap, idsRemoved, swapLocations);
+                transactionFlag = recoveryIn.read();
+            } while (transactionFlag != TRANSACTION_COMMIT);
 
-                final Object recordId = serde.getRecordIdentifier(record);
-                final UpdateType updateType = serde.getUpdateType(record);
-                if (updateType == UpdateType.DELETE) {
-                    updatedRecordMap.remove(recordId);
-                    idsRemoved.add(recordId);
-                } else if (updateType == UpdateType.SWAP_IN) {
-                    final String location = serde.getLocation(record);
-                    if (location == null) {
-                        logger.error("Recovered SWAP_IN record from edit log, but it did not contain a Location; skipping record");
-                    } else {
-                        swapLocations.remove(location);
-                        updatedRecordMap.put(recordId, record);
-                        idsRemoved.remove(recordId);
-                    }
-                } else if (updateType == UpdateType.SWAP_OUT) {
-                    final String location = serde.getLocation(record);
-                    if (location == null) {
-                        logger.error("Recovered SWAP_OUT record from edit log, but it did not contain a Location; skipping record");
-                    } else {
-                        swapLocations.add(location);
-                        updatedRecordMap.remove(recordId);
-                        idsRemoved.add(recordId);
-                    }
-                } else {
-                    updatedRecordMap.put(recordId, record);
-                    idsRemoved.remove(recordId);
-                }
+            return idsRemoved;
+        }
+
+        /**
+         * Reads the edits that make up the next transaction without applying
+         * them. May only be called if the SerDe is a {@link MergeableSerDe}.
+         *
+         * @return the edits that make up the transaction, in the order in which
+         *         they were written
+         * @throws IOException if unable to read the transaction
+         */
+        public List<S> readNextTransaction() throws IOException {
+            final MergeableSerDe<S> mergeableSerde = (MergeableSerDe<S>) serde;
+            final List<S> edits = new ArrayList<>();
 
+            int transactionFlag;
+            do {
+                edits.add(mergeableSerde.readEdit(recoveryIn, recoveryVersion));
                 transactionFlag = recoveryIn.read();
             } while (transactionFlag != TRANSACTION_COMMIT);
 
-            return idsRemoved;
+            return edits;
+        }
+
+        /**
+         * Applies a recovered record to the given map of updated records, keeping
+         * track of the records that were removed and the swap locations that
+         * were created or removed
+         *
+         * @param record the recovered record
+         * @param transactionId the id of the transaction that the record belongs to
+         * @param updatedRecordMap the records that have been updated by the transaction
+         * @param idsRemoved the ids of the records that have been removed by the transaction
+         * @param swapLocations the known swap locations
+         */
+        public void applyRecoveredRecord(final S record, final long transactionId, final Map<Object, S> updatedRecordMap,
+            final Set<Object> idsRemoved, final Set<String> swapLocations) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} Recovering Transaction {}: {}", new Object[] { this, transactionId, record });
+            }
+
+            final Object recordId = serde.getRecordIdentifier(record);
+            final UpdateType updateType = serde.getUpdateType(record);
+            if (updateType == UpdateType.DELETE) {
+                updatedRecordMap.remove(recordId);
+                idsRemoved.add(recordId);
+            } else if (updateType == UpdateType.SWAP_IN) {
+                final String location = serde.getLocation(record);
+                if (location == null) {
+                    logger.error("Recovered SWAP_IN record from edit log, but it did not contain a Location; skipping record");
+                } else {
+                    swapLocations.remove(location);
+                    updatedRecordMap.put(recordId, record);
+                    idsRemoved.remove(recordId);
+                }
+            } else if (updateType == UpdateType.SWAP_OUT) {
+                final String location = serde.getLocation(record);
+                if (location == null) {
+                    logger.error("Recovered SWAP_OUT record from edit log, but it did not contain a Location; skipping record");
+                } else {
+                    swapLocations.add(location);
+                    updatedRecordMap.remove(recordId);
+                    idsRemoved.add(recordId);
+                }
+            } else {
+                updatedRecordMap.put(recordId, record);
+                idsRemoved.remove(recordId);
+            }
         }
 
         /**
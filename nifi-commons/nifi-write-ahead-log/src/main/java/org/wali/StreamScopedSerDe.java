@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ * A {@link SerDe} whose encoding of a record depends on what was previously written to the same stream, such
+ * as one that writes a repeated value as a reference to its first occurrence. A Write-Ahead Log obtains the
+ * stream of every Edit Log and Snapshot from such a SerDe, so that the SerDe can keep that state with the
+ * stream itself. Each Edit Log and Snapshot is written to and read from a stream of its own, so the state
+ * starts over with each of them.
+ * </p>
+ *
+ * <p>
+ * A stream is only ever used by one thread at a time, so the state of a stream need not be thread-safe.
+ * </p>
+ *
+ * @param <T> the type of record that is to be Serialized and De-Serialized by
+ * this object
+ */
+public interface StreamScopedSerDe<T> extends SerDe<T> {
+
+    /**
+     * @param out the stream that the Edit Log or Snapshot is written to
+     * @return a stream that writes to the given stream and is passed to this SerDe for each record that is written
+     */
+    DataOutputStream createOutputStream(OutputStream out);
+
+    /**
+     * @param in the stream that the Edit Log or Snapshot is read from
+     * @return a stream that reads from the given stream and is passed to this SerDe for each record that is read
+     */
+    DataInputStream createInputStream(InputStream in);
+}
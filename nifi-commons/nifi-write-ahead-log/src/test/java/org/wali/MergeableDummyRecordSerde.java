@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A SerDe whose UPDATE edits contain only the properties that changed, so an edit can only be
+ * turned into a record by combining it with the record's previous state.
+ */
+public class MergeableDummyRecordSerde extends DummyRecordSerde implements MergeableSerDe<DummyRecord> {
+
+    @Override
+    public DummyRecord deserializeEdit(final DataInputStream in, final Map<Object, DummyRecord> currentVersion, final int version) throws IOException {
+        final DummyRecord edit = readEdit(in, version);
+        return applyEdit(currentVersion.get(edit.getId()), edit);
+    }
+
+    @Override
+    public DummyRecord readEdit(final DataInputStream in, final int version) throws IOException {
+        return deserializeRecord(in, version);
+    }
+
+    @Override
+    public DummyRecord applyEdit(final DummyRecord currentRecordState, final DummyRecord edit) {
+        if (edit.getUpdateType() != UpdateType.UPDATE || currentRecordState == null) {
+            return edit;
+        }
+
+        final DummyRecord merged = new DummyRecord(edit.getId(), UpdateType.UPDATE);
+        merged.setProperties(currentRecordState.getProperties());
+        for (final Map.Entry<String, String> entry : edit.getProperties().entrySet()) {
+            merged.setProperty(entry.getKey(), entry.getValue());
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A SerDe that numbers the records of each stream, so that a record can only be read from a stream
+ * that was obtained from this SerDe and whose previous records were all read.
+ */
+public class StreamScopedDummyRecordSerde extends DummyRecordSerde implements StreamScopedSerDe<DummyRecord> {
+
+    @Override
+    public DataOutputStream createOutputStream(final OutputStream out) {
+        return new NumberingOutputStream(out);
+    }
+
+    @Override
+    public DataInputStream createInputStream(final InputStream in) {
+        return new NumberingInputStream(in);
+    }
+
+    @Override
+    public void serializeEdit(final DummyRecord previousState, final DummyRecord record, final DataOutputStream out) throws IOException {
+        final NumberingOutputStream numberingOut = (NumberingOutputStream) out;
+        out.writeInt(numberingOut.recordCount++);
+        super.serializeEdit(previousState, record, out);
+    }
+
+    @Override
+    public DummyRecord deserializeRecord(final DataInputStream in, final int version) throws IOException {
+        final NumberingInputStream numberingIn = (NumberingInputStream) in;
+        final int recordNumber = in.readInt();
+        if (recordNumber != numberingIn.recordCount) {
+            throw new IOException("Expected record " + numberingIn.recordCount + " of stream but found record " + recordNumber);
+        }
+        numberingIn.recordCount++;
+        return super.deserializeRecord(in, version);
+    }
+
+    private static class NumberingOutputStream extends DataOutputStream {
+        private int recordCount = 0;
+
+        NumberingOutputStream(final OutputStream out) {
+            super(out);
+        }
+    }
+
+    private static class NumberingInputStream extends DataInputStream {
+        private int recordCount = 0;
+
+        NumberingInputStream(final InputStream in) {
+            super(in);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -41,6 +42,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
@@ -249,6 +251,100 @@ public class TestMinimalLockingWriteAheadLog {
         }
     }
 
+    @Test
+    public void testGroupCommit() throws IOException, InterruptedException {
+        final int numPartitions = 2;
+        final int numThreads = 8;
+        final int updatesPerThread = 250;
+
+        final Path path = Paths.get("target/minimal-locking-repo-group-commit");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        final AtomicInteger syncCount = new AtomicInteger(0);
+        final SyncListener syncListener = new SyncListener() {
+            @Override
+            public void onSync(final int partitionIndex) {
+                syncCount.incrementAndGet();
+            }
+
+            @Override
+            public void onGlobalSync() {
+            }
+        };
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, syncListener, 1L, TimeUnit.MILLISECONDS);
+        final Collection<DummyRecord> initialRecs = repo.recoverRecords();
+        assertTrue(initialRecs.isEmpty());
+
+        final List<SyncingInsertThread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            threads.add(new SyncingInsertThread(updatesPerThread, 1000000 * i, repo));
+        }
+
+        for (final SyncingInsertThread thread : threads) {
+            thread.start();
+        }
+        for (final SyncingInsertThread thread : threads) {
+            thread.join();
+        }
+
+        for (final SyncingInsertThread thread : threads) {
+            assertEquals(null, thread.getFailure());
+        }
+
+        // every update is reported as synced once its group has been synced
+        assertEquals(numThreads * updatesPerThread, syncCount.get());
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(numThreads * updatesPerThread, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            assertEquals("B", record.getProperty("A"));
+        }
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    @Ignore("Intended only for manual performance testing")
+    public void testGroupCommitPerformance() throws IOException, InterruptedException {
+        final int numPartitions = 4;
+        final int updatesPerThread = 2000;
+
+        for (final int numThreads : new int[] {1, 4, 16, 32}) {
+            for (final long window : new long[] {-1L, 0L, 2L}) {
+                final Path path = Paths.get("target/minimal-locking-repo-group-commit-perf");
+                deleteRecursively(path.toFile());
+                assertTrue(path.toFile().mkdirs());
+
+                final DummyRecordSerde serde = new DummyRecordSerde();
+                final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null, window, TimeUnit.MILLISECONDS);
+                repo.recoverRecords();
+
+                final List<SyncingInsertThread> threads = new ArrayList<>();
+                for (int i = 0; i < numThreads; i++) {
+                    threads.add(new SyncingInsertThread(updatesPerThread, 1000000 * i, repo));
+                }
+
+                final long start = System.nanoTime();
+                for (final SyncingInsertThread thread : threads) {
+                    thread.start();
+                }
+                for (final SyncingInsertThread thread : threads) {
+                    thread.join();
+                }
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                repo.shutdown();
+
+                final long updates = (long) numThreads * updatesPerThread;
+                System.out.println(numThreads + " threads, group commit window " + (window < 0 ? "disabled" : window + " millis") + ": "
+                    + updates + " synced updates in " + millis + " millis (" + (updates * 1000L / Math.max(1L, millis)) + " updates/sec)");
+            }
+        }
+    }
+
     @Test
     public void testRecoverAfterIOException() throws IOException {
         final int numPartitions = 5;
@@ -611,6 +707,150 @@ public class TestMinimalLockingWriteAheadLog {
         assertEquals("7",recoveredRecord.getProperty("i"));
     }
 
+    @Test
+    public void testConcurrentRecoveryAppliesTransactionsInOrder() throws IOException {
+        final int numPartitions = 8;
+        final int numRecords = 100;
+        final int numRounds = 20;
+
+        final MergeableDummyRecordSerde serde = new MergeableDummyRecordSerde();
+        final Path concurrentPath = Paths.get("target/minimal-locking-repo-concurrent-recovery");
+        final Path serialPath = Paths.get("target/minimal-locking-repo-serial-recovery");
+        writeRoundsOfUpdates(concurrentPath, numPartitions, numRecords, numRounds, serde);
+        writeRoundsOfUpdates(serialPath, numPartitions, numRecords, numRounds, serde);
+
+        final WriteAheadRepository<DummyRecord> concurrentRepo = new MinimalLockingWriteAheadLog<>(concurrentPath, numPartitions, serde, null);
+        final Collection<DummyRecord> concurrentRecords = concurrentRepo.recoverRecords();
+
+        // each round updated a record in a different partition than the previous round did, so the
+        // record is only correct if the rounds were applied in the order in which they were written
+        assertEquals(numRecords - numRecords / 10, concurrentRecords.size());
+        for (final DummyRecord record : concurrentRecords) {
+            assertFalse(Integer.parseInt(record.getId()) % 10 == 0);
+            assertEquals(String.valueOf(numRounds - 1), record.getProperty("round"));
+            assertEquals(numRounds + 1, record.getProperties().size());
+        }
+        concurrentRepo.shutdown();
+
+        // a SerDe that is not mergeable is recovered serially; the result must be the same
+        final DummyRecordSerde serialSerde = new DummyRecordSerde() {
+            @Override
+            public DummyRecord deserializeEdit(final DataInputStream in, final Map<Object, DummyRecord> currentVersion, final int version) throws IOException {
+                return serde.deserializeEdit(in, currentVersion, version);
+            }
+        };
+        final WriteAheadRepository<DummyRecord> serialRepo = new MinimalLockingWriteAheadLog<>(serialPath, numPartitions, serialSerde, null);
+        final Collection<DummyRecord> serialRecords = serialRepo.recoverRecords();
+        assertEquals(toPropertiesById(serialRecords), toPropertiesById(concurrentRecords));
+        serialRepo.shutdown();
+    }
+
+    @Test
+    public void testStreamScopedSerDe() throws IOException {
+        final int numPartitions = 4;
+        final int numRecords = 100;
+        final StreamScopedDummyRecordSerde serde = new StreamScopedDummyRecordSerde();
+        final Path path = Paths.get("target/minimal-locking-repo-stream-scoped");
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        // the records are written to the journals of each partition, both before and after the snapshot
+        final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        assertTrue(repo.recoverRecords().isEmpty());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < numRecords; i++) {
+                final DummyRecord record = new DummyRecord(String.valueOf(i), round == 0 ? UpdateType.CREATE : UpdateType.UPDATE);
+                record.setProperty("round", String.valueOf(round));
+                repo.update(Collections.singleton(record), false);
+            }
+            if (round == 1) {
+                repo.checkpoint();
+            }
+        }
+        repo.shutdown();
+
+        // each recovery reads the snapshot and journals through new streams
+        for (int recovery = 0; recovery < 2; recovery++) {
+            final WriteAheadRepository<DummyRecord> recoveredRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+            final Collection<DummyRecord> records = recoveredRepo.recoverRecords();
+            assertEquals(numRecords, records.size());
+            for (final DummyRecord record : records) {
+                assertEquals("2", record.getProperty("round"));
+            }
+            recoveredRepo.shutdown();
+        }
+    }
+
+    @Test
+    @Ignore("Intended only for manual performance testing")
+    public void testRecoveryPerformance() throws IOException {
+        final int numPartitions = 16;
+        final int numRecords = 50000;
+        final int numRounds = 10;
+
+        final MergeableDummyRecordSerde serde = new MergeableDummyRecordSerde();
+        final DummyRecordSerde serialSerde = new DummyRecordSerde() {
+            @Override
+            public DummyRecord deserializeEdit(final DataInputStream in, final Map<Object, DummyRecord> currentVersion, final int version) throws IOException {
+                return serde.deserializeEdit(in, currentVersion, version);
+            }
+        };
+
+        final Path path = Paths.get("target/minimal-locking-repo-recovery-perf");
+        for (final DummyRecordSerde recoverySerde : new DummyRecordSerde[] {serialSerde, serde}) {
+            writeRoundsOfUpdates(path, numPartitions, numRecords, numRounds, serde);
+
+            final long start = System.nanoTime();
+            final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, recoverySerde, null);
+            final int recovered = repo.recoverRecords().size();
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            repo.shutdown();
+
+            final long transactions = (long) numRecords * (numRounds + 2);
+            System.out.println((recoverySerde == serde ? "Concurrent" : "Serial") + " recovery of " + transactions + " transactions (" + recovered + " records) took "
+                + millis + " millis (" + (transactions * 1000L / Math.max(1L, millis)) + " transactions/sec)");
+        }
+    }
+
+    /**
+     * Creates each record, updates it once per round, each time in its own transaction and setting both
+     * the 'round' property and a property specific to the round, and then deletes every tenth record
+     */
+    private void writeRoundsOfUpdates(final Path path, final int numPartitions, final int numRecords, final int numRounds, final DummyRecordSerde serde) throws IOException {
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        for (int i = 0; i < numRecords; i++) {
+            repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.CREATE)), false);
+        }
+
+        for (int round = 0; round < numRounds; round++) {
+            for (int i = 0; i < numRecords; i++) {
+                final DummyRecord record = new DummyRecord(String.valueOf(i), UpdateType.UPDATE);
+                record.setProperty("round", String.valueOf(round));
+                record.setProperty("round-" + round, "updated");
+                repo.update(Collections.singleton(record), false);
+            }
+        }
+
+        for (int i = 0; i < numRecords; i += 10) {
+            repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.DELETE)), false);
+        }
+
+        repo.shutdown();
+    }
+
+    private Map<String, Map<String, String>> toPropertiesById(final Collection<DummyRecord> records) {
+        final Map<String, Map<String, String>> propertiesById = new HashMap<>();
+        for (final DummyRecord record : records) {
+            propertiesById.put(record.getId(), new HashMap<>(record.getProperties()));
+        }
+        return propertiesById;
+    }
+
 
     private static class InsertThread extends Thread {
 
@@ -645,6 +885,36 @@ public class TestMinimalLockingWriteAheadLog {
     }
 
 
+    private static class SyncingInsertThread extends Thread {
+        private final int numInsertions;
+        private final int startIndex;
+        private final WriteAheadRepository<DummyRecord> repo;
+        private volatile Throwable failure;
+
+        public SyncingInsertThread(final int numInsertions, final int startIndex, final WriteAheadRepository<DummyRecord> repo) {
+            this.numInsertions = numInsertions;
+            this.startIndex = startIndex;
+            this.repo = repo;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < numInsertions; i++) {
+                    final DummyRecord record = new DummyRecord(String.valueOf(i + startIndex), UpdateType.CREATE);
+                    record.setProperty("A", "B");
+                    repo.update(Collections.singleton(record), true);
+                }
+            } catch (final Throwable t) {
+                failure = t;
+            }
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+
     private static class InlineCreationInsertThread extends Thread {
         private final long iterations;
         private final WriteAheadRepository<DummyRecord> repo;
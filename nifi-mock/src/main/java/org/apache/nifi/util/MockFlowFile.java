@@ -64,11 +64,15 @@ public class MockFlowFile implements FlowFileRecord {
     }
 
     public MockFlowFile(final long id, final FlowFile toCopy) {
+        this(id, toCopy, 0, ((MockFlowFile) toCopy).data.length);
+    }
+
+    MockFlowFile(final long id, final FlowFile toCopy, final int offset, final int length) {
         this(id);
         attributes.putAll(toCopy.getAttributes());
         final byte[] dataToCopy = ((MockFlowFile) toCopy).data;
-        this.data = new byte[dataToCopy.length];
-        System.arraycopy(dataToCopy, 0, this.data, 0, dataToCopy.length);
+        this.data = new byte[length];
+        System.arraycopy(dataToCopy, offset, this.data, 0, length);
 
         lineageIdentifiers.addAll(toCopy.getLineageIdentifiers());
     }
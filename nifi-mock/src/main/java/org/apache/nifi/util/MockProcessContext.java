@@ -347,7 +347,15 @@ public class MockProcessContext extends MockControllerServiceLookup implements S
             return false;
         }
 
-        final List<Range> elRanges = Query.extractExpressionRanges(getProperty(property).getValue());
+        // look at the configured value directly, as this is not an evaluation of the property's Expressions
+        final PropertyDescriptor descriptor = component.getPropertyDescriptor(property.getName());
+        final String setPropertyValue = properties.get(descriptor);
+        final String propValue = (setPropertyValue == null) ? descriptor.getDefaultValue() : setPropertyValue;
+        if (propValue == null) {
+            return false;
+        }
+
+        final List<Range> elRanges = Query.extractExpressionRanges(propValue);
         return (elRanges != null && !elRanges.isEmpty());
     }
 
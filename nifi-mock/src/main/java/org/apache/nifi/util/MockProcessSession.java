@@ -27,7 +27,6 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -113,9 +112,7 @@ public class MockProcessSession implements ProcessSession {
             throw new FlowFileHandlingException("Specified offset of " + offset + " and size " + size + " exceeds size of " + flowFile.toString());
         }
 
-        final MockFlowFile newFlowFile = new MockFlowFile(sharedState.nextFlowFileId(), flowFile);
-        final byte[] newContent = Arrays.copyOfRange(((MockFlowFile) flowFile).getData(), (int) offset, (int) (offset + size));
-        newFlowFile.setData(newContent);
+        final MockFlowFile newFlowFile = new MockFlowFile(sharedState.nextFlowFileId(), flowFile, (int) offset, (int) size);
 
         currentVersions.put(newFlowFile.getId(), newFlowFile);
         beingProcessed.add(newFlowFile.getId());
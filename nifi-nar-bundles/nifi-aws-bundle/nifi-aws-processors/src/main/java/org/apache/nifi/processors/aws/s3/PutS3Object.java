@@ -17,23 +17,34 @@
 package org.apache.nifi.processors.aws.s3;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -50,7 +61,11 @@ import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.DataUnit;
@@ -59,6 +74,7 @@ import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.io.InputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.stream.io.StreamUtils;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3Client;
@@ -94,7 +110,8 @@ import com.amazonaws.services.s3.model.UploadPartResult;
         "  2) upload the parts, and\n" +
         "  3) complete the upload.\n" +
         "For multipart uploads, the processor saves state locally tracking the upload ID and parts uploaded, which " +
-        "must both be provided to complete the upload.\n" +
+        "must both be provided to complete the upload.  The parts of an upload may be sent concurrently, in " +
+        "which case the state is saved after each batch of parts.\n" +
         "The AWS libraries select an endpoint URL based on the AWS region, but this can be overridden with the " +
         "'Endpoint Override URL' property for use with other S3-compatible endpoints.\n" +
         "The S3 API specifies that the maximum file size for a PutS3Object upload is 5GB. It also requires that " +
@@ -121,6 +138,7 @@ public class PutS3Object extends AbstractS3Processor {
 
     public static final long MIN_S3_PART_SIZE = 50L * 1024L * 1024L;
     public static final long MAX_S3_PUTOBJECT_SIZE = 5L * 1024L * 1024L * 1024L;
+    public static final long MAX_BUFFERED_PART_SIZE = 1024L * 1024L * 1024L;
     public static final String PERSISTENCE_ROOT = "conf/state/";
     public static final String NO_SERVER_SIDE_ENCRYPTION = "None";
 
@@ -160,6 +178,19 @@ public class PutS3Object extends AbstractS3Processor {
             .addValidator(StandardValidators.createDataSizeBoundsValidator(MIN_S3_PART_SIZE, MAX_S3_PUTOBJECT_SIZE))
             .build();
 
+    public static final PropertyDescriptor MULTIPART_PART_PARALLELISM = new PropertyDescriptor.Builder()
+            .name("Multipart Part Parallelism")
+            .description("Specifies how many parts of a single multipart upload are uploaded concurrently.  With a " +
+                    "value of 1 the parts are streamed from the content one after another.  With a larger value the " +
+                    "parts are read from the content in order and buffered in memory while they are uploaded, so up " +
+                    "to this number of parts of the Multipart Part Size are held in memory for each upload, and the " +
+                    "local state is saved after each batch of this number of parts.\n" +
+                    "The Multipart Part Size may not exceed 1GB when this is greater than 1.")
+            .required(true)
+            .defaultValue("1")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
     public static final PropertyDescriptor MULTIPART_S3_AGEOFF_INTERVAL = new PropertyDescriptor.Builder()
             .name("Multipart Upload AgeOff Interval")
             .description("Specifies the interval at which existing multipart uploads in AWS S3 will be evaluated " +
@@ -191,7 +222,7 @@ public class PutS3Object extends AbstractS3Processor {
     public static final List<PropertyDescriptor> properties = Collections.unmodifiableList(
         Arrays.asList(KEY, BUCKET, ACCESS_KEY, SECRET_KEY, CREDENTIALS_FILE, AWS_CREDENTIALS_PROVIDER_SERVICE, STORAGE_CLASS, REGION, TIMEOUT, EXPIRATION_RULE_ID,
             FULL_CONTROL_USER_LIST, READ_USER_LIST, WRITE_USER_LIST, READ_ACL_LIST, WRITE_ACL_LIST, OWNER, SSL_CONTEXT_SERVICE,
-            ENDPOINT_OVERRIDE, MULTIPART_THRESHOLD, MULTIPART_PART_SIZE, MULTIPART_S3_AGEOFF_INTERVAL, MULTIPART_S3_MAX_AGE, SERVER_SIDE_ENCRYPTION,
+            ENDPOINT_OVERRIDE, MULTIPART_THRESHOLD, MULTIPART_PART_SIZE, MULTIPART_PART_PARALLELISM, MULTIPART_S3_AGEOFF_INTERVAL, MULTIPART_S3_MAX_AGE, SERVER_SIDE_ENCRYPTION,
             PROXY_HOST, PROXY_HOST_PORT));
 
     final static String S3_BUCKET_KEY = "s3.bucket";
@@ -210,6 +241,12 @@ public class PutS3Object extends AbstractS3Processor {
 
     final static String S3_PROCESS_UNSCHEDULED_MESSAGE = "Processor unscheduled, stopping upload";
 
+    final static String S3_UPLOAD_RATE_COUNTER = "Multipart Upload MB/s";
+
+    private volatile ExecutorService partUploadExecutor;
+
+    private final AtomicLong reportedUploadRate = new AtomicLong(0L);
+
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
         return properties;
@@ -225,6 +262,47 @@ public class PutS3Object extends AbstractS3Processor {
             .build();
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext validationContext) {
+        final List<ValidationResult> problems = new ArrayList<>(super.customValidate(validationContext));
+
+        final int partParallelism = validationContext.getProperty(MULTIPART_PART_PARALLELISM).asInteger();
+        final long partSize = validationContext.getProperty(MULTIPART_PART_SIZE).asDataSize(DataUnit.B).longValue();
+        if (partParallelism > 1 && partSize > MAX_BUFFERED_PART_SIZE) {
+            problems.add(new ValidationResult.Builder().subject(MULTIPART_PART_SIZE.getName()).valid(false)
+                    .explanation("the part size may not exceed 1GB when parts are uploaded concurrently since each " +
+                            "part is buffered in memory")
+                    .build());
+        }
+        return problems;
+    }
+
+    @OnScheduled
+    public void createPartUploadExecutor(final ProcessContext context) {
+        final int partParallelism = context.getProperty(MULTIPART_PART_PARALLELISM).asInteger();
+        if (partParallelism > 1) {
+            partUploadExecutor = Executors.newFixedThreadPool(partParallelism * context.getMaxConcurrentTasks());
+        }
+    }
+
+    @OnStopped
+    public void shutdownPartUploadExecutor() {
+        final ExecutorService executor = partUploadExecutor;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30000, TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                    getLogger().warn("Executor did not stop in 30 sec. Terminated.");
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            partUploadExecutor = null;
+        }
+    }
+
     protected File getPersistenceFile() {
         return new File(PERSISTENCE_ROOT + getIdentifier());
     }
@@ -385,6 +463,9 @@ public class PutS3Object extends AbstractS3Processor {
 
         final Long multipartThreshold = context.getProperty(MULTIPART_THRESHOLD).asDataSize(DataUnit.B).longValue();
         final Long multipartPartSize = context.getProperty(MULTIPART_PART_SIZE).asDataSize(DataUnit.B).longValue();
+        final int partParallelism = context.getProperty(MULTIPART_PART_PARALLELISM).asInteger();
+        final AtomicLong uploadedBytes = new AtomicLong(0L);
+        final AtomicLong uploadNanos = new AtomicLong(0L);
 
         final long now = System.currentTimeMillis();
 
@@ -576,6 +657,12 @@ public class PutS3Object extends AbstractS3Processor {
 
                             // upload parts
                             //------------------------------------------------------------
+                            final long resumePosition = currentState.getFilePosition();
+                            final long partsStartNanos = System.nanoTime();
+                            if (partParallelism > 1 && partUploadExecutor != null) {
+                                uploadPartsConcurrently(s3, bucket, key, cacheKey, ffFilename, currentState, in, partParallelism);
+                            }
+                            // any parts not uploaded above are streamed one after another
                             long thisPartSize;
                             for (int part = currentState.getPartETags().size() + 1;
                                  currentState.getFilePosition() < currentState.getContentLength(); part++) {
@@ -611,6 +698,8 @@ public class PutS3Object extends AbstractS3Processor {
                                     throw (e);
                                 }
                             }
+                            uploadedBytes.set(currentState.getContentLength() - resumePosition);
+                            uploadNanos.set(System.nanoTime() - partsStartNanos);
 
                             // complete multipart upload
                             //------------------------------------------------------------
@@ -662,6 +751,9 @@ public class PutS3Object extends AbstractS3Processor {
             session.getProvenanceReporter().send(flowFile, url, millis);
 
             getLogger().info("Successfully put {} to Amazon S3 in {} milliseconds", new Object[] {ff, millis});
+            if (uploadNanos.get() > 0L) {
+                reportUploadRate(session, ffFilename, uploadedBytes.get(), uploadNanos.get());
+            }
             try {
                 removeLocalState(cacheKey);
             } catch (IOException e) {
@@ -681,6 +773,140 @@ public class PutS3Object extends AbstractS3Processor {
 
     }
 
+    /**
+     * Uploads the remaining parts of a multipart upload concurrently.  The parts are read from the content stream
+     * in order into buffers of the part size, and at most partParallelism parts are buffered or uploading at any
+     * time.  Completed parts are recorded in the upload state in part order, and the state is saved after every
+     * partParallelism parts, so a resumed upload continues after the last part saved.  Any part that fails or is
+     * still outstanding when the processor is unscheduled is uploaded again when the upload is resumed.
+     */
+    private void uploadPartsConcurrently(final AmazonS3Client s3, final String bucket, final String key,
+                                         final String cacheKey, final String ffFilename,
+                                         final MultipartState currentState, final InputStream in,
+                                         final int partParallelism) throws IOException {
+        final ExecutorService executor = partUploadExecutor;
+        final Semaphore bufferedParts = new Semaphore(partParallelism);
+        final Deque<Future<UploadPartResult>> pendingParts = new ArrayDeque<>();
+        final String uploadId = currentState.getUploadId();
+        final long contentLength = currentState.getContentLength();
+        int unsavedParts = 0;
+
+        long readPosition = currentState.getFilePosition();
+        int part = currentState.getPartETags().size() + 1;
+        IOException unscheduled = null;
+        try {
+            while (readPosition < contentLength) {
+                // record the parts that completed so far, stopping at the first part still outstanding
+                while (!pendingParts.isEmpty() && pendingParts.peekFirst().isDone()) {
+                    recordUploadedPart(currentState, pendingParts.removeFirst());
+                    if (++unsavedParts >= partParallelism) {
+                        saveUploadState(cacheKey, currentState);
+                        unsavedParts = 0;
+                    }
+                }
+                if (!isScheduled()) {
+                    unscheduled = new IOException(S3_PROCESS_UNSCHEDULED_MESSAGE + " flowfile=" + ffFilename +
+                            " part=" + part + " uploadId=" + uploadId);
+                    break;
+                }
+
+                bufferedParts.acquire();
+                final byte[] partBuffer = new byte[(int) Math.min(currentState.getPartSize(), contentLength - readPosition)];
+                StreamUtils.fillBuffer(in, partBuffer);
+
+                final int partNumber = part;
+                pendingParts.addLast(executor.submit(new Callable<UploadPartResult>() {
+                    @Override
+                    public UploadPartResult call() {
+                        try {
+                            final UploadPartRequest uploadRequest = new UploadPartRequest()
+                                    .withBucketName(bucket)
+                                    .withKey(key)
+                                    .withUploadId(uploadId)
+                                    .withInputStream(new ByteArrayInputStream(partBuffer))
+                                    .withPartNumber(partNumber)
+                                    .withPartSize(partBuffer.length);
+                            final UploadPartResult uploadPartResult = s3.uploadPart(uploadRequest);
+                            getLogger().info("Success uploading part flowfile={} part={} etag={} uploadId={}",
+                                    new Object[]{ffFilename, partNumber, uploadPartResult.getETag(), uploadId});
+                            return uploadPartResult;
+                        } catch (AmazonClientException e) {
+                            getLogger().info("Failure uploading part flowfile={} part={} bucket={} key={} " +
+                                    "reason={}", new Object[]{ffFilename, partNumber, bucket, key, e.getMessage()});
+                            throw (e);
+                        } finally {
+                            bufferedParts.release();
+                        }
+                    }
+                }));
+                readPosition += partBuffer.length;
+                part++;
+            }
+
+            // wait for the outstanding parts, recording them until the first one that failed
+            while (!pendingParts.isEmpty()) {
+                recordUploadedPart(currentState, pendingParts.removeFirst());
+                unsavedParts++;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while uploading parts for flowfile=" + ffFilename +
+                    " uploadId=" + uploadId);
+        } finally {
+            for (final Future<UploadPartResult> pendingPart : pendingParts) {
+                pendingPart.cancel(true);
+            }
+            if (unsavedParts > 0) {
+                saveUploadState(cacheKey, currentState);
+            }
+        }
+
+        if (unscheduled != null) {
+            throw unscheduled;
+        }
+    }
+
+    /**
+     * Waits for an uploaded part and adds it to the upload state.  Parts must be added in part order.
+     */
+    private void recordUploadedPart(final MultipartState currentState, final Future<UploadPartResult> pendingPart)
+            throws InterruptedException {
+        final UploadPartResult uploadPartResult;
+        try {
+            uploadPartResult = pendingPart.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof AmazonClientException) {
+                throw (AmazonClientException) e.getCause();
+            }
+            throw new ProcessException(e.getCause());
+        }
+
+        final long thisPartSize = Math.min(currentState.getPartSize(),
+                currentState.getContentLength() - currentState.getFilePosition());
+        currentState.addPartETag(uploadPartResult.getPartETag());
+        currentState.setFilePosition(currentState.getFilePosition() + thisPartSize);
+    }
+
+    private void saveUploadState(final String cacheKey, final MultipartState currentState) {
+        try {
+            persistLocalState(cacheKey, currentState);
+        } catch (Exception e) {
+            getLogger().info("Exception saving cache state processing flow file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reports the rate at which the parts of the last multipart upload were sent, in MB/s, as a counter that
+     * holds the current value.
+     */
+    private void reportUploadRate(final ProcessSession session, final String ffFilename, final long bytes,
+                                  final long nanos) {
+        final long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nanos));
+        final long rate = bytes * 1000L / millis / (1024L * 1024L);
+        session.adjustCounter(S3_UPLOAD_RATE_COUNTER, rate - reportedUploadRate.getAndSet(rate), false);
+        getLogger().info("Uploaded {} bytes of flowfile={} at {} MB/s", new Object[]{bytes, ffFilename, rate});
+    }
+
     private final Lock s3BucketLock = new ReentrantLock();
     private final AtomicLong lastS3AgeOff = new AtomicLong(0L);
     private final DateFormat logFormat = new SimpleDateFormat();
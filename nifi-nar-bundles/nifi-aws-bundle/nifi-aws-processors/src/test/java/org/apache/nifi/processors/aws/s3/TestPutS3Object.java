@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.aws.s3;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+/**
+ * Tests {@link PutS3Object} against a local stand-in for S3, so that no AWS resources are needed.
+ */
+public class TestPutS3Object {
+
+    private static final String BUCKET_NAME = "test-bucket";
+    private static final String FILE_NAME = "file1";
+    private static final String PART_SIZE_STRING = "50 mb";
+    private static final long PART_SIZE = 50L * 1024L * 1024L;
+
+    // three full parts and a short last part
+    private static final int CONTENT_LENGTH = (int) (3 * PART_SIZE) + 1024 * 1024;
+
+    private LocalMultipartAmazonS3Client localClient;
+    private TestablePutS3Object processor;
+    private TestRunner runner;
+
+    @Before
+    public void setup() {
+        localClient = new LocalMultipartAmazonS3Client();
+        processor = new TestablePutS3Object(localClient);
+        runner = TestRunners.newTestRunner(processor);
+        runner.setProperty(PutS3Object.ACCESS_KEY, "abcd");
+        runner.setProperty(PutS3Object.SECRET_KEY, "cdef");
+        runner.setProperty(PutS3Object.REGION, "us-west-1");
+        runner.setProperty(PutS3Object.BUCKET, BUCKET_NAME);
+        runner.setProperty(PutS3Object.KEY, FILE_NAME);
+    }
+
+    @After
+    public void cleanup() {
+        processor.getPersistenceFile().delete();
+    }
+
+    @Test
+    public void testMultipartPartParallelismLimitsPartSize() {
+        runner.setProperty(PutS3Object.MULTIPART_PART_SIZE, "2 GB");
+        runner.assertValid();
+
+        runner.setProperty(PutS3Object.MULTIPART_PART_PARALLELISM, "4");
+        runner.assertNotValid();
+
+        runner.setProperty(PutS3Object.MULTIPART_PART_SIZE, "1 GB");
+        runner.assertValid();
+    }
+
+    @Test
+    public void testMultipartConcurrentParts() throws IOException {
+        runner.setProperty(PutS3Object.MULTIPART_THRESHOLD, PART_SIZE_STRING);
+        runner.setProperty(PutS3Object.MULTIPART_PART_SIZE, PART_SIZE_STRING);
+        runner.setProperty(PutS3Object.MULTIPART_PART_PARALLELISM, "4");
+        enqueueContent();
+
+        runner.assertValid();
+        runner.run();
+        runner.assertAllFlowFilesTransferred(PutS3Object.REL_SUCCESS, 1);
+        final MockFlowFile ff1 = runner.getFlowFilesForRelationship(PutS3Object.REL_SUCCESS).get(0);
+        Assert.assertEquals(PutS3Object.S3_API_METHOD_MULTIPARTUPLOAD, ff1.getAttribute(PutS3Object.S3_API_METHOD_ATTR_KEY));
+        Assert.assertEquals(LocalMultipartAmazonS3Client.UPLOAD_ID, ff1.getAttribute(PutS3Object.S3_UPLOAD_ID_ATTR_KEY));
+
+        // parts were uploaded concurrently and completed in part order
+        Assert.assertTrue(localClient.maxConcurrentParts.get() > 1);
+        Assert.assertEquals(CONTENT_LENGTH, localClient.uploadedBytes.get());
+        Assert.assertEquals(4, localClient.completedParts.size());
+        for (int i = 0; i < localClient.completedParts.size(); i++) {
+            Assert.assertEquals(i + 1, localClient.completedParts.get(i).getPartNumber());
+        }
+        Assert.assertNotNull(runner.getCounterValue(PutS3Object.S3_UPLOAD_RATE_COUNTER));
+
+        // the state of a completed upload is removed
+        Assert.assertNull(processor.getLocalState(cacheKey()));
+    }
+
+    @Test
+    public void testMultipartFailedPartSavesContiguousParts() throws IOException {
+        runner.setProperty(PutS3Object.MULTIPART_THRESHOLD, PART_SIZE_STRING);
+        runner.setProperty(PutS3Object.MULTIPART_PART_SIZE, PART_SIZE_STRING);
+        runner.setProperty(PutS3Object.MULTIPART_PART_PARALLELISM, "4");
+        localClient.failedPartNumber = 2;
+        enqueueContent();
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(PutS3Object.REL_FAILURE, 1);
+        Assert.assertNull(localClient.completedParts);
+
+        // the parts after the failed one were uploaded, but only the parts before it are saved
+        Assert.assertTrue(localClient.uploadedPartNumbers.contains(3));
+        Assert.assertTrue(localClient.uploadedPartNumbers.contains(4));
+        final PutS3Object.MultipartState state = processor.getLocalState(cacheKey());
+        Assert.assertNotNull(state);
+        Assert.assertEquals(LocalMultipartAmazonS3Client.UPLOAD_ID, state.getUploadId());
+        Assert.assertEquals(1, state.getPartETags().size());
+        Assert.assertEquals(1, state.getPartETags().get(0).getPartNumber());
+        Assert.assertEquals(PART_SIZE, state.getFilePosition().longValue());
+    }
+
+    private void enqueueContent() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put(CoreAttributes.FILENAME.key(), FILE_NAME);
+        runner.enqueue(new byte[CONTENT_LENGTH], attributes);
+    }
+
+    private String cacheKey() {
+        return processor.getIdentifier() + "/" + BUCKET_NAME + "/" + FILE_NAME;
+    }
+
+    /**
+     * Accepts multipart uploads without sending them anywhere, recording the concurrency of part uploads.
+     */
+    private static class LocalMultipartAmazonS3Client extends AmazonS3Client {
+        static final String UPLOAD_ID = "local-upload";
+
+        final AtomicInteger activeParts = new AtomicInteger();
+        final AtomicInteger maxConcurrentParts = new AtomicInteger();
+        final AtomicLong uploadedBytes = new AtomicLong();
+        final Set<Integer> uploadedPartNumbers = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        volatile int failedPartNumber = -1;
+        volatile List<PartETag> completedParts;
+
+        @Override
+        public MultipartUploadListing listMultipartUploads(ListMultipartUploadsRequest listMultipartUploadsRequest)
+                throws AmazonClientException, AmazonServiceException {
+            final MultipartUploadListing listing = new MultipartUploadListing();
+            listing.setBucketName(listMultipartUploadsRequest.getBucketName());
+            listing.setMultipartUploads(new ArrayList<MultipartUpload>());
+            return listing;
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest initiateMultipartUploadRequest)
+                throws AmazonClientException, AmazonServiceException {
+            final InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setUploadId(UPLOAD_ID);
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest uploadPartRequest)
+                throws AmazonClientException, AmazonServiceException {
+            final int partNumber = uploadPartRequest.getPartNumber();
+            final int active = activeParts.incrementAndGet();
+            while (maxConcurrentParts.get() < active) {
+                maxConcurrentParts.compareAndSet(maxConcurrentParts.get(), active);
+            }
+            try {
+                final byte[] buffer = new byte[8192];
+                int len;
+                while ((len = uploadPartRequest.getInputStream().read(buffer)) != -1) {
+                    uploadedBytes.addAndGet(len);
+                }
+                // give the other parts time to start, and to finish before a failing part
+                Thread.sleep(partNumber == failedPartNumber ? 1000L : 500L);
+            } catch (IOException | InterruptedException e) {
+                throw new AmazonClientException(e.getMessage(), e);
+            } finally {
+                activeParts.decrementAndGet();
+            }
+            if (partNumber == failedPartNumber) {
+                throw new AmazonClientException("Failed to upload part " + partNumber);
+            }
+            uploadedPartNumbers.add(partNumber);
+
+            final UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(partNumber);
+            result.setETag("etag-" + partNumber);
+            return result;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest completeMultipartUploadRequest)
+                throws AmazonClientException, AmazonServiceException {
+            completedParts = completeMultipartUploadRequest.getPartETags();
+            final CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setETag("etag");
+            return result;
+        }
+
+        @Override
+        public String getResourceUrl(String bucketName, String key) {
+            return "http://localhost/" + bucketName + "/" + key;
+        }
+    }
+
+    private static class TestablePutS3Object extends PutS3Object {
+        private final AmazonS3Client testClient;
+
+        TestablePutS3Object(AmazonS3Client testClient) {
+            this.testClient = testClient;
+        }
+
+        @Override
+        protected AmazonS3Client getClient() {
+            return testClient;
+        }
+    }
+}
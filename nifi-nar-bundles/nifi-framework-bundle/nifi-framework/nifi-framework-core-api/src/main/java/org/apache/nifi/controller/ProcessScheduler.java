@@ -119,7 +119,9 @@ public interface ProcessScheduler {
     boolean isScheduled(Object scheduled);
 
     /**
-     * Registers a relevant event for an Event-Driven worker
+     * Registers a relevant event for a worker, such as FlowFiles being queued for it or a queue that
+     * was applying back pressure to it being drained. Whether or not the event has any effect depends
+     * on the Scheduling Strategy of the worker.
      *
      * @param worker to register
      */
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -29,7 +30,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.nifi.controller.ProcessScheduler;
+import org.apache.nifi.controller.LockableFlowFileQueue;
 import org.apache.nifi.controller.StandardFlowFileQueue;
+import org.apache.nifi.controller.StripedFlowFileQueue;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
@@ -54,7 +57,7 @@ public final class StandardConnection implements Connection {
     private final Connectable source;
     private final AtomicReference<Connectable> destination;
     private final AtomicReference<Collection<Relationship>> relationships;
-    private final StandardFlowFileQueue flowFileQueue;
+    private final LockableFlowFileQueue flowFileQueue;
     private final AtomicInteger labelIndex = new AtomicInteger(1);
     private final AtomicLong zIndex = new AtomicLong(0L);
     private final ProcessScheduler scheduler;
@@ -69,8 +72,15 @@ public final class StandardConnection implements Connection {
         destination = new AtomicReference<>(builder.destination);
         relationships = new AtomicReference<>(Collections.unmodifiableCollection(builder.relationships));
         scheduler = builder.scheduler;
-        flowFileQueue = new StandardFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
-            scheduler, builder.swapManager, builder.eventReporter, NiFiProperties.getInstance().getQueueSwapThreshold());
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        final int stripeCount = properties.getQueueStripeCount();
+        if (stripeCount > 1) {
+            flowFileQueue = new StripedFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
+                scheduler, builder.swapManager, builder.swapInExecutor, builder.eventReporter, properties.getQueueSwapThreshold(), stripeCount);
+        } else {
+            flowFileQueue = new StandardFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
+                scheduler, builder.swapManager, builder.swapInExecutor, builder.eventReporter, properties.getQueueSwapThreshold());
+        }
         hashCode = new HashCodeBuilder(7, 67).append(id).toHashCode();
     }
 
@@ -265,6 +275,7 @@ public final class StandardConnection implements Connection {
         private Connectable destination;
         private Collection<Relationship> relationships;
         private FlowFileSwapManager swapManager;
+        private Executor swapInExecutor;
         private EventReporter eventReporter;
         private FlowFileRepository flowFileRepository;
         private ProvenanceEventRepository provenanceRepository;
@@ -320,6 +331,11 @@ public final class StandardConnection implements Connection {
             return this;
         }
 
+        public Builder swapInExecutor(final Executor swapInExecutor) {
+            this.swapInExecutor = swapInExecutor;
+            return this;
+        }
+
         public Builder eventReporter(final EventReporter eventReporter) {
             this.eventReporter = eventReporter;
             return this;
@@ -350,6 +366,9 @@ public final class StandardConnection implements Connection {
             if (swapManager == null) {
                 throw new IllegalStateException("Cannot build a Connection without a FlowFileSwapManager");
             }
+            if (swapInExecutor == null) {
+                throw new IllegalStateException("Cannot build a Connection without a Swap In Executor");
+            }
             if (flowFileRepository == null) {
                 throw new IllegalStateException("Cannot build a Connection without a FlowFile Repository");
             }
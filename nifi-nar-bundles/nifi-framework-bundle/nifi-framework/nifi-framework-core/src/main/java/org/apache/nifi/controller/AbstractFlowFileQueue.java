@@ -0,0 +1,1049 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.DropFlowFileState;
+import org.apache.nifi.controller.queue.DropFlowFileStatus;
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.queue.FlowFileSummary;
+import org.apache.nifi.controller.queue.ListFlowFileRequest;
+import org.apache.nifi.controller.queue.ListFlowFileState;
+import org.apache.nifi.controller.queue.ListFlowFileStatus;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.IncompleteSwapFileException;
+import org.apache.nifi.controller.repository.RepositoryRecord;
+import org.apache.nifi.controller.repository.RepositoryRecordType;
+import org.apache.nifi.controller.repository.SwapContents;
+import org.apache.nifi.controller.repository.SwapSummary;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.controller.swap.StandardSwapSummary;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.provenance.ProvenanceEventBuilder;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.reporting.Severity;
+import org.apache.nifi.util.FormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * The parts of a FlowFile Queue that do not depend on how its active queue is held and locked: back pressure
+ * and expiration settings, acknowledgement, swapping FlowFiles out to and back in from Swap Files, and the
+ * listing and dropping of FlowFiles.
+ * </p>
+ *
+ * <p>
+ * The swap queue and the Swap File locations are guarded by the swap lock of the subclass, which may or may not be
+ * the same lock that guards the active queue. {@link #lock()} must obtain the swap lock as well as every lock that
+ * guards the active queue.
+ * </p>
+ */
+public abstract class AbstractFlowFileQueue implements LockableFlowFileQueue {
+
+    public static final int MAX_EXPIRED_RECORDS_PER_ITERATION = 100000;
+    public static final int SWAP_RECORD_POLL_SIZE = 10000;
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractFlowFileQueue.class);
+
+    protected final List<FlowFileRecord> swapQueue = new ArrayList<>(); // guarded by swap lock
+    protected final List<String> swapLocations = new ArrayList<>(); // guarded by swap lock
+    protected volatile boolean swapMode = false;
+    protected volatile List<FlowFilePrioritizer> priorities = Collections.emptyList();
+
+    private final AtomicReference<MaxQueueSize> maxQueueSize = new AtomicReference<>(new MaxQueueSize("0 MB", 0L, 0L));
+    private final AtomicReference<TimePeriod> expirationPeriod = new AtomicReference<>(new TimePeriod("0 mins", 0L));
+
+    protected final Connection connection;
+    protected final int swapThreshold;
+    protected final FlowFileSwapManager swapManager;
+    private final SwapInPrefetcher swapInPrefetcher; // guarded by swap lock
+    private final EventReporter eventReporter;
+    private final String identifier;
+    private final FlowFileRepository flowFileRepository;
+    private final ProvenanceEventRepository provRepository;
+    private final ResourceClaimManager resourceClaimManager;
+
+    private final ConcurrentMap<String, DropFlowFileRequest> dropRequestMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListFlowFileRequest> listRequestMap = new ConcurrentHashMap<>();
+
+    // SCHEDULER CANNOT BE NOTIFIED OF EVENTS WITH ANY LOCK HELD! DOING SO WILL RESULT IN A DEADLOCK!
+    protected final ProcessScheduler scheduler;
+
+    protected AbstractFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final Executor swapInExecutor,
+        final EventReporter eventReporter, final int swapThreshold) {
+        this.eventReporter = eventReporter;
+        this.swapManager = swapManager;
+        this.swapInPrefetcher = new SwapInPrefetcher(swapManager, this, swapInExecutor);
+        this.flowFileRepository = flowFileRepo;
+        this.provRepository = provRepo;
+        this.resourceClaimManager = resourceClaimManager;
+
+        this.identifier = identifier;
+        this.swapThreshold = swapThreshold;
+        this.scheduler = scheduler;
+        this.connection = connection;
+    }
+
+    /**
+     * @return the size of the FlowFiles that are on the active queue
+     */
+    public abstract QueueSize getActiveQueueSize();
+
+    /**
+     * @return the size of the FlowFiles that are on the swap queue or in Swap Files
+     */
+    protected abstract QueueSize getSwapQueueSize();
+
+    /**
+     * This method MUST be called with the swap lock held
+     */
+    protected abstract void incrementSwapQueueSize(int count, long bytes, int fileCount);
+
+    protected abstract void incrementUnacknowledgedQueueSize(int count, long bytes);
+
+    /**
+     * Adds the given FlowFiles to the active queue and updates its size accordingly.
+     * This method MUST be called with the swap lock held.
+     */
+    protected abstract void addToActiveQueue(List<FlowFileRecord> flowFiles);
+
+    /**
+     * @return a shallow copy of the FlowFiles that are on the active queue, in no particular order
+     */
+    protected abstract List<FlowFileRecord> copyActiveQueue();
+
+    /**
+     * Drops all FlowFiles from the active queue, updating the size of the active queue and the current
+     * and dropped sizes of the given request. This method is called with the queue locked.
+     *
+     * @return <code>false</code> if the request was canceled before all FlowFiles could be dropped
+     * @throws IOException if unable to update the repositories
+     */
+    protected abstract boolean dropActiveQueue(DropFlowFileRequest dropRequest, String requestor) throws IOException;
+
+    @Override
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public List<FlowFilePrioritizer> getPriorities() {
+        return priorities;
+    }
+
+    @Override
+    public void setBackPressureObjectThreshold(final long threshold) {
+        boolean updated = false;
+        while (!updated) {
+            MaxQueueSize maxSize = maxQueueSize.get();
+            final MaxQueueSize updatedSize = new MaxQueueSize(maxSize.getMaxSize(), maxSize.getMaxBytes(), threshold);
+            updated = maxQueueSize.compareAndSet(maxSize, updatedSize);
+        }
+    }
+
+    @Override
+    public long getBackPressureObjectThreshold() {
+        return maxQueueSize.get().getMaxCount();
+    }
+
+    @Override
+    public void setBackPressureDataSizeThreshold(final String maxDataSize) {
+        final long maxBytes = DataUnit.parseDataSize(maxDataSize, DataUnit.B).longValue();
+
+        boolean updated = false;
+        while (!updated) {
+            MaxQueueSize maxSize = maxQueueSize.get();
+            final MaxQueueSize updatedSize = new MaxQueueSize(maxDataSize, maxBytes, maxSize.getMaxCount());
+            updated = maxQueueSize.compareAndSet(maxSize, updatedSize);
+        }
+    }
+
+    @Override
+    public String getBackPressureDataSizeThreshold() {
+        return maxQueueSize.get().getMaxSize();
+    }
+
+    @Override
+    public void acknowledge(final FlowFileRecord flowFile) {
+        incrementUnacknowledgedQueueSize(-1, -flowFile.getSize());
+
+        // queue may have been full but no longer is. Notify that the source may now be available to run,
+        // because of back pressure caused by this queue.
+        scheduler.registerEvent(connection.getSource());
+    }
+
+    @Override
+    public void acknowledge(final Collection<FlowFileRecord> flowFiles) {
+        long totalSize = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            totalSize += flowFile.getSize();
+        }
+
+        incrementUnacknowledgedQueueSize(-flowFiles.size(), -totalSize);
+
+        // it's possible that queue was full but no longer is. Notify that the source may now be available to run,
+        // because of back pressure caused by this queue.
+        scheduler.registerEvent(connection.getSource());
+    }
+
+    @Override
+    public boolean isFull() {
+        final MaxQueueSize maxSize = maxQueueSize.get();
+
+        // Check if max size is set
+        if (maxSize.getMaxBytes() <= 0 && maxSize.getMaxCount() <= 0) {
+            return false;
+        }
+
+        final QueueSize queueSize = size();
+        if (maxSize.getMaxCount() > 0 && queueSize.getObjectCount() >= maxSize.getMaxCount()) {
+            return true;
+        }
+
+        if (maxSize.getMaxBytes() > 0 && queueSize.getByteCount() >= maxSize.getMaxBytes()) {
+            return true;
+        }
+
+        return false;
+    }
+
+    protected boolean isLaterThan(final Long maxAge) {
+        if (maxAge == null) {
+            return false;
+        }
+        return maxAge < System.currentTimeMillis();
+    }
+
+    protected Long getExpirationDate(final FlowFile flowFile, final long expirationMillis) {
+        if (flowFile == null) {
+            return null;
+        }
+        if (expirationMillis <= 0) {
+            return null;
+        } else {
+            final long entryDate = flowFile.getEntryDate();
+            final long expirationDate = entryDate + expirationMillis;
+            return expirationDate;
+        }
+    }
+
+    protected long getExpirationMillis() {
+        return expirationPeriod.get().getMillis();
+    }
+
+    @Override
+    public long drainQueue(final Queue<FlowFileRecord> sourceQueue, final List<FlowFileRecord> destination, int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        long drainedSize = 0L;
+        FlowFileRecord pulled = null;
+
+        final long expirationMillis = expirationPeriod.get().getMillis();
+        while (destination.size() < maxResults && (pulled = sourceQueue.poll()) != null) {
+            if (isLaterThan(getExpirationDate(pulled, expirationMillis))) {
+                expiredRecords.add(pulled);
+                if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    break;
+                }
+            } else {
+                if (pulled.isPenalized()) {
+                    sourceQueue.add(pulled);
+                    break;
+                }
+                destination.add(pulled);
+            }
+            drainedSize += pulled.getSize();
+        }
+        return drainedSize;
+    }
+
+    /**
+     * Swaps in the first of the Swap Files and adds its FlowFiles to the active queue. The Swap File is read by a background
+     * thread, so as long as there are still FlowFiles on the active queue, this method does not wait for it and swaps nothing
+     * in until it has been read.
+     *
+     * This method MUST be called with the swap lock held and only if there is at least one Swap File.
+     */
+    protected void swapInFirstSwapFile() {
+        final String swapLocation = swapLocations.get(0);
+        swapInPrefetcher.prefetch(swapLocation);
+        if (getActiveQueueSize().getObjectCount() > 0 && !swapInPrefetcher.isComplete()) {
+            return;
+        }
+
+        swapLocations.remove(0);
+        SwapContents swapContents = null;
+        try {
+            swapContents = swapInPrefetcher.swapIn(swapLocation);
+        } catch (final IncompleteSwapFileException isfe) {
+            logger.error("Failed to swap in all FlowFiles from Swap File {}; Swap File ended prematurely. The records that were present will still be swapped in", swapLocation);
+            logger.error("", isfe);
+            swapContents = isfe.getPartialContents();
+        } catch (final FileNotFoundException fnfe) {
+            logger.error("Failed to swap in FlowFiles from Swap File {} because the Swap File can no longer be found", swapLocation);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the Swap File can no longer be found");
+            }
+            return;
+        } catch (final IOException ioe) {
+            logger.error("Failed to swap in FlowFiles from Swap File {}; Swap File appears to be corrupt!", swapLocation);
+            logger.error("", ioe);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " +
+                    swapLocation + "; Swap File appears to be corrupt! Some FlowFiles in the queue may not be accessible. See logs for more information.");
+            }
+            return;
+        }
+
+        // Regardless of whether or not we received partial contents, the summary tells us how many FlowFiles
+        // were accounted for when the Swap File was written, so that is what we remove from the swap counts.
+        // The active counts are updated by the FlowFiles that were actually swapped in.
+        final QueueSize swapSize = swapContents.getSummary().getQueueSize();
+        incrementSwapQueueSize(-swapSize.getObjectCount(), -swapSize.getByteCount(), -1);
+        addToActiveQueue(swapContents.getFlowFiles());
+    }
+
+    /**
+     * Swaps out the lowest-priority FlowFiles of the given active queue and the swap queue, {@link #SWAP_RECORD_POLL_SIZE}
+     * at a time. Of the FlowFiles that remain, those that do not fit within the swap threshold are left on the swap queue
+     * and the rest are put back on the given active queue. The swapped size is updated accordingly, but it is up to the
+     * caller to update the size of the active queue.
+     *
+     * This method MUST be called with the swap lock and the lock that guards the given active queue held.
+     *
+     * @param activeQueue the active queue whose FlowFiles compete with those of the swap queue for being swapped out
+     * @return the number of bytes of content of the FlowFiles on the active queue afterwards
+     */
+    protected long swapOutLowestPriority(final PriorityQueue<FlowFileRecord> activeQueue) {
+        final int numSwapFiles = swapQueue.size() / SWAP_RECORD_POLL_SIZE;
+
+        final int originalSwapQueueCount = swapQueue.size();
+        long originalSwapQueueBytes = 0L;
+        for (final FlowFileRecord flowFile : swapQueue) {
+            originalSwapQueueBytes += flowFile.getSize();
+        }
+
+        // Create a new Priority queue with the prioritizers that are set, but reverse the
+        // prioritizers because we want to pull the lowest-priority FlowFiles to swap out
+        final PriorityQueue<FlowFileRecord> tempQueue = new PriorityQueue<>(activeQueue.size() + swapQueue.size(), Collections.reverseOrder(new Prioritizer(priorities)));
+        tempQueue.addAll(activeQueue);
+        tempQueue.addAll(swapQueue);
+
+        long bytesSwappedOut = 0L;
+        int flowFilesSwappedOut = 0;
+        int swapFilesWritten = 0;
+        for (int i = 0; i < numSwapFiles; i++) {
+            // Create a new swap file for the next SWAP_RECORD_POLL_SIZE records
+            final List<FlowFileRecord> toSwap = new ArrayList<>(SWAP_RECORD_POLL_SIZE);
+            long toSwapBytes = 0L;
+            for (int j = 0; j < SWAP_RECORD_POLL_SIZE; j++) {
+                final FlowFileRecord flowFile = tempQueue.poll();
+                toSwap.add(flowFile);
+                toSwapBytes += flowFile.getSize();
+            }
+
+            try {
+                Collections.reverse(toSwap); // currently ordered in reverse priority order based on the ordering of the temp queue.
+                final String swapLocation = swapManager.swapOut(toSwap, this);
+                swapLocations.add(swapLocation);
+            } catch (final IOException ioe) {
+                tempQueue.addAll(toSwap); // if we failed, we must add the FlowFiles back to the queue.
+                reportSwapOutFailure(ioe);
+                break;
+            }
+
+            bytesSwappedOut += toSwapBytes;
+            flowFilesSwappedOut += toSwap.size();
+            swapFilesWritten++;
+        }
+
+        // Pull any records off of the temp queue that won't fit back on the active queue, and add those to the
+        // swap queue. Then add the records back to the active queue.
+        swapQueue.clear();
+        long updatedSwapQueueBytes = 0L;
+        while (tempQueue.size() > swapThreshold) {
+            final FlowFileRecord record = tempQueue.poll();
+            swapQueue.add(record);
+            updatedSwapQueueBytes += record.getSize();
+        }
+
+        Collections.reverse(swapQueue); // currently ordered in reverse priority order based on the ordering of the temp queue
+
+        // replace the contents of the active queue, since we've merged it with the swap queue.
+        activeQueue.clear();
+        FlowFileRecord toRequeue;
+        long activeQueueBytes = 0L;
+        while ((toRequeue = tempQueue.poll()) != null) {
+            activeQueue.offer(toRequeue);
+            activeQueueBytes += toRequeue.getSize();
+        }
+
+        final int addedSwapRecords = swapQueue.size() - originalSwapQueueCount;
+        final long addedSwapBytes = updatedSwapQueueBytes - originalSwapQueueBytes;
+        incrementSwapQueueSize(addedSwapRecords + flowFilesSwappedOut, addedSwapBytes + bytesSwappedOut, swapFilesWritten);
+        return activeQueueBytes;
+    }
+
+    protected void reportSwapOutFailure(final IOException ioe) {
+        final int queuedCount = size().getObjectCount();
+        logger.error("FlowFile Queue with identifier {} has {} FlowFiles queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting "
+            + "the Java heap space but failed to write information to disk due to {}", getIdentifier(), queuedCount, ioe.toString());
+        logger.error("", ioe);
+        if (eventReporter != null) {
+            eventReporter.reportEvent(Severity.ERROR, "Failed to Overflow to Disk", "Flowfile Queue with identifier " + getIdentifier() + " has " + queuedCount +
+                " queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting the Java heap space but failed to write information to disk. "
+                + "See logs for more information.");
+        }
+    }
+
+    @Override
+    public String getFlowFileExpiration() {
+        return expirationPeriod.get().getPeriod();
+    }
+
+    @Override
+    public int getFlowFileExpiration(final TimeUnit timeUnit) {
+        return (int) timeUnit.convert(expirationPeriod.get().getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setFlowFileExpiration(final String flowExpirationPeriod) {
+        final long millis = FormatUtils.getTimeDuration(flowExpirationPeriod, TimeUnit.MILLISECONDS);
+        if (millis < 0) {
+            throw new IllegalArgumentException("FlowFile Expiration Period must be positive");
+        }
+
+        expirationPeriod.set(new TimePeriod(flowExpirationPeriod, millis));
+    }
+
+    @Override
+    public void purgeSwapFiles() {
+        swapManager.purge();
+    }
+
+    @Override
+    public SwapSummary recoverSwappedFlowFiles() {
+        int swapFlowFileCount = 0;
+        long swapByteCount = 0L;
+        Long maxId = null;
+        List<ResourceClaim> resourceClaims = new ArrayList<>();
+
+        lock();
+        try {
+            final List<String> swapLocations;
+            try {
+                swapLocations = swapManager.recoverSwapLocations(this);
+            } catch (final IOException ioe) {
+                logger.error("Failed to determine whether or not any Swap Files exist for FlowFile Queue {}", getIdentifier());
+                logger.error("", ioe);
+                if (eventReporter != null) {
+                    eventReporter.reportEvent(Severity.ERROR, "FlowFile Swapping", "Failed to determine whether or not any Swap Files exist for FlowFile Queue " +
+                        getIdentifier() + "; see logs for more detials");
+                }
+                return null;
+            }
+
+            for (final String swapLocation : swapLocations) {
+                try {
+                    final SwapSummary summary = swapManager.getSwapSummary(swapLocation);
+                    final QueueSize queueSize = summary.getQueueSize();
+                    final Long maxSwapRecordId = summary.getMaxFlowFileId();
+                    if (maxSwapRecordId != null) {
+                        if (maxId == null || maxSwapRecordId > maxId) {
+                            maxId = maxSwapRecordId;
+                        }
+                    }
+
+                    swapFlowFileCount += queueSize.getObjectCount();
+                    swapByteCount += queueSize.getByteCount();
+                    resourceClaims.addAll(summary.getResourceClaims());
+                } catch (final IOException ioe) {
+                    logger.error("Failed to recover FlowFiles from Swap File {}; the file appears to be corrupt", swapLocation, ioe.toString());
+                    logger.error("", ioe);
+                    if (eventReporter != null) {
+                        eventReporter.reportEvent(Severity.ERROR, "FlowFile Swapping", "Failed to recover FlowFiles from Swap File " + swapLocation +
+                            "; the file appears to be corrupt. See logs for more details");
+                    }
+                }
+            }
+
+            incrementSwapQueueSize(swapFlowFileCount, swapByteCount, swapLocations.size());
+            this.swapLocations.addAll(swapLocations);
+            if (!swapLocations.isEmpty()) {
+                swapMode = true;
+            }
+        } finally {
+            unlock();
+        }
+
+        return new StandardSwapSummary(new QueueSize(swapFlowFileCount, swapByteCount), maxId, resourceClaims);
+    }
+
+    @Override
+    public String toString() {
+        return "FlowFileQueue[id=" + identifier + "]";
+    }
+
+    @Override
+    public ListFlowFileStatus listFlowFiles(final String requestIdentifier, final int maxResults) {
+        // purge any old requests from the map just to keep it clean. But if there are very few requests, which is usually the case, then don't bother
+        if (listRequestMap.size() > 10) {
+            final List<String> toDrop = new ArrayList<>();
+            for (final Map.Entry<String, ListFlowFileRequest> entry : listRequestMap.entrySet()) {
+                final ListFlowFileRequest request = entry.getValue();
+                final boolean completed = request.getState() == ListFlowFileState.COMPLETE || request.getState() == ListFlowFileState.FAILURE;
+
+                if (completed && System.currentTimeMillis() - request.getLastUpdated() > TimeUnit.MINUTES.toMillis(5L)) {
+                    toDrop.add(entry.getKey());
+                }
+            }
+
+            for (final String requestId : toDrop) {
+                listRequestMap.remove(requestId);
+            }
+        }
+
+        final ListFlowFileRequest listRequest = new ListFlowFileRequest(requestIdentifier, maxResults, size());
+
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int position = 0;
+                final List<FlowFileSummary> summaries = new ArrayList<>();
+
+                // Take a shallow copy of the active queue so that we don't have to hold any lock longer than absolutely necessary.
+                // We cannot simply pull the first 'maxResults' records from the queue, because the Iterator provided by
+                // PriorityQueue does not return records in order, so we sort the copy instead. Even though this costs Java Heap
+                // to create the extra collection, we are making this trade-off to avoid locking the queue any longer than required.
+                final Prioritizer prioritizer = new Prioritizer(priorities);
+                final List<FlowFileRecord> allFlowFiles = copyActiveQueue();
+                logger.debug("{} Copied active queue to perform listing of FlowFiles", AbstractFlowFileQueue.this);
+
+                listRequest.setState(ListFlowFileState.CALCULATING_LIST);
+
+                // sort the FlowFileRecords so that we have the list in the same order as on the queue.
+                Collections.sort(allFlowFiles, prioritizer);
+
+                for (final FlowFileRecord flowFile : allFlowFiles) {
+                    summaries.add(summarize(flowFile, ++position));
+                    if (summaries.size() >= maxResults) {
+                        break;
+                    }
+                }
+
+                logger.debug("{} Finished listing FlowFiles for active queue with a total of {} results", AbstractFlowFileQueue.this, summaries.size());
+                listRequest.setFlowFileSummaries(summaries);
+                listRequest.setState(ListFlowFileState.COMPLETE);
+            }
+        }, "List FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        listRequestMap.put(requestIdentifier, listRequest);
+        return listRequest;
+    }
+
+    private FlowFileSummary summarize(final FlowFile flowFile, final int position) {
+        // extract all of the information that we care about into new variables rather than just
+        // wrapping the FlowFile object with a FlowFileSummary object. We do this because we want to
+        // be able to hold many FlowFileSummary objects in memory and if we just wrap the FlowFile object,
+        // we will end up holding the entire FlowFile (including all Attributes) in the Java heap as well,
+        // which can be problematic if we expect them to be swapped out.
+        final String uuid = flowFile.getAttribute(CoreAttributes.UUID.key());
+        final String filename = flowFile.getAttribute(CoreAttributes.FILENAME.key());
+        final long size = flowFile.getSize();
+        final Long lastQueuedTime = flowFile.getLastQueueDate();
+        final long lineageStart = flowFile.getLineageStartDate();
+        final boolean penalized = flowFile.isPenalized();
+
+        return new FlowFileSummary() {
+            @Override
+            public String getUuid() {
+                return uuid;
+            }
+
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+
+            @Override
+            public int getPosition() {
+                return position;
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+            @Override
+            public long getLastQueuedTime() {
+                return lastQueuedTime == null ? 0L : lastQueuedTime;
+            }
+
+            @Override
+            public long getLineageStartDate() {
+                return lineageStart;
+            }
+
+            @Override
+            public boolean isPenalized() {
+                return penalized;
+            }
+        };
+    }
+
+    @Override
+    public ListFlowFileStatus getListFlowFileStatus(final String requestIdentifier) {
+        return listRequestMap.get(requestIdentifier);
+    }
+
+    @Override
+    public ListFlowFileStatus cancelListFlowFileRequest(final String requestIdentifier) {
+        logger.info("Canceling ListFlowFile Request with ID {}", requestIdentifier);
+        final ListFlowFileRequest request = listRequestMap.remove(requestIdentifier);
+        if (request != null) {
+            request.cancel();
+        }
+
+        return request;
+    }
+
+    @Override
+    public void verifyCanList() throws IllegalStateException {
+    }
+
+    @Override
+    public DropFlowFileStatus dropFlowFiles(final String requestIdentifier, final String requestor) {
+        logger.info("Initiating drop of FlowFiles from {} on behalf of {} (request identifier={})", this, requestor, requestIdentifier);
+
+        // purge any old requests from the map just to keep it clean. But if there are very requests, which is usually the case, then don't bother
+        if (dropRequestMap.size() > 10) {
+            final List<String> toDrop = new ArrayList<>();
+            for (final Map.Entry<String, DropFlowFileRequest> entry : dropRequestMap.entrySet()) {
+                final DropFlowFileRequest request = entry.getValue();
+                final boolean completed = request.getState() == DropFlowFileState.COMPLETE || request.getState() == DropFlowFileState.FAILURE;
+
+                if (completed && System.currentTimeMillis() - request.getLastUpdated() > TimeUnit.MINUTES.toMillis(5L)) {
+                    toDrop.add(entry.getKey());
+                }
+            }
+
+            for (final String requestId : toDrop) {
+                dropRequestMap.remove(requestId);
+            }
+        }
+
+        final DropFlowFileRequest dropRequest = new DropFlowFileRequest(requestIdentifier);
+        final QueueSize originalSize = size();
+        dropRequest.setCurrentSize(originalSize);
+        dropRequest.setOriginalSize(originalSize);
+        if (originalSize.getObjectCount() == 0) {
+            dropRequest.setDroppedSize(originalSize);
+            dropRequest.setState(DropFlowFileState.COMPLETE);
+            dropRequestMap.put(requestIdentifier, dropRequest);
+            return dropRequest;
+        }
+
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock();
+                try {
+                    dropRequest.setState(DropFlowFileState.DROPPING_FLOWFILES);
+                    logger.debug("For DropFlowFileRequest {}, original size is {}", requestIdentifier, size());
+
+                    try {
+                        if (!dropActiveQueue(dropRequest, requestor)) {
+                            return;
+                        }
+
+                        final QueueSize swapSize = getSwapQueueSize();
+                        logger.debug("For DropFlowFileRequest {}, Swap Queue has {} elements, Swapped Record Count = {}, Swapped Content Size = {}",
+                            requestIdentifier, swapQueue.size(), swapSize.getObjectCount(), swapSize.getByteCount());
+                        if (isCanceled(dropRequest)) {
+                            return;
+                        }
+
+                        QueueSize droppedSize = drop(swapQueue, requestor);
+                        swapQueue.clear();
+                        incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), 0);
+                        dropRequest.setCurrentSize(size());
+                        dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+                        logger.debug("For DropFlowFileRequest {}, dropped {} from Swap Queue", requestIdentifier, droppedSize);
+
+                        final int swapFileCount = swapLocations.size();
+                        final Iterator<String> swapLocationItr = swapLocations.iterator();
+                        while (swapLocationItr.hasNext()) {
+                            final String swapLocation = swapLocationItr.next();
+
+                            SwapContents swapContents = null;
+                            try {
+                                if (isCanceled(dropRequest)) {
+                                    return;
+                                }
+
+                                swapContents = swapInPrefetcher.swapIn(swapLocation);
+                                droppedSize = drop(swapContents.getFlowFiles(), requestor);
+                            } catch (final IncompleteSwapFileException isfe) {
+                                swapContents = isfe.getPartialContents();
+                                final String warnMsg = "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the file was corrupt. "
+                                    + "Some FlowFiles may not be dropped from the queue until NiFi is restarted.";
+
+                                logger.warn(warnMsg);
+                                if (eventReporter != null) {
+                                    eventReporter.reportEvent(Severity.WARNING, "Drop FlowFiles", warnMsg);
+                                }
+                            } catch (final IOException ioe) {
+                                logger.error("Failed to swap in FlowFiles from Swap File {} in order to drop the FlowFiles for Connection {} due to {}",
+                                    swapLocation, getIdentifier(), ioe.toString());
+                                logger.error("", ioe);
+                                if (eventReporter != null) {
+                                    eventReporter.reportEvent(Severity.ERROR, "Drop FlowFiles", "Failed to swap in FlowFiles from Swap File " + swapLocation
+                                        + ". The FlowFiles contained in this Swap File will not be dropped from the queue");
+                                }
+
+                                dropRequest.setState(DropFlowFileState.FAILURE, "Failed to swap in FlowFiles from Swap File " + swapLocation + " due to " + ioe.toString());
+                                if (swapContents != null) {
+                                    // the Swap File is gone once it has been swapped in, so ensure that we don't lose the FlowFiles from our queue.
+                                    swapLocationItr.remove();
+                                    final QueueSize swappedInSize = swapContents.getSummary().getQueueSize();
+                                    incrementSwapQueueSize(-swappedInSize.getObjectCount(), -swappedInSize.getByteCount(), -1);
+                                    addToActiveQueue(swapContents.getFlowFiles());
+                                }
+
+                                return;
+                            }
+
+                            dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+                            incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), -1);
+
+                            dropRequest.setCurrentSize(size());
+                            swapLocationItr.remove();
+                            logger.debug("For DropFlowFileRequest {}, dropped {} for Swap File {}", requestIdentifier, droppedSize, swapLocation);
+                        }
+
+                        if (swapLocations.isEmpty() && swapQueue.isEmpty()) {
+                            swapMode = false;
+                        }
+
+                        logger.debug("Dropped FlowFiles from {} Swap Files", swapFileCount);
+                        logger.info("Successfully dropped {} FlowFiles ({} bytes) from Connection with ID {} on behalf of {}",
+                            dropRequest.getDroppedSize().getObjectCount(), dropRequest.getDroppedSize().getByteCount(), getIdentifier(), requestor);
+                        dropRequest.setState(DropFlowFileState.COMPLETE);
+                    } catch (final IOException ioe) {
+                        logger.error("Failed to drop the FlowFiles from queue {} due to {}", getIdentifier(), ioe.toString());
+                        logger.error("", ioe);
+
+                        dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
+                    } catch (final Exception e) {
+                        logger.error("Failed to drop FlowFiles from Connection with ID {} due to {}", getIdentifier(), e.toString());
+                        logger.error("", e);
+                        dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + e.toString());
+                    }
+                } finally {
+                    unlock();
+                }
+            }
+        }, "Drop FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        dropRequestMap.put(requestIdentifier, dropRequest);
+
+        return dropRequest;
+    }
+
+    protected boolean isCanceled(final DropFlowFileRequest dropRequest) {
+        if (dropRequest.getState() == DropFlowFileState.CANCELED) {
+            logger.info("Cancel requested for DropFlowFileRequest {}", dropRequest.getRequestIdentifier());
+            return true;
+        }
+
+        return false;
+    }
+
+    protected QueueSize drop(final List<FlowFileRecord> flowFiles, final String requestor) throws IOException {
+        // Create a Provenance Event and a FlowFile Repository record for each FlowFile
+        final List<ProvenanceEventRecord> provenanceEvents = new ArrayList<>(flowFiles.size());
+        final List<RepositoryRecord> flowFileRepoRecords = new ArrayList<>(flowFiles.size());
+        for (final FlowFileRecord flowFile : flowFiles) {
+            provenanceEvents.add(createDropEvent(flowFile, requestor));
+            flowFileRepoRecords.add(createDeleteRepositoryRecord(flowFile));
+        }
+
+        long dropContentSize = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            dropContentSize += flowFile.getSize();
+            final ContentClaim contentClaim = flowFile.getContentClaim();
+            if (contentClaim == null) {
+                continue;
+            }
+
+            final ResourceClaim resourceClaim = contentClaim.getResourceClaim();
+            if (resourceClaim == null) {
+                continue;
+            }
+
+            resourceClaimManager.decrementClaimantCount(resourceClaim);
+        }
+
+        provRepository.registerEvents(provenanceEvents);
+        flowFileRepository.updateRepository(flowFileRepoRecords);
+        return new QueueSize(flowFiles.size(), dropContentSize);
+    }
+
+    private ProvenanceEventRecord createDropEvent(final FlowFileRecord flowFile, final String requestor) {
+        final ProvenanceEventBuilder builder = provRepository.eventBuilder();
+        builder.fromFlowFile(flowFile);
+        builder.setEventType(ProvenanceEventType.DROP);
+        builder.setLineageStartDate(flowFile.getLineageStartDate());
+        builder.setComponentId(getIdentifier());
+        builder.setComponentType("Connection");
+        builder.setAttributes(flowFile.getAttributes(), Collections.<String, String> emptyMap());
+        builder.setDetails("FlowFile Queue emptied by " + requestor);
+        builder.setSourceQueueIdentifier(getIdentifier());
+
+        final ContentClaim contentClaim = flowFile.getContentClaim();
+        if (contentClaim != null) {
+            final ResourceClaim resourceClaim = contentClaim.getResourceClaim();
+            builder.setPreviousContentClaim(resourceClaim.getContainer(), resourceClaim.getSection(), resourceClaim.getId(), contentClaim.getOffset(), flowFile.getSize());
+        }
+
+        return builder.build();
+    }
+
+    private RepositoryRecord createDeleteRepositoryRecord(final FlowFileRecord flowFile) {
+        return new RepositoryRecord() {
+            @Override
+            public FlowFileQueue getDestination() {
+                return null;
+            }
+
+            @Override
+            public FlowFileQueue getOriginalQueue() {
+                return AbstractFlowFileQueue.this;
+            }
+
+            @Override
+            public RepositoryRecordType getType() {
+                return RepositoryRecordType.DELETE;
+            }
+
+            @Override
+            public ContentClaim getCurrentClaim() {
+                return flowFile.getContentClaim();
+            }
+
+            @Override
+            public ContentClaim getOriginalClaim() {
+                return flowFile.getContentClaim();
+            }
+
+            @Override
+            public long getCurrentClaimOffset() {
+                return flowFile.getContentClaimOffset();
+            }
+
+            @Override
+            public FlowFileRecord getCurrent() {
+                return flowFile;
+            }
+
+            @Override
+            public boolean isAttributesChanged() {
+                return false;
+            }
+
+            @Override
+            public boolean isMarkedForAbort() {
+                return false;
+            }
+
+            @Override
+            public String getSwapLocation() {
+                return null;
+            }
+        };
+    }
+
+    @Override
+    public DropFlowFileRequest cancelDropFlowFileRequest(final String requestIdentifier) {
+        final DropFlowFileRequest request = dropRequestMap.remove(requestIdentifier);
+        if (request == null) {
+            return null;
+        }
+
+        request.cancel();
+        return request;
+    }
+
+    @Override
+    public DropFlowFileStatus getDropFlowFileStatus(final String requestIdentifier) {
+        return dropRequestMap.get(requestIdentifier);
+    }
+
+
+    static final class Prioritizer implements Comparator<FlowFileRecord>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final transient List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+
+        Prioritizer(final List<FlowFilePrioritizer> priorities) {
+            if (null != priorities) {
+                prioritizers.addAll(priorities);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public int compare(final FlowFileRecord f1, final FlowFileRecord f2) {
+            int returnVal = 0;
+            final boolean f1Penalized = f1.isPenalized();
+            final boolean f2Penalized = f2.isPenalized();
+
+            if (f1Penalized && !f2Penalized) {
+                return 1;
+            } else if (!f1Penalized && f2Penalized) {
+                return -1;
+            }
+
+            if (f1Penalized && f2Penalized) {
+                if (f1.getPenaltyExpirationMillis() < f2.getPenaltyExpirationMillis()) {
+                    return -1;
+                } else if (f1.getPenaltyExpirationMillis() > f2.getPenaltyExpirationMillis()) {
+                    return 1;
+                }
+            }
+
+            if (!prioritizers.isEmpty()) {
+                for (final FlowFilePrioritizer prioritizer : prioritizers) {
+                    returnVal = prioritizer.compare(f1, f2);
+                    if (returnVal != 0) {
+                        return returnVal;
+                    }
+                }
+            }
+
+            final ContentClaim claim1 = f1.getContentClaim();
+            final ContentClaim claim2 = f2.getContentClaim();
+
+            // put the one without a claim first
+            if (claim1 == null && claim2 != null) {
+                return -1;
+            } else if (claim1 != null && claim2 == null) {
+                return 1;
+            } else if (claim1 != null && claim2 != null) {
+                final int claimComparison = claim1.compareTo(claim2);
+                if (claimComparison != 0) {
+                    return claimComparison;
+                }
+
+                final int claimOffsetComparison = Long.compare(f1.getContentClaimOffset(), f2.getContentClaimOffset());
+                if (claimOffsetComparison != 0) {
+                    return claimOffsetComparison;
+                }
+            }
+
+            return Long.compare(f1.getId(), f2.getId());
+        }
+    }
+
+
+    static class MaxQueueSize {
+        private final String maxSize;
+        private final long maxBytes;
+        private final long maxCount;
+
+        public MaxQueueSize(final String maxSize, final long maxBytes, final long maxCount) {
+            this.maxSize = maxSize;
+            this.maxBytes = maxBytes;
+            this.maxCount = maxCount;
+        }
+
+        public String getMaxSize() {
+            return maxSize;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public long getMaxCount() {
+            return maxCount;
+        }
+
+        @Override
+        public String toString() {
+            return maxCount + " Objects/" + maxSize;
+        }
+    }
+
+    static class TimePeriod {
+        private final String period;
+        private final long millis;
+
+        public TimePeriod(final String period, final long millis) {
+            this.period = period;
+            this.millis = millis;
+        }
+
+        public String getPeriod() {
+            return period;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return period;
+        }
+    }
+}
@@ -16,6 +16,15 @@
  */
 package org.apache.nifi.controller;
 
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readDictionaryString;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarInt;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarLong;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarString;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeDictionaryString;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarInt;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarLong;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarString;
+
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -33,12 +42,17 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.QueueSize;
@@ -74,7 +88,12 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
     private static final Pattern SWAP_FILE_PATTERN = Pattern.compile("\\d+-.+\\.swap");
     private static final Pattern TEMP_SWAP_FILE_PATTERN = Pattern.compile("\\d+-.+\\.swap\\.part");
 
-    public static final int SWAP_ENCODING_VERSION = 8;
+    public static final int SWAP_ENCODING_VERSION = 9;
+
+    // Starting with version 9, the FlowFiles in a Swap File are compressed and written using variable-length values. Attribute names
+    // and the container and section of Resource Claims are written to a dictionary that is scoped to the Swap File: a value is written
+    // in full the first time that it is encountered and as an index into the dictionary thereafter. See VariableLengthEncoding.
+    private static final int COMPRESSION_BUFFER_SIZE = 65536;
     public static final String EVENT_CATEGORY = "Swap FlowFiles";
     private static final Logger logger = LoggerFactory.getLogger(FileSystemSwapManager.class);
 
@@ -317,41 +336,20 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
 
             out.writeLong(maxRecordId);
 
-            for (final FlowFileRecord flowFile : toSwap) {
-                out.writeLong(flowFile.getId());
-                out.writeLong(flowFile.getEntryDate());
-
-                final Set<String> lineageIdentifiers = flowFile.getLineageIdentifiers();
-                out.writeInt(lineageIdentifiers.size());
-                for (final String lineageId : lineageIdentifiers) {
-                    out.writeUTF(lineageId);
-                }
-
-                out.writeLong(flowFile.getLineageStartDate());
-                out.writeLong(flowFile.getLastQueueDate());
-                out.writeLong(flowFile.getSize());
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                final DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, COMPRESSION_BUFFER_SIZE);
+                final OutputStream compressedOut = new BufferedOutputStream(deflaterOut);
+                final Map<String, Integer> dictionary = new HashMap<>();
 
-                final ContentClaim claim = flowFile.getContentClaim();
-                if (claim == null) {
-                    out.writeBoolean(false);
-                } else {
-                    out.writeBoolean(true);
-                    final ResourceClaim resourceClaim = claim.getResourceClaim();
-                    out.writeUTF(resourceClaim.getId());
-                    out.writeUTF(resourceClaim.getContainer());
-                    out.writeUTF(resourceClaim.getSection());
-                    out.writeLong(claim.getOffset());
-                    out.writeLong(claim.getLength());
-                    out.writeLong(flowFile.getContentClaimOffset());
-                    out.writeBoolean(resourceClaim.isLossTolerant());
+                for (final FlowFileRecord flowFile : toSwap) {
+                    serializeFlowFile(flowFile, compressedOut, dictionary);
                 }
 
-                final Map<String, String> attributes = flowFile.getAttributes();
-                out.writeInt(attributes.size());
-                for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    writeString(entry.getKey(), out);
-                    writeString(entry.getValue(), out);
-                }
+                compressedOut.flush();
+                deflaterOut.finish();
+            } finally {
+                deflater.end();
             }
         } finally {
             out.flush();
@@ -362,22 +360,40 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         return toSwap.size();
     }
 
-    private static void writeString(final String toWrite, final OutputStream out) throws IOException {
-        final byte[] bytes = toWrite.getBytes(StandardCharsets.UTF_8);
-        final int utflen = bytes.length;
+    private static void serializeFlowFile(final FlowFileRecord flowFile, final OutputStream out, final Map<String, Integer> dictionary) throws IOException {
+        writeVarLong(flowFile.getId(), out);
+        writeVarLong(flowFile.getEntryDate(), out);
 
-        if (utflen < 65535) {
-            out.write(utflen >>> 8);
-            out.write(utflen);
-            out.write(bytes);
+        final Set<String> lineageIdentifiers = flowFile.getLineageIdentifiers();
+        writeVarInt(lineageIdentifiers.size(), out);
+        for (final String lineageId : lineageIdentifiers) {
+            writeVarString(lineageId, out);
+        }
+
+        writeVarLong(flowFile.getLineageStartDate(), out);
+        writeVarLong(flowFile.getLastQueueDate(), out);
+        writeVarLong(flowFile.getSize(), out);
+
+        final ContentClaim claim = flowFile.getContentClaim();
+        if (claim == null) {
+            out.write(0);
         } else {
-            out.write(255);
-            out.write(255);
-            out.write(utflen >>> 24);
-            out.write(utflen >>> 16);
-            out.write(utflen >>> 8);
-            out.write(utflen);
-            out.write(bytes);
+            out.write(1);
+            final ResourceClaim resourceClaim = claim.getResourceClaim();
+            writeVarString(resourceClaim.getId(), out);
+            writeDictionaryString(resourceClaim.getContainer(), out, dictionary);
+            writeDictionaryString(resourceClaim.getSection(), out, dictionary);
+            writeVarLong(claim.getOffset(), out);
+            writeVarLong(claim.getLength() + 1, out); // length is -1 if unknown
+            writeVarLong(flowFile.getContentClaimOffset(), out);
+            out.write(resourceClaim.isLossTolerant() ? 1 : 0);
+        }
+
+        final Map<String, String> attributes = flowFile.getAttributes();
+        writeVarInt(attributes.size(), out);
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            writeDictionaryString(entry.getKey(), out, dictionary);
+            writeVarString(entry.getValue(), out);
         }
     }
 
@@ -416,6 +432,16 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
 
     private static SwapContents deserializeFlowFiles(final DataInputStream in, final QueueSize queueSize, final Long maxRecordId,
         final int serializationVersion, final boolean incrementContentClaims, final ResourceClaimManager claimManager, final String location) throws IOException {
+        if (serializationVersion > 8) {
+            final Inflater inflater = new Inflater();
+            try {
+                final InputStream compressedIn = new BufferedInputStream(new InflaterInputStream(in, inflater, COMPRESSION_BUFFER_SIZE), COMPRESSION_BUFFER_SIZE);
+                return deserializeCompactFlowFiles(compressedIn, queueSize, maxRecordId, incrementContentClaims, claimManager, location);
+            } finally {
+                inflater.end();
+            }
+        }
+
         final List<FlowFileRecord> flowFiles = new ArrayList<>(queueSize.getObjectCount());
         final List<ResourceClaim> resourceClaims = new ArrayList<>(queueSize.getObjectCount());
         Long maxId = maxRecordId;
@@ -536,6 +562,90 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         return new StandardSwapContents(swapSummary, flowFiles);
     }
 
+    private static SwapContents deserializeCompactFlowFiles(final InputStream in, final QueueSize queueSize, final Long maxRecordId,
+        final boolean incrementContentClaims, final ResourceClaimManager claimManager, final String location) throws IOException {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>(queueSize.getObjectCount());
+        final List<ResourceClaim> resourceClaims = new ArrayList<>(queueSize.getObjectCount());
+        final List<String> dictionary = new ArrayList<>();
+        Long maxId = maxRecordId;
+
+        for (int i = 0; i < queueSize.getObjectCount(); i++) {
+            try {
+                final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder();
+                final long recordId = readVarLong(in);
+                if (maxId == null || recordId > maxId) {
+                    maxId = recordId;
+                }
+
+                ffBuilder.id(recordId);
+                ffBuilder.entryDate(readVarLong(in));
+
+                final int numLineageIdentifiers = readVarInt(in);
+                final Set<String> lineageIdentifiers = new HashSet<>(numLineageIdentifiers);
+                for (int lineageIdIdx = 0; lineageIdIdx < numLineageIdentifiers; lineageIdIdx++) {
+                    lineageIdentifiers.add(readVarString(in));
+                }
+                ffBuilder.lineageIdentifiers(lineageIdentifiers);
+                ffBuilder.lineageStartDate(readVarLong(in));
+                ffBuilder.lastQueueDate(readVarLong(in));
+                ffBuilder.size(readVarLong(in));
+
+                final int hasClaim = in.read();
+                ResourceClaim resourceClaim = null;
+                if (hasClaim == 1) {
+                    final String claimId = readVarString(in);
+                    final String container = readDictionaryString(in, dictionary);
+                    final String section = readDictionaryString(in, dictionary);
+                    final long resourceOffset = readVarLong(in);
+                    final long resourceLength = readVarLong(in) - 1;
+                    final long claimOffset = readVarLong(in);
+                    final int lossTolerant = in.read();
+                    if (lossTolerant < 0) {
+                        throw new EOFException();
+                    }
+
+                    resourceClaim = claimManager.newResourceClaim(container, section, claimId, lossTolerant == 1);
+                    final StandardContentClaim claim = new StandardContentClaim(resourceClaim, resourceOffset);
+                    claim.setLength(resourceLength);
+
+                    if (incrementContentClaims) {
+                        claimManager.incrementClaimantCount(resourceClaim);
+                    }
+
+                    ffBuilder.contentClaim(claim);
+                    ffBuilder.contentClaimOffset(claimOffset);
+                } else if (hasClaim == -1) {
+                    throw new EOFException();
+                } else if (hasClaim != 0) {
+                    throw new IOException("Claim Existence Qualifier not found in Swap File " + location + "; found value: " + hasClaim);
+                }
+
+                final int numAttributes = readVarInt(in);
+                final Map<String, String> attributes = new HashMap<>(numAttributes * 2);
+                for (int j = 0; j < numAttributes; j++) {
+                    final String key = readDictionaryString(in, dictionary);
+                    final String value = readVarString(in);
+                    attributes.put(key, value);
+                }
+                ffBuilder.addAttributes(attributes);
+
+                final FlowFileRecord record = ffBuilder.build();
+                if (resourceClaim != null) {
+                    resourceClaims.add(resourceClaim);
+                }
+
+                flowFiles.add(record);
+            } catch (final EOFException eof) {
+                final SwapSummary swapSummary = new StandardSwapSummary(queueSize, maxId, resourceClaims);
+                final SwapContents partialContents = new StandardSwapContents(swapSummary, flowFiles);
+                throw new IncompleteSwapFileException(location, partialContents);
+            }
+        }
+
+        final SwapSummary swapSummary = new StandardSwapSummary(queueSize, maxId, resourceClaims);
+        return new StandardSwapContents(swapSummary, flowFiles);
+    }
+
     private static String readString(final InputStream in) throws IOException {
         final Integer numBytes = readFieldLength(in);
         if (numBytes == null) {
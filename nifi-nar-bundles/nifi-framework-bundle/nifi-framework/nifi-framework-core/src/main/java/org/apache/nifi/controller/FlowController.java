@@ -121,11 +121,14 @@ import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
 import org.apache.nifi.controller.repository.io.LimitedInputStream;
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration;
 import org.apache.nifi.controller.scheduling.EventDrivenSchedulingAgent;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.QuartzSchedulingAgent;
+import org.apache.nifi.controller.scheduling.SchedulingAgent;
 import org.apache.nifi.controller.scheduling.StandardProcessScheduler;
 import org.apache.nifi.controller.scheduling.TimerDrivenSchedulingAgent;
+import org.apache.nifi.controller.scheduling.WorkStealingSchedulingAgent;
 import org.apache.nifi.controller.service.ControllerServiceNode;
 import org.apache.nifi.controller.service.ControllerServiceProvider;
 import org.apache.nifi.controller.service.StandardConfigurationContext;
@@ -307,6 +310,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
 
 
     private final ScheduledExecutorService clusterTaskExecutor = new FlowEngine(3, "Clustering Tasks");
+    // shared by all connections, so that the number of threads reading Swap Files does not grow with the number of connections
+    private final ScheduledExecutorService swapInExecutor = new FlowEngine(4, "Swap In FlowFiles", true);
     private final ResourceClaimManager resourceClaimManager = new StandardResourceClaimManager();
 
     // guarded by rwLock
@@ -443,7 +448,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             eventDrivenEngineRef.get(), this, stateManagerProvider, eventDrivenWorkerQueue, contextFactory, maxEventDrivenThreads.get(), encryptor));
 
         final QuartzSchedulingAgent quartzSchedulingAgent = new QuartzSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
-        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
+        final SchedulingAgent timerDrivenAgent;
+        if (properties.isTimerDrivenWorkStealingEnabled()) {
+            timerDrivenAgent = new WorkStealingSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor, maxTimerDrivenThreads.get());
+        } else {
+            timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
+        }
         processScheduler.setSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.PRIMARY_NODE_ONLY, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.CRON_DRIVEN, quartzSchedulingAgent);
@@ -834,6 +844,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             .source(requireNonNull(source))
             .destination(destination)
             .swapManager(swapManager)
+            .swapInExecutor(swapInExecutor)
             .eventReporter(eventReporter)
             .resourceClaimManager(resourceClaimManager)
             .flowFileRepository(flowFileRepository)
@@ -1186,14 +1197,17 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             if (kill) {
                 this.timerDrivenEngineRef.get().shutdownNow();
                 this.eventDrivenEngineRef.get().shutdownNow();
+                processScheduler.getSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN).shutdown();
                 LOG.info("Initiated immediate shutdown of flow controller...");
             } else {
                 this.timerDrivenEngineRef.get().shutdown();
                 this.eventDrivenEngineRef.get().shutdown();
+                processScheduler.getSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN).shutdown();
                 LOG.info("Initiated graceful shutdown of flow controller...waiting up to " + gracefulShutdownSeconds + " seconds");
             }
 
             clusterTaskExecutor.shutdown();
+            swapInExecutor.shutdown();
 
             if (zooKeeperStateServer != null) {
                 zooKeeperStateServer.shutdown();
@@ -1355,6 +1369,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         writeLock.lock();
         try {
             setMaxThreadCount(maxThreadCount, this.timerDrivenEngineRef.get(), this.maxTimerDrivenThreads);
+            processScheduler.setMaxThreadCount(SchedulingStrategy.TIMER_DRIVEN, maxThreadCount);
         } finally {
             writeLock.unlock();
         }
@@ -2584,6 +2599,14 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
 
         status.setActiveThreadCount(processScheduler.getActiveThreadCount(procNode));
 
+        final AdaptiveRunDuration adaptiveRunDuration = processScheduler.getAdaptiveRunDuration(procNode);
+        if (adaptiveRunDuration.isApplicable(procNode)) {
+            status.setRunDuration(adaptiveRunDuration.getRunDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } else {
+            status.setRunDuration(procNode.getRunDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+        status.setCommitsPerSecond(adaptiveRunDuration.getCommitsPerSecond());
+
         return status;
     }
 
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+
+/**
+ * A FlowFileQueue that can be locked by a Connection so that a caller is able to
+ * interact with several queues atomically.
+ */
+public interface LockableFlowFileQueue extends FlowFileQueue {
+
+    /**
+     * Lock the queue so that other threads are unable to interact with the
+     * queue
+     */
+    void lock();
+
+    /**
+     * Unlock the queue
+     */
+    void unlock();
+}
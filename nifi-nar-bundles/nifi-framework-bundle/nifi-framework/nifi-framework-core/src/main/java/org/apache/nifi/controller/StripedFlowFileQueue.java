@@ -0,0 +1,791 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.processor.FlowFileFilter.FlowFileFilterResult;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A FlowFileQueue whose active queue is split into several independently locked stripes, so that
+ * the tasks putting FlowFiles onto a connection and the tasks pulling them off do not all serialize
+ * on a single lock, as they do with the {@link StandardFlowFileQueue}.
+ * </p>
+ *
+ * <p>
+ * When no prioritizers are configured, each thread puts to and polls from its own 'home' stripe and moves
+ * on to the other stripes only when its home stripe is contended (for a put) or empty (for a poll). As a result,
+ * FlowFiles are ordered within a stripe but not across stripes. When prioritizers are configured, all FlowFiles
+ * are held in the first stripe so that the configured ordering is honored, in which case this queue behaves
+ * much like the standard queue.
+ * </p>
+ *
+ * <p>
+ * FlowFiles that are added once the swap threshold has been reached are held in a swap queue that is guarded by
+ * its own lock, so that writing Swap Files does not block the threads that are polling the active stripes.
+ * </p>
+ *
+ * <p>
+ * Lock ordering: the swap lock is always obtained before any stripe lock, and stripe locks are always obtained in
+ * ascending index order. Polling and putting FlowFiles obtain only a single stripe lock at a time.
+ * </p>
+ */
+public final class StripedFlowFileQueue extends AbstractFlowFileQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedFlowFileQueue.class);
+
+    private final Stripe[] stripes;
+    private volatile boolean prioritized = false; // written only while holding all stripe locks
+
+    // guards the swap queue and the swap locations
+    private final ReentrantLock swapLock = new ReentrantLock();
+
+    // written only while holding the swap lock; includes both the FlowFiles on the swap queue and those in Swap Files.
+    private volatile int swappedCount = 0;
+    private volatile long swappedBytes = 0L;
+    private volatile int swapFileCount = 0;
+
+    private final LongAdder unacknowledgedCount = new LongAdder();
+    private final LongAdder unacknowledgedBytes = new LongAdder();
+
+    public StripedFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final Executor swapInExecutor, final EventReporter eventReporter,
+        final int swapThreshold, final int stripeCount) {
+        super(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, swapInExecutor, eventReporter, swapThreshold);
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe Count must be at least 1");
+        }
+
+        final Prioritizer prioritizer = new Prioritizer(new ArrayList<FlowFilePrioritizer>());
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(new PriorityQueue<>(20, prioritizer));
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public void setPriorities(final List<FlowFilePrioritizer> newPriorities) {
+        final List<FlowFilePrioritizer> prioritizerList = Collections.unmodifiableList(new ArrayList<>(newPriorities));
+        final Prioritizer prioritizer = new Prioritizer(prioritizerList);
+
+        lock();
+        try {
+            if (prioritizerList.isEmpty()) {
+                for (final Stripe stripe : stripes) {
+                    final PriorityQueue<FlowFileRecord> newQueue = new PriorityQueue<>(Math.max(20, stripe.queue.size()), prioritizer);
+                    newQueue.addAll(stripe.queue);
+                    stripe.queue = newQueue;
+                }
+            } else {
+                // Order is only guaranteed within a stripe, so in order to honor the prioritizers we must move everything into the first stripe.
+                int count = 0;
+                long bytes = 0L;
+                final PriorityQueue<FlowFileRecord> newQueue = new PriorityQueue<>(Math.max(20, getActiveCount()), prioritizer);
+                for (final Stripe stripe : stripes) {
+                    newQueue.addAll(stripe.queue);
+                    count += stripe.count;
+                    bytes += stripe.bytes;
+
+                    stripe.queue = new PriorityQueue<>(20, prioritizer);
+                    stripe.count = 0;
+                    stripe.bytes = 0L;
+                }
+
+                stripes[0].queue = newQueue;
+                stripes[0].count = count;
+                stripes[0].bytes = bytes;
+            }
+
+            priorities = prioritizerList;
+            prioritized = !prioritizerList.isEmpty();
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public QueueSize size() {
+        int count = swappedCount + unacknowledgedCount.intValue();
+        long bytes = swappedBytes + unacknowledgedBytes.sum();
+        for (final Stripe stripe : stripes) {
+            count += stripe.count;
+            bytes += stripe.bytes;
+        }
+
+        return new QueueSize(count, bytes);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getActiveCount() == 0 && swappedCount == 0 && unacknowledgedCount.sum() == 0L;
+    }
+
+    @Override
+    public boolean isActiveQueueEmpty() {
+        return getActiveCount() == 0 && swappedCount == 0;
+    }
+
+    @Override
+    public QueueSize getActiveQueueSize() {
+        int count = 0;
+        long bytes = 0L;
+        for (final Stripe stripe : stripes) {
+            count += stripe.count;
+            bytes += stripe.bytes;
+        }
+
+        return new QueueSize(count, bytes);
+    }
+
+    private int getActiveCount() {
+        int count = 0;
+        for (final Stripe stripe : stripes) {
+            count += stripe.count;
+        }
+        return count;
+    }
+
+    @Override
+    public QueueSize getUnacknowledgedQueueSize() {
+        return new QueueSize(unacknowledgedCount.intValue(), unacknowledgedBytes.sum());
+    }
+
+    @Override
+    protected QueueSize getSwapQueueSize() {
+        return new QueueSize(swappedCount, swappedBytes);
+    }
+
+    @Override
+    protected void incrementUnacknowledgedQueueSize(final int count, final long bytes) {
+        if (count != 0) {
+            unacknowledgedCount.add(count);
+            unacknowledgedBytes.add(bytes);
+        }
+    }
+
+    @Override
+    public void put(final FlowFileRecord file) {
+        if (swapMode || getActiveCount() >= swapThreshold) {
+            swapLock.lock();
+            try {
+                swapQueue.add(file);
+                incrementSwapQueueSize(1, file.getSize(), 0);
+                swapMode = true;
+                writeSwapFilesIfNecessary();
+            } finally {
+                swapLock.unlock();
+            }
+        } else {
+            final Stripe stripe = lockStripeForPut();
+            try {
+                stripe.queue.add(file);
+                stripe.increment(1, file.getSize());
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        scheduler.registerEvent(connection.getDestination());
+    }
+
+    @Override
+    public void putAll(final Collection<FlowFileRecord> files) {
+        final int numFiles = files.size();
+        long bytes = 0L;
+        for (final FlowFile flowFile : files) {
+            bytes += flowFile.getSize();
+        }
+
+        if (swapMode || getActiveCount() >= swapThreshold - numFiles) {
+            swapLock.lock();
+            try {
+                swapQueue.addAll(files);
+                incrementSwapQueueSize(numFiles, bytes, 0);
+                swapMode = true;
+                writeSwapFilesIfNecessary();
+            } finally {
+                swapLock.unlock();
+            }
+        } else {
+            final Stripe stripe = lockStripeForPut();
+            try {
+                stripe.queue.addAll(files);
+                stripe.increment(numFiles, bytes);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        scheduler.registerEvent(connection.getDestination());
+    }
+
+    private int getHomeStripeIndex() {
+        return (int) (Thread.currentThread().getId() % stripes.length);
+    }
+
+    /**
+     * @return the index of the stripe that a poll should start with. If prioritizers are configured, all
+     *         FlowFiles live in the first stripe, otherwise we start with the calling thread's home stripe
+     */
+    private int getPollStartIndex() {
+        return prioritized ? 0 : getHomeStripeIndex();
+    }
+
+    /**
+     * Obtains the lock for the stripe that a FlowFile should be added to. If no prioritizers are configured,
+     * this is the first stripe whose lock can be obtained without waiting, starting with the calling thread's
+     * home stripe. If all stripes are contended, waits for the home stripe. If prioritizers are configured,
+     * this is always the first stripe.
+     *
+     * @return the stripe whose lock is now held by the calling thread
+     */
+    private Stripe lockStripeForPut() {
+        while (true) {
+            final Stripe stripe;
+            if (prioritized) {
+                stripe = stripes[0];
+                stripe.lock.lock();
+            } else {
+                stripe = tryLockStripe(getHomeStripeIndex());
+            }
+
+            // Prioritizers may have been set while we were waiting for the lock, in which case
+            // all FlowFiles must go to the first stripe.
+            if (!prioritized || stripe == stripes[0]) {
+                return stripe;
+            }
+
+            stripe.lock.unlock();
+        }
+    }
+
+    private Stripe tryLockStripe(final int startIndex) {
+        for (int i = 0; i < stripes.length; i++) {
+            final Stripe stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.lock.tryLock()) {
+                return stripe;
+            }
+        }
+
+        final Stripe homeStripe = stripes[startIndex];
+        homeStripe.lock.lock();
+        return homeStripe;
+    }
+
+    @Override
+    public FlowFileRecord poll(final Set<FlowFileRecord> expiredRecords) {
+        final long expirationMillis = getExpirationMillis();
+        migrateSwapToActive();
+
+        FlowFileRecord flowFile = null;
+        final int originalExpiredCount = expiredRecords.size();
+        final int startIndex = getPollStartIndex();
+        for (int i = 0; i < stripes.length && flowFile == null && expiredRecords.size() == originalExpiredCount; i++) {
+            final Stripe stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.count == 0) {
+                continue;
+            }
+
+            stripe.lock.lock();
+            try {
+                flowFile = doPoll(stripe, expiredRecords, expirationMillis);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        if (flowFile != null) {
+            incrementUnacknowledgedQueueSize(1, flowFile.getSize());
+        }
+
+        return flowFile;
+    }
+
+    /**
+     * This method MUST be called with the stripe's lock held
+     */
+    private FlowFileRecord doPoll(final Stripe stripe, final Set<FlowFileRecord> expiredRecords, final long expirationMillis) {
+        FlowFileRecord flowFile;
+        boolean isExpired;
+
+        int expiredCount = 0;
+        long expiredBytes = 0L;
+        do {
+            flowFile = stripe.queue.poll();
+
+            isExpired = isLaterThan(getExpirationDate(flowFile, expirationMillis));
+            if (isExpired) {
+                expiredRecords.add(flowFile);
+                expiredCount++;
+                expiredBytes += flowFile.getSize();
+                flowFile = null;
+
+                if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    break;
+                }
+            } else if (flowFile != null && flowFile.isPenalized()) {
+                stripe.queue.add(flowFile);
+                flowFile = null;
+                break;
+            }
+        } while (isExpired);
+
+        if (flowFile != null) {
+            stripe.increment(-1, -flowFile.getSize());
+        }
+        if (expiredCount > 0) {
+            stripe.increment(-expiredCount, -expiredBytes);
+        }
+
+        return flowFile;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        final List<FlowFileRecord> records = new ArrayList<>(Math.min(1024, maxResults));
+        final long expirationMillis = getExpirationMillis();
+        migrateSwapToActive();
+
+        long bytesPolled = 0L;
+        final int startIndex = getPollStartIndex();
+        for (int i = 0; i < stripes.length; i++) {
+            if (records.size() >= maxResults || expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                break;
+            }
+
+            final Stripe stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.count == 0) {
+                continue;
+            }
+
+            stripe.lock.lock();
+            try {
+                bytesPolled += drainStripe(stripe, records, maxResults, expiredRecords, expirationMillis);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        incrementUnacknowledgedQueueSize(records.size(), bytesPolled);
+        return records;
+    }
+
+    /**
+     * Drains FlowFiles from the given stripe into the destination and updates the stripe's size accordingly.
+     * This method MUST be called with the stripe's lock held.
+     *
+     * @return the number of bytes of content of the FlowFiles that were added to the destination
+     */
+    private long drainStripe(final Stripe stripe, final List<FlowFileRecord> destination, final int maxResults, final Set<FlowFileRecord> expiredRecords,
+        final long expirationMillis) {
+        int drainedCount = 0;
+        long drainedBytes = 0L;
+        long destinationBytes = 0L;
+
+        FlowFileRecord pulled;
+        while (destination.size() < maxResults && (pulled = stripe.queue.poll()) != null) {
+            if (isLaterThan(getExpirationDate(pulled, expirationMillis))) {
+                expiredRecords.add(pulled);
+                drainedCount++;
+                drainedBytes += pulled.getSize();
+                if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    break;
+                }
+            } else {
+                if (pulled.isPenalized()) {
+                    stripe.queue.add(pulled);
+                    break;
+                }
+
+                destination.add(pulled);
+                drainedCount++;
+                drainedBytes += pulled.getSize();
+                destinationBytes += pulled.getSize();
+            }
+        }
+
+        stripe.increment(-drainedCount, -drainedBytes);
+        return destinationBytes;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final FlowFileFilter filter, final Set<FlowFileRecord> expiredRecords) {
+        final long expirationMillis = getExpirationMillis();
+        migrateSwapToActive();
+
+        final List<FlowFileRecord> selectedFlowFiles = new ArrayList<>();
+        long bytesSelected = 0L;
+        boolean continueFiltering = true;
+
+        final int startIndex = getPollStartIndex();
+        for (int i = 0; i < stripes.length && continueFiltering; i++) {
+            final Stripe stripe = stripes[(startIndex + i) % stripes.length];
+
+            stripe.lock.lock();
+            try {
+                final List<FlowFileRecord> unselected = new ArrayList<>();
+                int flowFilesPulled = 0;
+                long bytesPulled = 0L;
+
+                while (true) {
+                    final FlowFileRecord flowFile = stripe.queue.poll();
+                    if (flowFile == null) {
+                        break;
+                    }
+
+                    final boolean isExpired = isLaterThan(getExpirationDate(flowFile, expirationMillis));
+                    if (isExpired) {
+                        expiredRecords.add(flowFile);
+                        bytesPulled += flowFile.getSize();
+                        flowFilesPulled++;
+
+                        if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                            continueFiltering = false;
+                            break;
+                        } else {
+                            continue;
+                        }
+                    } else if (flowFile.isPenalized()) {
+                        stripe.queue.add(flowFile);
+                        break; // the rest of this stripe is penalized; move on to the next stripe.
+                    }
+
+                    final FlowFileFilterResult result = filter.filter(flowFile);
+                    if (result.isAccept()) {
+                        bytesPulled += flowFile.getSize();
+                        flowFilesPulled++;
+
+                        bytesSelected += flowFile.getSize();
+                        selectedFlowFiles.add(flowFile);
+                    } else {
+                        unselected.add(flowFile);
+                    }
+
+                    if (!result.isContinue()) {
+                        continueFiltering = false;
+                        break;
+                    }
+                }
+
+                stripe.queue.addAll(unselected);
+                stripe.increment(-flowFilesPulled, -bytesPulled);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        incrementUnacknowledgedQueueSize(selectedFlowFiles.size(), bytesSelected);
+        return selectedFlowFiles;
+    }
+
+    /**
+     * If there are FlowFiles waiting on the swap queue or in Swap Files, move them to the active
+     * stripes until we meet our threshold. Swap Files are always swapped in before the swap queue
+     * is migrated, so that the FlowFiles that were swapped out first are also processed first.
+     *
+     * This method must NOT be called while holding a stripe lock.
+     */
+    private void migrateSwapToActive() {
+        // this is the most common condition (nothing is swapped out), so do the check first and avoid the expense
+        // of other checks for 99.999% of the cases.
+        if (!swapMode || getActiveCount() > swapThreshold - SWAP_RECORD_POLL_SIZE) {
+            return;
+        }
+
+        // If another thread is already migrating FlowFiles or writing a Swap File, there is no need to wait for it.
+        if (!swapLock.tryLock()) {
+            return;
+        }
+
+        try {
+            if (getActiveCount() > swapThreshold - SWAP_RECORD_POLL_SIZE) {
+                return;
+            }
+
+            if (!swapLocations.isEmpty()) {
+                swapInFirstSwapFile();
+                return;
+            }
+
+            if (swapQueue.isEmpty()) {
+                swapMode = false;
+                return;
+            }
+
+            final int numToMigrate = Math.min(swapQueue.size(), Math.max(0, swapThreshold - getActiveCount()));
+            if (numToMigrate == 0) {
+                return;
+            }
+
+            final List<FlowFileRecord> toMigrateView = swapQueue.subList(0, numToMigrate);
+            final List<FlowFileRecord> toMigrate = new ArrayList<>(toMigrateView);
+            toMigrateView.clear();
+
+            long bytesMigrated = 0L;
+            for (final FlowFileRecord flowFile : toMigrate) {
+                bytesMigrated += flowFile.getSize();
+            }
+
+            incrementSwapQueueSize(-numToMigrate, -bytesMigrated, 0);
+            addToActiveQueue(toMigrate);
+
+            if (swappedCount == 0) {
+                swapMode = false;
+            }
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the given FlowFiles to the active stripes. If prioritizers are configured, all FlowFiles are added to the
+     * first stripe; otherwise, the FlowFiles are spread evenly across all stripes.
+     *
+     * This method MUST be called with the swap lock held
+     */
+    @Override
+    protected void addToActiveQueue(final List<FlowFileRecord> flowFiles) {
+        if (flowFiles.isEmpty()) {
+            return;
+        }
+
+        final int stripesToUse = prioritized ? 1 : stripes.length;
+        final int flowFilesPerStripe = (flowFiles.size() + stripesToUse - 1) / stripesToUse;
+
+        for (int i = 0; i < stripesToUse; i++) {
+            final int fromIndex = i * flowFilesPerStripe;
+            if (fromIndex >= flowFiles.size()) {
+                break;
+            }
+
+            final List<FlowFileRecord> stripeFlowFiles = flowFiles.subList(fromIndex, Math.min(flowFiles.size(), fromIndex + flowFilesPerStripe));
+            long bytes = 0L;
+            for (final FlowFileRecord flowFile : stripeFlowFiles) {
+                bytes += flowFile.getSize();
+            }
+
+            final Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                stripe.queue.addAll(stripeFlowFiles);
+                stripe.increment(stripeFlowFiles.size(), bytes);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * This method MUST be called with the swap lock held
+     */
+    private void writeSwapFilesIfNecessary() {
+        if (swapQueue.size() < SWAP_RECORD_POLL_SIZE) {
+            return;
+        }
+
+        if (prioritized) {
+            writePrioritizedSwapFiles();
+            return;
+        }
+
+        // Without prioritizers, the FlowFiles at the front of the swap queue are the oldest, so they are the ones
+        // that are swapped out. They will also be swapped back in before the remainder of the swap queue is migrated.
+        final int numSwapFiles = swapQueue.size() / SWAP_RECORD_POLL_SIZE;
+        int flowFilesSwappedOut = 0;
+        int swapFilesWritten = 0;
+        for (int i = 0; i < numSwapFiles; i++) {
+            final List<FlowFileRecord> toSwap = new ArrayList<>(swapQueue.subList(flowFilesSwappedOut, flowFilesSwappedOut + SWAP_RECORD_POLL_SIZE));
+
+            try {
+                final String swapLocation = swapManager.swapOut(toSwap, this);
+                swapLocations.add(swapLocation);
+            } catch (final IOException ioe) {
+                reportSwapOutFailure(ioe);
+                break;
+            }
+
+            flowFilesSwappedOut += toSwap.size();
+            swapFilesWritten++;
+        }
+
+        // The swapped count already accounts for the FlowFiles on the swap queue, so only the number of Swap Files changes.
+        swapQueue.subList(0, flowFilesSwappedOut).clear();
+        incrementSwapQueueSize(0, 0L, swapFilesWritten);
+    }
+
+    /**
+     * Swaps out the lowest-priority FlowFiles from both the first stripe and the swap queue, as the
+     * standard queue does. This method MUST be called with the swap lock held and only while prioritizers are configured.
+     */
+    private void writePrioritizedSwapFiles() {
+        final Stripe stripe = stripes[0];
+        stripe.lock.lock();
+        try {
+            final long activeBytes = swapOutLowestPriority(stripe.queue);
+            stripe.count = stripe.queue.size();
+            stripe.bytes = activeBytes;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * This method MUST be called with the swap lock held
+     */
+    @Override
+    protected void incrementSwapQueueSize(final int count, final long bytes, final int fileCount) {
+        swappedCount += count;
+        swappedBytes += bytes;
+        swapFileCount += fileCount;
+
+        if (swappedCount < 0 || swappedBytes < 0L) {
+            logger.error("Updated Size of Queue swap for " + this + " to " + swappedCount + " FlowFiles, " + swappedBytes + " bytes",
+                new RuntimeException("Cannot create negative queue size"));
+        }
+    }
+
+    @Override
+    protected List<FlowFileRecord> copyActiveQueue() {
+        // Take a shallow copy of each stripe, one stripe at a time, so that we never hold more than a single
+        // stripe lock and hold each one only as long as is necessary to copy it.
+        final List<FlowFileRecord> allFlowFiles = new ArrayList<>();
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                allFlowFiles.addAll(stripe.queue);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return allFlowFiles;
+    }
+
+    @Override
+    public FlowFileRecord getFlowFile(final String flowFileUuid) throws IOException {
+        if (flowFileUuid == null) {
+            return null;
+        }
+
+        // read through all of the FlowFiles in each stripe, looking for the FlowFile with the given ID
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (final FlowFileRecord flowFile : stripe.queue) {
+                    if (flowFileUuid.equals(flowFile.getAttribute(CoreAttributes.UUID.key()))) {
+                        return flowFile;
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected boolean dropActiveQueue(final DropFlowFileRequest dropRequest, final String requestor) throws IOException {
+        for (final Stripe stripe : stripes) {
+            if (isCanceled(dropRequest)) {
+                return false;
+            }
+
+            final QueueSize droppedSize = drop(new ArrayList<>(stripe.queue), requestor);
+            logger.debug("For DropFlowFileRequest {}, Dropped {} from active queue", dropRequest.getRequestIdentifier(), droppedSize);
+
+            stripe.queue.clear();
+            stripe.increment(-droppedSize.getObjectCount(), -droppedSize.getByteCount());
+            dropRequest.setCurrentSize(size());
+            dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+        }
+
+        return true;
+    }
+
+    /**
+     * Lock the queue so that other threads are unable to interact with the
+     * queue. This obtains the swap lock and then the lock of every stripe.
+     */
+    @Override
+    public void lock() {
+        swapLock.lock();
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    /**
+     * Unlock the queue
+     */
+    @Override
+    public void unlock() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+        swapLock.unlock();
+    }
+
+
+    /**
+     * A portion of the active queue, along with the lock that guards it. The count and byte
+     * count are written only while the lock is held but may be read at any time.
+     */
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private PriorityQueue<FlowFileRecord> queue;
+        private volatile int count = 0;
+        private volatile long bytes = 0L;
+
+        private Stripe(final PriorityQueue<FlowFileRecord> queue) {
+            this.queue = queue;
+        }
+
+        private void increment(final int countDelta, final long bytesDelta) {
+            count += countDelta;
+            bytes += bytesDelta;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.SwapContents;
+
+/**
+ * <p>
+ * Swaps in the contents of a Swap File in the background on behalf of a FlowFile Queue, so that the Swap File
+ * can be read and the FlowFile Repository updated while the queue continues to hand out the FlowFiles that are
+ * already active. The queue then needs only to add the FlowFiles that were swapped in to its active queue.
+ * </p>
+ *
+ * <p>
+ * Swap Files are swapped in on an Executor that is shared by all queues, so that the number of threads reading
+ * Swap Files is bounded regardless of the number of connections.
+ * </p>
+ *
+ * <p>
+ * At most one Swap File is swapped in at a time. This class is not thread-safe: it must only be accessed while
+ * holding the lock that guards the queue's Swap Locations.
+ * </p>
+ */
+class SwapInPrefetcher {
+
+    private final FlowFileSwapManager swapManager;
+    private final FlowFileQueue queue;
+    private final Executor executor;
+
+    private String swapLocation = null;
+    private FutureTask<SwapContents> swapInTask = null;
+
+    SwapInPrefetcher(final FlowFileSwapManager swapManager, final FlowFileQueue queue, final Executor executor) {
+        this.swapManager = swapManager;
+        this.queue = queue;
+        this.executor = executor;
+    }
+
+    /**
+     * Begins swapping in the Swap File at the given location in the background, unless a Swap File is already
+     * being swapped in or the Executor does not accept the task. In the latter case, the Swap File is swapped in
+     * by the thread that calls {@link #swapIn(String)}.
+     *
+     * @param location the location of the Swap File to swap in
+     */
+    void prefetch(final String location) {
+        if (swapInTask != null) {
+            return;
+        }
+
+        final FutureTask<SwapContents> task = new FutureTask<>(new Callable<SwapContents>() {
+            @Override
+            public SwapContents call() throws Exception {
+                return swapManager.swapIn(location, queue);
+            }
+        });
+
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException ree) {
+            return;
+        }
+
+        swapLocation = location;
+        swapInTask = task;
+    }
+
+    /**
+     * @param location the location of a Swap File
+     * @return <code>true</code> if the Swap File at the given location is being, or has been, swapped in in the background
+     */
+    boolean isPrefetched(final String location) {
+        return location.equals(swapLocation);
+    }
+
+    /**
+     * @return <code>true</code> if a Swap File was swapped in in the background and its contents can be obtained without waiting
+     */
+    boolean isComplete() {
+        return swapInTask != null && swapInTask.isDone();
+    }
+
+    /**
+     * Returns the contents of the Swap File at the given location. If the Swap File is being swapped in in the background,
+     * waits for that to complete; otherwise, the Swap File is swapped in by the calling thread.
+     *
+     * @param location the location of the Swap File to swap in
+     * @return the contents of the Swap File
+     * @throws IOException if unable to swap in the Swap File
+     */
+    SwapContents swapIn(final String location) throws IOException {
+        if (!isPrefetched(location)) {
+            return swapManager.swapIn(location, queue);
+        }
+
+        final FutureTask<SwapContents> task = swapInTask;
+        swapLocation = null;
+        swapInTask = null;
+
+        // The FlowFile Repository may already have been updated to indicate that the FlowFiles were swapped in,
+        // so we must not give up on the results, even if interrupted.
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                } catch (final ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IOException("Failed to swap in FlowFiles from Swap File " + location, cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.nifi.controller.repository.ResourceClaimChannelCache.CachedChannel;
+
+/**
+ * An InputStream that reads a region of a shared FileChannel using positional reads. Skipping
+ * simply advances the position, so no data is read in order to reach the start of a Content Claim.
+ * Closing the stream releases the channel back to the {@link ResourceClaimChannelCache}.
+ */
+class CachedChannelInputStream extends InputStream {
+
+    private final CachedChannel channel;
+    private final long endPosition;
+    private long position;
+    private long markPosition;
+    private byte[] singleByte;
+    private boolean closed = false;
+
+    /**
+     * @param channel the channel to read from
+     * @param startPosition the position in the channel of the first byte to read
+     * @param length the number of bytes that may be read, or -1 to read until the end of the channel
+     */
+    CachedChannelInputStream(final CachedChannel channel, final long startPosition, final long length) {
+        this.channel = channel;
+        this.position = startPosition;
+        this.markPosition = startPosition;
+        this.endPosition = length < 0 ? -1L : startPosition + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (singleByte == null) {
+            singleByte = new byte[1];
+        }
+
+        final int bytesRead = read(singleByte, 0, 1);
+        return bytesRead < 1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        final int maxToRead = endPosition < 0 ? len : (int) Math.min(len, endPosition - position);
+        if (maxToRead <= 0) {
+            return -1;
+        }
+
+        final int bytesRead = channel.read(ByteBuffer.wrap(b, off, maxToRead), position);
+        if (bytesRead > 0) {
+            position += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (n <= 0) {
+            return 0L;
+        }
+
+        final long end = endPosition < 0 ? channel.size() : endPosition;
+        final long skipped = Math.max(0L, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            return 0;
+        }
+
+        final long end = endPosition < 0 ? channel.size() : endPosition;
+        return (int) Math.max(0L, Math.min(Integer.MAX_VALUE, end - position));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(final int readlimit) {
+        markPosition = position;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        position = markPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedChannelInputStream[" + channel + ", position=" + position + "]";
+    }
+}
@@ -17,12 +17,13 @@
 package org.apache.nifi.controller.repository;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -58,14 +59,15 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.nifi.controller.repository.ResourceClaimChannelCache.CachedChannel;
 import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
 import org.apache.nifi.controller.repository.claim.StandardContentClaim;
-import org.apache.nifi.controller.repository.io.LimitedInputStream;
+import org.apache.nifi.controller.repository.io.ByteBufferInputStream;
 import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.stream.io.ByteCountingOutputStream;
 import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.stream.io.SynchronizedByteCountingOutputStream;
@@ -105,14 +107,19 @@ public class FileSystemRepository implements ContentRepository {
     // files would mean that we are writing gigabytes per second - quite a bit faster than any disks can handle now.
     private final long maxAppendClaimLength = 1024L * 1024L;
 
-    // Queue for claims that are kept open for writing. Size of 100 is pretty arbitrary. Ideally, this will be at
+    // Queues for claims that are kept open for writing. A total size of 100 is pretty arbitrary. Ideally, this will be at
     // least as large as the number of threads that will be updating the repository simultaneously but we don't want
     // to get too large because it will hold open up to this many FileOutputStreams.
-    // The queue is used to determine which claim to write to and then the corresponding Map can be used to obtain
+    // The queues are used to determine which claim to write to and then the corresponding Map can be used to obtain
     // the OutputStream that we can use for writing to the claim.
-    private final BlockingQueue<ClaimLengthPair> writableClaimQueue = new LinkedBlockingQueue<>(100);
-    private final ConcurrentMap<ResourceClaim, ByteCountingOutputStream> writableClaimStreams = new ConcurrentHashMap<>(100);
-    private final Set<ResourceClaim> activeResourceClaims = Collections.synchronizedSet(new HashSet<ResourceClaim>());
+    // Each container has its own queues, and each container's queues are split into stripes, so that threads that are
+    // creating claims concurrently rarely synchronize on the same queue. A Resource Claim is always placed on the same
+    // queue (see #getWritableClaimQueue) so that remove() and archive() know which queue must be checked.
+    private static final int MAX_WRITABLE_CLAIMS = 100;
+    private final Map<String, List<BlockingQueue<ClaimLengthPair>>> writableClaimQueues = new HashMap<>();
+    private final int writableClaimQueueStripes;
+    private final ConcurrentMap<ResourceClaim, ByteCountingOutputStream> writableClaimStreams = new ConcurrentHashMap<>(MAX_WRITABLE_CLAIMS);
+    private final Set<ResourceClaim> activeResourceClaims = Collections.newSetFromMap(new ConcurrentHashMap<ResourceClaim, Boolean>());
 
     private final boolean archiveData;
     private final long maxArchiveMillis;
@@ -120,6 +127,11 @@ public class FileSystemRepository implements ContentRepository {
     private final boolean alwaysSync;
     private final ScheduledExecutorService containerCleanupExecutor;
 
+    // FileChannels that are kept open so that Content Claims sharing a Resource Claim can be read without re-opening the file
+    private final ResourceClaimChannelCache channelCache;
+    // Content Claims at least this large are read by memory-mapping the file. A value <= 0 disables memory mapping.
+    private final long mmapThreshold;
+
     private ResourceClaimManager resourceClaimManager; // effectively final
 
     // Map of contianer to archived files that should be deleted next.
@@ -140,6 +152,17 @@ public class FileSystemRepository implements ContentRepository {
         this.containerNames = new ArrayList<>(containers.keySet());
         index = new AtomicLong(0L);
 
+        this.writableClaimQueueStripes = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        final int queueCount = Math.max(1, containerNames.size() * writableClaimQueueStripes);
+        final int queueCapacity = Math.max(1, MAX_WRITABLE_CLAIMS / queueCount);
+        for (final String containerName : containerNames) {
+            final List<BlockingQueue<ClaimLengthPair>> stripes = new ArrayList<>(writableClaimQueueStripes);
+            for (int i = 0; i < writableClaimQueueStripes; i++) {
+                stripes.add(new LinkedBlockingQueue<ClaimLengthPair>(queueCapacity));
+            }
+            writableClaimQueues.put(containerName, stripes);
+        }
+
         for (final String containerName : containerNames) {
             reclaimable.put(containerName, new LinkedBlockingQueue<ResourceClaim>(10000));
             archivedFiles.put(containerName, new LinkedBlockingQueue<ArchiveInfo>(100000));
@@ -209,6 +232,19 @@ public class FileSystemRepository implements ContentRepository {
 
         this.alwaysSync = Boolean.parseBoolean(properties.getProperty("nifi.content.repository.always.sync"));
         LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {}", alwaysSync);
+
+        this.channelCache = new ResourceClaimChannelCache(properties.getContentRepositoryReadChannelCacheSize());
+        final String mmapThresholdValue = properties.getProperty(NiFiProperties.CONTENT_REPOSITORY_READ_MMAP_THRESHOLD);
+        if (StringUtils.isBlank(mmapThresholdValue)) {
+            this.mmapThreshold = 0L;
+        } else {
+            try {
+                this.mmapThreshold = DataUnit.parseDataSize(mmapThresholdValue.trim(), DataUnit.B).longValue();
+            } catch (final IllegalArgumentException iae) {
+                throw new RuntimeException("Invalid value specified for the '" + NiFiProperties.CONTENT_REPOSITORY_READ_MMAP_THRESHOLD + "' property. Value must be a data size, such as 10 MB");
+            }
+        }
+
         initializeRepository();
 
         containerCleanupExecutor = new FlowEngine(containers.size(), "Cleanup FileSystemRepository Container", true);
@@ -241,6 +277,7 @@ public class FileSystemRepository implements ContentRepository {
     public void shutdown() {
         executor.shutdown();
         containerCleanupExecutor.shutdown();
+        channelCache.close();
 
         // Close any of the writable claim streams that are currently open.
         // Other threads may be writing to these streams, and that's okay.
@@ -496,61 +533,89 @@ public class FileSystemRepository implements ContentRepository {
 
     @Override
     public ContentClaim create(final boolean lossTolerant) throws IOException {
-        ResourceClaim resourceClaim;
-
-        // We need to synchronize on this queue because the act of pulling something off
-        // the queue and incrementing the associated claimant count MUST be done atomically.
-        // This way, if the claimant count is decremented to 0, we can ensure that the
-        // claim is not then pulled from the queue and used as another thread is destroying/archiving
-        // the claim. The logic in the remove() method dictates that the underlying file can be
-        // deleted (or archived) only if the claimant count becomes <= 0 AND there is no other claim on
-        // the queue that references that file. As a result, we need to ensure that those two conditions
-        // can be evaluated atomically. In order for that to be the case, we need to also treat the
-        // removal of a claim from the queue and the incrementing of its claimant count as an atomic
-        // action to ensure that the comparison of those two conditions is atomic also. As a result,
-        // we will synchronize on the queue while performing those actions.
-        final long resourceOffset;
-        synchronized (writableClaimQueue) {
-            final ClaimLengthPair pair = writableClaimQueue.poll();
-            if (pair == null) {
-                final long currentIndex = index.incrementAndGet();
-
-                String containerName = null;
-                boolean waitRequired = true;
-                ContainerState containerState = null;
-                for (long containerIndex = currentIndex; containerIndex < currentIndex + containers.size(); containerIndex++) {
-                    final long modulatedContainerIndex = containerIndex % containers.size();
-                    containerName = containerNames.get((int) modulatedContainerIndex);
-
-                    containerState = containerStateMap.get(containerName);
-                    if (!containerState.isWaitRequired()) {
-                        waitRequired = false;
-                        break;
-                    }
+        // Start with the next container in a round-robin fashion and with the stripe of that container's queues that
+        // belongs to the current thread, so that concurrent writers are spread across both disks and queues.
+        final long currentIndex = index.incrementAndGet();
+        final int homeStripe = (int) (Thread.currentThread().getId() % writableClaimQueueStripes);
+        final int containerCount = containerNames.size();
+
+        for (int containerOffset = 0; containerOffset < containerCount; containerOffset++) {
+            final String queueContainer = containerNames.get((int) ((currentIndex + containerOffset) % containerCount));
+            final List<BlockingQueue<ClaimLengthPair>> stripes = writableClaimQueues.get(queueContainer);
+
+            for (int stripeOffset = 0; stripeOffset < writableClaimQueueStripes; stripeOffset++) {
+                final BlockingQueue<ClaimLengthPair> writableClaimQueue = stripes.get((homeStripe + stripeOffset) % writableClaimQueueStripes);
+                if (writableClaimQueue.isEmpty()) {
+                    // avoid synchronizing on queues that have nothing to offer
+                    continue;
                 }
 
-                if (waitRequired) {
-                    containerState.waitForArchiveExpiration();
+                // We need to synchronize on this queue because the act of pulling something off
+                // the queue and incrementing the associated claimant count MUST be done atomically.
+                // This way, if the claimant count is decremented to 0, we can ensure that the
+                // claim is not then pulled from the queue and used as another thread is destroying/archiving
+                // the claim. The logic in the remove() method dictates that the underlying file can be
+                // deleted (or archived) only if the claimant count becomes <= 0 AND there is no other claim on
+                // the queue that references that file. As a result, we need to ensure that those two conditions
+                // can be evaluated atomically. In order for that to be the case, we need to also treat the
+                // removal of a claim from the queue and the incrementing of its claimant count as an atomic
+                // action to ensure that the comparison of those two conditions is atomic also. As a result,
+                // we will synchronize on the queue while performing those actions. A Resource Claim is only ever
+                // placed on one queue, so it is sufficient to synchronize on that queue alone.
+                synchronized (writableClaimQueue) {
+                    final ClaimLengthPair pair = writableClaimQueue.poll();
+                    if (pair != null) {
+                        final ResourceClaim resourceClaim = pair.getClaim();
+                        LOG.debug("Reusing Resource Claim {}", resourceClaim);
+                        resourceClaimManager.incrementClaimantCount(resourceClaim, true);
+                        return new StandardContentClaim(resourceClaim, pair.getLength());
+                    }
                 }
+            }
+        }
 
-                final long modulatedSectionIndex = currentIndex % SECTIONS_PER_CONTAINER;
-                final String section = String.valueOf(modulatedSectionIndex);
-                final String claimId = System.currentTimeMillis() + "-" + currentIndex;
+        String containerName = null;
+        boolean waitRequired = true;
+        ContainerState containerState = null;
+        for (long containerIndex = currentIndex; containerIndex < currentIndex + containers.size(); containerIndex++) {
+            final long modulatedContainerIndex = containerIndex % containers.size();
+            containerName = containerNames.get((int) modulatedContainerIndex);
 
-                resourceClaim = resourceClaimManager.newResourceClaim(containerName, section, claimId, lossTolerant);
-                resourceOffset = 0L;
-                LOG.debug("Creating new Resource Claim {}", resourceClaim);
-            } else {
-                resourceClaim = pair.getClaim();
-                resourceOffset = pair.getLength();
-                LOG.debug("Reusing Resource Claim {}", resourceClaim);
+            containerState = containerStateMap.get(containerName);
+            if (!containerState.isWaitRequired()) {
+                waitRequired = false;
+                break;
             }
+        }
+
+        if (waitRequired) {
+            containerState.waitForArchiveExpiration();
+        }
+
+        final long modulatedSectionIndex = currentIndex % SECTIONS_PER_CONTAINER;
+        final String section = String.valueOf(modulatedSectionIndex);
+        final String claimId = System.currentTimeMillis() + "-" + currentIndex;
+
+        // A newly created Resource Claim cannot be on any writable claim queue yet, so there is no need to
+        // synchronize while incrementing its claimant count.
+        final ResourceClaim resourceClaim = resourceClaimManager.newResourceClaim(containerName, section, claimId, lossTolerant);
+        LOG.debug("Creating new Resource Claim {}", resourceClaim);
+        resourceClaimManager.incrementClaimantCount(resourceClaim, true);
+
+        return new StandardContentClaim(resourceClaim, 0L);
+    }
 
-            resourceClaimManager.incrementClaimantCount(resourceClaim, true);
+    /**
+     * @param claim a resource claim
+     * @return the queue onto which the given Resource Claim is placed when it is available for appending
+     */
+    private BlockingQueue<ClaimLengthPair> getWritableClaimQueue(final ResourceClaim claim) {
+        final List<BlockingQueue<ClaimLengthPair>> stripes = writableClaimQueues.get(claim.getContainer());
+        if (stripes == null) {
+            return null;
         }
 
-        final StandardContentClaim scc = new StandardContentClaim(resourceClaim, resourceOffset);
-        return scc;
+        return stripes.get((claim.hashCode() & Integer.MAX_VALUE) % writableClaimQueueStripes);
     }
 
     @Override
@@ -600,6 +665,12 @@ public class FileSystemRepository implements ContentRepository {
         // must be atomic). The create() method also synchronizes on the queue whenever it
         // polls from the queue and increments a claimant count in order to ensure that these
         // two conditions can be checked atomically.
+        final BlockingQueue<ClaimLengthPair> writableClaimQueue = getWritableClaimQueue(claim);
+        if (writableClaimQueue == null) {
+            // the claim does not belong to any of our containers
+            return false;
+        }
+
         synchronized (writableClaimQueue) {
             final int claimantCount = resourceClaimManager.getClaimantCount(claim);
             if (claimantCount > 0) {
@@ -619,6 +690,9 @@ public class FileSystemRepository implements ContentRepository {
         } catch (final ContentNotFoundException cnfe) {
         }
 
+        // ensure that we are not holding the file open, so that the disk space is freed
+        channelCache.invalidate(claim);
+
         final File file = path.toFile();
         if (!file.delete() && file.exists()) {
             LOG.warn("Unable to delete {} at path {}", new Object[] {claim, path});
@@ -701,9 +775,8 @@ public class FileSystemRepository implements ContentRepository {
             return 0L;
         }
 
-        try (final InputStream in = read(claim);
-            final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
-            final long copied = StreamUtils.copy(in, fos);
+        try (final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
+            final long copied = transferTo(claim, 0L, Long.MAX_VALUE, fos);
             if (alwaysSync) {
                 fos.getFD().sync();
             }
@@ -730,12 +803,11 @@ public class FileSystemRepository implements ContentRepository {
 
         }
 
-        try (final InputStream in = read(claim);
-            final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
-            if (offset > 0) {
-                StreamUtils.skip(in, offset);
+        try (final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
+            final long copied = transferTo(claim, offset, length, fos);
+            if (copied < length) {
+                throw new EOFException("Attempted to copy " + length + " bytes but only " + copied + " bytes were available");
             }
-            StreamUtils.copy(in, fos, length);
             if (alwaysSync) {
                 fos.getFD().sync();
             }
@@ -743,6 +815,37 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    /**
+     * Copies the content of the given claim to the given file using {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * so that the operating system can copy the data without moving it through the JVM heap.
+     *
+     * @return the number of bytes copied, which is less than <code>length</code> only if the end of the claim was reached
+     */
+    private long transferTo(final ContentClaim claim, final long offset, final long length, final FileOutputStream destination) throws IOException {
+        final long startPosition = claim.getOffset() + offset;
+        try (final CachedChannel channel = acquireChannel(claim)) {
+            // see javadocs for claim.getLength() as to why we check for a negative length.
+            long endPosition = channel.size();
+            if (claim.getLength() >= 0) {
+                endPosition = Math.min(endPosition, claim.getOffset() + claim.getLength());
+            }
+            if (length != Long.MAX_VALUE) {
+                endPosition = Math.min(endPosition, startPosition + length);
+            }
+
+            long transferred = 0L;
+            while (startPosition + transferred < endPosition) {
+                final long count = channel.transferTo(startPosition + transferred, endPosition - startPosition - transferred, destination.getChannel());
+                if (count <= 0) {
+                    break;
+                }
+                transferred += count;
+            }
+
+            return transferred;
+        }
+    }
+
     @Override
     public long exportTo(final ContentClaim claim, final OutputStream destination) throws IOException {
         if (claim == null) {
@@ -798,23 +901,46 @@ public class FileSystemRepository implements ContentRepository {
         if (claim == null) {
             return new ByteArrayInputStream(new byte[0]);
         }
-        final Path path = getPath(claim, true);
-        final FileInputStream fis = new FileInputStream(path.toFile());
-        if (claim.getOffset() > 0L) {
+
+        final CachedChannel channel = acquireChannel(claim);
+
+        // see javadocs for claim.getLength() as to why we check for a negative length.
+        final long length = claim.getLength();
+        if (mmapThreshold > 0 && length >= mmapThreshold) {
             try {
-                StreamUtils.skip(fis, claim.getOffset());
-            } catch(IOException ioe) {
-                IOUtils.closeQuietly(fis);
+                // a read-only mapping cannot extend beyond the end of the file, so fall back to positional reads if
+                // the claim has not yet been fully written. The mapping remains valid after the channel is released.
+                if (claim.getOffset() + length <= channel.size()) {
+                    final MappedByteBuffer mapped = channel.map(claim.getOffset(), length);
+                    channel.close();
+                    return new ByteBufferInputStream(mapped);
+                }
+            } catch (final IOException ioe) {
+                channel.close();
                 throw ioe;
             }
+        }
+
+        return new CachedChannelInputStream(channel, claim.getOffset(), length);
+    }
 
+    /**
+     * Obtains a reference to an open FileChannel for the Resource Claim that backs the given Content Claim,
+     * opening the file if it is not already open. The caller must close the returned reference.
+     */
+    private CachedChannel acquireChannel(final ContentClaim claim) throws IOException {
+        final ResourceClaim resourceClaim = claim.getResourceClaim();
+        final CachedChannel cached = channelCache.acquire(resourceClaim);
+        if (cached != null) {
+            return cached;
         }
 
-        // see javadocs for claim.getLength() as to why we do this.
-        if (claim.getLength() >= 0) {
-            return new LimitedInputStream(fis, claim.getLength());
-        } else {
-            return fis;
+        final Path path = getPath(claim, true);
+        try {
+            return channelCache.open(resourceClaim, path);
+        } catch (final NoSuchFileException nsfe) {
+            // the claim was archived or destroyed after its path was resolved
+            throw new ContentNotFoundException(claim);
         }
     }
 
@@ -948,7 +1074,7 @@ public class FileSystemRepository implements ContentRepository {
                 }
 
                 // if we've not yet hit the threshold for appending to a resource claim, add the claim
-                // to the writableClaimQueue so that the Resource Claim can be used again when create()
+                // to its writable claim queue so that the Resource Claim can be used again when create()
                 // is called. In this case, we don't have to actually close the file stream. Instead, we
                 // can just add it onto the queue and continue to use it for the next content claim.
                 final long resourceClaimLength = scc.getOffset() + scc.getLength();
@@ -960,7 +1086,7 @@ public class FileSystemRepository implements ContentRepository {
                     // the queue because we need to ensure that the latter operation does not cause problems
                     // with the former.
                     final ClaimLengthPair pair = new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength);
-                    final boolean enqueued = writableClaimQueue.offer(pair);
+                    final boolean enqueued = getWritableClaimQueue(scc.getResourceClaim()).offer(pair);
 
                     if (enqueued) {
                         writableClaimStreams.put(scc.getResourceClaim(), bcos);
@@ -978,7 +1104,7 @@ public class FileSystemRepository implements ContentRepository {
                     // Instead, just remove it and move on.
 
                     // ensure that the claim is no longer on the queue
-                    writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
+                    getWritableClaimQueue(scc.getResourceClaim()).remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
                     bcos.close();
                     LOG.debug("Claim lenth >= max; Closing {}", this);
                     if (LOG.isTraceEnabled()) {
@@ -999,6 +1125,9 @@ public class FileSystemRepository implements ContentRepository {
 
     @Override
     public void purge() {
+        // the cached channels would otherwise keep the deleted files open
+        channelCache.invalidateAll();
+
         // delete all content from repositories
         for (final Path path : containers.values()) {
             FileUtils.deleteFilesInDir(path.toFile(), null, LOG, true);
@@ -1107,8 +1236,13 @@ public class FileSystemRepository implements ContentRepository {
             return false;
         }
 
+        final BlockingQueue<ClaimLengthPair> writableClaimQueue = claim == null ? null : getWritableClaimQueue(claim);
+        if (writableClaimQueue == null) {
+            return false;
+        }
+
         synchronized (writableClaimQueue) {
-            final int claimantCount = claim == null ? 0 : resourceClaimManager.getClaimantCount(claim);
+            final int claimantCount = resourceClaimManager.getClaimantCount(claim);
             if (claimantCount > 0 || writableClaimQueue.contains(new ClaimLengthPair(claim, null))) {
                 return false;
             }
@@ -1119,6 +1253,7 @@ public class FileSystemRepository implements ContentRepository {
             return false;
         }
 
+        channelCache.invalidate(claim);
         final boolean archived = archive(curPath);
         LOG.debug("Successfully moved {} to archive", claim);
         return archived;
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A bounded cache of read-only FileChannels, keyed by Resource Claim. Many small Content Claims are
+ * typically packed into a single Resource Claim, so keeping the file open allows those Content Claims
+ * to be read without opening the file and seeking to the claim's offset each time. All reads are
+ * positional, so a single channel is shared by all threads that are reading from the same Resource Claim.
+ * </p>
+ *
+ * <p>
+ * Channels are reference counted. A channel that is evicted from the cache, or invalidated because its
+ * Resource Claim is being archived or destroyed, is closed once the last reader releases it. A channel
+ * whose file was opened while its Resource Claim was being invalidated is never cached, since the file
+ * may already have been moved or deleted.
+ * </p>
+ *
+ * <p>
+ * A FileChannel is closed by the JVM if a thread is interrupted while using it. Because the channel is shared,
+ * a reader whose channel was closed in this manner by another thread transparently re-opens the file.
+ * </p>
+ */
+class ResourceClaimChannelCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResourceClaimChannelCache.class);
+
+    private final int maxChannels;
+
+    // access-ordered so that the least recently read Resource Claim is evicted first. Guarded by synchronizing on 'this'.
+    private final Map<ResourceClaim, CachedChannel> channels = new LinkedHashMap<>(16, 0.75F, true);
+
+    // the files that are currently being opened, by Resource Claim. Guarded by synchronizing on 'this'.
+    private final Map<ResourceClaim, PendingOpen> pendingOpens = new HashMap<>();
+
+    /**
+     * @param maxChannels the maximum number of channels to keep open when not in use. If 0, channels
+     *            are closed as soon as they are released
+     */
+    ResourceClaimChannelCache(final int maxChannels) {
+        this.maxChannels = maxChannels;
+    }
+
+    /**
+     * Obtains a reference to the channel for the given Resource Claim, if it is cached. The caller is
+     * responsible for calling {@link CachedChannel#close()} when finished with the channel.
+     *
+     * @param claim the resource claim
+     * @return a reference to the cached channel, or <code>null</code> if no channel is cached for the claim
+     */
+    synchronized CachedChannel acquire(final ResourceClaim claim) {
+        final CachedChannel cached = channels.get(claim);
+        if (cached == null) {
+            return null;
+        }
+
+        cached.referenceCount++;
+        return cached;
+    }
+
+    /**
+     * Opens the file at the given path and adds the resulting channel to the cache. If another thread
+     * has already cached a channel for the same Resource Claim, that channel is returned instead. The caller
+     * is responsible for calling {@link CachedChannel#close()} when finished with the channel.
+     *
+     * @param claim the resource claim
+     * @param path the path of the file that holds the content of the claim
+     * @return a reference to the channel
+     * @throws IOException if unable to open the file
+     */
+    CachedChannel open(final ResourceClaim claim, final Path path) throws IOException {
+        final PendingOpen pending;
+        synchronized (this) {
+            PendingOpen registered = pendingOpens.get(claim);
+            if (registered == null) {
+                registered = new PendingOpen();
+                pendingOpens.put(claim, registered);
+            }
+            registered.openers++;
+            pending = registered;
+        }
+
+        final FileChannel fileChannel;
+        try {
+            fileChannel = openChannel(path);
+        } catch (final IOException | RuntimeException e) {
+            synchronized (this) {
+                completeOpen(claim, pending);
+            }
+            throw e;
+        }
+
+        final List<CachedChannel> toClose = new ArrayList<>();
+        final CachedChannel result;
+        synchronized (this) {
+            completeOpen(claim, pending);
+
+            final CachedChannel existing = channels.get(claim);
+            if (pending.invalidated) {
+                // the claim was invalidated while the file was being opened, so the file may be
+                // gone; use the channel for this reader only
+                result = new CachedChannel(claim, path, fileChannel);
+                result.referenceCount = 1;
+                result.invalidated = true;
+            } else if (existing != null) {
+                existing.referenceCount++;
+                toClose.add(new CachedChannel(claim, path, fileChannel));
+                result = existing;
+            } else {
+                result = new CachedChannel(claim, path, fileChannel);
+                result.referenceCount = 1;
+
+                if (maxChannels > 0) {
+                    channels.put(claim, result);
+                    evict(toClose);
+                } else {
+                    result.invalidated = true;
+                }
+            }
+        }
+
+        for (final CachedChannel channel : toClose) {
+            channel.closeChannel();
+        }
+
+        return result;
+    }
+
+    // package-private so that tests can interleave opening the file with invalidation
+    FileChannel openChannel(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Removes the channel for the given Resource Claim from the cache, closing it if there are no
+     * readers currently using it. This must be called before the file backing a Resource Claim is moved or
+     * deleted.
+     *
+     * @param claim the resource claim
+     */
+    void invalidate(final ResourceClaim claim) {
+        final CachedChannel toClose;
+        synchronized (this) {
+            // files that are being opened right now must not be cached; later opens register anew
+            final PendingOpen pending = pendingOpens.remove(claim);
+            if (pending != null) {
+                pending.invalidated = true;
+            }
+
+            final CachedChannel cached = channels.remove(claim);
+            if (cached == null) {
+                return;
+            }
+
+            cached.invalidated = true;
+            toClose = cached.referenceCount == 0 ? cached : null;
+        }
+
+        if (toClose != null) {
+            toClose.closeChannel();
+        }
+    }
+
+    /**
+     * Closes all channels that are not in use and marks the others to be closed when released.
+     */
+    void close() {
+        invalidateAll();
+    }
+
+    /**
+     * Removes all channels from the cache, closing those that are not in use and marking the others to be
+     * closed when released. This must be called before the files of all Resource Claims are deleted. The
+     * cache remains usable afterwards.
+     */
+    void invalidateAll() {
+        final List<CachedChannel> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (final PendingOpen pending : pendingOpens.values()) {
+                pending.invalidated = true;
+            }
+            pendingOpens.clear();
+
+            for (final CachedChannel cached : channels.values()) {
+                cached.invalidated = true;
+                if (cached.referenceCount == 0) {
+                    toClose.add(cached);
+                }
+            }
+            channels.clear();
+        }
+
+        for (final CachedChannel cached : toClose) {
+            cached.closeChannel();
+        }
+    }
+
+    synchronized int size() {
+        return channels.size();
+    }
+
+    // must be called while synchronized on 'this'
+    private void completeOpen(final ResourceClaim claim, final PendingOpen pending) {
+        pending.openers--;
+        if (pending.openers == 0 && pendingOpens.get(claim) == pending) {
+            pendingOpens.remove(claim);
+        }
+    }
+
+    // must be called while synchronized on 'this'
+    private void evict(final List<CachedChannel> toClose) {
+        final Iterator<CachedChannel> itr = channels.values().iterator();
+        while (channels.size() > maxChannels && itr.hasNext()) {
+            final CachedChannel eldest = itr.next();
+            itr.remove();
+
+            eldest.invalidated = true;
+            if (eldest.referenceCount == 0) {
+                toClose.add(eldest);
+            }
+        }
+    }
+
+    private void release(final CachedChannel cached) {
+        final boolean close;
+        synchronized (this) {
+            cached.referenceCount--;
+            close = cached.invalidated && cached.referenceCount == 0;
+        }
+
+        if (close) {
+            cached.closeChannel();
+        }
+    }
+
+    /**
+     * The threads that are opening the file of a Resource Claim, and whether the claim was invalidated
+     * since they started. Guarded by synchronizing on the enclosing cache.
+     */
+    private static class PendingOpen {
+        private int openers = 0;
+        private boolean invalidated = false;
+    }
+
+    /**
+     * A reference to a shared, read-only FileChannel. Closing the reference releases it back to
+     * the cache rather than closing the underlying channel.
+     */
+    class CachedChannel implements Closeable {
+        private final ResourceClaim claim;
+        private final Path path;
+        private volatile FileChannel channel;
+
+        // guarded by synchronizing on the enclosing cache
+        private int referenceCount = 0;
+        private boolean invalidated = false;
+
+        private CachedChannel(final ResourceClaim claim, final Path path, final FileChannel channel) {
+            this.claim = claim;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        int read(final ByteBuffer destination, final long position) throws IOException {
+            while (true) {
+                final FileChannel current = channel;
+                try {
+                    return current.read(destination, position);
+                } catch (final ClosedByInterruptException cbie) {
+                    throw cbie;
+                } catch (final ClosedChannelException cce) {
+                    reopen(current);
+                }
+            }
+        }
+
+        long transferTo(final long position, final long count, final WritableByteChannel target) throws IOException {
+            while (true) {
+                final FileChannel current = channel;
+                try {
+                    return current.transferTo(position, count, target);
+                } catch (final ClosedByInterruptException cbie) {
+                    throw cbie;
+                } catch (final ClosedChannelException cce) {
+                    reopen(current);
+                }
+            }
+        }
+
+        MappedByteBuffer map(final long position, final long size) throws IOException {
+            while (true) {
+                final FileChannel current = channel;
+                try {
+                    return current.map(FileChannel.MapMode.READ_ONLY, position, size);
+                } catch (final ClosedByInterruptException cbie) {
+                    throw cbie;
+                } catch (final ClosedChannelException cce) {
+                    reopen(current);
+                }
+            }
+        }
+
+        long size() throws IOException {
+            while (true) {
+                final FileChannel current = channel;
+                try {
+                    return current.size();
+                } catch (final ClosedByInterruptException cbie) {
+                    throw cbie;
+                } catch (final ClosedChannelException cce) {
+                    reopen(current);
+                }
+            }
+        }
+
+        private synchronized void reopen(final FileChannel closedChannel) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ClosedByInterruptException();
+            }
+
+            if (channel == closedChannel) {
+                logger.debug("Channel for {} was closed by another thread; re-opening {}", claim, path);
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to close channel for {} due to {}", claim, ioe.toString());
+            }
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        @Override
+        public String toString() {
+            return "CachedChannel[" + claim + "]";
+        }
+    }
+}
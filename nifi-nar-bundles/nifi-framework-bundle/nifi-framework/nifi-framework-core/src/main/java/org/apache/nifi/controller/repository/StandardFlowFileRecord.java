@@ -25,9 +25,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.builder.CompareToBuilder;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.nifi.controller.repository.claim.ContentClaim;
@@ -132,7 +129,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
      */
     @Override
     public int compareTo(final FlowFile other) {
-        return new CompareToBuilder().append(id, other.getId()).toComparison();
+        return Long.compare(id, other.getId());
     }
 
     @Override
@@ -144,7 +141,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             return false;
         }
         final StandardFlowFileRecord otherRecord = (StandardFlowFileRecord) other;
-        return new EqualsBuilder().append(id, otherRecord.id).isEquals();
+        return id == otherRecord.id;
     }
 
     @Override
@@ -159,7 +156,8 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(7, 13).append(id).toHashCode();
+        // equivalent to new HashCodeBuilder(7, 13).append(id).toHashCode(), without creating a builder for every lookup
+        return 7 * 13 + (int) (id ^ (id >> 32));
     }
 
     public static final class Builder {
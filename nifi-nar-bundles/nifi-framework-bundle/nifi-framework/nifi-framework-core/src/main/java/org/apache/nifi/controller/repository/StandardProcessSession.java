@@ -26,6 +26,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -100,19 +101,26 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
     private static final Logger LOG = LoggerFactory.getLogger(StandardProcessSession.class);
     private static final Logger claimLog = LoggerFactory.getLogger(StandardProcessSession.class.getSimpleName() + ".claims");
 
-    private final Map<FlowFileRecord, StandardRepositoryRecord> records = new HashMap<>();
-    private final Map<Connection, StandardFlowFileEvent> connectionCounts = new HashMap<>();
+    // Checkpoints that have been committed are kept, one per thread, so that the next session that is committed by the same
+    // thread can reuse their collections rather than allocating new ones. A Checkpoint that held more than this many records
+    // is discarded instead, so that we do not hold onto (and repeatedly clear) very large collections.
+    private static final int MAX_POOLED_CHECKPOINT_RECORDS = 1000;
+    private static final ThreadLocal<Checkpoint> pooledCheckpoint = new ThreadLocal<>();
+
+    // The collections that are not final are handed off to the Checkpoint, rather than copied, when the session is checkpointed.
+    private Map<FlowFileRecord, StandardRepositoryRecord> records = new HashMap<>();
+    private Map<Connection, StandardFlowFileEvent> connectionCounts = new HashMap<>();
     private final Map<Connection, Set<FlowFileRecord>> unacknowledgedFlowFiles = new HashMap<>();
-    private final Map<String, Long> counters = new HashMap<>();
+    private Map<String, Long> counters = new HashMap<>();
     private final Map<ContentClaim, ByteCountingOutputStream> appendableStreams = new HashMap<>();
     private final ProcessContext context;
     private final Set<FlowFile> recursionSet = new HashSet<>();// set used to track what is currently being operated on to prevent logic failures if recursive calls occurring
-    private final Set<Path> deleteOnCommit = new HashSet<>();
+    private Set<Path> deleteOnCommit = new HashSet<>();
     private final long sessionId;
     private final String connectableDescription;
 
-    private final Set<String> removedFlowFiles = new HashSet<>();
-    private final Set<String> createdFlowFiles = new HashSet<>();
+    private Set<String> removedFlowFiles = new HashSet<>();
+    private Set<String> createdFlowFiles = new HashSet<>();
 
     private final StandardProvenanceReporter provenanceReporter;
 
@@ -130,13 +138,13 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
     // maps a FlowFile to all Provenance Events that were generated for that FlowFile.
     // we do this so that if we generate a Fork event, for example, and then remove the event in the same
     // Session, we will not send that event to the Provenance Repository
-    private final Map<FlowFile, List<ProvenanceEventRecord>> generatedProvenanceEvents = new HashMap<>();
+    private Map<FlowFile, List<ProvenanceEventRecord>> generatedProvenanceEvents = new HashMap<>();
 
     // when Forks are generated for a single parent, we add the Fork event to this map, with the Key being the parent
     // so that we are able to aggregate many into a single Fork Event.
-    private final Map<FlowFile, ProvenanceEventBuilder> forkEventBuilders = new HashMap<>();
+    private Map<FlowFile, ProvenanceEventBuilder> forkEventBuilders = new HashMap<>();
 
-    private Checkpoint checkpoint = new Checkpoint();
+    private Checkpoint checkpoint = null;
 
     public StandardProcessSession(final ProcessContext context) {
         this.context = context;
@@ -187,7 +195,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         }
 
         if (this.checkpoint == null) {
-            this.checkpoint = new Checkpoint();
+            this.checkpoint = acquireCheckpoint();
         }
 
         if (records.isEmpty()) {
@@ -280,8 +288,30 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
     @Override
     public void commit() {
         checkpoint();
-        commit(this.checkpoint);
+
+        final Checkpoint committed = this.checkpoint;
+        commit(committed);
         this.checkpoint = null;
+        releaseCheckpoint(committed);
+    }
+
+    private static Checkpoint acquireCheckpoint() {
+        final Checkpoint pooled = pooledCheckpoint.get();
+        if (pooled == null) {
+            return new Checkpoint();
+        }
+
+        pooledCheckpoint.set(null);
+        return pooled;
+    }
+
+    private static void releaseCheckpoint(final Checkpoint checkpoint) {
+        if (checkpoint.records.size() > MAX_POOLED_CHECKPOINT_RECORDS) {
+            return;
+        }
+
+        checkpoint.clear();
+        pooledCheckpoint.set(checkpoint);
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
@@ -292,6 +322,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             resetReadClaim();
 
             final long updateProvenanceStart = System.nanoTime();
+            indexRecords(checkpoint);
             updateProvenanceRepo(checkpoint);
 
             final long claimRemovalStart = System.nanoTime();
@@ -356,24 +387,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             final long updateEventRepositoryNanos = updateEventRepositoryFinishNanos - claimRemovalFinishNanos;
 
             // transfer the flowfiles to the connections' queues.
-            final Map<FlowFileQueue, Collection<FlowFileRecord>> recordMap = new HashMap<>();
-            for (final StandardRepositoryRecord record : checkpoint.records.values()) {
-                if (record.isMarkedForAbort() || record.isMarkedForDelete()) {
-                    continue; // these don't need to be transferred
-                }
-                // record.getCurrent() will return null if this record was created in this session --
-                // in this case, we just ignore it, and it will be cleaned up by clearing the records map.
-                if (record.getCurrent() != null) {
-                    Collection<FlowFileRecord> collection = recordMap.get(record.getDestination());
-                    if (collection == null) {
-                        collection = new ArrayList<>();
-                        recordMap.put(record.getDestination(), collection);
-                    }
-                    collection.add(record.getCurrent());
-                }
-            }
-
-            for (final Map.Entry<FlowFileQueue, Collection<FlowFileRecord>> entry : recordMap.entrySet()) {
+            for (final Map.Entry<FlowFileQueue, List<FlowFileRecord>> entry : checkpoint.recordsByDestination.entrySet()) {
                 entry.getKey().putAll(entry.getValue());
             }
 
@@ -436,32 +450,41 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         }
     }
 
-    private void updateEventRepository(final Checkpoint checkpoint) {
-        int flowFilesReceived = 0;
-        int flowFilesSent = 0;
-        long bytesReceived = 0L;
-        long bytesSent = 0L;
+    /**
+     * Makes a single pass over the records of the given Checkpoint, indexing them by UUID for the Provenance Repository update,
+     * grouping the FlowFiles that are to be transferred by destination queue, and summing their lineage durations for the
+     * FlowFile Event Repository update.
+     *
+     * @param checkpoint the checkpoint being committed
+     */
+    private void indexRecords(final Checkpoint checkpoint) {
+        final long now = System.currentTimeMillis();
+        long lineageMillis = 0L;
 
-        for (final ProvenanceEventRecord event : checkpoint.reportedEvents) {
-            if (isSpuriousForkEvent(event, checkpoint.removedFlowFiles)) {
-                continue;
+        for (final Map.Entry<FlowFileRecord, StandardRepositoryRecord> entry : checkpoint.records.entrySet()) {
+            final StandardRepositoryRecord record = entry.getValue();
+            lineageMillis += now - entry.getKey().getLineageStartDate();
+
+            final FlowFileRecord current = record.getCurrent();
+            checkpoint.recordsByUuid.put(current.getAttribute(CoreAttributes.UUID.key()), record);
+
+            if (record.isMarkedForAbort() || record.isMarkedForDelete()) {
+                continue; // these don't need to be transferred
             }
 
-            switch (event.getEventType()) {
-                case SEND:
-                    flowFilesSent++;
-                    bytesSent += event.getFileSize();
-                    break;
-                case RECEIVE:
-                case FETCH:
-                    flowFilesReceived++;
-                    bytesReceived += event.getFileSize();
-                    break;
-                default:
-                    break;
+            final FlowFileQueue destination = record.getDestination();
+            List<FlowFileRecord> flowFiles = checkpoint.recordsByDestination.get(destination);
+            if (flowFiles == null) {
+                flowFiles = new ArrayList<>();
+                checkpoint.recordsByDestination.put(destination, flowFiles);
             }
+            flowFiles.add(current);
         }
 
+        checkpoint.lineageMillis = lineageMillis;
+    }
+
+    private void updateEventRepository(final Checkpoint checkpoint) {
         try {
             // update event repository
             final Connectable connectable = context.getConnectable();
@@ -474,18 +497,11 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             flowFileEvent.setFlowFilesIn(checkpoint.flowFilesIn);
             flowFileEvent.setFlowFilesOut(checkpoint.flowFilesOut);
             flowFileEvent.setFlowFilesRemoved(checkpoint.removedCount);
-            flowFileEvent.setFlowFilesReceived(flowFilesReceived);
-            flowFileEvent.setBytesReceived(bytesReceived);
-            flowFileEvent.setFlowFilesSent(flowFilesSent);
-            flowFileEvent.setBytesSent(bytesSent);
-
-            long lineageMillis = 0L;
-            for (final Map.Entry<FlowFileRecord, StandardRepositoryRecord> entry : checkpoint.records.entrySet()) {
-                final FlowFile flowFile = entry.getKey();
-                final long lineageDuration = System.currentTimeMillis() - flowFile.getLineageStartDate();
-                lineageMillis += lineageDuration;
-            }
-            flowFileEvent.setAggregateLineageMillis(lineageMillis);
+            flowFileEvent.setFlowFilesReceived(checkpoint.flowFilesReceived);
+            flowFileEvent.setBytesReceived(checkpoint.bytesReceived);
+            flowFileEvent.setFlowFilesSent(checkpoint.flowFilesSent);
+            flowFileEvent.setBytesSent(checkpoint.bytesSent);
+            flowFileEvent.setAggregateLineageMillis(checkpoint.lineageMillis);
 
             context.getFlowFileEventRepository().updateRepository(flowFileEvent);
 
@@ -498,13 +514,12 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
     }
 
     private void addEventType(final Map<String, Set<ProvenanceEventType>> map, final String id, final ProvenanceEventType eventType) {
-        Set<ProvenanceEventType> eventTypes = map.get(id);
+        final Set<ProvenanceEventType> eventTypes = map.get(id);
         if (eventTypes == null) {
-            eventTypes = new HashSet<>();
-            map.put(id, eventTypes);
+            map.put(id, EnumSet.of(eventType));
+        } else {
+            eventTypes.add(eventType);
         }
-
-        eventTypes.add(eventType);
     }
 
     private void updateProvenanceRepo(final Checkpoint checkpoint) {
@@ -514,8 +529,8 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         // We need to de-dupe the events that we've created and those reported to the provenance reporter,
         // in case the Processor developer submitted the same events to the reporter. So we use a LinkedHashSet
         // for this, so that we are able to ensure that the events are submitted in the proper order.
-        final Set<ProvenanceEventRecord> recordsToSubmit = new LinkedHashSet<>();
-        final Map<String, Set<ProvenanceEventType>> eventTypesPerFlowFileId = new HashMap<>();
+        final Set<ProvenanceEventRecord> recordsToSubmit = checkpoint.recordsToSubmit;
+        final Map<String, Set<ProvenanceEventType>> eventTypesPerFlowFileId = checkpoint.eventTypesPerFlowFileId;
 
         final Set<ProvenanceEventRecord> processorGenerated = checkpoint.reportedEvents;
 
@@ -547,15 +562,30 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             }
         }
 
-        // Now add any Processor-reported events.
+        // Now add any Processor-reported events. While we are iterating over them, we also count the
+        // FlowFiles sent and received, for the FlowFile Event Repository.
         for (final ProvenanceEventRecord event : processorGenerated) {
             if (isSpuriousForkEvent(event, checkpoint.removedFlowFiles)) {
                 continue;
             }
 
+            switch (event.getEventType()) {
+                case SEND:
+                    checkpoint.flowFilesSent++;
+                    checkpoint.bytesSent += event.getFileSize();
+                    break;
+                case RECEIVE:
+                case FETCH:
+                    checkpoint.flowFilesReceived++;
+                    checkpoint.bytesReceived += event.getFileSize();
+                    break;
+                default:
+                    break;
+            }
+
             // Check if the event indicates that the FlowFile was routed to the same
             // connection from which it was pulled (and only this connection). If so, discard the event.
-            if (isSpuriousRouteEvent(event, checkpoint.records)) {
+            if (isSpuriousRouteEvent(event, checkpoint.recordsByUuid)) {
                 continue;
             }
 
@@ -648,12 +678,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         // This is done in a similar veign to how Java 8's streams work, iterating over the events and returning a processed version
         // one-at-a-time as opposed to iterating over the entire Collection and putting the results in another Collection. However,
         // we don't want to change the Framework to require Java 8 at this time, because it's not yet as prevalent as we would desire
-        final Map<String, FlowFileRecord> flowFileRecordMap = new HashMap<>();
-        for (final StandardRepositoryRecord repoRecord : checkpoint.records.values()) {
-            final FlowFileRecord flowFile = repoRecord.getCurrent();
-            flowFileRecordMap.put(flowFile.getAttribute(CoreAttributes.UUID.key()), flowFile);
-        }
-
+        final Map<String, StandardRepositoryRecord> recordsByUuid = checkpoint.recordsByUuid;
         final List<ProvenanceEventRecord> autoTermEvents = checkpoint.autoTerminatedEvents;
         final Iterable<ProvenanceEventRecord> iterable = new Iterable<ProvenanceEventRecord>() {
             final Iterator<ProvenanceEventRecord> recordsToSubmitIterator = recordsToSubmit.iterator();
@@ -678,9 +703,9 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
                             // the representation of the FlowFile as it is committed, as this is the only way in which it really
                             // exists in our system -- all other representations are volatile representations that have not been
                             // exposed.
-                            return enrich(rawEvent, flowFileRecordMap, checkpoint.records, rawEvent.getEventType() != ProvenanceEventType.SEND);
+                            return enrich(rawEvent, recordsByUuid, rawEvent.getEventType() != ProvenanceEventType.SEND);
                         } else if (autoTermIterator != null && autoTermIterator.hasNext()) {
-                            return enrich(autoTermIterator.next(), flowFileRecordMap, checkpoint.records, true);
+                            return enrich(autoTermIterator.next(), recordsByUuid, true);
                         }
 
                         throw new NoSuchElementException();
@@ -748,11 +773,11 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
     }
 
     private StandardProvenanceEventRecord enrich(
-        final ProvenanceEventRecord rawEvent, final Map<String, FlowFileRecord> flowFileRecordMap, final Map<FlowFileRecord, StandardRepositoryRecord> records, final boolean updateAttributes) {
+        final ProvenanceEventRecord rawEvent, final Map<String, StandardRepositoryRecord> recordsByUuid, final boolean updateAttributes) {
         final StandardProvenanceEventRecord.Builder recordBuilder = new StandardProvenanceEventRecord.Builder().fromEvent(rawEvent);
-        final FlowFileRecord eventFlowFile = flowFileRecordMap.get(rawEvent.getFlowFileUuid());
-        if (eventFlowFile != null) {
-            final StandardRepositoryRecord repoRecord = records.get(eventFlowFile);
+        final StandardRepositoryRecord repoRecord = recordsByUuid.get(rawEvent.getFlowFileUuid());
+        if (repoRecord != null) {
+            final FlowFileRecord eventFlowFile = repoRecord.getCurrent();
 
             if (repoRecord.getCurrent() != null && repoRecord.getCurrentClaim() != null) {
                 final ContentClaim currentClaim = repoRecord.getCurrentClaim();
@@ -776,15 +801,9 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             if (originalQueue != null) {
                 recordBuilder.setSourceQueueIdentifier(originalQueue.getIdentifier());
             }
-        }
 
-        if (updateAttributes) {
-            final FlowFileRecord flowFileRecord = flowFileRecordMap.get(rawEvent.getFlowFileUuid());
-            if (flowFileRecord != null) {
-                final StandardRepositoryRecord record = records.get(flowFileRecord);
-                if (record != null) {
-                    recordBuilder.setAttributes(record.getOriginalAttributes(), record.getUpdatedAttributes());
-                }
+            if (updateAttributes) {
+                recordBuilder.setAttributes(repoRecord.getOriginalAttributes(), repoRecord.getUpdatedAttributes());
             }
         }
 
@@ -818,10 +837,10 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
      * was pulled. I.e., the FlowFile was really routed nowhere.
      *
      * @param event event
-     * @param records records
+     * @param recordsByUuid records, keyed by the UUID of their FlowFiles
      * @return true if spurious route
      */
-    private boolean isSpuriousRouteEvent(final ProvenanceEventRecord event, final Map<FlowFileRecord, StandardRepositoryRecord> records) {
+    private boolean isSpuriousRouteEvent(final ProvenanceEventRecord event, final Map<String, StandardRepositoryRecord> recordsByUuid) {
         if (event.getEventType() == ProvenanceEventType.ROUTE) {
             final String relationshipName = event.getRelationship();
             final Relationship relationship = new Relationship.Builder().name(relationshipName).build();
@@ -830,19 +849,16 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             // If the number of connections for this relationship is not 1, then we can't ignore this ROUTE event,
             // as it may be cloning the FlowFile and adding to multiple connections.
             if (connectionsForRelationship.size() == 1) {
-                for (final Map.Entry<FlowFileRecord, StandardRepositoryRecord> entry : records.entrySet()) {
-                    final FlowFileRecord flowFileRecord = entry.getKey();
-                    if (event.getFlowFileUuid().equals(flowFileRecord.getAttribute(CoreAttributes.UUID.key()))) {
-                        final StandardRepositoryRecord repoRecord = entry.getValue();
-                        if (repoRecord.getOriginalQueue() == null) {
-                            return false;
-                        }
-
-                        final String originalQueueId = repoRecord.getOriginalQueue().getIdentifier();
-                        final Connection destinationConnection = connectionsForRelationship.iterator().next();
-                        final String destinationQueueId = destinationConnection.getFlowFileQueue().getIdentifier();
-                        return originalQueueId.equals(destinationQueueId);
+                final StandardRepositoryRecord repoRecord = recordsByUuid.get(event.getFlowFileUuid());
+                if (repoRecord != null) {
+                    if (repoRecord.getOriginalQueue() == null) {
+                        return false;
                     }
+
+                    final String originalQueueId = repoRecord.getOriginalQueue().getIdentifier();
+                    final Connection destinationConnection = connectionsForRelationship.iterator().next();
+                    final String destinationQueueId = destinationConnection.getFlowFileQueue().getIdentifier();
+                    return originalQueueId.equals(destinationQueueId);
                 }
             }
         }
@@ -2540,19 +2556,22 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
 
         private long processingTime = 0L;
 
-        private final Map<FlowFile, List<ProvenanceEventRecord>> generatedProvenanceEvents = new HashMap<>();
-        private final Map<FlowFile, ProvenanceEventBuilder> forkEventBuilders = new HashMap<>();
+        // The collections that are not final are taken from the first session that is checkpointed, in exchange for the
+        // (empty) collections held here. Subsequent checkpoints, as performed when batching sessions, are copied.
+        private boolean empty = true;
+
+        private Map<FlowFile, List<ProvenanceEventRecord>> generatedProvenanceEvents = new HashMap<>();
+        private Map<FlowFile, ProvenanceEventBuilder> forkEventBuilders = new HashMap<>();
         private final List<ProvenanceEventRecord> autoTerminatedEvents = new ArrayList<>();
-        private final Set<ProvenanceEventRecord> reportedEvents = new LinkedHashSet<>();
+        private Set<ProvenanceEventRecord> reportedEvents = new LinkedHashSet<>();
 
-        private final Map<FlowFileRecord, StandardRepositoryRecord> records = new HashMap<>();
-        private final Map<Connection, StandardFlowFileEvent> connectionCounts = new HashMap<>();
-        private final Map<Connection, Set<FlowFileRecord>> unacknowledgedFlowFiles = new HashMap<>();
-        private final Map<String, Long> counters = new HashMap<>();
+        private Map<FlowFileRecord, StandardRepositoryRecord> records = new HashMap<>();
+        private Map<Connection, StandardFlowFileEvent> connectionCounts = new HashMap<>();
+        private Map<String, Long> counters = new HashMap<>();
 
-        private final Set<Path> deleteOnCommit = new HashSet<>();
-        private final Set<String> removedFlowFiles = new HashSet<>();
-        private final Set<String> createdFlowFiles = new HashSet<>();
+        private Set<Path> deleteOnCommit = new HashSet<>();
+        private Set<String> removedFlowFiles = new HashSet<>();
+        private Set<String> createdFlowFiles = new HashSet<>();
 
         private int removedCount = 0; // number of flowfiles removed in this session
         private long removedBytes = 0L; // size of all flowfiles removed in this session
@@ -2561,24 +2580,38 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         private int flowFilesIn = 0, flowFilesOut = 0;
         private long contentSizeIn = 0L, contentSizeOut = 0L;
 
+        // populated while the checkpoint is being committed
+        private final Map<String, StandardRepositoryRecord> recordsByUuid = new HashMap<>();
+        private final Map<FlowFileQueue, List<FlowFileRecord>> recordsByDestination = new HashMap<>();
+        private final Set<ProvenanceEventRecord> recordsToSubmit = new LinkedHashSet<>();
+        private final Map<String, Set<ProvenanceEventType>> eventTypesPerFlowFileId = new HashMap<>();
+        private int flowFilesReceived = 0, flowFilesSent = 0;
+        private long bytesReceived = 0L, bytesSent = 0L;
+        private long lineageMillis = 0L;
+
         private void checkpoint(final StandardProcessSession session, final List<ProvenanceEventRecord> autoTerminatedEvents) {
             this.processingTime += System.nanoTime() - session.processingStartTime;
 
-            this.generatedProvenanceEvents.putAll(session.generatedProvenanceEvents);
-            this.forkEventBuilders.putAll(session.forkEventBuilders);
             if (autoTerminatedEvents != null) {
                 this.autoTerminatedEvents.addAll(autoTerminatedEvents);
             }
-            this.reportedEvents.addAll(session.provenanceReporter.getEvents());
 
-            this.records.putAll(session.records);
-            this.connectionCounts.putAll(session.connectionCounts);
-            this.unacknowledgedFlowFiles.putAll(session.unacknowledgedFlowFiles);
-            this.counters.putAll(session.counters);
+            if (empty) {
+                swap(session);
+                empty = false;
+            } else {
+                this.generatedProvenanceEvents.putAll(session.generatedProvenanceEvents);
+                this.forkEventBuilders.putAll(session.forkEventBuilders);
+                this.reportedEvents.addAll(session.provenanceReporter.getEvents());
+
+                this.records.putAll(session.records);
+                this.connectionCounts.putAll(session.connectionCounts);
+                this.counters.putAll(session.counters);
 
-            this.deleteOnCommit.addAll(session.deleteOnCommit);
-            this.removedFlowFiles.addAll(session.removedFlowFiles);
-            this.createdFlowFiles.addAll(session.createdFlowFiles);
+                this.deleteOnCommit.addAll(session.deleteOnCommit);
+                this.removedFlowFiles.addAll(session.removedFlowFiles);
+                this.createdFlowFiles.addAll(session.createdFlowFiles);
+            }
 
             this.removedCount += session.removedCount;
             this.removedBytes += session.removedBytes;
@@ -2589,5 +2622,84 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             this.contentSizeIn += session.contentSizeIn;
             this.contentSizeOut += session.contentSizeOut;
         }
+
+        /**
+         * Exchanges the collections held by this Checkpoint, which must be empty, with those of the given session
+         */
+        private void swap(final StandardProcessSession session) {
+            final Map<FlowFile, List<ProvenanceEventRecord>> generated = this.generatedProvenanceEvents;
+            this.generatedProvenanceEvents = session.generatedProvenanceEvents;
+            session.generatedProvenanceEvents = generated;
+
+            final Map<FlowFile, ProvenanceEventBuilder> forks = this.forkEventBuilders;
+            this.forkEventBuilders = session.forkEventBuilders;
+            session.forkEventBuilders = forks;
+
+            this.reportedEvents = session.provenanceReporter.swapEvents(this.reportedEvents);
+
+            final Map<FlowFileRecord, StandardRepositoryRecord> sessionRecords = this.records;
+            this.records = session.records;
+            session.records = sessionRecords;
+
+            final Map<Connection, StandardFlowFileEvent> sessionConnectionCounts = this.connectionCounts;
+            this.connectionCounts = session.connectionCounts;
+            session.connectionCounts = sessionConnectionCounts;
+
+            final Map<String, Long> sessionCounters = this.counters;
+            this.counters = session.counters;
+            session.counters = sessionCounters;
+
+            final Set<Path> sessionDeleteOnCommit = this.deleteOnCommit;
+            this.deleteOnCommit = session.deleteOnCommit;
+            session.deleteOnCommit = sessionDeleteOnCommit;
+
+            final Set<String> removed = this.removedFlowFiles;
+            this.removedFlowFiles = session.removedFlowFiles;
+            session.removedFlowFiles = removed;
+
+            final Set<String> created = this.createdFlowFiles;
+            this.createdFlowFiles = session.createdFlowFiles;
+            session.createdFlowFiles = created;
+        }
+
+        /**
+         * Clears this Checkpoint so that it can be used again
+         */
+        private void clear() {
+            processingTime = 0L;
+            empty = true;
+
+            generatedProvenanceEvents.clear();
+            forkEventBuilders.clear();
+            autoTerminatedEvents.clear();
+            reportedEvents.clear();
+
+            records.clear();
+            connectionCounts.clear();
+            counters.clear();
+
+            deleteOnCommit.clear();
+            removedFlowFiles.clear();
+            createdFlowFiles.clear();
+
+            removedCount = 0;
+            removedBytes = 0L;
+            bytesRead = 0L;
+            bytesWritten = 0L;
+            flowFilesIn = 0;
+            flowFilesOut = 0;
+            contentSizeIn = 0L;
+            contentSizeOut = 0L;
+
+            recordsByUuid.clear();
+            recordsByDestination.clear();
+            recordsToSubmit.clear();
+            eventTypesPerFlowFileId.clear();
+            flowFilesReceived = 0;
+            flowFilesSent = 0;
+            bytesReceived = 0L;
+            bytesSent = 0L;
+            lineageMillis = 0L;
+        }
     }
 }
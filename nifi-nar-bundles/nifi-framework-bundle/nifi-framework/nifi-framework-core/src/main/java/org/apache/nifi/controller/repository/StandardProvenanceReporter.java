@@ -38,7 +38,7 @@ public class StandardProvenanceReporter implements ProvenanceReporter {
     private final Logger logger = LoggerFactory.getLogger(StandardProvenanceReporter.class);
     private final String processorId;
     private final String processorType;
-    private final Set<ProvenanceEventRecord> events = new LinkedHashSet<>();
+    private Set<ProvenanceEventRecord> events = new LinkedHashSet<>();
     private final ProvenanceEventRepository repository;
     private final ProvenanceEventEnricher eventEnricher;
     private final StandardProcessSession session;
@@ -69,6 +69,19 @@ public class StandardProvenanceReporter implements ProvenanceReporter {
         events.clear();
     }
 
+    /**
+     * Replaces the events that have been registered with the given (empty) Set, so that the
+     * registered events can be handed off without being copied
+     *
+     * @param replacement the Set to use for events registered from now on
+     * @return the events that were registered
+     */
+    Set<ProvenanceEventRecord> swapEvents(final Set<ProvenanceEventRecord> replacement) {
+        final Set<ProvenanceEventRecord> registered = events;
+        events = replacement;
+        return registered;
+    }
+
     /**
      * Generates a Fork event for the given child and parents but does not register the event. This is useful so that a ProcessSession has the ability to de-dupe events, since one or more events may
      * be created by the session itself, as well as by the Processor
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A FlowFile Event Repository that keeps, for each component, running totals of every metric since the component's
+ * first event, along with a ring of snapshots of those totals, one for the start of each second in the retention window.
+ * </p>
+ *
+ * <p>
+ * The running totals are {@link LongAdder}s, so that updating the repository is lock-free, does not allocate, and does
+ * not cause threads that commit sessions for the same component to contend with one another. The first update in each
+ * second records a snapshot of the totals into a pre-allocated slot. A report is then the difference between the
+ * current totals and the snapshot for the second in which the reporting window begins, so generating a report costs
+ * the same regardless of how long the window is or how many events were added during it.
+ * </p>
+ */
+public class StripedFlowFileEventRepository implements FlowFileEventRepository {
+
+    private static final int FLOWFILES_IN = 0;
+    private static final int CONTENT_SIZE_IN = 1;
+    private static final int FLOWFILES_OUT = 2;
+    private static final int CONTENT_SIZE_OUT = 3;
+    private static final int FLOWFILES_REMOVED = 4;
+    private static final int CONTENT_SIZE_REMOVED = 5;
+    private static final int BYTES_READ = 6;
+    private static final int BYTES_WRITTEN = 7;
+    private static final int FLOWFILES_RECEIVED = 8;
+    private static final int BYTES_RECEIVED = 9;
+    private static final int FLOWFILES_SENT = 10;
+    private static final int BYTES_SENT = 11;
+    private static final int INVOCATIONS = 12;
+    private static final int AGGREGATE_LINEAGE_MILLIS = 13;
+    private static final int PROCESSING_NANOS = 14;
+    private static final int FIELD_COUNT = 15;
+
+    private final int numBins;
+    private final ConcurrentMap<String, ComponentEvents> componentEventMap = new ConcurrentHashMap<>();
+
+    public StripedFlowFileEventRepository(final int numMinutes) {
+        this.numBins = 1 + numMinutes * 60;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public void updateRepository(final FlowFileEvent event) {
+        final String componentId = event.getComponentIdentifier();
+        ComponentEvents componentEvents = componentEventMap.get(componentId);
+        if (componentEvents == null) {
+            componentEvents = new ComponentEvents(numBins);
+            final ComponentEvents oldComponentEvents = componentEventMap.putIfAbsent(componentId, componentEvents);
+            if (oldComponentEvents != null) {
+                componentEvents = oldComponentEvents;
+            }
+        }
+
+        componentEvents.addEvent(event, getCurrentTimeMillis() / 1000L);
+    }
+
+    @Override
+    public StandardRepositoryStatusReport reportTransferEvents(final long sinceEpochMillis) {
+        final StandardRepositoryStatusReport report = new StandardRepositoryStatusReport();
+        final long sinceSecond = sinceEpochMillis / 1000L;
+        final long[] buffer = new long[FIELD_COUNT];
+
+        for (final Map.Entry<String, ComponentEvents> entry : componentEventMap.entrySet()) {
+            final FlowFileEvent reportEntry = entry.getValue().generateReport(entry.getKey(), sinceSecond, buffer);
+            report.addReportEntry(reportEntry);
+        }
+
+        return report;
+    }
+
+    @Override
+    public void purgeTransferEvents(final long cutoffEpochMilliseconds) {
+        // no need to do anything; totals that are older than the retention window are never
+        // reported, and the snapshots are overwritten in place as time moves on
+    }
+
+    // exposed for unit tests
+    long getCurrentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+
+    private static class ComponentEvents {
+        private final int numBins;
+        private final LongAdder[] totals = new LongAdder[FIELD_COUNT];
+
+        // Snapshot i occupies snapshotValues[i * FIELD_COUNT] through snapshotValues[(i + 1) * FIELD_COUNT - 1] and holds the
+        // totals as of the start of the second recorded in snapshotSeconds[i]. A slot's second is set to -1 while the slot is being
+        // written, and the values are written before the second is set, so a reader that observes the same second before and after
+        // reading the values has read a consistent snapshot.
+        private final long[] snapshotValues;
+        private final AtomicLongArray snapshotSeconds;
+        private final AtomicLong lastSnapshotSecond = new AtomicLong(-1L);
+
+        public ComponentEvents(final int numBins) {
+            this.numBins = numBins;
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                totals[i] = new LongAdder();
+            }
+
+            snapshotValues = new long[numBins * FIELD_COUNT];
+            snapshotSeconds = new AtomicLongArray(numBins);
+            for (int i = 0; i < numBins; i++) {
+                snapshotSeconds.set(i, -1L);
+            }
+        }
+
+        public void addEvent(final FlowFileEvent event, final long second) {
+            final long lastSecond = lastSnapshotSecond.get();
+            if (second > lastSecond && lastSnapshotSecond.compareAndSet(lastSecond, second)) {
+                // This is the first event in this second, so record the totals as of the start of it. An event that another
+                // thread adds concurrently may be counted as having occurred just before this second rather than during it.
+                snapshot(lastSecond, second);
+            }
+
+            add(FLOWFILES_IN, event.getFlowFilesIn());
+            add(CONTENT_SIZE_IN, event.getContentSizeIn());
+            add(FLOWFILES_OUT, event.getFlowFilesOut());
+            add(CONTENT_SIZE_OUT, event.getContentSizeOut());
+            add(FLOWFILES_REMOVED, event.getFlowFilesRemoved());
+            add(CONTENT_SIZE_REMOVED, event.getContentSizeRemoved());
+            add(BYTES_READ, event.getBytesRead());
+            add(BYTES_WRITTEN, event.getBytesWritten());
+            add(FLOWFILES_RECEIVED, event.getFlowFilesReceived());
+            add(BYTES_RECEIVED, event.getBytesReceived());
+            add(FLOWFILES_SENT, event.getFlowFilesSent());
+            add(BYTES_SENT, event.getBytesSent());
+            add(INVOCATIONS, event.getInvocations());
+            add(AGGREGATE_LINEAGE_MILLIS, event.getAggregateLineageMillis());
+            add(PROCESSING_NANOS, event.getProcessingNanoseconds());
+        }
+
+        private void add(final int field, final long value) {
+            if (value != 0L) {
+                totals[field].add(value);
+            }
+        }
+
+        private void snapshot(final long previousSecond, final long second) {
+            // No events were added in any second after the previous snapshot, so the totals as of the start of each of those
+            // seconds are the same as the current totals. Fill in all of them, so that a report can always find the snapshot
+            // for the second that it is interested in with a single lookup.
+            final long firstSecond = Math.max(previousSecond + 1, second - numBins + 1);
+
+            final int firstBin = bin(firstSecond);
+            snapshotSeconds.set(firstBin, -1L);
+            final int firstOffset = firstBin * FIELD_COUNT;
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                snapshotValues[firstOffset + i] = totals[i].sum();
+            }
+            snapshotSeconds.set(firstBin, firstSecond);
+
+            for (long s = firstSecond + 1; s <= second; s++) {
+                final int bin = bin(s);
+                snapshotSeconds.set(bin, -1L);
+                System.arraycopy(snapshotValues, firstOffset, snapshotValues, bin * FIELD_COUNT, FIELD_COUNT);
+                snapshotSeconds.set(bin, s);
+            }
+        }
+
+        private int bin(final long second) {
+            return (int) (second % numBins);
+        }
+
+        /**
+         * Copies the snapshot for the given second into the given buffer
+         *
+         * @return <code>true</code> if the snapshot was copied, <code>false</code> if there is no snapshot for the given second
+         */
+        private boolean readSnapshot(final long second, final long[] buffer) {
+            final int bin = bin(second);
+            if (snapshotSeconds.get(bin) != second) {
+                return false;
+            }
+
+            System.arraycopy(snapshotValues, bin * FIELD_COUNT, buffer, 0, FIELD_COUNT);
+            return snapshotSeconds.get(bin) == second;
+        }
+
+        public FlowFileEvent generateReport(final String componentId, final long sinceSecond, final long[] buffer) {
+            final long lastSecond = lastSnapshotSecond.get();
+            if (lastSecond < 0L || sinceSecond > lastSecond) {
+                // there have been no events since the given time
+                return new StandardFlowFileEvent(componentId);
+            }
+
+            // Find the totals as of the start of the window. If the window begins before the oldest snapshot that is retained,
+            // use the oldest one. If a snapshot is overwritten while it is being read, move on to the next second.
+            boolean found = false;
+            for (long second = Math.max(sinceSecond, lastSecond - numBins + 1); second <= lastSecond; second++) {
+                if (readSnapshot(second, buffer)) {
+                    found = true;
+                    break;
+                }
+            }
+
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                final long total = totals[i].sum();
+                buffer[i] = found ? total - buffer[i] : 0L;
+            }
+
+            return new StandardFlowFileEvent(componentId,
+                (int) buffer[FLOWFILES_IN], buffer[CONTENT_SIZE_IN],
+                (int) buffer[FLOWFILES_OUT], buffer[CONTENT_SIZE_OUT],
+                (int) buffer[FLOWFILES_REMOVED], buffer[CONTENT_SIZE_REMOVED],
+                buffer[BYTES_READ], buffer[BYTES_WRITTEN],
+                (int) buffer[FLOWFILES_RECEIVED], buffer[BYTES_RECEIVED],
+                (int) buffer[FLOWFILES_SENT], buffer[BYTES_SENT],
+                (int) buffer[INVOCATIONS], buffer[AGGREGATE_LINEAGE_MILLIS], buffer[PROCESSING_NANOS]);
+        }
+    }
+}
@@ -16,6 +16,15 @@
  */
 package org.apache.nifi.controller.repository;
 
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readDictionaryString;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarInt;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarLong;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarString;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeDictionaryString;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarInt;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarLong;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarString;
+
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -51,8 +60,9 @@ import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wali.MergeableSerDe;
 import org.wali.MinimalLockingWriteAheadLog;
-import org.wali.SerDe;
+import org.wali.StreamScopedSerDe;
 import org.wali.SyncListener;
 import org.wali.UpdateType;
 import org.wali.WriteAheadRepository;
@@ -70,11 +80,18 @@ import org.wali.WriteAheadRepository;
  * the Operating System will flush the data to disk. Additionally, most disks on enterprise servers also have battery backups that can power the disks long enough to flush their buffers. For this
  * reason, we choose instead to not sync to disk for every write but instead sync only when we checkpoint.
  * </p>
+ *
+ * <p>
+ * As a third option, the <code>nifi.flowfile.repository.group.commit.window</code> property may be set to a time period, such as <code>2 millis</code>. In this case, every update is synced to disk
+ * before it is considered complete, as with <code>nifi.flowfile.repository.always.sync</code>, but updates that are written to the same partition within that window share a single sync. This provides
+ * the same durability guarantee as syncing every update at a fraction of the cost when many threads are updating the repository concurrently.
+ * </p>
  */
 public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncListener {
 
     private final AtomicLong flowFileSequenceGenerator = new AtomicLong(0L);
     private final boolean alwaysSync;
+    private final long groupCommitWindowNanos;
 
     private static final Logger logger = LoggerFactory.getLogger(WriteAheadFlowFileRepository.class);
     private volatile ScheduledFuture<?> checkpointFuture;
@@ -115,7 +132,23 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
     public WriteAheadFlowFileRepository() {
         final NiFiProperties properties = NiFiProperties.getInstance();
 
-        alwaysSync = Boolean.parseBoolean(properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_ALWAYS_SYNC, "false"));
+        final String groupCommitWindow = properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW);
+        if (groupCommitWindow == null || groupCommitWindow.trim().isEmpty()) {
+            groupCommitWindowNanos = -1L;
+            alwaysSync = Boolean.parseBoolean(properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_ALWAYS_SYNC, "false"));
+        } else {
+            try {
+                groupCommitWindowNanos = FormatUtils.getTimeDuration(groupCommitWindow.trim(), TimeUnit.NANOSECONDS);
+            } catch (final IllegalArgumentException iae) {
+                throw new RuntimeException("Invalid value specified for the '" + NiFiProperties.FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW
+                    + "' property. Value must be a time period, such as 2 millis");
+            }
+
+            // group commit syncs every update; it only changes how those syncs are performed
+            alwaysSync = true;
+        }
+        logger.info("Initializing WriteAheadFlowFileRepository with 'Always Sync' set to {} and Group Commit {}", alwaysSync,
+            groupCommitWindowNanos < 0 ? "disabled" : "window of " + groupCommitWindowNanos + " nanos");
 
         // determine the database file path and ensure it exists
         flowFileRepositoryPath = properties.getFlowFileRepositoryPath();
@@ -136,7 +169,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         // backup and then the data deleted from the normal location; then can move backup to normal location and
         // delete backup. On restore, if no files exist in partition's directory, would have to check backup directory
         serde = new WriteAheadRecordSerde(claimManager);
-        wal = new MinimalLockingWriteAheadLog<>(flowFileRepositoryPath, numPartitions, serde, this);
+        wal = new MinimalLockingWriteAheadLog<>(flowFileRepositoryPath, numPartitions, serde, this, groupCommitWindowNanos, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -387,7 +420,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         return wal.checkpoint();
     }
 
-    private static class WriteAheadRecordSerde implements SerDe<RepositoryRecord> {
+    private static class WriteAheadRecordSerde implements MergeableSerDe<RepositoryRecord>, StreamScopedSerDe<RepositoryRecord> {
 
         public static final byte ACTION_CREATE = 0;
         public static final byte ACTION_UPDATE = 1;
@@ -395,8 +428,19 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         public static final byte ACTION_SWAPPED_OUT = 3;
         public static final byte ACTION_SWAPPED_IN = 4;
 
+        private static final int ATTRIBUTES_UNCHANGED = 0;
+        private static final int ATTRIBUTES_ALL = 1;
+        private static final int ATTRIBUTES_CHANGED = 2;
+
+        // Starting with version 8, attribute names, queue identifiers and the container and section of Resource Claims are
+        // written using a dictionary that is scoped to the stream being written. Each journal and each snapshot therefore
+        // carries its own dictionary and can be read on its own. A value is written in full the first time that it is
+        // encountered in a stream and as an index into the dictionary thereafter. The dictionary is kept with the stream that
+        // the Write-Ahead Log obtains from this SerDe for each journal and snapshot. A stream is only ever written to or read
+        // from by one thread at a time, so the dictionaries themselves need not be thread-safe. See VariableLengthEncoding.
+
         private Map<String, FlowFileQueue> flowFileQueueMap = null;
-        private long recordsRestored = 0L;
+        private final AtomicLong recordsRestored = new AtomicLong(0L);
         private final ResourceClaimManager claimManager;
 
         public WriteAheadRecordSerde(final ResourceClaimManager claimManager) {
@@ -407,17 +451,29 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             this.flowFileQueueMap = queueMap;
         }
 
+        @Override
+        public DataOutputStream createOutputStream(final OutputStream out) {
+            return new DictionaryOutputStream(out);
+        }
+
+        @Override
+        public DataInputStream createInputStream(final InputStream in) {
+            return new DictionaryInputStream(in);
+        }
+
         @Override
         public void serializeEdit(final RepositoryRecord previousRecordState, final RepositoryRecord record, final DataOutputStream out) throws IOException {
             serializeEdit(previousRecordState, record, out, false);
         }
 
         public void serializeEdit(final RepositoryRecord previousRecordState, final RepositoryRecord record, final DataOutputStream out, final boolean forceAttributesWritten) throws IOException {
+            final Map<String, Integer> dictionary = getWriteDictionary(out);
+
             if (record.isMarkedForAbort()) {
                 logger.warn("Repository Record {} is marked to be aborted; it will be persisted in the FlowFileRepository as a DELETE record", record);
                 out.write(ACTION_DELETE);
-                out.writeLong(getRecordIdentifier(record));
-                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out);
+                writeVarLong(getRecordIdentifier(record), out);
+                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out, dictionary);
                 return;
             }
 
@@ -425,8 +481,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
             if (updateType.equals(UpdateType.DELETE)) {
                 out.write(ACTION_DELETE);
-                out.writeLong(getRecordIdentifier(record));
-                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out);
+                writeVarLong(getRecordIdentifier(record), out);
+                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out, dictionary);
                 return;
             }
 
@@ -441,9 +497,9 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
             if (updateType.equals(UpdateType.SWAP_OUT)) {
                 out.write(ACTION_SWAPPED_OUT);
-                out.writeLong(getRecordIdentifier(record));
-                out.writeUTF(associatedQueue.getIdentifier());
-                out.writeUTF(getLocation(record));
+                writeVarLong(getRecordIdentifier(record), out);
+                writeDictionaryString(associatedQueue.getIdentifier(), out, dictionary);
+                writeVarString(getLocation(record), out);
                 return;
             }
 
@@ -464,64 +520,129 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                     throw new AssertionError();
             }
 
-            out.writeLong(getRecordIdentifier(record));
-            out.writeLong(flowFile.getEntryDate());
+            writeVarLong(getRecordIdentifier(record), out);
+            writeVarLong(flowFile.getEntryDate(), out);
 
             final Set<String> lineageIdentifiers = flowFile.getLineageIdentifiers();
-            out.writeInt(lineageIdentifiers.size());
+            writeVarInt(lineageIdentifiers.size(), out);
             for (final String lineageId : lineageIdentifiers) {
-                out.writeUTF(lineageId);
+                writeVarString(lineageId, out);
             }
 
-            out.writeLong(flowFile.getLineageStartDate());
+            writeVarLong(flowFile.getLineageStartDate(), out);
 
             final Long queueDate = flowFile.getLastQueueDate();
-            out.writeLong(queueDate == null ? System.currentTimeMillis() : queueDate);
-            out.writeLong(flowFile.getSize());
+            writeVarLong(queueDate == null ? System.currentTimeMillis() : queueDate, out);
+            writeVarLong(flowFile.getSize(), out);
 
             if (associatedQueue == null) {
                 logger.warn("{} Repository Record {} has no Connection associated with it; it will be destroyed on restart",
                         new Object[]{this, record});
-                writeString("", out);
+                writeDictionaryString("", out, dictionary);
             } else {
-                writeString(associatedQueue.getIdentifier(), out);
+                writeDictionaryString(associatedQueue.getIdentifier(), out, dictionary);
             }
 
-            serializeContentClaim(claim, record.getCurrentClaimOffset(), out);
+            serializeContentClaim(claim, record.getCurrentClaimOffset(), out, dictionary);
 
-            if (forceAttributesWritten || record.isAttributesChanged() || updateType == UpdateType.CREATE || updateType == UpdateType.SWAP_IN) {
-                out.write(1);   // indicate attributes changed
-                final Map<String, String> attributes = flowFile.getAttributes();
-                out.writeInt(attributes.size());
-                for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    writeString(entry.getKey(), out);
-                    writeString(entry.getValue(), out);
+            if (forceAttributesWritten || updateType == UpdateType.CREATE || updateType == UpdateType.SWAP_IN) {
+                serializeAttributes(flowFile.getAttributes(), out, dictionary);
+            } else if (record.isAttributesChanged()) {
+                final Map<String, String> persistedAttributes = getPersistedAttributes(previousRecordState, record);
+                if (persistedAttributes == null) {
+                    serializeAttributes(flowFile.getAttributes(), out, dictionary);
+                } else {
+                    serializeChangedAttributes(persistedAttributes, flowFile.getAttributes(), out, dictionary);
                 }
             } else {
-                out.write(0);   // indicate attributes did not change
+                out.write(ATTRIBUTES_UNCHANGED);
             }
 
             if (updateType == UpdateType.SWAP_IN) {
-                out.writeUTF(record.getSwapLocation());
+                writeVarString(record.getSwapLocation(), out);
+            }
+        }
+
+        /**
+         * Returns the attributes of the FlowFile as they were last written to the repository, if the given record was created
+         * from exactly that version of the FlowFile. In this case, only the attributes that differ need to be written, because
+         * recovery will restore the previous version of the FlowFile before applying this edit. Otherwise, returns <code>null</code>.
+         */
+        private Map<String, String> getPersistedAttributes(final RepositoryRecord previousRecordState, final RepositoryRecord record) {
+            if (previousRecordState == null || !(record instanceof StandardRepositoryRecord)) {
+                return null;
+            }
+
+            final FlowFileRecord original = ((StandardRepositoryRecord) record).getOriginal();
+            if (original == null || original != previousRecordState.getCurrent()) {
+                return null;
+            }
+
+            return original.getAttributes();
+        }
+
+        private void serializeAttributes(final Map<String, String> attributes, final DataOutputStream out, final Map<String, Integer> dictionary) throws IOException {
+            out.write(ATTRIBUTES_ALL);
+            writeVarInt(attributes.size(), out);
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                writeDictionaryString(entry.getKey(), out, dictionary);
+                writeVarString(entry.getValue(), out);
+            }
+        }
+
+        private void serializeChangedAttributes(final Map<String, String> persistedAttributes, final Map<String, String> attributes, final DataOutputStream out,
+            final Map<String, Integer> dictionary) throws IOException {
+
+            int numChanged = 0;
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                if (!entry.getValue().equals(persistedAttributes.get(entry.getKey()))) {
+                    numChanged++;
+                }
+            }
+
+            int numRemoved = 0;
+            for (final String key : persistedAttributes.keySet()) {
+                if (!attributes.containsKey(key)) {
+                    numRemoved++;
+                }
+            }
+
+            out.write(ATTRIBUTES_CHANGED);
+            writeVarInt(numChanged, out);
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                if (!entry.getValue().equals(persistedAttributes.get(entry.getKey()))) {
+                    writeDictionaryString(entry.getKey(), out, dictionary);
+                    writeVarString(entry.getValue(), out);
+                }
+            }
+
+            writeVarInt(numRemoved, out);
+            for (final String key : persistedAttributes.keySet()) {
+                if (!attributes.containsKey(key)) {
+                    writeDictionaryString(key, out, dictionary);
+                }
             }
         }
 
         @Override
         public RepositoryRecord deserializeEdit(final DataInputStream in, final Map<Object, RepositoryRecord> currentRecordStates, final int version) throws IOException {
-            final int action = in.read();
-            final long recordId = in.readLong();
-            if (action == ACTION_DELETE) {
-                final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder().id(recordId);
+            final RepositoryRecord edit = readEdit(in, version);
+            return applyEdit(currentRecordStates.get(getRecordIdentifier(edit)), edit);
+        }
 
-                if (version > 4) {
-                    deserializeClaim(in, version, ffBuilder);
+        @Override
+        public RepositoryRecord readEdit(final DataInputStream in, final int version) throws IOException {
+            final int action = in.read();
+            if (version > 7) {
+                if (action == -1) {
+                    throw new EOFException();
                 }
+                return readCompactEdit(in, action);
+            }
 
-                final FlowFileRecord flowFileRecord = ffBuilder.build();
-                final StandardRepositoryRecord record = new StandardRepositoryRecord((FlowFileQueue) null, flowFileRecord);
-                record.markForDelete();
-
-                return record;
+            final long recordId = in.readLong();
+            if (action == ACTION_DELETE) {
+                return createDeleteRecord(recordId, version > 4 ? deserializeClaim(in, version) : null);
             }
 
             if (action == ACTION_SWAPPED_OUT) {
@@ -536,13 +657,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 return new StandardRepositoryRecord(queue, flowFileRecord, location);
             }
 
-            final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder();
-            final RepositoryRecord record = currentRecordStates.get(recordId);
-            ffBuilder.id(recordId);
-            if (record != null) {
-                ffBuilder.fromFlowFile(record.getCurrent());
-            }
-            ffBuilder.entryDate(in.readLong());
+            final RecoveredEdit edit = new RecoveredEdit(recordId);
+            edit.entryDate = in.readLong();
 
             if (version > 1) {
                 // read the lineage identifiers and lineage start date, which were added in version 2.
@@ -551,26 +667,26 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 for (int i = 0; i < numLineageIds; i++) {
                     lineageIdentifiers.add(in.readUTF());
                 }
-                ffBuilder.lineageIdentifiers(lineageIdentifiers);
-                ffBuilder.lineageStartDate(in.readLong());
+                edit.lineageIdentifiers = lineageIdentifiers;
+                edit.lineageStartDate = in.readLong();
 
                 if (version > 5) {
-                    ffBuilder.lastQueueDate(in.readLong());
+                    edit.lastQueueDate = in.readLong();
                 }
             }
 
-            ffBuilder.size(in.readLong());
-            final String connectionId = readString(in);
+            edit.size = in.readLong();
+            edit.connectionId = readString(in);
 
-            logger.debug("{} -> {}", new Object[]{recordId, connectionId});
+            logger.debug("{} -> {}", new Object[]{recordId, edit.connectionId});
 
-            deserializeClaim(in, version, ffBuilder);
+            edit.claim = deserializeClaim(in, version);
 
             // recover new attributes, if they changed
             final int attributesChanged = in.read();
             if (attributesChanged == -1) {
                 throw new EOFException();
-            } else if (attributesChanged == 1) {
+            } else if (attributesChanged == ATTRIBUTES_ALL) {
                 final int numAttributes = in.readInt();
                 final Map<String, String> attributes = new HashMap<>();
                 for (int i = 0; i < numAttributes; i++) {
@@ -579,40 +695,97 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                     attributes.put(key, value);
                 }
 
-                ffBuilder.addAttributes(attributes);
-            } else if (attributesChanged != 0) {
+                edit.attributesMode = ATTRIBUTES_ALL;
+                edit.attributes = attributes;
+            } else if (attributesChanged != ATTRIBUTES_UNCHANGED) {
                 throw new IOException("Attribute Change Qualifier not found in stream; found value: "
                         + attributesChanged + " after successfully restoring " + recordsRestored + " records. The FlowFile Repository appears to be corrupt!");
             }
 
-            final FlowFileRecord flowFile = ffBuilder.build();
-            String swapLocation = null;
             if (action == ACTION_SWAPPED_IN) {
-                swapLocation = in.readUTF();
+                edit.swapLocation = in.readUTF();
+            }
+
+            return edit;
+        }
+
+        @Override
+        public RepositoryRecord applyEdit(final RepositoryRecord currentRecordState, final RepositoryRecord edit) {
+            // deletions and swap-outs are read in full, as they do not depend on the previous state of the FlowFile
+            if (!(edit instanceof RecoveredEdit)) {
+                return edit;
+            }
+
+            return createRecord((RecoveredEdit) edit, currentRecordState);
+        }
+
+        /**
+         * Creates the record for an edit, starting from the current state of the FlowFile so that any fields
+         * that are not contained in the edit are retained
+         *
+         * @param edit the edit that was read
+         * @param currentRecordState the current state of the FlowFile, or <code>null</code> if not known
+         */
+        private StandardRepositoryRecord createRecord(final RecoveredEdit edit, final RepositoryRecord currentRecordState) {
+            final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder();
+            ffBuilder.id(edit.recordId);
+            if (currentRecordState != null) {
+                ffBuilder.fromFlowFile(currentRecordState.getCurrent());
+            }
+            ffBuilder.entryDate(edit.entryDate);
+
+            if (edit.lineageIdentifiers != null) {
+                ffBuilder.lineageIdentifiers(edit.lineageIdentifiers);
+                ffBuilder.lineageStartDate(edit.lineageStartDate);
+            }
+            if (edit.lastQueueDate != null) {
+                ffBuilder.lastQueueDate(edit.lastQueueDate);
             }
 
-            final StandardRepositoryRecord standardRepoRecord;
+            ffBuilder.size(edit.size);
+            setClaim(edit.claim, ffBuilder);
+
+            if (edit.attributesMode != ATTRIBUTES_UNCHANGED) {
+                ffBuilder.addAttributes(edit.attributes);
+            }
+            if (edit.attributesMode == ATTRIBUTES_CHANGED) {
+                ffBuilder.removeAttributes(edit.removedAttributes);
+            }
+
+            final FlowFileRecord flowFile = ffBuilder.build();
+            final StandardRepositoryRecord record;
 
             if (flowFileQueueMap == null) {
-                standardRepoRecord = new StandardRepositoryRecord(null, flowFile);
+                record = new StandardRepositoryRecord(null, flowFile);
             } else {
+                final String connectionId = edit.connectionId;
                 final FlowFileQueue queue = flowFileQueueMap.get(connectionId);
-                standardRepoRecord = new StandardRepositoryRecord(queue, flowFile);
-                if (swapLocation != null) {
-                    standardRepoRecord.setSwapLocation(swapLocation);
+                record = new StandardRepositoryRecord(queue, flowFile);
+                if (edit.swapLocation != null) {
+                    record.setSwapLocation(edit.swapLocation);
                 }
 
                 if (connectionId.isEmpty()) {
                     logger.warn("{} does not have a Queue associated with it; this record will be discarded", flowFile);
-                    standardRepoRecord.markForAbort();
+                    record.markForAbort();
                 } else if (queue == null) {
                     logger.warn("{} maps to unknown Queue {}; this record will be discarded", flowFile, connectionId);
-                    standardRepoRecord.markForAbort();
+                    record.markForAbort();
                 }
             }
 
-            recordsRestored++;
-            return standardRepoRecord;
+            recordsRestored.incrementAndGet();
+            return record;
+        }
+
+        private StandardRepositoryRecord createDeleteRecord(final long recordId, final ClaimReference claim) {
+            final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder().id(recordId);
+            setClaim(claim, ffBuilder);
+
+            final FlowFileRecord flowFileRecord = ffBuilder.build();
+            final StandardRepositoryRecord record = new StandardRepositoryRecord((FlowFileQueue) null, flowFileRecord);
+            record.markForDelete();
+            return record;
         }
 
         @Override
@@ -622,12 +795,17 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 return null;
             }
 
+            if (version > 7) {
+                final RepositoryRecord edit = readCompactEdit(in, action);
+                return edit instanceof RecoveredEdit ? createRecord((RecoveredEdit) edit, null) : (StandardRepositoryRecord) edit;
+            }
+
             final long recordId = in.readLong();
             if (action == ACTION_DELETE) {
                 final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder().id(recordId);
 
                 if (version > 4) {
-                    deserializeClaim(in, version, ffBuilder);
+                    setClaim(deserializeClaim(in, version), ffBuilder);
                 }
 
                 final FlowFileRecord flowFileRecord = ffBuilder.build();
@@ -664,7 +842,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             ffBuilder.entryDate(entryDate);
             ffBuilder.size(size);
 
-            deserializeClaim(in, version, ffBuilder);
+            setClaim(deserializeClaim(in, version), ffBuilder);
 
             final int attributesChanged = in.read();
             if (attributesChanged == 1) {
@@ -710,34 +888,143 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 }
             }
 
-            recordsRestored++;
+            recordsRestored.incrementAndGet();
             return record;
         }
 
+        /**
+         * Reads an edit that was written using version 8 or later of this SerDe
+         *
+         * @param in the stream to read from
+         * @param action the action of the record, which has already been read from the stream
+         */
+        private RepositoryRecord readCompactEdit(final DataInputStream in, final int action) throws IOException {
+            final List<String> dictionary = getReadDictionary(in);
+            final long recordId = readVarLong(in);
+
+            if (action == ACTION_DELETE) {
+                return createDeleteRecord(recordId, deserializeCompactClaim(in, dictionary));
+            }
+
+            if (action == ACTION_SWAPPED_OUT) {
+                final String queueId = readDictionaryString(in, dictionary);
+                final String location = readVarString(in);
+                final FlowFileQueue queue = flowFileQueueMap == null ? null : flowFileQueueMap.get(queueId);
+
+                final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
+                        .id(recordId)
+                        .build();
+
+                return new StandardRepositoryRecord(queue, flowFileRecord, location);
+            }
+
+            if (action != ACTION_CREATE && action != ACTION_UPDATE && action != ACTION_SWAPPED_IN) {
+                throw new IOException("Found unknown action " + action + " after successfully restoring " + recordsRestored
+                    + " records. The FlowFile Repository appears to be corrupt!");
+            }
+
+            final RecoveredEdit edit = new RecoveredEdit(recordId);
+            edit.entryDate = readVarLong(in);
+
+            final int numLineageIds = readVarInt(in);
+            final Set<String> lineageIdentifiers = new HashSet<>(numLineageIds);
+            for (int i = 0; i < numLineageIds; i++) {
+                lineageIdentifiers.add(readVarString(in));
+            }
+            edit.lineageIdentifiers = lineageIdentifiers;
+            edit.lineageStartDate = readVarLong(in);
+            edit.lastQueueDate = readVarLong(in);
+            edit.size = readVarLong(in);
+
+            edit.connectionId = readDictionaryString(in, dictionary);
+            logger.debug("{} -> {}", new Object[]{recordId, edit.connectionId});
+
+            edit.claim = deserializeCompactClaim(in, dictionary);
+
+            final int attributesChanged = in.read();
+            if (attributesChanged == ATTRIBUTES_ALL || attributesChanged == ATTRIBUTES_CHANGED) {
+                final int numAttributes = readVarInt(in);
+                final Map<String, String> attributes = new HashMap<>(numAttributes * 2);
+                for (int i = 0; i < numAttributes; i++) {
+                    final String key = readDictionaryString(in, dictionary);
+                    final String value = readVarString(in);
+                    attributes.put(key, value);
+                }
+                edit.attributesMode = attributesChanged;
+                edit.attributes = attributes;
+
+                if (attributesChanged == ATTRIBUTES_CHANGED) {
+                    final int numRemoved = readVarInt(in);
+                    final Set<String> removedAttributes = new HashSet<>(numRemoved * 2);
+                    for (int i = 0; i < numRemoved; i++) {
+                        removedAttributes.add(readDictionaryString(in, dictionary));
+                    }
+                    edit.removedAttributes = removedAttributes;
+                }
+            } else if (attributesChanged == -1) {
+                throw new EOFException();
+            } else if (attributesChanged != ATTRIBUTES_UNCHANGED) {
+                throw new IOException("Attribute Change Qualifier not found in stream; found value: "
+                        + attributesChanged + " after successfully restoring " + recordsRestored + " records. The FlowFile Repository appears to be corrupt!");
+            }
+
+            if (action == ACTION_SWAPPED_IN) {
+                edit.swapLocation = readVarString(in);
+            }
+
+            return edit;
+        }
+
         @Override
         public void serializeRecord(final RepositoryRecord record, final DataOutputStream out) throws IOException {
             serializeEdit(null, record, out, true);
         }
 
-        private void serializeContentClaim(final ContentClaim claim, final long offset, final DataOutputStream out) throws IOException {
+        private void serializeContentClaim(final ContentClaim claim, final long offset, final DataOutputStream out, final Map<String, Integer> dictionary) throws IOException {
             if (claim == null) {
                 out.write(0);
             } else {
                 out.write(1);
 
                 final ResourceClaim resourceClaim = claim.getResourceClaim();
-                writeString(resourceClaim.getId(), out);
-                writeString(resourceClaim.getContainer(), out);
-                writeString(resourceClaim.getSection(), out);
-                out.writeLong(claim.getOffset());
-                out.writeLong(claim.getLength());
+                writeVarString(resourceClaim.getId(), out);
+                writeDictionaryString(resourceClaim.getContainer(), out, dictionary);
+                writeDictionaryString(resourceClaim.getSection(), out, dictionary);
+                writeVarLong(claim.getOffset(), out);
+                writeVarLong(claim.getLength() + 1, out); // length is -1 if unknown
 
-                out.writeLong(offset);
+                writeVarLong(offset, out);
                 out.writeBoolean(resourceClaim.isLossTolerant());
             }
         }
 
-        private void deserializeClaim(final DataInputStream in, final int serializationVersion, final StandardFlowFileRecord.Builder ffBuilder) throws IOException {
+        private ClaimReference deserializeCompactClaim(final DataInputStream in, final List<String> dictionary) throws IOException {
+            final int claimExists = in.read();
+            if (claimExists == 1) {
+                final String claimId = readVarString(in);
+                final String container = readDictionaryString(in, dictionary);
+                final String section = readDictionaryString(in, dictionary);
+                final long resourceOffset = readVarLong(in);
+                final long resourceLength = readVarLong(in) - 1;
+                final long claimOffset = readVarLong(in);
+                final boolean lossTolerant = in.readBoolean();
+
+                final ResourceClaim resourceClaim = claimManager.newResourceClaim(container, section, claimId, lossTolerant);
+                final StandardContentClaim contentClaim = new StandardContentClaim(resourceClaim, resourceOffset);
+                contentClaim.setLength(resourceLength);
+
+                return new ClaimReference(contentClaim, claimOffset);
+            } else if (claimExists == -1) {
+                throw new EOFException();
+            } else if (claimExists != 0) {
+                throw new IOException("Claim Existence Qualifier not found in stream; found value: "
+                        + claimExists + " after successfully restoring " + recordsRestored + " records");
+            }
+
+            return null;
+        }
+
+        private ClaimReference deserializeClaim(final DataInputStream in, final int serializationVersion) throws IOException {
             // determine current Content Claim.
             final int claimExists = in.read();
             if (claimExists == 1) {
@@ -774,33 +1061,37 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 final StandardContentClaim contentClaim = new StandardContentClaim(resourceClaim, resourceOffset);
                 contentClaim.setLength(resourceLength);
 
-                ffBuilder.contentClaim(contentClaim);
-                ffBuilder.contentClaimOffset(claimOffset);
+                return new ClaimReference(contentClaim, claimOffset);
             } else if (claimExists == -1) {
                 throw new EOFException();
             } else if (claimExists != 0) {
                 throw new IOException("Claim Existence Qualifier not found in stream; found value: "
                         + claimExists + " after successfully restoring " + recordsRestored + " records");
             }
+
+            return null;
         }
 
-        private void writeString(final String toWrite, final OutputStream out) throws IOException {
-            final byte[] bytes = toWrite.getBytes("UTF-8");
-            final int utflen = bytes.length;
+        private void setClaim(final ClaimReference claim, final StandardFlowFileRecord.Builder ffBuilder) {
+            if (claim != null) {
+                ffBuilder.contentClaim(claim.contentClaim);
+                ffBuilder.contentClaimOffset(claim.claimOffset);
+            }
+        }
 
-            if (utflen < 65535) {
-                out.write(utflen >>> 8);
-                out.write(utflen);
-                out.write(bytes);
-            } else {
-                out.write(255);
-                out.write(255);
-                out.write(utflen >>> 24);
-                out.write(utflen >>> 16);
-                out.write(utflen >>> 8);
-                out.write(utflen);
-                out.write(bytes);
+        // a stream that was not obtained from this SerDe carries no dictionary, so its values are only shared within a single record
+        private Map<String, Integer> getWriteDictionary(final DataOutputStream out) {
+            if (out instanceof DictionaryOutputStream) {
+                return ((DictionaryOutputStream) out).dictionary;
             }
+            return new HashMap<>();
+        }
+
+        private List<String> getReadDictionary(final DataInputStream in) {
+            if (in instanceof DictionaryInputStream) {
+                return ((DictionaryInputStream) in).dictionary;
+            }
+            return new ArrayList<>();
         }
 
         private String readString(final InputStream in) throws IOException {
@@ -872,12 +1163,71 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
         @Override
         public int getVersion() {
-            return 7;
+            return 8;
         }
 
         @Override
         public String getLocation(final RepositoryRecord record) {
             return record.getSwapLocation();
         }
+
+        /**
+         * The stream of a journal or snapshot that is being written, along with the dictionary of the values written to it
+         */
+        private static class DictionaryOutputStream extends DataOutputStream {
+            private final Map<String, Integer> dictionary = new HashMap<>();
+
+            DictionaryOutputStream(final OutputStream out) {
+                super(out);
+            }
+        }
+
+        /**
+         * The stream of a journal or snapshot that is being read, along with the dictionary of the values read from it
+         */
+        private static class DictionaryInputStream extends DataInputStream {
+            private final List<String> dictionary = new ArrayList<>();
+
+            DictionaryInputStream(final InputStream in) {
+                super(in);
+            }
+        }
+
+        /**
+         * A Content Claim and the offset of the FlowFile's content within it, as read from a stream
+         */
+        private static class ClaimReference {
+            private final ContentClaim contentClaim;
+            private final long claimOffset;
+
+            ClaimReference(final ContentClaim contentClaim, final long claimOffset) {
+                this.contentClaim = contentClaim;
+                this.claimOffset = claimOffset;
+            }
+        }
+
+        /**
+         * An edit that has been read from a journal but not yet applied to the previous state of its FlowFile.
+         * Until it has been applied, only the identifier of the FlowFile may be obtained from it.
+         */
+        private static class RecoveredEdit extends StandardRepositoryRecord {
+            private final long recordId;
+            private long entryDate;
+            private Set<String> lineageIdentifiers; // null if the edit does not contain lineage
+            private long lineageStartDate;
+            private Long lastQueueDate; // null if the edit does not contain the last queue date
+            private long size;
+            private String connectionId;
+            private ClaimReference claim; // null if the edit does not contain a Content Claim
+            private int attributesMode = ATTRIBUTES_UNCHANGED;
+            private Map<String, String> attributes;
+            private Set<String> removedAttributes;
+            private String swapLocation;
+
+            RecoveredEdit(final long recordId) {
+                super((FlowFileQueue) null, new StandardFlowFileRecord.Builder().id(recordId).build());
+                this.recordId = recordId;
+            }
+        }
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
+
+/**
+ * An InputStream that reads the remaining bytes of a ByteBuffer, such as a memory-mapped region of a file.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private boolean closed = false;
+
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        final int toRead = Math.min(len, buffer.remaining());
+        buffer.get(b, off, toRead);
+        return toRead;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n <= 0) {
+            return 0L;
+        }
+
+        final int toSkip = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + toSkip);
+        return toSkip;
+    }
+
+    @Override
+    public int available() {
+        return closed ? 0 : buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(final int readlimit) {
+        buffer.mark();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        try {
+            buffer.reset();
+        } catch (final InvalidMarkException ime) {
+            throw new IOException("Stream has not been marked");
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Compact encodings shared by the FlowFile Repository, the Swap Files and the Status History segments.
+ * </p>
+ *
+ * <p>
+ * Numbers are written 7 bits at a time, least significant group first, with the high bit of each byte indicating
+ * whether or not more bytes follow. Strings are written as their UTF-8 length followed by their bytes. Dictionary
+ * strings are written in full the first time that they are encountered and as an index into a dictionary thereafter;
+ * the caller owns the dictionary and must use the same one for everything that is written to or read from a given stream.
+ * </p>
+ */
+public final class VariableLengthEncoding {
+
+    public static final int MAX_DICTIONARY_SIZE = 10000;
+
+    private static final int DICTIONARY_LITERAL = 0;
+    private static final int DICTIONARY_NEW_ENTRY = 1;
+    private static final int DICTIONARY_INDEX_OFFSET = 2;
+
+    private VariableLengthEncoding() {
+    }
+
+    public static void writeVarLong(final long value, final OutputStream out) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            out.write((int) ((remaining & 0x7FL) | 0x80L));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    public static long readVarLong(final InputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int nextByte = in.read();
+            if (nextByte < 0) {
+                throw new EOFException();
+            }
+
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Found malformed variable-length value");
+    }
+
+    /**
+     * Reads a value that was written by {@link #writeVarLong(long, OutputStream)} from the given buffer
+     *
+     * @throws IndexOutOfBoundsException if the buffer ends before the value does or the value is malformed
+     */
+    public static long readVarLong(final ByteBuffer buffer) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int nextByte = buffer.get() & 0xFF;
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IndexOutOfBoundsException("Found malformed variable-length value");
+    }
+
+    /**
+     * @return the number of bytes that {@link #writeVarLong(long, OutputStream)} writes for the given value
+     */
+    public static int varLongLength(final long value) {
+        int length = 1;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            length++;
+            remaining >>>= 7;
+        }
+        return length;
+    }
+
+    public static void writeVarInt(final int value, final OutputStream out) throws IOException {
+        writeVarLong(value, out);
+    }
+
+    public static int readVarInt(final InputStream in) throws IOException {
+        final long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Expected an integer value but found " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a value that was written by {@link #writeVarInt(int, OutputStream)} from the given buffer
+     *
+     * @throws IndexOutOfBoundsException if the buffer ends before the value does or the value is not a valid integer
+     */
+    public static int readVarInt(final ByteBuffer buffer) {
+        final long value = readVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("Expected an integer value but found " + value);
+        }
+        return (int) value;
+    }
+
+    public static void writeVarString(final String toWrite, final OutputStream out) throws IOException {
+        final byte[] bytes = toWrite.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length, out);
+        out.write(bytes);
+    }
+
+    public static String readVarString(final InputStream in) throws IOException {
+        final int numBytes = readVarInt(in);
+        final byte[] bytes = new byte[numBytes];
+
+        int bytesRead;
+        int totalBytesRead = 0;
+        while ((bytesRead = in.read(bytes, totalBytesRead, numBytes - totalBytesRead)) > 0) {
+            totalBytesRead += bytesRead;
+        }
+        if (totalBytesRead != numBytes) {
+            throw new EOFException();
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the given String, adding it to the given dictionary if it is not yet present and the dictionary
+     * has not yet reached {@link #MAX_DICTIONARY_SIZE} entries
+     */
+    public static void writeDictionaryString(final String toWrite, final OutputStream out, final Map<String, Integer> dictionary) throws IOException {
+        final Integer index = dictionary.get(toWrite);
+        if (index != null) {
+            writeVarInt(index + DICTIONARY_INDEX_OFFSET, out);
+        } else if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            writeVarInt(DICTIONARY_NEW_ENTRY, out);
+            writeVarString(toWrite, out);
+            dictionary.put(toWrite, dictionary.size());
+        } else {
+            writeVarInt(DICTIONARY_LITERAL, out);
+            writeVarString(toWrite, out);
+        }
+    }
+
+    /**
+     * Reads a String that was written by {@link #writeDictionaryString(String, OutputStream, Map)}, adding it
+     * to the given dictionary if it was new to the dictionary when it was written
+     */
+    public static String readDictionaryString(final InputStream in, final List<String> dictionary) throws IOException {
+        final int code = readVarInt(in);
+        if (code == DICTIONARY_LITERAL) {
+            return readVarString(in);
+        }
+        if (code == DICTIONARY_NEW_ENTRY) {
+            final String value = readVarString(in);
+            dictionary.add(value);
+            return value;
+        }
+
+        final int index = code - DICTIONARY_INDEX_OFFSET;
+        if (index < 0 || index >= dictionary.size()) {
+            throw new IOException("Found reference to unknown dictionary entry " + index);
+        }
+        return dictionary.get(index);
+    }
+}
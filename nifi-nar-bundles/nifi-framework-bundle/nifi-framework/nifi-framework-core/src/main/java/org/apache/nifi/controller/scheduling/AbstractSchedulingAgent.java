@@ -31,6 +31,7 @@ import org.apache.nifi.engine.FlowEngine;
  * @see EventDrivenSchedulingAgent
  * @see TimerDrivenSchedulingAgent
  * @see QuartzSchedulingAgent
+ * @see WorkStealingSchedulingAgent
  */
 abstract class AbstractSchedulingAgent implements SchedulingAgent {
 
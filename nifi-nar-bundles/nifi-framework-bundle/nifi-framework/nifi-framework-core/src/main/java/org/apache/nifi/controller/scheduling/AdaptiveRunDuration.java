@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.ProcessorNode;
+
+/**
+ * <p>
+ * Chooses the Run Duration for a Processor that supports batching but whose Run Duration has not been configured.
+ * After each batch is committed, the Run Duration is adjusted:
+ * </p>
+ *
+ * <ul>
+ * <li>If the Processor still had work to do when the batch ended and a significant portion of the batch was spent
+ * committing the session, the Run Duration is doubled (up to the configured maximum), so that the cost of updating
+ * the FlowFile and Provenance Repositories is spread across more FlowFiles.</li>
+ * <li>If the batch ended because the Processor ran out of work, yielded, or could not transfer to its destinations,
+ * the Run Duration is halved, so that a Processor that is keeping up with its input does not hold FlowFiles in an
+ * uncommitted session any longer than necessary.</li>
+ * </ul>
+ *
+ * <p>
+ * The maximum Run Duration therefore bounds the latency that batching may add. This class also keeps track of how often
+ * the framework commits batched sessions for the Processor.
+ * </p>
+ */
+public class AdaptiveRunDuration {
+
+    // if more than this portion of a batch is spent committing the session, the Run Duration is increased
+    static final double TARGET_COMMIT_RATIO = 0.1D;
+    static final long MIN_RUN_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final long DEFAULT_RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5L);
+
+    private final long maxRunDurationNanos;
+    private final long rateIntervalNanos;
+    private volatile long runDurationNanos = 0L;
+
+    // guarded by synchronizing on 'this'
+    private long intervalStartNanos = System.nanoTime();
+    private long intervalCommits = 0L;
+    private double commitsPerSecond = 0D;
+
+    public AdaptiveRunDuration(final long maxRunDuration, final TimeUnit timeUnit) {
+        this(maxRunDuration, timeUnit, DEFAULT_RATE_INTERVAL_NANOS);
+    }
+
+    // exposed for unit tests
+    AdaptiveRunDuration(final long maxRunDuration, final TimeUnit timeUnit, final long rateIntervalNanos) {
+        this.maxRunDurationNanos = timeUnit.toNanos(maxRunDuration);
+        this.rateIntervalNanos = rateIntervalNanos;
+    }
+
+    /**
+     * @param procNode the Processor
+     * @return <code>true</code> if the Run Duration of the given Processor should be chosen by this object,
+     *         <code>false</code> if adaptive batching is disabled, the Processor does not support batching,
+     *         or the Processor has been configured with a Run Duration
+     */
+    public boolean isApplicable(final ProcessorNode procNode) {
+        return maxRunDurationNanos > 0L && procNode.isHighThroughputSupported() && procNode.getRunDuration(TimeUnit.NANOSECONDS) == 0L;
+    }
+
+    /**
+     * @param timeUnit the desired time unit
+     * @return the Run Duration that should be used for the next batch
+     */
+    public long getRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(runDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adjusts the Run Duration based on the outcome of a batch that was committed
+     *
+     * @param batchNanos the total number of nanoseconds that the batch took, including the commit
+     * @param commitNanos the number of nanoseconds that were spent committing the session
+     * @param workRemaining whether or not the Processor still had work to do when the batch ended
+     */
+    public void adjust(final long batchNanos, final long commitNanos, final boolean workRemaining) {
+        if (maxRunDurationNanos <= 0L) {
+            return;
+        }
+
+        synchronized (this) {
+            final long current = runDurationNanos;
+            long updated = current;
+
+            if (!workRemaining) {
+                updated = current / 2;
+                if (updated < MIN_RUN_DURATION_NANOS) {
+                    updated = 0L;
+                }
+            } else if (commitNanos > batchNanos * TARGET_COMMIT_RATIO) {
+                updated = Math.min(maxRunDurationNanos, Math.max(MIN_RUN_DURATION_NANOS, current * 2));
+            }
+
+            runDurationNanos = updated;
+        }
+    }
+
+    /**
+     * Indicates that the framework has committed a batched session for the Processor
+     */
+    public synchronized void recordCommit() {
+        rollInterval(System.nanoTime());
+        intervalCommits++;
+    }
+
+    /**
+     * @return the number of batched sessions committed per second, over the most recently completed interval (5 seconds by default)
+     */
+    public synchronized double getCommitsPerSecond() {
+        rollInterval(System.nanoTime());
+        return commitsPerSecond;
+    }
+
+    private void rollInterval(final long now) {
+        final long elapsed = now - intervalStartNanos;
+        if (elapsed < rateIntervalNanos) {
+            return;
+        }
+
+        commitsPerSecond = intervalCommits * (double) TimeUnit.SECONDS.toNanos(1L) / elapsed;
+        intervalCommits = 0L;
+        intervalStartNanos = now;
+    }
+}
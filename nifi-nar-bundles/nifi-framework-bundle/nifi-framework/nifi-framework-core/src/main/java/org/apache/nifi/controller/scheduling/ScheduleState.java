@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -33,6 +34,15 @@ public class ScheduleState {
     private final Set<ScheduledFuture<?>> futures = new HashSet<>();
     private final AtomicBoolean mustCallOnStoppedMethods = new AtomicBoolean(false);
     private volatile long lastStopTime = -1;
+    private final AdaptiveRunDuration adaptiveRunDuration;
+
+    public ScheduleState() {
+        this(0L, TimeUnit.NANOSECONDS);
+    }
+
+    public ScheduleState(final long maxAdaptiveRunDuration, final TimeUnit timeUnit) {
+        this.adaptiveRunDuration = new AdaptiveRunDuration(maxAdaptiveRunDuration, timeUnit);
+    }
 
     public int incrementActiveThreadCount() {
         return activeThreadCount.incrementAndGet();
@@ -63,6 +73,14 @@ public class ScheduleState {
         return lastStopTime;
     }
 
+    /**
+     * @return the object that chooses the Run Duration of the component if it is a Processor that supports batching
+     *         and does not have a Run Duration configured
+     */
+    public AdaptiveRunDuration getAdaptiveRunDuration() {
+        return adaptiveRunDuration;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder().append("activeThreads:").append(activeThreadCount.get()).append("; ")
@@ -71,6 +71,7 @@ public final class StandardProcessScheduler implements ProcessScheduler {
     private final ControllerServiceProvider controllerServiceProvider;
     private final long administrativeYieldMillis;
     private final String administrativeYieldDuration;
+    private final long maxAdaptiveRunDurationNanos;
     private final StateManagerProvider stateManagerProvider;
 
     private final ConcurrentMap<Object, ScheduleState> scheduleStates = new ConcurrentHashMap<>();
@@ -91,6 +92,7 @@ public final class StandardProcessScheduler implements ProcessScheduler {
 
         administrativeYieldDuration = NiFiProperties.getInstance().getAdministrativeYieldDuration();
         administrativeYieldMillis = FormatUtils.getTimeDuration(administrativeYieldDuration, TimeUnit.MILLISECONDS);
+        maxAdaptiveRunDurationNanos = FormatUtils.getTimeDuration(NiFiProperties.getInstance().getMaxAdaptiveRunDuration(), TimeUnit.NANOSECONDS);
 
         frameworkTaskExecutor = new FlowEngine(4, "Framework Task Thread");
     }
@@ -377,6 +379,14 @@ public final class StandardProcessScheduler implements ProcessScheduler {
         return getScheduleState(scheduled).getActiveThreadCount();
     }
 
+    /**
+     * @param procNode the Processor
+     * @return the object that chooses the Run Duration for the given Processor when it is not configured
+     */
+    public AdaptiveRunDuration getAdaptiveRunDuration(final ProcessorNode procNode) {
+        return getScheduleState(procNode).getAdaptiveRunDuration();
+    }
+
     @Override
     public void startPort(final Port port) {
         if (!port.isValid()) {
@@ -528,7 +538,7 @@ public final class StandardProcessScheduler implements ProcessScheduler {
     private ScheduleState getScheduleState(final Object schedulable) {
         ScheduleState scheduleState = this.scheduleStates.get(schedulable);
         if (scheduleState == null) {
-            scheduleState = new ScheduleState();
+            scheduleState = new ScheduleState(maxAdaptiveRunDurationNanos, TimeUnit.NANOSECONDS);
             this.scheduleStates.putIfAbsent(schedulable, scheduleState);
         }
         return scheduleState;
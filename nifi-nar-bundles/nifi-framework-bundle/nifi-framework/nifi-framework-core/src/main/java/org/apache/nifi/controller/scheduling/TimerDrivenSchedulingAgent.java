@@ -34,7 +34,6 @@ import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
 import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
 import org.apache.nifi.encrypt.StringEncryptor;
 import org.apache.nifi.engine.FlowEngine;
-import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.StandardProcessContext;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.util.FormatUtils;
@@ -94,22 +93,8 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
 
         final List<ScheduledFuture<?>> futures = new ArrayList<>();
         for (int i = 0; i < connectable.getMaxConcurrentTasks(); i++) {
-            final Callable<Boolean> continuallyRunTask;
-            final ProcessContext processContext;
-
             // Determine the task to run and create it.
-            if (connectable.getConnectableType() == ConnectableType.PROCESSOR) {
-                final ProcessorNode procNode = (ProcessorNode) connectable;
-                final StandardProcessContext standardProcContext = new StandardProcessContext(procNode, flowController, encryptor, getStateManager(connectable.getIdentifier()));
-                final ContinuallyRunProcessorTask runnableTask = new ContinuallyRunProcessorTask(this, procNode, flowController,
-                        contextFactory, scheduleState, standardProcContext);
-
-                continuallyRunTask = runnableTask;
-                processContext = standardProcContext;
-            } else {
-                processContext = new ConnectableProcessContext(connectable, encryptor, getStateManager(connectable.getIdentifier()));
-                continuallyRunTask = new ContinuallyRunConnectableTask(contextFactory, connectable, scheduleState, processContext);
-            }
+            final Callable<Boolean> continuallyRunTask = createTask(connectable, scheduleState);
 
             final AtomicReference<ScheduledFuture<?>> futureRef = new AtomicReference<>();
 
@@ -195,6 +180,18 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
         logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
     }
 
+    // package-private so that unit tests can replace the task that is run for a component
+    Callable<Boolean> createTask(final Connectable connectable, final ScheduleState scheduleState) {
+        if (connectable.getConnectableType() == ConnectableType.PROCESSOR) {
+            final ProcessorNode procNode = (ProcessorNode) connectable;
+            final StandardProcessContext standardProcContext = new StandardProcessContext(procNode, flowController, encryptor, getStateManager(connectable.getIdentifier()));
+            return new ContinuallyRunProcessorTask(this, procNode, flowController, contextFactory, scheduleState, standardProcContext);
+        } else {
+            final ConnectableProcessContext processContext = new ConnectableProcessContext(connectable, encryptor, getStateManager(connectable.getIdentifier()));
+            return new ContinuallyRunConnectableTask(contextFactory, connectable, scheduleState, processContext);
+        }
+    }
+
     @Override
     public void doUnschedule(final Connectable connectable, final ScheduleState scheduleState) {
         for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
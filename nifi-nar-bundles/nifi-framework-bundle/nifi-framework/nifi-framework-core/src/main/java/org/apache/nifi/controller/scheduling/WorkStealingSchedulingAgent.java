@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.ProcessorNode;
+import org.apache.nifi.controller.ReportingTaskNode;
+import org.apache.nifi.controller.Triggerable;
+import org.apache.nifi.controller.tasks.ContinuallyRunConnectableTask;
+import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
+import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
+import org.apache.nifi.encrypt.StringEncryptor;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.processor.StandardProcessContext;
+import org.apache.nifi.util.FormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * An alternative to the {@link TimerDrivenSchedulingAgent} that runs all of the components that it schedules in a single
+ * work-stealing thread pool, rather than giving each concurrent task of each component its own fixed-delay future.
+ * </p>
+ *
+ * <p>
+ * When a concurrent task finds that its component has no work to do, the task is parked instead of being polled again after the
+ * 'bored yield' period. The task is triggered again when the agent is notified via {@link #onEvent(Connectable)} that FlowFiles
+ * have been queued for the component or that a queue that was applying back pressure to the component has been drained.
+ * Because not every change that can give a component work to do results in such a notification (for instance, changing the back
+ * pressure settings of a Connection), parked tasks are also triggered once per second.
+ * </p>
+ *
+ * <p>
+ * Tasks whose component has been yielded, or that has a Run Schedule configured, are held by a single timer thread until they are
+ * due to run and then handed to the pool. All other tasks are handed to the pool directly; when this is done from one of the pool's
+ * own threads, the task is queued locally to that thread, from which idle threads steal work.
+ * </p>
+ */
+public class WorkStealingSchedulingAgent extends AbstractSchedulingAgent {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkStealingSchedulingAgent.class);
+    static final long IDLE_RECHECK_MILLIS = 1000L;
+
+    private final FlowController flowController;
+    private final ProcessContextFactory contextFactory;
+    private final StringEncryptor encryptor;
+    private final FlowEngine timer;
+    private final ConcurrentMap<Connectable, ComponentRunner> runners = new ConcurrentHashMap<>();
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+
+    private volatile ForkJoinPool pool;
+    private volatile boolean shutdown = false;
+    private volatile String adminYieldDuration = "1 sec";
+
+    public WorkStealingSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final ProcessContextFactory contextFactory,
+            final StringEncryptor encryptor, final int maxThreads) {
+        super(flowEngine);
+        this.flowController = flowController;
+        this.contextFactory = contextFactory;
+        this.encryptor = encryptor;
+        this.pool = createPool(maxThreads);
+
+        this.timer = new FlowEngine(1, "Work-Stealing Scheduler Timer", true);
+        this.timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (final ComponentRunner runner : runners.values()) {
+                    runner.wake();
+                }
+            }
+        }, IDLE_RECHECK_MILLIS, IDLE_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private ForkJoinPool createPool(final int maxThreads) {
+        final ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Timer-Driven Process Thread-" + threadIndex.incrementAndGet());
+                return thread;
+            }
+        };
+
+        final Thread.UncaughtExceptionHandler exceptionHandler = new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread t, final Throwable e) {
+                logger.error("Uncaught Exception in thread {}: {}", t.getName(), e.toString());
+                logger.error("", e);
+            }
+        };
+
+        // use async (FIFO) mode so that tasks that are queued locally to a thread are run in the order in which they were queued.
+        return new ForkJoinPool(Math.max(1, maxThreads), threadFactory, exceptionHandler, true);
+    }
+
+    private StateManager getStateManager(final String componentId) {
+        return flowController.getStateManagerProvider().getStateManager(componentId);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        timer.shutdownNow();
+        pool.shutdown();
+        flowEngine.shutdown();
+    }
+
+    @Override
+    public void doSchedule(final ReportingTaskNode taskNode, final ScheduleState scheduleState) {
+        final Runnable reportingTaskWrapper = new ReportingTaskWrapper(taskNode, scheduleState);
+        final long schedulingNanos = taskNode.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+
+        final ScheduledFuture<?> future = flowEngine.scheduleWithFixedDelay(reportingTaskWrapper, 0L, schedulingNanos, TimeUnit.NANOSECONDS);
+        final List<ScheduledFuture<?>> futures = new ArrayList<>(1);
+        futures.add(future);
+        scheduleState.setFutures(futures);
+
+        logger.info("{} started.", taskNode.getReportingTask());
+    }
+
+    @Override
+    public void doSchedule(final Connectable connectable, final ScheduleState scheduleState) {
+        final List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < connectable.getMaxConcurrentTasks(); i++) {
+            tasks.add(createTask(connectable, scheduleState));
+        }
+
+        final ComponentRunner runner = new ComponentRunner(connectable);
+        final ComponentRunner previous = runners.put(connectable, runner);
+        if (previous != null) {
+            previous.stop();
+        }
+
+        for (final Callable<Boolean> task : tasks) {
+            submit(new ConcurrentTask(runner, task));
+        }
+
+        logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
+    }
+
+    // package-private so that unit tests can replace the task that is run for a component
+    Callable<Boolean> createTask(final Connectable connectable, final ScheduleState scheduleState) {
+        if (connectable.getConnectableType() == ConnectableType.PROCESSOR) {
+            final ProcessorNode procNode = (ProcessorNode) connectable;
+            final StandardProcessContext standardProcContext = new StandardProcessContext(procNode, flowController, encryptor, getStateManager(connectable.getIdentifier()));
+            return new ContinuallyRunProcessorTask(this, procNode, flowController, contextFactory, scheduleState, standardProcContext);
+        } else {
+            final ConnectableProcessContext processContext = new ConnectableProcessContext(connectable, encryptor, getStateManager(connectable.getIdentifier()));
+            return new ContinuallyRunConnectableTask(contextFactory, connectable, scheduleState, processContext);
+        }
+    }
+
+    @Override
+    public void doUnschedule(final Connectable connectable, final ScheduleState scheduleState) {
+        final ComponentRunner runner = runners.remove(connectable);
+        if (runner != null) {
+            // stop scheduling to run but do not interrupt currently running tasks.
+            runner.stop();
+        }
+
+        logger.info("Stopped scheduling {} to run", connectable);
+    }
+
+    @Override
+    public void doUnschedule(final ReportingTaskNode taskNode, final ScheduleState scheduleState) {
+        for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
+            // stop scheduling to run but do not interrupt currently running tasks.
+            future.cancel(false);
+        }
+
+        logger.info("Stopped scheduling {} to run", taskNode.getReportingTask());
+    }
+
+    @Override
+    public void setAdministrativeYieldDuration(final String yieldDuration) {
+        this.adminYieldDuration = yieldDuration;
+    }
+
+    @Override
+    public String getAdministrativeYieldDuration() {
+        return adminYieldDuration;
+    }
+
+    @Override
+    public long getAdministrativeYieldDuration(final TimeUnit timeUnit) {
+        return FormatUtils.getTimeDuration(adminYieldDuration, timeUnit);
+    }
+
+    @Override
+    public void onEvent(final Connectable connectable) {
+        final ComponentRunner runner = runners.get(connectable);
+        if (runner != null) {
+            runner.signal();
+        }
+    }
+
+    /**
+     * Replaces the thread pool with one that has the given number of threads. Tasks that are already queued in the
+     * current pool are allowed to finish; tasks that are submitted from now on are run by the new pool.
+     *
+     * @param maxThreads the number of threads to use
+     */
+    @Override
+    public synchronized void setMaxThreadCount(final int maxThreads) {
+        final ForkJoinPool current = pool;
+        if (current.getParallelism() == maxThreads || shutdown) {
+            return;
+        }
+
+        pool = createPool(maxThreads);
+        current.shutdown();
+    }
+
+    private void submit(final Runnable runnable) {
+        while (!shutdown) {
+            final ForkJoinPool current = pool;
+            try {
+                if (ForkJoinTask.getPool() == current) {
+                    ForkJoinTask.adapt(runnable).fork();
+                } else {
+                    current.execute(runnable);
+                }
+                return;
+            } catch (final RejectedExecutionException ree) {
+                // the pool was replaced by a call to setMaxThreadCount; try again with the new pool, unless we are shutting down.
+                if (current == pool) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void submitLater(final Runnable runnable, final long delayNanos) {
+        if (shutdown) {
+            return;
+        }
+
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    submit(runnable);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (final RejectedExecutionException ree) {
+            // the agent was shut down
+        }
+    }
+
+
+    /**
+     * Keeps track of the concurrent tasks of a single component that are parked because the component had no work to do
+     */
+    private class ComponentRunner {
+        private final Connectable connectable;
+        private final Queue<ConcurrentTask> parkedTasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean workSignaled = new AtomicBoolean(false);
+        private volatile boolean stopped = false;
+
+        public ComponentRunner(final Connectable connectable) {
+            this.connectable = connectable;
+        }
+
+        public void stop() {
+            stopped = true;
+            parkedTasks.clear();
+        }
+
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        /**
+         * Indicates that the component may have work to do and triggers one of its parked tasks, if any
+         */
+        public void signal() {
+            workSignaled.set(true);
+            wake();
+        }
+
+        /**
+         * Called by a task before it triggers the component, so that any signal that arrives after this point is noticed
+         * by the task when it is parked
+         */
+        public void clearSignal() {
+            workSignaled.set(false);
+        }
+
+        public void park(final ConcurrentTask task) {
+            parkedTasks.offer(task);
+
+            // If we were signaled after the task checked for work but before it was parked, nobody would have triggered it;
+            // so we check for that here.
+            if (workSignaled.getAndSet(false)) {
+                wake();
+            }
+        }
+
+        public void wake() {
+            if (stopped) {
+                return;
+            }
+
+            final ConcurrentTask task = parkedTasks.poll();
+            if (task != null) {
+                submit(task);
+            }
+        }
+    }
+
+    /**
+     * One of the concurrent tasks of a component. Each time that it runs, it triggers the component and then decides
+     * when it should run again.
+     */
+    private class ConcurrentTask implements Runnable {
+        private final ComponentRunner runner;
+        private final Callable<Boolean> task;
+
+        public ConcurrentTask(final ComponentRunner runner, final Callable<Boolean> task) {
+            this.runner = runner;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (runner.isStopped()) {
+                return;
+            }
+
+            runner.clearSignal();
+
+            final boolean noWork;
+            try {
+                noWork = task.call();
+            } catch (final Throwable t) {
+                logger.error("Failed to trigger {} due to {}; will try again after {}", runner.connectable, t.toString(), adminYieldDuration);
+                logger.error("", t);
+                submitLater(this, getAdministrativeYieldDuration(TimeUnit.NANOSECONDS));
+                return;
+            }
+
+            if (runner.isStopped()) {
+                return;
+            }
+
+            final Connectable connectable = runner.connectable;
+            final long yieldMillis = connectable.getYieldExpiration() - System.currentTimeMillis();
+            if (yieldMillis > 0L) {
+                submitLater(this, TimeUnit.MILLISECONDS.toNanos(yieldMillis));
+            } else if (noWork) {
+                runner.park(this);
+            } else {
+                final long schedulingNanos = connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+                if (schedulingNanos > Triggerable.MINIMUM_SCHEDULING_NANOS) {
+                    submitLater(this, schedulingNanos);
+                } else {
+                    submit(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarInt;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.readVarLong;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only segment that is backed by a memory-mapped segment file, as written by {@link StatusSegmentWriter}. Only the
+ * timestamps are read into the heap when the segment is opened; the columns of a component are located with a binary search
+ * of the index and decoded directly from the mapped file when they are requested. This class is thread-safe.
+ */
+class MappedStatusSegment implements StatusSegment {
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final long[] timestamps;
+    private final int componentCount;
+    private final int indexOffset;
+    private final int dataOffset;
+
+    public MappedStatusSegment(final File file) throws IOException {
+        this.file = file;
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Status History segment file " + file + " is too large to be valid");
+            }
+            buffer = channel.map(MapMode.READ_ONLY, 0L, channel.size());
+        }
+
+        try {
+            final ByteBuffer header = buffer.duplicate();
+            final int version = header.getInt();
+            if (version != StatusSegmentWriter.ENCODING_VERSION) {
+                throw new IOException("Cannot read Status History segment file " + file + " because it was written with encoding version "
+                    + version + ", which is not supported");
+            }
+
+            final int captureCount = readVarInt(header);
+            timestamps = new long[captureCount];
+            long timestamp = 0L;
+            for (int i = 0; i < captureCount; i++) {
+                timestamp += unZigZag(readVarLong(header));
+                timestamps[i] = timestamp;
+            }
+
+            componentCount = readVarInt(header);
+            indexOffset = header.position();
+            dataOffset = indexOffset + componentCount * 8;
+            if (dataOffset > buffer.limit()) {
+                throw new IOException("Status History segment file " + file + " is truncated");
+            }
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Status History segment file " + file + " is truncated", e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getFirstTimestamp() {
+        return timestamps.length == 0 ? 0L : timestamps[0];
+    }
+
+    public long getLastTimestamp() {
+        return timestamps.length == 0 ? 0L : timestamps[timestamps.length - 1];
+    }
+
+    @Override
+    public int getCaptureCount() {
+        return timestamps.length;
+    }
+
+    @Override
+    public long[] getTimestamps() {
+        return Arrays.copyOf(timestamps, timestamps.length);
+    }
+
+    @Override
+    public int[] getComponentIndices() {
+        final int[] indices = new int[componentCount];
+        for (int i = 0; i < componentCount; i++) {
+            indices[i] = buffer.getInt(indexOffset + i * 8);
+        }
+        return indices;
+    }
+
+    @Override
+    public long[][] getMetricValues(final int componentIndex) {
+        int low = 0;
+        int high = componentCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midIndex = buffer.getInt(indexOffset + mid * 8);
+            if (midIndex < componentIndex) {
+                low = mid + 1;
+            } else if (midIndex > componentIndex) {
+                high = mid - 1;
+            } else {
+                return readColumns(dataOffset + buffer.getInt(indexOffset + mid * 8 + 4));
+            }
+        }
+
+        return null;
+    }
+
+    private long[][] readColumns(final int offset) {
+        final ByteBuffer columns = buffer.duplicate();
+        columns.position(offset);
+
+        final int metricCount = readVarInt(columns);
+        final long[][] values = new long[metricCount][timestamps.length];
+        for (int metric = 0; metric < metricCount; metric++) {
+            final int length = readVarInt(columns);
+            final int decoded = decodeColumn(columns, columns.position(), length, values[metric]);
+            Arrays.fill(values[metric], decoded, timestamps.length, MISSING);
+            columns.position(columns.position() + length);
+        }
+
+        return values;
+    }
+
+    /**
+     * Decodes a column that was encoded by {@link StatusSegmentWriter}
+     *
+     * @param buffer the buffer that holds the column
+     * @param offset the offset of the column in the buffer
+     * @param length the length of the column, in bytes
+     * @param destination the array to decode the column into
+     * @return the number of values that were decoded
+     */
+    static int decodeColumn(final ByteBuffer buffer, final int offset, final int length, final long[] destination) {
+        final ByteBuffer column = buffer.duplicate();
+        column.limit(offset + length);
+        column.position(offset);
+
+        int count = 0;
+        long previousValue = 0L;
+        while (column.hasRemaining() && count < destination.length) {
+            final long encoded = readVarLong(column);
+            if (encoded == 0L) {
+                destination[count++] = MISSING;
+            } else {
+                previousValue += unZigZag(encoded - 1);
+                destination[count++] = previousValue;
+            }
+        }
+
+        return count;
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedStatusSegment[file=" + file + ", captures=" + timestamps.length + "]";
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.status.ConnectionStatus;
+import org.apache.nifi.controller.status.ProcessGroupStatus;
+import org.apache.nifi.controller.status.ProcessorStatus;
+import org.apache.nifi.controller.status.RemoteProcessGroupStatus;
+import org.apache.nifi.util.ComponentStatusReport.ComponentType;
+import org.apache.nifi.util.FormatUtils;
+import org.apache.nifi.util.NiFiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A Component Status Repository that persists status history to disk, so that it survives restarts, and stores it compactly
+ * enough that days of history can be kept for large flows.
+ * </p>
+ *
+ * <p>
+ * Captures are grouped into segments of a fixed number of captures. Within a segment, each metric of each component is
+ * stored as its own delta-encoded column (see {@link StatusSegmentWriter}), and completed segments are memory-mapped
+ * (see {@link MappedStatusSegment}), so that retrieving the history of a component reads only that component's columns
+ * and very little of the history is held on the heap. The segment that is currently being filled is rewritten to disk after
+ * each capture so that at most one capture is lost if NiFi is stopped abruptly.
+ * </p>
+ *
+ * <p>
+ * Once a segment is older than the configured downsampling age, it is replaced with one that holds a single capture for
+ * every five, each the average of the captures it replaces. Segments older than the configured maximum storage time are
+ * deleted.
+ * </p>
+ */
+public class PersistentComponentStatusRepository implements ComponentStatusRepository {
+
+    public static final String DIRECTORY_PROPERTY = "nifi.components.status.repository.directory";
+    public static final String MAX_STORAGE_TIME_PROPERTY = "nifi.components.status.repository.max.storage.time";
+    public static final String DOWNSAMPLE_AGE_PROPERTY = "nifi.components.status.repository.downsample.age";
+
+    public static final String DEFAULT_DIRECTORY = "./status_repository";
+    public static final String DEFAULT_MAX_STORAGE_TIME = "7 days";
+    public static final String DEFAULT_DOWNSAMPLE_AGE = "24 hours";
+
+    static final int DEFAULT_CAPTURES_PER_SEGMENT = 60;
+    static final int DOWNSAMPLE_FACTOR = 5;
+
+    static final String COMPONENT_REGISTRY_FILENAME = "components.dat";
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String DOWNSAMPLED_SEGMENT_SUFFIX = ".ds" + SEGMENT_SUFFIX;
+    static final String PARTIAL_SUFFIX = ".part";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentComponentStatusRepository.class);
+
+    private static final List<MetricDescriptor<ProcessorStatus>> PROCESSOR_METRIC_DESCRIPTORS;
+    private static final List<MetricDescriptor<ConnectionStatus>> CONNECTION_METRIC_DESCRIPTORS;
+    private static final List<MetricDescriptor<ProcessGroupStatus>> PROCESS_GROUP_METRIC_DESCRIPTORS;
+    private static final List<MetricDescriptor<RemoteProcessGroupStatus>> REMOTE_PROCESS_GROUP_METRIC_DESCRIPTORS;
+
+    static {
+        final List<MetricDescriptor<ProcessorStatus>> procFields = new ArrayList<>();
+        for (final ProcessorStatusDescriptor descriptor : ProcessorStatusDescriptor.values()) {
+            procFields.add(descriptor.getDescriptor());
+        }
+        PROCESSOR_METRIC_DESCRIPTORS = Collections.unmodifiableList(procFields);
+
+        final List<MetricDescriptor<ConnectionStatus>> connFields = new ArrayList<>();
+        for (final ConnectionStatusDescriptor descriptor : ConnectionStatusDescriptor.values()) {
+            connFields.add(descriptor.getDescriptor());
+        }
+        CONNECTION_METRIC_DESCRIPTORS = Collections.unmodifiableList(connFields);
+
+        final List<MetricDescriptor<ProcessGroupStatus>> groupFields = new ArrayList<>();
+        for (final ProcessGroupStatusDescriptor descriptor : ProcessGroupStatusDescriptor.values()) {
+            groupFields.add(descriptor.getDescriptor());
+        }
+        PROCESS_GROUP_METRIC_DESCRIPTORS = Collections.unmodifiableList(groupFields);
+
+        final List<MetricDescriptor<RemoteProcessGroupStatus>> remoteGroupFields = new ArrayList<>();
+        for (final RemoteProcessGroupStatusDescriptor descriptor : RemoteProcessGroupStatusDescriptor.values()) {
+            remoteGroupFields.add(descriptor.getDescriptor());
+        }
+        REMOTE_PROCESS_GROUP_METRIC_DESCRIPTORS = Collections.unmodifiableList(remoteGroupFields);
+    }
+
+    private final File directory;
+    private final long maxStorageMillis;
+    private final long downsampleAgeMillis;
+    private final int capturesPerSegment;
+
+    // The Service Loader instantiates every Component Status Repository at startup, whether or not it is the configured one,
+    // so the directory is not touched until the repository is first used. Initialized while synchronized on 'this'.
+    private volatile StatusComponentRegistry registry = null;
+
+    // completed segments, keyed by the timestamp of their first capture
+    private final ConcurrentNavigableMap<Long, MappedStatusSegment> segments = new ConcurrentSkipListMap<>();
+
+    // guarded by synchronizing on 'this'
+    private StatusSegmentWriter currentSegment = null;
+    private File currentSegmentFile = null;
+
+    private volatile long lastCaptureTime = 0L;
+
+    public PersistentComponentStatusRepository() {
+        this(NiFiProperties.getInstance());
+    }
+
+    private PersistentComponentStatusRepository(final NiFiProperties properties) {
+        this(new File(properties.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)),
+            FormatUtils.getTimeDuration(properties.getProperty(MAX_STORAGE_TIME_PROPERTY, DEFAULT_MAX_STORAGE_TIME), TimeUnit.MILLISECONDS),
+            FormatUtils.getTimeDuration(properties.getProperty(DOWNSAMPLE_AGE_PROPERTY, DEFAULT_DOWNSAMPLE_AGE), TimeUnit.MILLISECONDS),
+            DEFAULT_CAPTURES_PER_SEGMENT);
+    }
+
+    // exposed for unit tests
+    PersistentComponentStatusRepository(final File directory, final long maxStorageMillis, final long downsampleAgeMillis, final int capturesPerSegment) {
+        this.directory = directory;
+        this.maxStorageMillis = maxStorageMillis;
+        this.downsampleAgeMillis = downsampleAgeMillis;
+        this.capturesPerSegment = capturesPerSegment;
+    }
+
+    /**
+     * Creates the repository directory and recovers the history that it contains, if this has not already been done
+     *
+     * @return the registry of the components whose history is stored in the repository
+     * @throws IOException if unable to create or recover the repository directory. Initialization is attempted again on next use
+     */
+    private StatusComponentRegistry getRegistry() throws IOException {
+        final StatusComponentRegistry initialized = registry;
+        if (initialized != null) {
+            return initialized;
+        }
+
+        synchronized (this) {
+            if (registry == null) {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Unable to create Component Status Repository directory " + directory);
+                }
+
+                final StatusComponentRegistry recoveredRegistry = new StatusComponentRegistry(new File(directory, COMPONENT_REGISTRY_FILENAME));
+                recover();
+                registry = recoveredRegistry;
+                performMaintenance(System.currentTimeMillis());
+            }
+
+            return registry;
+        }
+    }
+
+    private void recover() throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list the contents of Component Status Repository directory " + directory);
+        }
+
+        // A partial segment is the segment that was being filled when NiFi was stopped. Treat it as complete,
+        // so that new captures start a new segment.
+        final List<File> segmentFiles = new ArrayList<>();
+        for (final File file : files) {
+            final String filename = file.getName();
+            if (filename.endsWith(TEMP_SUFFIX)) {
+                deleteFile(file);
+            } else if (filename.endsWith(SEGMENT_SUFFIX + PARTIAL_SUFFIX)) {
+                final File completed = new File(directory, filename.substring(0, filename.length() - PARTIAL_SUFFIX.length()));
+                if (file.renameTo(completed)) {
+                    segmentFiles.add(completed);
+                } else {
+                    logger.warn("Failed to rename partial Status History segment file {} to {}; its history will not be available", file, completed);
+                }
+            } else if (filename.endsWith(SEGMENT_SUFFIX)) {
+                segmentFiles.add(file);
+            }
+        }
+
+        for (final File file : segmentFiles) {
+            final MappedStatusSegment segment;
+            try {
+                segment = new MappedStatusSegment(file);
+            } catch (final IOException ioe) {
+                logger.warn("Failed to read Status History segment file {}; its history will not be available", file, ioe);
+                continue;
+            }
+
+            if (segment.getCaptureCount() == 0) {
+                continue;
+            }
+
+            // If NiFi was stopped after a segment was downsampled but before the original could be deleted, keep the downsampled one
+            final MappedStatusSegment existing = segments.get(segment.getFirstTimestamp());
+            if (existing != null) {
+                final boolean keepExisting = isDownsampled(existing);
+                final MappedStatusSegment discarded = keepExisting ? segment : existing;
+                deleteFile(discarded.getFile());
+                if (keepExisting) {
+                    continue;
+                }
+            }
+
+            segments.put(segment.getFirstTimestamp(), segment);
+            lastCaptureTime = Math.max(lastCaptureTime, segment.getLastTimestamp());
+        }
+
+        logger.info("Recovered {} Status History segments from {}", segments.size(), directory);
+    }
+
+    @Override
+    public void capture(final ProcessGroupStatus rootGroupStatus) {
+        capture(rootGroupStatus, new Date());
+    }
+
+    @Override
+    public synchronized void capture(final ProcessGroupStatus rootGroupStatus, final Date timestamp) {
+        final long captureTime = timestamp.getTime();
+
+        try {
+            getRegistry();
+            if (currentSegment == null) {
+                currentSegment = new StatusSegmentWriter();
+                currentSegmentFile = new File(directory, captureTime + SEGMENT_SUFFIX + PARTIAL_SUFFIX);
+            }
+
+            currentSegment.beginCapture(captureTime);
+            captureGroup(rootGroupStatus, captureTime);
+            registry.save(false);
+
+            if (currentSegment.getCaptureCount() >= capturesPerSegment) {
+                completeSegment();
+                performMaintenance(System.currentTimeMillis());
+            } else {
+                currentSegment.writeTo(currentSegmentFile);
+            }
+
+            logger.debug("Captured metrics for {}", this);
+        } catch (final IOException ioe) {
+            logger.error("Failed to persist Status History to {}", directory, ioe);
+        }
+
+        lastCaptureTime = Math.max(lastCaptureTime, captureTime);
+    }
+
+    private void captureGroup(final ProcessGroupStatus groupStatus, final long timestamp) {
+        final Map<String, String> groupDetails = new LinkedHashMap<>();
+        groupDetails.put("Name", groupStatus.getName());
+        record(ComponentType.PROCESS_GROUP, groupStatus.getId(), groupDetails, timestamp, PROCESS_GROUP_METRIC_DESCRIPTORS, groupStatus);
+
+        for (final ProcessorStatus status : groupStatus.getProcessorStatus()) {
+            final Map<String, String> details = new LinkedHashMap<>();
+            details.put("Group Id", status.getGroupId());
+            details.put("Name", status.getName());
+            details.put("Type", status.getType());
+            record(ComponentType.PROCESSOR, status.getId(), details, timestamp, PROCESSOR_METRIC_DESCRIPTORS, status);
+        }
+
+        for (final ConnectionStatus status : groupStatus.getConnectionStatus()) {
+            final Map<String, String> details = new LinkedHashMap<>();
+            details.put("Group Id", status.getGroupId());
+            details.put("Name", status.getName());
+            details.put("Source Name", status.getSourceName());
+            details.put("Destination Name", status.getDestinationName());
+            record(ComponentType.CONNECTION, status.getId(), details, timestamp, CONNECTION_METRIC_DESCRIPTORS, status);
+        }
+
+        for (final RemoteProcessGroupStatus status : groupStatus.getRemoteProcessGroupStatus()) {
+            final Map<String, String> details = new LinkedHashMap<>();
+            details.put("Group Id", status.getGroupId());
+            details.put("Name", status.getName());
+            details.put("Uri", status.getTargetUri());
+            record(ComponentType.REMOTE_PROCESS_GROUP, status.getId(), details, timestamp, REMOTE_PROCESS_GROUP_METRIC_DESCRIPTORS, status);
+        }
+
+        for (final ProcessGroupStatus childStatus : groupStatus.getProcessGroupStatus()) {
+            captureGroup(childStatus, timestamp);
+        }
+    }
+
+    private <T> void record(final ComponentType type, final String componentId, final Map<String, String> details, final long timestamp,
+            final List<MetricDescriptor<T>> descriptors, final T status) {
+        final StatusComponentRegistry.Component component = registry.register(type, componentId, details, timestamp);
+
+        final long[] values = new long[descriptors.size()];
+        for (int i = 0; i < values.length; i++) {
+            final Long value = descriptors.get(i).getValueFunction().getValue(status);
+            values[i] = value == null ? StatusSegment.MISSING : value;
+        }
+
+        currentSegment.record(component.getIndex(), values);
+    }
+
+    private void completeSegment() throws IOException {
+        final String partialFilename = currentSegmentFile.getName();
+        final File segmentFile = new File(directory, partialFilename.substring(0, partialFilename.length() - PARTIAL_SUFFIX.length()));
+        currentSegment.writeTo(segmentFile);
+        deleteFile(currentSegmentFile);
+
+        final MappedStatusSegment segment = new MappedStatusSegment(segmentFile);
+        segments.put(segment.getFirstTimestamp(), segment);
+
+        currentSegment = null;
+        currentSegmentFile = null;
+        registry.save(true);
+    }
+
+    private void performMaintenance(final long now) {
+        final long expirationCutoff = now - maxStorageMillis;
+        final long downsampleCutoff = now - downsampleAgeMillis;
+
+        for (final MappedStatusSegment segment : segments.values()) {
+            if (segment.getLastTimestamp() < expirationCutoff) {
+                segments.remove(segment.getFirstTimestamp(), segment);
+                deleteFile(segment.getFile());
+                logger.debug("Deleted expired Status History segment {}", segment);
+            } else if (segment.getLastTimestamp() < downsampleCutoff && !isDownsampled(segment)) {
+                try {
+                    downsample(segment);
+                } catch (final IOException ioe) {
+                    logger.warn("Failed to downsample Status History segment {}", segment, ioe);
+                }
+            }
+        }
+
+        registry.purge(expirationCutoff);
+        try {
+            registry.save(false);
+        } catch (final IOException ioe) {
+            logger.warn("Failed to persist Status History component registry to {}", directory, ioe);
+        }
+    }
+
+    private void downsample(final MappedStatusSegment segment) throws IOException {
+        final StatusSegmentWriter writer = StatusSegmentWriter.downsample(segment, DOWNSAMPLE_FACTOR);
+        final File downsampledFile = new File(directory, segment.getFirstTimestamp() + DOWNSAMPLED_SEGMENT_SUFFIX);
+        writer.writeTo(downsampledFile);
+
+        final MappedStatusSegment downsampled = new MappedStatusSegment(downsampledFile);
+        segments.put(segment.getFirstTimestamp(), downsampled);
+        deleteFile(segment.getFile());
+        logger.debug("Downsampled Status History segment {} to {}", segment, downsampled);
+    }
+
+    private static boolean isDownsampled(final MappedStatusSegment segment) {
+        return segment.getFile().getName().endsWith(DOWNSAMPLED_SEGMENT_SUFFIX);
+    }
+
+    private static void deleteFile(final File file) {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete Status History file {}", file);
+        }
+    }
+
+    @Override
+    public Date getLastCaptureDate() {
+        try {
+            getRegistry();
+        } catch (final IOException ioe) {
+            logger.error("Failed to recover Status History from {}", directory, ioe);
+        }
+
+        return new Date(lastCaptureTime);
+    }
+
+    @Override
+    public StatusHistory getProcessorStatusHistory(final String processorId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(ComponentType.PROCESSOR, processorId, start, end, PROCESSOR_METRIC_DESCRIPTORS);
+    }
+
+    @Override
+    public StatusHistory getConnectionStatusHistory(final String connectionId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(ComponentType.CONNECTION, connectionId, start, end, CONNECTION_METRIC_DESCRIPTORS);
+    }
+
+    @Override
+    public StatusHistory getProcessGroupStatusHistory(final String processGroupId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(ComponentType.PROCESS_GROUP, processGroupId, start, end, PROCESS_GROUP_METRIC_DESCRIPTORS);
+    }
+
+    @Override
+    public StatusHistory getRemoteProcessGroupStatusHistory(final String remoteGroupId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(ComponentType.REMOTE_PROCESS_GROUP, remoteGroupId, start, end, REMOTE_PROCESS_GROUP_METRIC_DESCRIPTORS);
+    }
+
+    private StatusHistory getStatusHistory(final ComponentType type, final String componentId, final Date start, final Date end,
+            final List<? extends MetricDescriptor<?>> descriptors) {
+        final StandardStatusHistory history = new StandardStatusHistory();
+        history.setComponentDetail("Id", componentId);
+
+        final StatusComponentRegistry.Component component;
+        try {
+            component = getRegistry().getComponent(type, componentId);
+        } catch (final IOException ioe) {
+            logger.error("Failed to recover Status History from {}", directory, ioe);
+            return history;
+        }
+
+        if (component == null) {
+            return history;
+        }
+
+        for (final Map.Entry<String, String> detail : component.getDetails().entrySet()) {
+            history.setComponentDetail(detail.getKey(), detail.getValue());
+        }
+
+        final long startMillis = start == null ? Long.MIN_VALUE : start.getTime();
+        final long endMillis = end == null ? Long.MAX_VALUE : end.getTime();
+
+        for (final MappedStatusSegment segment : segments.headMap(endMillis, true).values()) {
+            if (segment.getLastTimestamp() < startMillis) {
+                continue;
+            }
+
+            try {
+                addSnapshots(history, segment, component.getIndex(), startMillis, endMillis, descriptors);
+            } catch (final RuntimeException e) {
+                logger.warn("Failed to read Status History for {} from segment {}", componentId, segment, e);
+            }
+        }
+
+        synchronized (this) {
+            if (currentSegment != null) {
+                addSnapshots(history, currentSegment, component.getIndex(), startMillis, endMillis, descriptors);
+            }
+        }
+
+        return history;
+    }
+
+    private void addSnapshots(final StandardStatusHistory history, final StatusSegment segment, final int componentIndex, final long startMillis, final long endMillis,
+            final List<? extends MetricDescriptor<?>> descriptors) {
+        final long[][] values = segment.getMetricValues(componentIndex);
+        if (values == null || values.length == 0) {
+            return;
+        }
+
+        final long[] timestamps = segment.getTimestamps();
+        final int metricCount = Math.min(values.length, descriptors.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            if (timestamps[i] < startMillis || timestamps[i] > endMillis || values[0][i] == StatusSegment.MISSING) {
+                continue;
+            }
+
+            final StandardStatusSnapshot snapshot = new StandardStatusSnapshot();
+            snapshot.setTimestamp(new Date(timestamps[i]));
+            for (int metric = 0; metric < metricCount; metric++) {
+                final long value = values[metric][i];
+                snapshot.addStatusMetric(descriptors.get(metric), value == StatusSegment.MISSING ? 0L : value);
+            }
+
+            history.addStatusSnapshot(snapshot);
+        }
+    }
+
+    @Override
+    public List<MetricDescriptor<ConnectionStatus>> getConnectionMetricDescriptors() {
+        return CONNECTION_METRIC_DESCRIPTORS;
+    }
+
+    @Override
+    public List<MetricDescriptor<ProcessGroupStatus>> getProcessGroupMetricDescriptors() {
+        return PROCESS_GROUP_METRIC_DESCRIPTORS;
+    }
+
+    @Override
+    public List<MetricDescriptor<RemoteProcessGroupStatus>> getRemoteProcessGroupMetricDescriptors() {
+        return REMOTE_PROCESS_GROUP_METRIC_DESCRIPTORS;
+    }
+
+    @Override
+    public List<MetricDescriptor<ProcessorStatus>> getProcessorMetricDescriptors() {
+        return PROCESSOR_METRIC_DESCRIPTORS;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentComponentStatusRepository[directory=" + directory + ", segments=" + segments.size() + "]";
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.nifi.util.ComponentStatusReport.ComponentType;
+
+/**
+ * Assigns each component whose status is captured by the {@link PersistentComponentStatusRepository} a compact integer
+ * index, which identifies the component's columns in the status segments, and keeps the details of each component (such
+ * as its name) so that they need not be stored with every capture. The registry is persisted to a single file, which is
+ * rewritten whenever a component is added or its details change.
+ */
+class StatusComponentRegistry {
+
+    private static final int ENCODING_VERSION = 1;
+
+    private final File file;
+    private final Map<ComponentType, Map<String, Component>> components = new EnumMap<>(ComponentType.class);
+    private int nextIndex = 0;
+    private boolean dirty = false;
+
+    public StatusComponentRegistry(final File file) throws IOException {
+        this.file = file;
+        for (final ComponentType type : ComponentType.values()) {
+            components.put(type, new HashMap<String, Component>());
+        }
+
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the component with the given type and identifier, registering it if it has not been registered before, and
+     * updates its details
+     *
+     * @param type the type of the component
+     * @param componentId the identifier of the component
+     * @param details the details of the component, such as its name
+     * @param timestamp the time at which the component's status was captured
+     * @return the component
+     */
+    public synchronized Component register(final ComponentType type, final String componentId, final Map<String, String> details, final long timestamp) {
+        final Map<String, Component> typeComponents = components.get(type);
+        Component component = typeComponents.get(componentId);
+        if (component == null) {
+            component = new Component(nextIndex++, componentId, details, timestamp);
+            typeComponents.put(componentId, component);
+            dirty = true;
+        } else {
+            if (!component.getDetails().equals(details)) {
+                component.details = Collections.unmodifiableMap(new LinkedHashMap<>(details));
+                dirty = true;
+            }
+            component.lastSeen = Math.max(component.lastSeen, timestamp);
+        }
+
+        return component;
+    }
+
+    /**
+     * @param type the type of the component
+     * @param componentId the identifier of the component
+     * @return the component with the given type and identifier, or <code>null</code> if no such component has been registered
+     */
+    public synchronized Component getComponent(final ComponentType type, final String componentId) {
+        return components.get(type).get(componentId);
+    }
+
+    /**
+     * Removes any component whose status has not been captured since the given time
+     *
+     * @param cutoffTimestamp the cutoff time
+     */
+    public synchronized void purge(final long cutoffTimestamp) {
+        for (final Map<String, Component> typeComponents : components.values()) {
+            final Iterator<Component> itr = typeComponents.values().iterator();
+            while (itr.hasNext()) {
+                if (itr.next().lastSeen < cutoffTimestamp) {
+                    itr.remove();
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the registry to disk if it has changed since it was last written or if <code>force</code> is <code>true</code>
+     *
+     * @param force whether or not to write the registry even if no component has been added or changed
+     * @throws IOException if unable to write to disk
+     */
+    public synchronized void save(final boolean force) throws IOException {
+        if (!dirty && !force) {
+            return;
+        }
+
+        final File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (final FileOutputStream fos = new FileOutputStream(tempFile);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(ENCODING_VERSION);
+            out.writeInt(nextIndex);
+
+            for (final Map.Entry<ComponentType, Map<String, Component>> entry : components.entrySet()) {
+                out.writeUTF(entry.getKey().name());
+                out.writeInt(entry.getValue().size());
+
+                for (final Component component : entry.getValue().values()) {
+                    out.writeInt(component.getIndex());
+                    out.writeUTF(component.getIdentifier());
+                    out.writeLong(component.lastSeen);
+
+                    final Map<String, String> details = component.getDetails();
+                    out.writeInt(details.size());
+                    for (final Map.Entry<String, String> detail : details.entrySet()) {
+                        out.writeUTF(detail.getKey());
+                        out.writeBoolean(detail.getValue() != null);
+                        if (detail.getValue() != null) {
+                            out.writeUTF(detail.getValue());
+                        }
+                    }
+                }
+            }
+
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final int version = in.readInt();
+            if (version != ENCODING_VERSION) {
+                throw new IOException("Cannot read Status History component registry " + file + " because it was written with encoding version "
+                    + version + ", which is not supported");
+            }
+
+            nextIndex = in.readInt();
+            for (int t = 0; t < ComponentType.values().length; t++) {
+                final ComponentType type = ComponentType.valueOf(in.readUTF());
+                final Map<String, Component> typeComponents = components.get(type);
+
+                final int componentCount = in.readInt();
+                for (int i = 0; i < componentCount; i++) {
+                    final int index = in.readInt();
+                    final String componentId = in.readUTF();
+                    final long lastSeen = in.readLong();
+
+                    final int detailCount = in.readInt();
+                    final Map<String, String> details = new LinkedHashMap<>(detailCount);
+                    for (int d = 0; d < detailCount; d++) {
+                        final String name = in.readUTF();
+                        details.put(name, in.readBoolean() ? in.readUTF() : null);
+                    }
+
+                    typeComponents.put(componentId, new Component(index, componentId, details, lastSeen));
+                }
+            }
+        }
+    }
+
+
+    public static class Component {
+        private final int index;
+        private final String identifier;
+        private volatile Map<String, String> details;
+        private long lastSeen;
+
+        private Component(final int index, final String identifier, final Map<String, String> details, final long lastSeen) {
+            this.index = index;
+            this.identifier = identifier;
+            this.details = Collections.unmodifiableMap(new LinkedHashMap<>(details));
+            this.lastSeen = lastSeen;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public Map<String, String> getDetails() {
+            return details;
+        }
+    }
+}
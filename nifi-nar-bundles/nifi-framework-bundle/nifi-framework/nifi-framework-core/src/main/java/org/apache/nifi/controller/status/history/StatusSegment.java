@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+/**
+ * A contiguous range of captures held by the {@link PersistentComponentStatusRepository}. For each component, the values
+ * of each metric are stored as a separate column, so that the history of a single component can be obtained without
+ * reading the values of any other component.
+ */
+interface StatusSegment {
+
+    /**
+     * The value that is returned for a capture in which the component was not present
+     */
+    long MISSING = Long.MIN_VALUE;
+
+    /**
+     * @return the number of captures in this segment
+     */
+    int getCaptureCount();
+
+    /**
+     * @return the time at which each capture in this segment was taken, in the order in which they were captured
+     */
+    long[] getTimestamps();
+
+    /**
+     * @return the indices of all components that have values in this segment
+     */
+    int[] getComponentIndices();
+
+    /**
+     * @param componentIndex the index of the component, as assigned by the {@link StatusComponentRegistry}
+     * @return the values for the given component, indexed first by metric and then by capture, with {@link #MISSING} for any
+     *         capture in which the component was not present; or <code>null</code> if the component has no values in this segment
+     */
+    long[][] getMetricValues(int componentIndex);
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.varLongLength;
+import static org.apache.nifi.controller.repository.io.VariableLengthEncoding.writeVarLong;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Accumulates captures in memory and writes them to a segment file that can be read by {@link MappedStatusSegment}.
+ * </p>
+ *
+ * <p>
+ * Each metric of each component is encoded as its own column. A column holds one entry per capture: a zero byte if the
+ * component was not present in that capture, or else the difference from the previous value that was present,
+ * zig-zag encoded, plus one, as a variable-length integer. Because most metrics change little from one capture to the
+ * next, the typical entry takes a single byte.
+ * </p>
+ *
+ * <p>
+ * A segment file consists of:
+ * </p>
+ * <ul>
+ * <li>the encoding version, as a 4-byte integer</li>
+ * <li>the number of captures, followed by the timestamp of each capture, delta-encoded as above</li>
+ * <li>the number of components, followed by a 4-byte component index and a 4-byte offset for each component, sorted
+ * by component index, so that a reader can find a component with a binary search</li>
+ * <li>for each component, at its offset relative to the end of the index: the number of metrics, followed by the
+ * length and content of each metric's column</li>
+ * </ul>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+class StatusSegmentWriter implements StatusSegment {
+
+    static final int ENCODING_VERSION = 1;
+
+    private final Map<Integer, ComponentColumns> componentColumns = new HashMap<>();
+    private long[] timestamps = new long[16];
+    private int captureCount = 0;
+
+    /**
+     * Begins a new capture. Any component that is not recorded before the next capture begins is considered not to have
+     * been present in this capture.
+     *
+     * @param timestamp the time at which the capture was taken
+     */
+    public void beginCapture(final long timestamp) {
+        if (captureCount == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, captureCount * 2);
+        }
+
+        timestamps[captureCount++] = timestamp;
+    }
+
+    /**
+     * Records the values of the given component's metrics for the current capture
+     *
+     * @param componentIndex the index of the component
+     * @param values the value of each metric
+     */
+    public void record(final int componentIndex, final long[] values) {
+        if (captureCount == 0) {
+            throw new IllegalStateException("Cannot record values before a capture has begun");
+        }
+
+        ComponentColumns columns = componentColumns.get(componentIndex);
+        if (columns == null) {
+            columns = new ComponentColumns(values.length);
+            componentColumns.put(componentIndex, columns);
+        }
+
+        columns.padTo(captureCount - 1);
+        if (columns.captureCount < captureCount) {
+            columns.append(values);
+        }
+    }
+
+    @Override
+    public int getCaptureCount() {
+        return captureCount;
+    }
+
+    @Override
+    public long[] getTimestamps() {
+        return Arrays.copyOf(timestamps, captureCount);
+    }
+
+    @Override
+    public int[] getComponentIndices() {
+        final int[] indices = new int[componentColumns.size()];
+        int i = 0;
+        for (final Integer componentIndex : componentColumns.keySet()) {
+            indices[i++] = componentIndex;
+        }
+
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    @Override
+    public long[][] getMetricValues(final int componentIndex) {
+        final ComponentColumns columns = componentColumns.get(componentIndex);
+        if (columns == null) {
+            return null;
+        }
+
+        final long[][] values = new long[columns.lengths.length][captureCount];
+        for (int metric = 0; metric < values.length; metric++) {
+            final int decoded = MappedStatusSegment.decodeColumn(ByteBuffer.wrap(columns.data[metric]), 0, columns.lengths[metric], values[metric]);
+
+            // the component was not present in any capture that began after its values were last recorded
+            Arrays.fill(values[metric], decoded, captureCount, MISSING);
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes the captures to the given file. The contents are first written to a temporary file, which then replaces the
+     * given file, so that the given file is never left partially written.
+     *
+     * @param file the file to write to
+     * @throws IOException if unable to write to the file
+     */
+    public void writeTo(final File file) throws IOException {
+        final File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (final FileOutputStream fos = new FileOutputStream(tempFile);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            write(out);
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(final DataOutputStream out) throws IOException {
+        out.writeInt(ENCODING_VERSION);
+
+        writeVarLong(captureCount, out);
+        long previousTimestamp = 0L;
+        for (int i = 0; i < captureCount; i++) {
+            writeVarLong(zigZag(timestamps[i] - previousTimestamp), out);
+            previousTimestamp = timestamps[i];
+        }
+
+        final int[] componentIndices = getComponentIndices();
+        writeVarLong(componentIndices.length, out);
+
+        int offset = 0;
+        for (final int componentIndex : componentIndices) {
+            final ComponentColumns columns = componentColumns.get(componentIndex);
+            columns.padTo(captureCount);
+
+            out.writeInt(componentIndex);
+            out.writeInt(offset);
+            offset += columns.getEncodedLength();
+        }
+
+        for (final int componentIndex : componentIndices) {
+            final ComponentColumns columns = componentColumns.get(componentIndex);
+            writeVarLong(columns.lengths.length, out);
+            for (int metric = 0; metric < columns.lengths.length; metric++) {
+                writeVarLong(columns.lengths[metric], out);
+                out.write(columns.data[metric], 0, columns.lengths[metric]);
+            }
+        }
+    }
+
+    /**
+     * Creates a writer that holds the captures of the given segment at a lower resolution. Each group of <code>factor</code>
+     * consecutive captures is replaced by a single capture that is timestamped with the first capture of the group and
+     * holds, for each metric, the average of the values of the captures in the group in which the component was present.
+     *
+     * @param segment the segment to downsample
+     * @param factor the number of captures to combine into one
+     * @return a writer that holds the downsampled captures
+     */
+    static StatusSegmentWriter downsample(final StatusSegment segment, final int factor) {
+        final long[] sourceTimestamps = segment.getTimestamps();
+        final int groupCount = (sourceTimestamps.length + factor - 1) / factor;
+
+        final int[] componentIndices = segment.getComponentIndices();
+        final long[][][] averages = new long[componentIndices.length][][];
+        for (int c = 0; c < componentIndices.length; c++) {
+            final long[][] values = segment.getMetricValues(componentIndices[c]);
+            final long[][] componentAverages = new long[values.length][groupCount];
+
+            for (int metric = 0; metric < values.length; metric++) {
+                for (int group = 0; group < groupCount; group++) {
+                    long sum = 0L;
+                    int count = 0;
+                    final int end = Math.min(values[metric].length, (group + 1) * factor);
+                    for (int i = group * factor; i < end; i++) {
+                        if (values[metric][i] != MISSING) {
+                            sum += values[metric][i];
+                            count++;
+                        }
+                    }
+
+                    componentAverages[metric][group] = count == 0 ? MISSING : Math.round((double) sum / count);
+                }
+            }
+
+            averages[c] = componentAverages;
+        }
+
+        final StatusSegmentWriter writer = new StatusSegmentWriter();
+        for (int group = 0; group < groupCount; group++) {
+            writer.beginCapture(sourceTimestamps[group * factor]);
+
+            for (int c = 0; c < componentIndices.length; c++) {
+                final long[][] componentAverages = averages[c];
+                if (componentAverages.length == 0 || componentAverages[0][group] == MISSING) {
+                    continue;
+                }
+
+                final long[] values = new long[componentAverages.length];
+                for (int metric = 0; metric < values.length; metric++) {
+                    values[metric] = componentAverages[metric][group];
+                }
+                writer.record(componentIndices[c], values);
+            }
+        }
+
+        return writer;
+    }
+
+    static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * The encoded columns of a single component
+     */
+    private static class ComponentColumns {
+        private final byte[][] data;
+        private final int[] lengths;
+        private final long[] previousValues;
+        private int captureCount = 0;
+
+        public ComponentColumns(final int metricCount) {
+            data = new byte[metricCount][];
+            lengths = new int[metricCount];
+            previousValues = new long[metricCount];
+            for (int metric = 0; metric < metricCount; metric++) {
+                data[metric] = new byte[16];
+            }
+        }
+
+        public void padTo(final int count) {
+            while (captureCount < count) {
+                for (int metric = 0; metric < data.length; metric++) {
+                    writeByte(metric, 0);
+                }
+                captureCount++;
+            }
+        }
+
+        public void append(final long[] values) {
+            for (int metric = 0; metric < data.length; metric++) {
+                final long value = metric < values.length ? values[metric] : MISSING;
+                if (value == MISSING) {
+                    writeByte(metric, 0);
+                    continue;
+                }
+
+                long remaining = zigZag(value - previousValues[metric]) + 1;
+                while ((remaining & ~0x7FL) != 0L) {
+                    writeByte(metric, (int) ((remaining & 0x7FL) | 0x80L));
+                    remaining >>>= 7;
+                }
+                writeByte(metric, (int) remaining);
+
+                previousValues[metric] = value;
+            }
+
+            captureCount++;
+        }
+
+        private void writeByte(final int metric, final int value) {
+            if (lengths[metric] == data[metric].length) {
+                data[metric] = Arrays.copyOf(data[metric], data[metric].length * 2);
+            }
+            data[metric][lengths[metric]++] = (byte) value;
+        }
+
+        public int getEncodedLength() {
+            int length = varLongLength(data.length);
+            for (int metric = 0; metric < data.length; metric++) {
+                length += varLongLength(lengths[metric]) + lengths[metric];
+            }
+            return length;
+        }
+    }
+}
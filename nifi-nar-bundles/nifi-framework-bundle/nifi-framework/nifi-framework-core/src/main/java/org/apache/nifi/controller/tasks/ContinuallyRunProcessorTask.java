@@ -28,6 +28,7 @@ import org.apache.nifi.controller.repository.ProcessContext;
 import org.apache.nifi.controller.repository.StandardFlowFileEvent;
 import org.apache.nifi.controller.repository.StandardProcessSession;
 import org.apache.nifi.controller.repository.StandardProcessSessionFactory;
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.ScheduleState;
 import org.apache.nifi.controller.scheduling.SchedulingAgent;
@@ -110,11 +111,16 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
             }
         }
 
-        final long batchNanos = procNode.getRunDuration(TimeUnit.NANOSECONDS);
+        // If the Processor supports batching but no Run Duration has been configured, the Run Duration may be chosen
+        // adaptively. In that case, we always batch, even if the chosen Run Duration is currently 0, so that we can
+        // determine how expensive it is to commit the session.
+        final AdaptiveRunDuration adaptiveRunDuration = scheduleState.getAdaptiveRunDuration();
+        final boolean adaptive = adaptiveRunDuration.isApplicable(procNode);
+        final long batchNanos = adaptive ? adaptiveRunDuration.getRunDuration(TimeUnit.NANOSECONDS) : procNode.getRunDuration(TimeUnit.NANOSECONDS);
         final ProcessSessionFactory sessionFactory;
         final StandardProcessSession rawSession;
         final boolean batch;
-        if (procNode.isHighThroughputSupported() && batchNanos > 0L) {
+        if (procNode.isHighThroughputSupported() && (adaptive || batchNanos > 0L)) {
             rawSession = new StandardProcessSession(context);
             sessionFactory = new BatchingSessionFactory(rawSession);
             batch = true;
@@ -129,6 +135,8 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
         final long startNanos = System.nanoTime();
         final long finishNanos = startNanos + batchNanos;
         int invocationCount = 0;
+        boolean workRemaining = true;
+        boolean failed = false;
         try {
             try (final AutoCloseable ncl = NarCloseable.withNarLoader()) {
                 boolean shouldRun = true;
@@ -145,21 +153,26 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
                     }
 
                     if (!isWorkToDo(procNode)) {
+                        workRemaining = false;
                         break;
                     }
                     if (isYielded(procNode)) {
+                        workRemaining = false;
                         break;
                     }
 
                     if (numRelationships > 0) {
                         final int requiredNumberOfAvailableRelationships = procNode.isTriggerWhenAnyDestinationAvailable() ? 1 : numRelationships;
                         shouldRun = context.isRelationshipAvailabilitySatisfied(requiredNumberOfAvailableRelationships);
+                        workRemaining = shouldRun;
                     }
                 }
             } catch (final ProcessException pe) {
+                failed = true;
                 final ProcessorLog procLog = new SimpleProcessLogger(procNode.getIdentifier(), procNode.getProcessor());
                 procLog.error("Failed to process session due to {}", new Object[]{pe});
             } catch (final Throwable t) {
+                failed = true;
                 // Use ProcessorLog to log the event so that a bulletin will be created for this processor
                 final ProcessorLog procLog = new SimpleProcessLogger(procNode.getIdentifier(), procNode.getProcessor());
                 procLog.error("{} failed to process session due to {}", new Object[]{procNode.getProcessor(), t});
@@ -173,7 +186,14 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
             try {
                 if (batch) {
                     try {
+                        final long commitStartNanos = System.nanoTime();
                         rawSession.commit();
+                        final long commitEndNanos = System.nanoTime();
+
+                        adaptiveRunDuration.recordCommit();
+                        if (adaptive && !failed) {
+                            adaptiveRunDuration.adjust(commitEndNanos - startNanos, commitEndNanos - commitStartNanos, workRemaining);
+                        }
                     } catch (final Exception e) {
                         final ProcessorLog procLog = new SimpleProcessLogger(procNode.getIdentifier(), procNode.getProcessor());
                         procLog.error("Failed to commit session {} due to {}; rolling back", new Object[] { rawSession, e.toString() }, e);
@@ -16,26 +16,25 @@
  */
 package org.apache.nifi.spring;
 
-import org.apache.nifi.controller.repository.RingBufferEventRepository;
+import org.apache.nifi.controller.repository.StripedFlowFileEventRepository;
 
 import org.springframework.beans.factory.FactoryBean;
 
-public class RingBufferEventRepositoryBean implements FactoryBean<RingBufferEventRepository> {
+public class StripedFlowFileEventRepositoryBean implements FactoryBean<StripedFlowFileEventRepository> {
 
-    private RingBufferEventRepository repository;
+    private StripedFlowFileEventRepository repository;
 
     @Override
-    public RingBufferEventRepository getObject() throws Exception {
+    public StripedFlowFileEventRepository getObject() throws Exception {
         if (repository == null) {
-            // create the h2 repository
-            repository = new RingBufferEventRepository(5);
+            repository = new StripedFlowFileEventRepository(5);
         }
         return repository;
     }
 
     @Override
     public Class<?> getObjectType() {
-        return RingBufferEventRepository.class;
+        return StripedFlowFileEventRepository.class;
     }
 
     @Override
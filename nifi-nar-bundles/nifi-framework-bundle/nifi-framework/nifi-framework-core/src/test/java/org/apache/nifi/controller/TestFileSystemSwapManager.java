@@ -17,8 +17,12 @@
 package org.apache.nifi.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -27,22 +31,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.IncompleteSwapFileException;
 import org.apache.nifi.controller.repository.SwapContents;
 import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.controller.repository.claim.StandardContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
 import org.apache.nifi.flowfile.FlowFile;
+import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -116,6 +126,93 @@ public class TestFileSystemSwapManager {
         }
     }
 
+    @Test
+    public void testRoundTripWithContentClaims() throws IOException {
+        final ResourceClaimManager claimManager = new StandardResourceClaimManager();
+        final List<FlowFileRecord> toSwap = new ArrayList<>(10000);
+        for (int i = 0; i < 10000; i++) {
+            final Map<String, String> attrs = new HashMap<>();
+            attrs.put("i", String.valueOf(i));
+            attrs.put("attribute-" + (i % 100), "value");
+
+            final ContentClaim claim;
+            if (i % 10 == 0) {
+                claim = null;
+            } else {
+                final ResourceClaim resourceClaim = claimManager.newResourceClaim("container-" + (i % 3), "section-" + (i % 7), String.valueOf(i / 100), i % 2 == 0);
+                final StandardContentClaim contentClaim = new StandardContentClaim(resourceClaim, i * 10L);
+                contentClaim.setLength(i % 5 == 0 ? -1L : i);
+                claim = contentClaim;
+            }
+
+            toSwap.add(new TestFlowFile(attrs, i, claim));
+        }
+
+        final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class);
+        Mockito.when(flowFileQueue.getIdentifier()).thenReturn("87bb99fe-412c-49f6-a441-d1b0af4e20b4");
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        FileSystemSwapManager.serializeFlowFiles(toSwap, flowFileQueue, "testRoundTripWithContentClaims", baos);
+
+        final SwapContents swappedIn;
+        try (final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            swappedIn = FileSystemSwapManager.deserializeFlowFiles(dis, "testRoundTripWithContentClaims", flowFileQueue, claimManager);
+        }
+
+        assertEquals(toSwap.size(), swappedIn.getFlowFiles().size());
+        assertEquals(9000, swappedIn.getSummary().getResourceClaims().size());
+        for (int i = 0; i < toSwap.size(); i++) {
+            final FlowFileRecord pre = toSwap.get(i);
+            final FlowFileRecord post = swappedIn.getFlowFiles().get(i);
+
+            assertEquals(pre.getId(), post.getId());
+            assertEquals(pre.getSize(), post.getSize());
+            assertEquals(pre.getAttributes(), post.getAttributes());
+            assertEquals(pre.getContentClaimOffset(), post.getContentClaimOffset());
+
+            final ContentClaim preClaim = pre.getContentClaim();
+            final ContentClaim postClaim = post.getContentClaim();
+            if (preClaim == null) {
+                assertNull(postClaim);
+            } else {
+                assertEquals(preClaim, postClaim);
+                assertEquals(preClaim.getLength(), postClaim.getLength());
+                assertEquals(preClaim.getResourceClaim().getContainer(), postClaim.getResourceClaim().getContainer());
+                assertEquals(preClaim.getResourceClaim().getSection(), postClaim.getResourceClaim().getSection());
+                assertEquals(preClaim.getResourceClaim().isLossTolerant(), postClaim.getResourceClaim().isLossTolerant());
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedSwapFile() throws IOException {
+        final List<FlowFileRecord> toSwap = new ArrayList<>(10000);
+        for (int i = 0; i < 10000; i++) {
+            final Map<String, String> attrs = new HashMap<>();
+            attrs.put("uuid", UUID.randomUUID().toString());
+            toSwap.add(new TestFlowFile(attrs, i));
+        }
+
+        final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class);
+        Mockito.when(flowFileQueue.getIdentifier()).thenReturn("87bb99fe-412c-49f6-a441-d1b0af4e20b4");
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        FileSystemSwapManager.serializeFlowFiles(toSwap, flowFileQueue, "testTruncatedSwapFile", baos);
+        final byte[] truncated = Arrays.copyOf(baos.toByteArray(), baos.size() / 2);
+
+        try (final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(truncated))) {
+            FileSystemSwapManager.deserializeFlowFiles(dis, "testTruncatedSwapFile", flowFileQueue, new NopResourceClaimManager());
+            Assert.fail("Expected IncompleteSwapFileException");
+        } catch (final IncompleteSwapFileException isfe) {
+            final List<FlowFileRecord> partial = isfe.getPartialContents().getFlowFiles();
+            assertTrue(partial.size() > 0);
+            assertTrue(partial.size() < toSwap.size());
+            for (int i = 0; i < partial.size(); i++) {
+                assertEquals(toSwap.get(i).getAttributes(), partial.get(i).getAttributes());
+            }
+        }
+    }
+
 
     public class NopResourceClaimManager implements ResourceClaimManager {
 
@@ -170,11 +267,17 @@ public class TestFileSystemSwapManager {
         private final long lastQueueDate = System.currentTimeMillis();
         private final Map<String, String> attributes;
         private final long size;
+        private final ContentClaim contentClaim;
 
 
         public TestFlowFile(final Map<String, String> attributes, final long size) {
+            this(attributes, size, null);
+        }
+
+        public TestFlowFile(final Map<String, String> attributes, final long size, final ContentClaim contentClaim) {
             this.attributes = attributes;
             this.size = size;
+            this.contentClaim = contentClaim;
         }
 
 
@@ -235,12 +338,12 @@ public class TestFileSystemSwapManager {
 
         @Override
         public ContentClaim getContentClaim() {
-            return null;
+            return contentClaim;
         }
 
         @Override
         public long getContentClaimOffset() {
-            return 0;
+            return contentClaim == null ? 0L : size;
         }
     }
 }
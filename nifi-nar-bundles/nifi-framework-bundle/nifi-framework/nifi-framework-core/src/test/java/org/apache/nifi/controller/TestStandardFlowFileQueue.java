@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.nifi.connectable.Connectable;
@@ -62,6 +64,7 @@ import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceEventRepository;
 import org.apache.nifi.provenance.ProvenanceEventType;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -72,6 +75,7 @@ import org.mockito.stubbing.Answer;
 public class TestStandardFlowFileQueue {
     private TestSwapManager swapManager = null;
     private StandardFlowFileQueue queue = null;
+    private ExecutorService swapInExecutor = null;
 
     private List<ProvenanceEventRecord> provRecords = new ArrayList<>();
 
@@ -83,6 +87,7 @@ public class TestStandardFlowFileQueue {
     @Before
     @SuppressWarnings("unchecked")
     public void setup() {
+        swapInExecutor = Executors.newSingleThreadExecutor();
         provRecords.clear();
 
         final Connection connection = Mockito.mock(Connection.class);
@@ -108,10 +113,15 @@ public class TestStandardFlowFileQueue {
             }
         }).when(provRepo).registerEvents(Mockito.any(Iterable.class));
 
-        queue = new StandardFlowFileQueue("id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 10000);
+        queue = new StandardFlowFileQueue("id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, swapInExecutor, null, 10000);
         TestFlowFile.idGenerator.set(0L);
     }
 
+    @After
+    public void cleanup() {
+        swapInExecutor.shutdownNow();
+    }
+
     @Test
     public void testExpire() {
         queue.setFlowFileExpiration("1 ms");
@@ -381,6 +391,40 @@ public class TestStandardFlowFileQueue {
         queue.poll(exp);
     }
 
+    @Test
+    public void testSwapInPrefetchedWhileActiveQueueNotEmpty() throws InterruptedException {
+        final Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class));
+        Mockito.when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class));
+
+        final StandardFlowFileQueue prefetchQueue = new StandardFlowFileQueue("prefetch", connection, Mockito.mock(FlowFileRepository.class),
+            Mockito.mock(ProvenanceEventRepository.class), Mockito.mock(ResourceClaimManager.class), Mockito.mock(ProcessScheduler.class), swapManager, swapInExecutor, null, 20000);
+
+        for (int i = 0; i < 30000; i++) {
+            prefetchQueue.put(new TestFlowFile());
+        }
+        assertEquals(1, swapManager.swappedOut.size());
+        assertEquals(20000, prefetchQueue.getActiveQueueSize().getObjectCount());
+
+        final Set<FlowFileRecord> exp = new HashSet<>();
+        for (int i = 0; i < 10001; i++) {
+            assertNotNull(prefetchQueue.poll(exp));
+        }
+
+        // the Swap File is now being swapped in in the background. Its FlowFiles should be added to the active queue
+        // before the active queue is drained.
+        int remaining = prefetchQueue.getActiveQueueSize().getObjectCount();
+        while (prefetchQueue.getActiveQueueSize().getObjectCount() <= remaining) {
+            assertTrue(remaining > 0);
+            Thread.sleep(10L);
+            assertNotNull(prefetchQueue.poll(exp));
+            remaining--;
+        }
+
+        assertEquals(1, swapManager.swapInCalledCount);
+        assertTrue(swapManager.swappedOut.isEmpty());
+    }
+
     @Test
     public void testQueueCountsUpdatedWhenIncompleteSwapFile() {
         for (int i = 1; i <= 20000; i++) {
@@ -0,0 +1,699 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.DropFlowFileState;
+import org.apache.nifi.controller.queue.DropFlowFileStatus;
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.queue.ListFlowFileState;
+import org.apache.nifi.controller.queue.ListFlowFileStatus;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.IncompleteSwapFileException;
+import org.apache.nifi.controller.repository.SwapContents;
+import org.apache.nifi.controller.repository.SwapManagerInitializationContext;
+import org.apache.nifi.controller.repository.SwapSummary;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.controller.swap.StandardSwapContents;
+import org.apache.nifi.controller.swap.StandardSwapSummary;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestStripedFlowFileQueue {
+    private TestSwapManager swapManager = null;
+    private StripedFlowFileQueue queue = null;
+    private ExecutorService swapInExecutor = null;
+
+    private Connection connection;
+    private ProcessScheduler scheduler;
+    private FlowFileRepository flowFileRepo;
+    private ProvenanceEventRepository provRepo;
+    private ResourceClaimManager claimManager;
+
+    private List<ProvenanceEventRecord> provRecords = new ArrayList<>();
+
+    @BeforeClass
+    public static void setupLogging() {
+        System.setProperty("org.slf4j.simpleLogger.log.org.apache.nifi", "DEBUG");
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        swapInExecutor = Executors.newSingleThreadExecutor();
+        provRecords.clear();
+
+        // The queue is exercised by many threads in some of these tests, so avoid recording every invocation on the mocks.
+        connection = Mockito.mock(Connection.class, Mockito.withSettings().stubOnly());
+        Mockito.when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class, Mockito.withSettings().stubOnly()));
+        Mockito.when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class, Mockito.withSettings().stubOnly()));
+
+        scheduler = Mockito.mock(ProcessScheduler.class);
+        swapManager = new TestSwapManager();
+
+        flowFileRepo = Mockito.mock(FlowFileRepository.class);
+        provRepo = Mockito.mock(ProvenanceEventRepository.class);
+        claimManager = Mockito.mock(ResourceClaimManager.class);
+
+        Mockito.when(provRepo.eventBuilder()).thenReturn(new StandardProvenanceEventRecord.Builder());
+        Mockito.doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final Iterable<ProvenanceEventRecord> iterable = (Iterable<ProvenanceEventRecord>) invocation.getArguments()[0];
+                for (final ProvenanceEventRecord record : iterable) {
+                    provRecords.add(record);
+                }
+                return null;
+            }
+        }).when(provRepo).registerEvents(Mockito.any(Iterable.class));
+
+        queue = new StripedFlowFileQueue("id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, swapInExecutor, null, 10000, 4);
+        TestFlowFile.idGenerator.set(0L);
+    }
+
+    @After
+    public void cleanup() {
+        swapInExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testExpire() {
+        queue.setFlowFileExpiration("1 ms");
+
+        for (int i = 0; i < 100; i++) {
+            queue.put(new TestFlowFile());
+        }
+
+        // just make sure that the flowfiles have time to expire.
+        try {
+            Thread.sleep(100L);
+        } catch (final InterruptedException ie) {
+        }
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>(100);
+        final FlowFileRecord pulled = queue.poll(expiredRecords);
+
+        assertNull(pulled);
+        assertEquals(100, expiredRecords.size());
+
+        final QueueSize activeSize = queue.getActiveQueueSize();
+        assertEquals(0, activeSize.getObjectCount());
+        assertEquals(0L, activeSize.getByteCount());
+
+        final QueueSize unackSize = queue.getUnacknowledgedQueueSize();
+        assertEquals(0, unackSize.getObjectCount());
+        assertEquals(0L, unackSize.getByteCount());
+    }
+
+    @Test
+    public void testBackPressure() {
+        queue.setBackPressureObjectThreshold(10);
+
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.isActiveQueueEmpty());
+        assertFalse(queue.isFull());
+
+        for (int i = 0; i < 9; i++) {
+            queue.put(new TestFlowFile());
+            assertFalse(queue.isFull());
+            assertFalse(queue.isEmpty());
+            assertFalse(queue.isActiveQueueEmpty());
+        }
+
+        queue.put(new TestFlowFile());
+        assertTrue(queue.isFull());
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        final FlowFileRecord polled = queue.poll(expiredRecords);
+        assertNotNull(polled);
+        assertTrue(expiredRecords.isEmpty());
+
+        // queue is still full because FlowFile has not yet been acknowledged.
+        assertTrue(queue.isFull());
+        queue.acknowledge(polled);
+
+        // FlowFile has been acknowledged; queue should no longer be full.
+        assertFalse(queue.isFull());
+        assertFalse(queue.isEmpty());
+        assertFalse(queue.isActiveQueueEmpty());
+    }
+
+    @Test
+    public void testBackPressureAfterPollFilter() throws InterruptedException {
+        queue.setBackPressureObjectThreshold(10);
+        queue.setFlowFileExpiration("10 millis");
+
+        for (int i = 0; i < 10; i++) {
+            queue.put(new TestFlowFile());
+        }
+        assertTrue(queue.isFull());
+
+        Thread.sleep(100L);
+
+        final FlowFileFilter filter = new FlowFileFilter() {
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                return FlowFileFilterResult.REJECT_AND_CONTINUE;
+            }
+        };
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        final List<FlowFileRecord> polled = queue.poll(filter, expiredRecords);
+        assertTrue(polled.isEmpty());
+        assertEquals(10, expiredRecords.size());
+
+        assertFalse(queue.isFull());
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.isActiveQueueEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testPollFromAllStripes() throws InterruptedException {
+        // Put FlowFiles from several threads so that they land in different stripes.
+        final int numThreads = 8;
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        queue.put(new TestFlowFile());
+                    }
+                    latch.countDown();
+                }
+            });
+            t.start();
+        }
+        latch.await();
+
+        assertEquals(800, queue.size().getObjectCount());
+        assertEquals(800, queue.getActiveQueueSize().getObjectCount());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = queue.poll(1000, expired);
+        assertEquals(800, polled.size());
+        assertTrue(expired.isEmpty());
+        assertEquals(0, queue.getActiveQueueSize().getObjectCount());
+        assertEquals(800, queue.getUnacknowledgedQueueSize().getObjectCount());
+        assertTrue(queue.isActiveQueueEmpty());
+
+        queue.acknowledge(polled);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size().getObjectCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testPrioritizersHonoredAcrossStripes() throws InterruptedException {
+        final int numThreads = 4;
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        queue.put(new TestFlowFile(j * numThreads + threadIndex));
+                    }
+                    latch.countDown();
+                }
+            });
+            t.start();
+        }
+        latch.await();
+
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+        queue.setPriorities(prioritizers);
+        assertEquals(prioritizers, queue.getPriorities());
+
+        queue.put(new TestFlowFile(1000L));
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        for (int i = 0; i < 400; i++) {
+            final FlowFileRecord flowFile = queue.poll(expired);
+            assertEquals(i, flowFile.getSize());
+        }
+
+        assertEquals(1000L, queue.poll(expired).getSize());
+        assertNull(queue.poll(expired));
+    }
+
+    @Test
+    public void testSwapOutOccurs() {
+        for (int i = 0; i < 10000; i++) {
+            queue.put(new TestFlowFile());
+            assertEquals(0, swapManager.swapOutCalledCount);
+            assertEquals(i + 1, queue.size().getObjectCount());
+            assertEquals(i + 1, queue.size().getByteCount());
+        }
+
+        for (int i = 0; i < 9999; i++) {
+            queue.put(new TestFlowFile());
+            assertEquals(0, swapManager.swapOutCalledCount);
+            assertEquals(i + 10001, queue.size().getObjectCount());
+            assertEquals(i + 10001, queue.size().getByteCount());
+        }
+
+        queue.put(new TestFlowFile(1000));
+        assertEquals(1, swapManager.swapOutCalledCount);
+        assertEquals(20000, queue.size().getObjectCount());
+        assertEquals(20999, queue.size().getByteCount());
+
+        assertEquals(10000, queue.getActiveQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testLowestPrioritySwappedOutFirst() {
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+        queue.setPriorities(prioritizers);
+
+        long maxSize = 20000;
+        for (int i = 1; i <= 20000; i++) {
+            queue.put(new TestFlowFile(maxSize - i));
+        }
+
+        assertEquals(1, swapManager.swapOutCalledCount);
+        assertEquals(20000, queue.size().getObjectCount());
+
+        assertEquals(10000, queue.getActiveQueueSize().getObjectCount());
+        final List<FlowFileRecord> flowFiles = queue.poll(Integer.MAX_VALUE, new HashSet<FlowFileRecord>());
+        assertEquals(10000, flowFiles.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, flowFiles.get(i).getSize());
+        }
+    }
+
+    @Test
+    public void testSwapIn() {
+        for (int i = 1; i <= 20000; i++) {
+            queue.put(new TestFlowFile());
+        }
+
+        assertEquals(1, swapManager.swappedOut.size());
+        queue.put(new TestFlowFile());
+        assertEquals(1, swapManager.swappedOut.size());
+
+        final Set<FlowFileRecord> exp = new HashSet<>();
+        for (int i = 0; i < 9999; i++) {
+            final FlowFileRecord flowFile = queue.poll(exp);
+            assertNotNull(flowFile);
+            assertEquals(1, queue.getUnacknowledgedQueueSize().getObjectCount());
+            assertEquals(1, queue.getUnacknowledgedQueueSize().getByteCount());
+
+            queue.acknowledge(Collections.singleton(flowFile));
+            assertEquals(0, queue.getUnacknowledgedQueueSize().getObjectCount());
+            assertEquals(0, queue.getUnacknowledgedQueueSize().getByteCount());
+        }
+
+        assertEquals(0, swapManager.swapInCalledCount);
+        assertEquals(1, queue.getActiveQueueSize().getObjectCount());
+        assertNotNull(queue.poll(exp));
+
+        assertEquals(0, swapManager.swapInCalledCount);
+        assertEquals(0, queue.getActiveQueueSize().getObjectCount());
+
+        assertEquals(1, swapManager.swapOutCalledCount);
+
+        assertNotNull(queue.poll(exp)); // this should trigger a swap-in of 10,000 records, and then pull 1 off the top.
+        assertEquals(1, swapManager.swapInCalledCount);
+        assertEquals(9999, queue.getActiveQueueSize().getObjectCount());
+
+        assertTrue(swapManager.swappedOut.isEmpty());
+
+        // the one FlowFile that remained on the swap queue is migrated once the swapped-in FlowFiles are consumed.
+        assertEquals(9999, queue.poll(Integer.MAX_VALUE, exp).size());
+        assertNotNull(queue.poll(exp));
+        assertNull(queue.poll(exp));
+        assertTrue(queue.isActiveQueueEmpty());
+    }
+
+    @Test(timeout = 120000)
+    public void testDropSwappedFlowFiles() {
+        for (int i = 1; i <= 30000; i++) {
+            queue.put(new TestFlowFile());
+        }
+
+        assertEquals(2, swapManager.swappedOut.size());
+        final DropFlowFileStatus status = queue.dropFlowFiles("1", "Unit Test");
+        while (status.getState() != DropFlowFileState.COMPLETE) {
+            try {
+                Thread.sleep(100L);
+            } catch (final Exception e) {
+            }
+        }
+
+        assertEquals(0, queue.size().getObjectCount());
+        assertEquals(0, queue.size().getByteCount());
+        assertEquals(0, swapManager.swappedOut.size());
+        assertEquals(2, swapManager.swapInCalledCount);
+        assertEquals(30000, provRecords.size());
+        for (final ProvenanceEventRecord event : provRecords) {
+            assertEquals(ProvenanceEventType.DROP, event.getEventType());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testListFlowFilesResultsLimited() throws InterruptedException {
+        for (int i = 0; i < 30050; i++) {
+            queue.put(new TestFlowFile());
+        }
+
+        final ListFlowFileStatus status = queue.listFlowFiles(UUID.randomUUID().toString(), 100);
+        assertNotNull(status);
+        assertEquals(30050, status.getQueueSize().getObjectCount());
+
+        while (status.getState() != ListFlowFileState.COMPLETE) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(100, status.getFlowFileSummaries().size());
+        assertEquals(100, status.getCompletionPercentage());
+        assertNull(status.getFailureReason());
+    }
+
+    @Test
+    @Ignore("Intended only for manual performance testing")
+    public void testThroughputComparedToStandardQueue() throws InterruptedException {
+        final int flowFilesPerProducer = 500000;
+        final int[] threadCounts = new int[] {1, 4, 16, 64};
+
+        for (final int threadCount : threadCounts) {
+            final long standardNanos = runProducerConsumer(new StandardFlowFileQueue("standard", connection, flowFileRepo, provRepo, claimManager,
+                scheduler, swapManager, swapInExecutor, null, Integer.MAX_VALUE), threadCount, flowFilesPerProducer);
+            final long stripedNanos = runProducerConsumer(new StripedFlowFileQueue("striped", connection, flowFileRepo, provRepo, claimManager,
+                scheduler, swapManager, swapInExecutor, null, Integer.MAX_VALUE, Runtime.getRuntime().availableProcessors()), threadCount, flowFilesPerProducer);
+
+            final long totalFlowFiles = (long) threadCount * flowFilesPerProducer;
+            System.out.println(threadCount + " producers/" + threadCount + " consumers: Standard Queue = "
+                + (totalFlowFiles * 1000L / Math.max(1L, TimeUnit.NANOSECONDS.toMillis(standardNanos))) + " FlowFiles/sec, Striped Queue = "
+                + (totalFlowFiles * 1000L / Math.max(1L, TimeUnit.NANOSECONDS.toMillis(stripedNanos))) + " FlowFiles/sec");
+        }
+    }
+
+    private long runProducerConsumer(final FlowFileQueue flowFileQueue, final int threadCount, final int flowFilesPerProducer) throws InterruptedException {
+        final long totalFlowFiles = (long) threadCount * flowFilesPerProducer;
+        final AtomicLong consumed = new AtomicLong(0L);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(threadCount * 2);
+
+        for (int i = 0; i < threadCount; i++) {
+            final Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < flowFilesPerProducer; j++) {
+                            flowFileQueue.put(new TestFlowFile());
+                        }
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            producer.start();
+
+            final Thread consumer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        final Set<FlowFileRecord> expired = new HashSet<>();
+                        while (consumed.get() < totalFlowFiles) {
+                            final List<FlowFileRecord> polled = flowFileQueue.poll(100, expired);
+                            if (!polled.isEmpty()) {
+                                flowFileQueue.acknowledge(polled);
+                                consumed.addAndGet(polled.size());
+                            }
+                        }
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            consumer.start();
+        }
+
+        final long start = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        return System.nanoTime() - start;
+    }
+
+    private class TestSwapManager implements FlowFileSwapManager {
+        private final Map<String, List<FlowFileRecord>> swappedOut = new HashMap<>();
+        int swapOutCalledCount = 0;
+        int swapInCalledCount = 0;
+
+        private int incompleteSwapFileRecordsToInclude = -1;
+
+        @Override
+        public void initialize(final SwapManagerInitializationContext initializationContext) {
+
+        }
+
+        public void enableIncompleteSwapFileException(final int flowFilesToInclude) {
+            incompleteSwapFileRecordsToInclude = flowFilesToInclude;
+        }
+
+        @Override
+        public String swapOut(List<FlowFileRecord> flowFiles, FlowFileQueue flowFileQueue) throws IOException {
+            swapOutCalledCount++;
+            final String location = UUID.randomUUID().toString();
+            swappedOut.put(location, new ArrayList<FlowFileRecord>(flowFiles));
+            return location;
+        }
+
+        private void throwIncompleteIfNecessary(final String swapLocation, final boolean remove) throws IOException {
+            if (incompleteSwapFileRecordsToInclude > -1) {
+                final SwapSummary summary = getSwapSummary(swapLocation);
+
+                final List<FlowFileRecord> records;
+                if (remove) {
+                    records = swappedOut.remove(swapLocation);
+                } else {
+                    records = swappedOut.get(swapLocation);
+                }
+
+                final List<FlowFileRecord> partial = records.subList(0, incompleteSwapFileRecordsToInclude);
+                final SwapContents partialContents = new StandardSwapContents(summary, partial);
+                throw new IncompleteSwapFileException(swapLocation, partialContents);
+            }
+        }
+
+        @Override
+        public SwapContents peek(String swapLocation, final FlowFileQueue flowFileQueue) throws IOException {
+            throwIncompleteIfNecessary(swapLocation, false);
+            return new StandardSwapContents(getSwapSummary(swapLocation), swappedOut.get(swapLocation));
+        }
+
+        @Override
+        public SwapContents swapIn(String swapLocation, FlowFileQueue flowFileQueue) throws IOException {
+            swapInCalledCount++;
+            throwIncompleteIfNecessary(swapLocation, true);
+            return new StandardSwapContents(getSwapSummary(swapLocation), swappedOut.remove(swapLocation));
+        }
+
+        @Override
+        public List<String> recoverSwapLocations(FlowFileQueue flowFileQueue) throws IOException {
+            return new ArrayList<String>(swappedOut.keySet());
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public SwapSummary getSwapSummary(String swapLocation) throws IOException {
+            final List<FlowFileRecord> flowFiles = swappedOut.get(swapLocation);
+            if (flowFiles == null) {
+                return StandardSwapSummary.EMPTY_SUMMARY;
+            }
+
+            int count = 0;
+            long size = 0L;
+            Long max = null;
+            final List<ResourceClaim> resourceClaims = new ArrayList<>();
+            for (final FlowFileRecord flowFile : flowFiles) {
+                count++;
+                size += flowFile.getSize();
+                if (max == null || flowFile.getId() > max) {
+                    max = flowFile.getId();
+                }
+
+                if (flowFile.getContentClaim() != null) {
+                    resourceClaims.add(flowFile.getContentClaim().getResourceClaim());
+                }
+            }
+
+            return new StandardSwapSummary(new QueueSize(count, size), max, resourceClaims);
+        }
+
+        @Override
+        public void purge() {
+            swappedOut.clear();
+        }
+    }
+
+
+    private static class TestFlowFile implements FlowFileRecord {
+        private static final AtomicLong idGenerator = new AtomicLong(0L);
+
+        private final long id = idGenerator.getAndIncrement();
+        private final long entryDate = System.currentTimeMillis();
+        private final Map<String, String> attributes;
+        private final long size;
+
+        public TestFlowFile() {
+            this(1L);
+        }
+
+        public TestFlowFile(final long size) {
+            this(new HashMap<String, String>(), size);
+        }
+
+        public TestFlowFile(final Map<String, String> attributes, final long size) {
+            this.attributes = attributes;
+            this.size = size;
+
+            if (!attributes.containsKey(CoreAttributes.UUID.key())) {
+                attributes.put(CoreAttributes.UUID.key(), createFakeUUID());
+            }
+        }
+
+        private  String createFakeUUID(){
+            final String s=Long.toHexString(id);
+            return new StringBuffer("00000000-0000-0000-0000000000000000".substring(0,(35-s.length()))+s).insert(23, '-').toString();
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public long getEntryDate() {
+            return entryDate;
+        }
+
+        @Override
+        public long getLineageStartDate() {
+            return entryDate;
+        }
+
+        @Override
+        public Long getLastQueueDate() {
+            return null;
+        }
+
+        @Override
+        public Set<String> getLineageIdentifiers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isPenalized() {
+            return false;
+        }
+
+        @Override
+        public String getAttribute(String key) {
+            return attributes.get(key);
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public Map<String, String> getAttributes() {
+            return Collections.unmodifiableMap(attributes);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public int compareTo(final FlowFile o) {
+            return Long.compare(id, o.getId());
+        }
+
+        @Override
+        public long getPenaltyExpirationMillis() {
+            return 0;
+        }
+
+        @Override
+        public ContentClaim getContentClaim() {
+            return null;
+        }
+
+        @Override
+        public long getContentClaimOffset() {
+            return 0;
+        }
+    }
+
+    private static class FlowFileSizePrioritizer implements FlowFilePrioritizer {
+        @Override
+        public int compare(final FlowFile o1, final FlowFile o2) {
+            return Long.compare(o1.getSize(), o2.getSize());
+        }
+    }
+}
@@ -35,15 +35,25 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
 import org.apache.nifi.controller.repository.util.DiskUtils;
 import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.LoggerFactory;
 
@@ -386,6 +396,176 @@ public class TestFileSystemRepository {
         }
     }
 
+    @Test
+    public void testReadClaimsSharingResourceClaim() throws IOException {
+        final List<ContentClaim> claims = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final ContentClaim claim = repository.create(false);
+            final byte[] data = ("Content for claim number " + i).getBytes();
+            try (final OutputStream out = repository.write(claim)) {
+                out.write(data);
+            }
+
+            claims.add(claim);
+            contents.add(data);
+        }
+
+        for (final ContentClaim claim : claims) {
+            assertEquals(claims.get(0).getResourceClaim(), claim.getResourceClaim());
+        }
+
+        // read the claims in reverse order, interleaving reads so that multiple streams share the same channel
+        try (final InputStream first = repository.read(claims.get(0))) {
+            for (int i = claims.size() - 1; i >= 0; i--) {
+                try (final InputStream in = repository.read(claims.get(i))) {
+                    assertTrue(Arrays.equals(contents.get(i), readFully(in, contents.get(i).length)));
+                }
+            }
+
+            assertTrue(Arrays.equals(contents.get(0), readFully(first, contents.get(0).length)));
+        }
+
+        // skipping must not move past the end of the claim
+        try (final InputStream in = repository.read(claims.get(2))) {
+            StreamUtils.skip(in, 8L);
+            assertEquals(contents.get(2)[8], (byte) in.read());
+            assertEquals(contents.get(2).length - 9, in.skip(1000L));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testExportRangeToFile() throws IOException {
+        final ContentClaim claim1 = repository.create(false);
+        try (final OutputStream out = repository.write(claim1)) {
+            out.write("first claim".getBytes());
+        }
+
+        final ContentClaim claim2 = repository.create(false);
+        try (final OutputStream out = repository.write(claim2)) {
+            out.write("The quick brown fox jumps over the lazy dog".getBytes());
+        }
+        assertEquals(claim1.getResourceClaim(), claim2.getResourceClaim());
+
+        final Path outPath = new File("target/testExportRangeToFile").toPath();
+        Files.deleteIfExists(outPath);
+
+        repository.exportTo(claim2, outPath, false, 4L, 5L);
+        assertEquals("quick", new String(Files.readAllBytes(outPath)));
+
+        repository.exportTo(claim2, outPath, true);
+        assertEquals("quickThe quick brown fox jumps over the lazy dog", new String(Files.readAllBytes(outPath)));
+    }
+
+    @Test(expected = ContentNotFoundException.class)
+    public void testReadAfterRemove() throws IOException {
+        final ContentClaim claim = repository.create(true);
+
+        // write more than the max appendable size so that the Resource Claim is not reused and can be removed
+        final byte[] data = new byte[1024 * 1024 + 1];
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(data);
+        }
+
+        try (final InputStream in = repository.read(claim)) {
+            assertEquals(data.length, readFully(in, 8192).length);
+        }
+
+        assertEquals(0, repository.decrementClaimantCount(claim));
+        assertTrue(repository.remove(claim));
+        assertFalse(Files.exists(getPath(claim)));
+
+        // the file must not continue to be read from a channel that was opened before it was removed
+        repository.read(claim);
+    }
+
+    @Test
+    public void testConcurrentCreateWriteClose() throws Exception {
+        final int threads = 8;
+        final int claimsPerThread = 250;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<ContentClaim>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int threadIndex = t;
+                futures.add(executor.submit(new Callable<List<ContentClaim>>() {
+                    @Override
+                    public List<ContentClaim> call() throws Exception {
+                        final List<ContentClaim> claims = new ArrayList<>();
+                        for (int i = 0; i < claimsPerThread; i++) {
+                            final ContentClaim claim = repository.create(false);
+                            try (final OutputStream out = repository.write(claim)) {
+                                out.write((threadIndex + "-" + i).getBytes());
+                            }
+                            claims.add(claim);
+                        }
+                        return claims;
+                    }
+                }));
+            }
+
+            // every Content Claim must hold exactly one claim on its Resource Claim
+            final Map<ResourceClaim, Integer> claimantCounts = new HashMap<>();
+            for (int t = 0; t < threads; t++) {
+                final List<ContentClaim> claims = futures.get(t).get();
+                for (int i = 0; i < claims.size(); i++) {
+                    final byte[] expected = (t + "-" + i).getBytes();
+                    try (final InputStream in = repository.read(claims.get(i))) {
+                        assertTrue(Arrays.equals(expected, readFully(in, expected.length)));
+                    }
+
+                    final ResourceClaim resourceClaim = claims.get(i).getResourceClaim();
+                    final Integer count = claimantCounts.get(resourceClaim);
+                    claimantCounts.put(resourceClaim, count == null ? 1 : count + 1);
+                }
+            }
+
+            for (final Map.Entry<ResourceClaim, Integer> entry : claimantCounts.entrySet()) {
+                assertEquals(entry.getValue().intValue(), repository.getClaimantCount(new StandardContentClaim(entry.getKey(), 0L)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Ignore("Intended only for manual performance testing")
+    public void testCreateWriteClosePerformance() throws Exception {
+        final byte[] data = new byte[256];
+        final int claimsPerIteration = 200000;
+
+        for (final int threads : new int[] {1, 4, 16, 32}) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            final List<Future<?>> futures = new ArrayList<>();
+            final long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < claimsPerIteration / threads; i++) {
+                            final ContentClaim claim = repository.create(false);
+                            try (final OutputStream out = repository.write(claim)) {
+                                out.write(data);
+                            }
+                            repository.decrementClaimantCount(claim);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            executor.shutdown();
+
+            System.out.println(threads + " threads: created, wrote and closed " + claimsPerIteration + " claims in " + millis + " millis ("
+                + (claimsPerIteration * 1000L / Math.max(1L, millis)) + " claims/sec)");
+        }
+    }
+
     @Test
     public void testWrite() throws IOException {
         final ContentClaim claim = repository.create(true);
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.controller.repository.ResourceClaimChannelCache.CachedChannel;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaim;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResourceClaimChannelCache {
+
+    private final File directory = new File("target/channel_cache");
+    private final ResourceClaim claim = new StandardResourceClaim("container", "section", "1", false);
+
+    private Path path;
+
+    @Before
+    public void setup() throws IOException {
+        directory.mkdirs();
+        path = new File(directory, "1").toPath();
+        Files.write(path, "Hello, World".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testChannelIsSharedUntilInvalidated() throws IOException {
+        final ResourceClaimChannelCache cache = new ResourceClaimChannelCache(4);
+        final CachedChannel opened = cache.open(claim, path);
+        final CachedChannel acquired = cache.acquire(claim);
+        assertSame(opened, acquired);
+        assertEquals(1, cache.size());
+        opened.close();
+        acquired.close();
+
+        cache.invalidate(claim);
+        assertEquals(0, cache.size());
+        assertNull(cache.acquire(claim));
+    }
+
+    @Test(timeout = 10000)
+    public void testChannelOpenedDuringInvalidationIsNotCached() throws Exception {
+        final CountDownLatch opening = new CountDownLatch(1);
+        final CountDownLatch invalidated = new CountDownLatch(1);
+        final AtomicReference<FileChannel> openedChannel = new AtomicReference<>();
+        final ResourceClaimChannelCache cache = new ResourceClaimChannelCache(4) {
+            @Override
+            FileChannel openChannel(final Path path) throws IOException {
+                final FileChannel channel = super.openChannel(path);
+                openedChannel.set(channel);
+                opening.countDown();
+                try {
+                    invalidated.await();
+                } catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return channel;
+            }
+        };
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<CachedChannel> future = executor.submit(new Callable<CachedChannel>() {
+                @Override
+                public CachedChannel call() throws IOException {
+                    return cache.open(claim, path);
+                }
+            });
+
+            // the file is open but the channel is not yet cached when the claim is destroyed
+            opening.await();
+            cache.invalidate(claim);
+            Files.delete(path);
+            invalidated.countDown();
+
+            final CachedChannel channel = future.get(5, TimeUnit.SECONDS);
+            assertNotNull(channel);
+            assertEquals(0, cache.size());
+            assertNull(cache.acquire(claim));
+
+            // the reader that opened the file may still use it, but the channel is closed once it is released
+            final ByteBuffer buffer = ByteBuffer.allocate(5);
+            assertEquals(5, channel.read(buffer, 0L));
+            assertEquals("Hello", new String(buffer.array(), StandardCharsets.UTF_8));
+            assertTrue(openedChannel.get().isOpen());
+            channel.close();
+            assertFalse(openedChannel.get().isOpen());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChannelOpenedAfterInvalidationIsCached() throws IOException {
+        final ResourceClaimChannelCache cache = new ResourceClaimChannelCache(4);
+        cache.invalidate(claim);
+
+        final CachedChannel channel = cache.open(claim, path);
+        channel.close();
+        assertEquals(1, cache.size());
+
+        final CachedChannel acquired = cache.acquire(claim);
+        assertSame(channel, acquired);
+        acquired.close();
+        cache.close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateAllClosesUnusedChannels() throws IOException {
+        final ResourceClaim otherClaim = new StandardResourceClaim("container", "section", "2", false);
+        final ResourceClaimChannelCache cache = new ResourceClaimChannelCache(4);
+        final CachedChannel unused = cache.open(claim, path);
+        unused.close();
+        final CachedChannel inUse = cache.open(otherClaim, path);
+        assertEquals(2, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.acquire(claim));
+        assertNull(cache.acquire(otherClaim));
+
+        // the channel in use remains readable until it is released
+        final ByteBuffer buffer = ByteBuffer.allocate(5);
+        assertEquals(5, inUse.read(buffer, 0L));
+        inUse.close();
+
+        // the cache may still be used afterwards
+        final CachedChannel reopened = cache.open(claim, path);
+        assertFalse(reopened == unused);
+        reopened.close();
+        assertEquals(1, cache.size());
+        cache.close();
+    }
+
+    @Test
+    public void testFailedOpenDoesNotPreventCaching() throws IOException {
+        final ResourceClaimChannelCache cache = new ResourceClaimChannelCache(4);
+        try {
+            cache.open(claim, new File(directory, "missing").toPath());
+        } catch (final IOException expected) {
+            // the file does not exist
+        }
+
+        final CachedChannel channel = cache.open(claim, path);
+        channel.close();
+        assertEquals(1, cache.size());
+        cache.close();
+    }
+}
@@ -31,6 +31,7 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -44,6 +45,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
@@ -79,6 +83,7 @@ import org.apache.nifi.util.ObjectHolder;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -89,6 +94,7 @@ public class TestStandardProcessSession {
     private StandardProcessSession session;
     private MockContentRepository contentRepo;
     private FlowFileQueue flowFileQueue;
+    private ExecutorService swapInExecutor;
     private ProcessContext context;
 
     private ProvenanceEventRepository provenanceRepo;
@@ -97,6 +103,7 @@ public class TestStandardProcessSession {
     @After
     public void cleanup() {
         session.rollback();
+        swapInExecutor.shutdownNow();
 
         final File repoDir = new File("target/contentRepo");
         rmDir(repoDir);
@@ -139,7 +146,8 @@ public class TestStandardProcessSession {
         final ProcessScheduler processScheduler = Mockito.mock(ProcessScheduler.class);
 
         final FlowFileSwapManager swapManager = Mockito.mock(FlowFileSwapManager.class);
-        flowFileQueue = new StandardFlowFileQueue("1", connection, flowFileRepo, provenanceRepo, null, processScheduler, swapManager, null, 10000);
+        swapInExecutor = Executors.newSingleThreadExecutor();
+        flowFileQueue = new StandardFlowFileQueue("1", connection, flowFileRepo, provenanceRepo, null, processScheduler, swapManager, swapInExecutor, null, 10000);
         when(connection.getFlowFileQueue()).thenReturn(flowFileQueue);
 
         Mockito.doAnswer(new Answer<Object>() {
@@ -1140,6 +1148,86 @@ public class TestStandardProcessSession {
         assertEquals(ProvenanceEventType.ATTRIBUTES_MODIFIED, event.getEventType());
     }
 
+    @Test
+    public void testCheckpointsBatchedAndNotCarriedIntoNextCommit() throws IOException {
+        final Relationship relationship = new Relationship.Builder().name("A").build();
+
+        session.transfer(session.create(), relationship);
+        session.checkpoint();
+        session.transfer(session.create(), relationship);
+        session.checkpoint();
+        session.commit();
+
+        assertEquals(2, flowFileQueue.size().getObjectCount());
+        assertEquals(2, provenanceRepo.getEvents(0L, 10000).size());
+
+        // a second session, committed on the same thread, must not see anything from the first
+        final StandardProcessSession secondSession = new StandardProcessSession(context);
+        secondSession.transfer(secondSession.create(), relationship);
+        secondSession.commit();
+
+        assertEquals(3, flowFileQueue.size().getObjectCount());
+        final List<ProvenanceEventRecord> events = provenanceRepo.getEvents(0L, 10000);
+        assertEquals(3, events.size());
+        for (final ProvenanceEventRecord event : events) {
+            assertEquals(ProvenanceEventType.CREATE, event.getEventType());
+        }
+
+        // committing again with nothing done should not emit anything
+        session.commit();
+        secondSession.commit();
+        assertEquals(3, provenanceRepo.getEvents(0L, 10000).size());
+    }
+
+    /**
+     * Reports the time taken, and the number of bytes allocated by the committing thread, per create/transfer/commit
+     * of a small FlowFile. The created FlowFiles are periodically removed again, in a session of their own.
+     */
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testCreateTransferCommitPerformance() {
+        final ProvenanceEventRepository discardingProvenanceRepo = new MockProvenanceEventRepository() {
+            @Override
+            public void registerEvents(final Iterable<ProvenanceEventRecord> events) {
+                for (final ProvenanceEventRecord event : events) {
+                    event.getEventType();
+                }
+            }
+        };
+
+        final ProcessContext perfContext = new ProcessContext(context.getConnectable(), new AtomicLong(0L), contentRepo, flowFileRepo,
+            Mockito.mock(FlowFileEventRepository.class), Mockito.mock(CounterRepository.class), discardingProvenanceRepo);
+
+        final com.sun.management.ThreadMXBean threadMxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final Relationship relationship = new Relationship.Builder().name("A").build();
+        final int iterations = 500000;
+
+        for (int run = 0; run < 5; run++) {
+            final long startBytes = threadMxBean.getThreadAllocatedBytes(threadId);
+            final long start = System.nanoTime();
+
+            for (int i = 1; i <= iterations; i++) {
+                final StandardProcessSession perfSession = new StandardProcessSession(perfContext);
+                FlowFile flowFile = perfSession.create();
+                flowFile = perfSession.putAttribute(flowFile, "iteration", "x");
+                perfSession.transfer(flowFile, relationship);
+                perfSession.commit();
+
+                if (i % 100 == 0) {
+                    final StandardProcessSession drainSession = new StandardProcessSession(perfContext);
+                    drainSession.remove(drainSession.get(100));
+                    drainSession.commit();
+                }
+            }
+
+            final long nanos = System.nanoTime() - start;
+            final long bytes = threadMxBean.getThreadAllocatedBytes(threadId) - startBytes;
+            System.out.println("Run " + run + ": " + iterations + " create/transfer/commit cycles took " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                + " millis (" + (nanos / iterations) + " nanos and " + (bytes / iterations) + " bytes allocated per cycle)");
+        }
+    }
+
     private static class MockFlowFileRepository implements FlowFileRepository {
         private boolean failOnUpdate = false;
         private final AtomicLong idGenerator = new AtomicLong(0L);
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.nifi.controller.repository.StripedFlowFileEventRepository;
+import org.apache.nifi.controller.repository.StandardRepositoryStatusReport;
+import org.apache.nifi.controller.repository.FlowFileEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestStripedFlowFileEventRepository {
+
+    @Test
+    public void testAdd() throws IOException {
+        final StripedFlowFileEventRepository repo = new StripedFlowFileEventRepository(5);
+        long insertNanos = 0L;
+        for (int i = 0; i < 1000000; i++) {
+            final FlowFileEvent event = generateEvent();
+
+            final long insertStart = System.nanoTime();
+            repo.updateRepository(event);
+            insertNanos += System.nanoTime() - insertStart;
+        }
+
+        final long queryStart = System.nanoTime();
+        final StandardRepositoryStatusReport report = repo.reportTransferEvents(System.currentTimeMillis() - 2 * 60000);
+        final long queryNanos = System.nanoTime() - queryStart;
+        System.out.println(report);
+        System.out.println("Insert: " + TimeUnit.MILLISECONDS.convert(insertNanos, TimeUnit.NANOSECONDS));
+        System.out.println("Query: " + TimeUnit.MILLISECONDS.convert(queryNanos, TimeUnit.NANOSECONDS));
+        repo.close();
+    }
+
+    @Test
+    public void testReportIncludesOnlyEventsSinceGivenTime() throws IOException {
+        final AtomicLong time = new AtomicLong(1000000000000L);
+        final StripedFlowFileEventRepository repo = createRepository(time);
+
+        final long start = time.get();
+        for (int i = 0; i < 10; i++) {
+            repo.updateRepository(generateEvent());
+        }
+
+        time.addAndGet(60000L);
+        for (int i = 0; i < 5; i++) {
+            repo.updateRepository(generateEvent());
+        }
+
+        time.addAndGet(60000L);
+        repo.updateRepository(generateEvent());
+
+        assertEquals(16, getEntry(repo, start).getFlowFilesIn());
+        assertEquals(16 * 1024L, getEntry(repo, start).getContentSizeIn());
+        assertEquals(6, getEntry(repo, start + 1000L).getFlowFilesIn());
+        assertEquals(6, getEntry(repo, start + 60000L).getFlowFilesIn());
+        assertEquals(1, getEntry(repo, start + 61000L).getFlowFilesIn());
+        assertEquals(1, getEntry(repo, time.get()).getFlowFilesIn());
+        assertEquals(783L, getEntry(repo, time.get()).getAggregateLineageMillis());
+        assertEquals(0, getEntry(repo, time.get() + 1000L).getFlowFilesIn());
+        assertEquals(0, getEntry(repo, time.get() + 1000L).getInvocations());
+    }
+
+    @Test
+    public void testEventsOlderThanRetentionAreNotReported() throws IOException {
+        final AtomicLong time = new AtomicLong(1000000000000L);
+        final StripedFlowFileEventRepository repo = createRepository(time);
+
+        final long start = time.get();
+        repo.updateRepository(generateEvent());
+        time.addAndGet(3 * 60000L);
+        repo.updateRepository(generateEvent());
+        repo.updateRepository(generateEvent());
+
+        // all events are within the 5 minutes that are retained
+        assertEquals(3, getEntry(repo, start).getFlowFilesIn());
+
+        // the first event is older than the 5 minutes that are retained
+        time.addAndGet(3 * 60000L);
+        repo.updateRepository(generateEvent());
+        assertEquals(3, getEntry(repo, start).getFlowFilesIn());
+        assertEquals(3, getEntry(repo, time.get() - 5 * 60000L).getFlowFilesIn());
+
+        // after a long idle period, only the newest event is reported
+        time.addAndGet(60 * 60000L);
+        repo.updateRepository(generateEvent());
+        assertEquals(1, getEntry(repo, time.get() - 5 * 60000L).getFlowFilesIn());
+    }
+
+    @Test
+    public void testReportsEachComponentSeparately() throws IOException {
+        final AtomicLong time = new AtomicLong(1000000000000L);
+        final StripedFlowFileEventRepository repo = createRepository(time);
+
+        final long start = time.get();
+        repo.updateRepository(generateEvent("ABC"));
+        repo.updateRepository(generateEvent("ABC"));
+        repo.updateRepository(generateEvent("XYZ"));
+
+        final StandardRepositoryStatusReport report = repo.reportTransferEvents(start);
+        assertEquals(2, report.getReportEntries().size());
+        assertEquals(2, report.getReportEntry("ABC").getInvocations());
+        assertEquals(1, report.getReportEntry("XYZ").getInvocations());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentUpdates() throws IOException, InterruptedException {
+        final StripedFlowFileEventRepository repo = new StripedFlowFileEventRepository(5);
+        final long start = System.currentTimeMillis();
+        final int threadCount = 4;
+        final int eventsPerThread = 100000;
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        repo.updateRepository(generateEvent());
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        for (final Thread t : threads) {
+            t.join();
+        }
+
+        final FlowFileEvent entry = getEntry(repo, start);
+        assertEquals(threadCount * eventsPerThread, entry.getInvocations());
+        assertEquals(threadCount * eventsPerThread * 1024L * 1024L, entry.getBytesWritten());
+        assertEquals(threadCount * eventsPerThread * 234782L, entry.getProcessingNanoseconds());
+    }
+
+    private StripedFlowFileEventRepository createRepository(final AtomicLong time) {
+        return new StripedFlowFileEventRepository(5) {
+            @Override
+            long getCurrentTimeMillis() {
+                return time.get();
+            }
+        };
+    }
+
+    private FlowFileEvent getEntry(final StripedFlowFileEventRepository repo, final long sinceEpochMillis) {
+        return repo.reportTransferEvents(sinceEpochMillis).getReportEntry("ABC");
+    }
+
+    private FlowFileEvent generateEvent() {
+        return generateEvent("ABC");
+    }
+
+    private FlowFileEvent generateEvent(final String componentId) {
+        return new FlowFileEvent() {
+            @Override
+            public String getComponentIdentifier() {
+                return componentId;
+            }
+
+            @Override
+            public int getFlowFilesIn() {
+                return 1;
+            }
+
+            @Override
+            public int getFlowFilesOut() {
+                return 1;
+            }
+
+            @Override
+            public long getContentSizeIn() {
+                return 1024L;
+            }
+
+            @Override
+            public long getContentSizeOut() {
+                return 1024 * 1024L;
+            }
+
+            @Override
+            public long getBytesRead() {
+                return 1024L;
+            }
+
+            @Override
+            public long getBytesWritten() {
+                return 1024L * 1024L;
+            }
+
+            @Override
+            public long getContentSizeRemoved() {
+                return 1024;
+            }
+
+            @Override
+            public int getFlowFilesRemoved() {
+                return 1;
+            }
+
+            @Override
+            public long getProcessingNanoseconds() {
+                return 234782;
+            }
+
+            @Override
+            public int getInvocations() {
+                return 1;
+            }
+
+            @Override
+            public long getAggregateLineageMillis() {
+                return 783L;
+            }
+
+            @Override
+            public long getAverageLineageMillis() {
+                return getAggregateLineageMillis() / (getFlowFilesRemoved() + getFlowFilesOut());
+            }
+
+            @Override
+            public int getFlowFilesReceived() {
+                return 0;
+            }
+
+            @Override
+            public long getBytesReceived() {
+                return 0;
+            }
+
+            @Override
+            public int getFlowFilesSent() {
+                return 0;
+            }
+
+            @Override
+            public long getBytesSent() {
+                return 0;
+            }
+        };
+    }
+}
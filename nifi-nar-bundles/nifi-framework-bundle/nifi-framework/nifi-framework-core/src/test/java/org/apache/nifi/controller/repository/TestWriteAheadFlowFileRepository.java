@@ -18,6 +18,7 @@ package org.apache.nifi.controller.repository;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
@@ -34,6 +35,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Connection;
@@ -49,6 +52,7 @@ import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
 import org.apache.nifi.controller.swap.StandardSwapContents;
 import org.apache.nifi.controller.swap.StandardSwapSummary;
 import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -58,6 +62,8 @@ import org.mockito.stubbing.Answer;
 
 public class TestWriteAheadFlowFileRepository {
 
+    private final ExecutorService swapInExecutor = Executors.newSingleThreadExecutor();
+
     @BeforeClass
     public static void setupProperties() {
         System.setProperty("nifi.properties.file.path", "src/test/resources/nifi.properties");
@@ -72,6 +78,11 @@ public class TestWriteAheadFlowFileRepository {
         }
     }
 
+    @After
+    public void cleanup() {
+        swapInExecutor.shutdownNow();
+    }
+
     @Test
     public void testResourceClaimsIncremented() throws IOException {
         final ResourceClaimManager claimManager = new StandardResourceClaimManager();
@@ -82,7 +93,7 @@ public class TestWriteAheadFlowFileRepository {
         when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class));
 
         final FlowFileSwapManager swapMgr = new MockFlowFileSwapManager();
-        final FlowFileQueue queue = new StandardFlowFileQueue("1234", connection, null, null, claimManager, null, swapMgr, null, 10000);
+        final FlowFileQueue queue = new StandardFlowFileQueue("1234", connection, null, null, claimManager, null, swapMgr, swapInExecutor, null, 10000);
 
         when(connection.getFlowFileQueue()).thenReturn(queue);
         queueProvider.addConnection(connection);
@@ -232,6 +243,154 @@ public class TestWriteAheadFlowFileRepository {
         repo2.close();
     }
 
+    @Test
+    public void testRestartWithChangedAttributes() throws IOException {
+        final WriteAheadFlowFileRepository repo = new WriteAheadFlowFileRepository();
+        repo.initialize(new StandardResourceClaimManager());
+
+        final TestQueueProvider queueProvider = new TestQueueProvider();
+        repo.loadFlowFiles(queueProvider, 0L);
+
+        final List<FlowFileRecord> flowFileCollection = new ArrayList<>();
+        final Connection connection = createConnection("1234", flowFileCollection);
+        queueProvider.addConnection(connection);
+        final FlowFileQueue queue = connection.getFlowFileQueue();
+
+        final FlowFileRecord flowFile1 = new StandardFlowFileRecord.Builder()
+            .id(1L)
+            .addAttribute("uuid", "11111111-1111-1111-1111-111111111111")
+            .addAttribute("filename", "file-1.txt")
+            .addAttribute("path", "./")
+            .addAttribute("mime.type", "text/plain")
+            .size(10L)
+            .build();
+        final StandardRepositoryRecord createRecord = new StandardRepositoryRecord(null);
+        createRecord.setWorking(flowFile1);
+        createRecord.setDestination(queue);
+        repo.updateRepository(Collections.<RepositoryRecord> singletonList(createRecord));
+
+        // change one attribute and remove another, as a Process Session would
+        final FlowFileRecord flowFile2 = new StandardFlowFileRecord.Builder().fromFlowFile(flowFile1)
+            .addAttribute("mime.type", "application/json")
+            .removeAttributes("path")
+            .build();
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("mime.type", "application/json");
+        updatedAttributes.put("path", null);
+        final StandardRepositoryRecord updateRecord = new StandardRepositoryRecord(queue, flowFile1);
+        updateRecord.setWorking(flowFile2, updatedAttributes);
+        updateRecord.setDestination(queue);
+        repo.updateRepository(Collections.<RepositoryRecord> singletonList(updateRecord));
+
+        final FlowFileRecord flowFile3 = new StandardFlowFileRecord.Builder().fromFlowFile(flowFile2)
+            .addAttribute("filename", "file-1.json")
+            .size(20L)
+            .build();
+        final StandardRepositoryRecord secondUpdateRecord = new StandardRepositoryRecord(queue, flowFile2);
+        secondUpdateRecord.setWorking(flowFile3, "filename", "file-1.json");
+        secondUpdateRecord.setDestination(queue);
+        repo.updateRepository(Collections.<RepositoryRecord> singletonList(secondUpdateRecord));
+
+        repo.close();
+
+        final WriteAheadFlowFileRepository repo2 = new WriteAheadFlowFileRepository();
+        repo2.initialize(new StandardResourceClaimManager());
+        repo2.loadFlowFiles(queueProvider, 0L);
+
+        assertEquals(1, flowFileCollection.size());
+        final FlowFileRecord flowFile = flowFileCollection.get(0);
+        assertEquals(1L, flowFile.getId());
+        assertEquals(20L, flowFile.getSize());
+        assertEquals(3, flowFile.getAttributes().size());
+        assertEquals("11111111-1111-1111-1111-111111111111", flowFile.getAttribute("uuid"));
+        assertEquals("file-1.json", flowFile.getAttribute("filename"));
+        assertEquals("application/json", flowFile.getAttribute("mime.type"));
+        assertNull(flowFile.getAttribute("path"));
+
+        repo2.close();
+    }
+
+    @Test
+    public void testRecoverFromPreviousSerializationVersion() throws IOException {
+        // The repository in src/test/resources/old-flowfile-repository was written using version 7 of the serialization format.
+        // Its snapshot holds FlowFiles 1, 2 and 3, and its journal updates the mime.type of FlowFile 1 and deletes FlowFile 3.
+        final Path source = Paths.get("src/test/resources/old-flowfile-repository");
+        final Path target = Paths.get("target/test-repo");
+        Files.createDirectories(target.resolve("partition-0"));
+        Files.copy(source.resolve("snapshot"), target.resolve("snapshot"));
+        Files.copy(source.resolve("partition-0/4.journal"), target.resolve("partition-0/4.journal"));
+
+        final TestQueueProvider queueProvider = new TestQueueProvider();
+        final List<FlowFileRecord> flowFileCollection = new ArrayList<>();
+        queueProvider.addConnection(createConnection("1234", flowFileCollection));
+
+        final ResourceClaimManager claimManager = new StandardResourceClaimManager();
+        final WriteAheadFlowFileRepository repo = new WriteAheadFlowFileRepository();
+        repo.initialize(claimManager);
+        assertEquals(2L, repo.loadFlowFiles(queueProvider, 0L));
+
+        assertEquals(2, flowFileCollection.size());
+        final Map<Long, FlowFileRecord> flowFiles = new HashMap<>();
+        for (final FlowFileRecord flowFile : flowFileCollection) {
+            flowFiles.put(flowFile.getId(), flowFile);
+        }
+
+        final FlowFileRecord flowFile1 = flowFiles.get(1L);
+        assertNotNull(flowFile1);
+        assertEquals("file-1.txt", flowFile1.getAttribute("filename"));
+        assertEquals("application/json", flowFile1.getAttribute("mime.type"));
+        assertEquals(50L, flowFile1.getSize());
+        assertEquals(1460000000000L, flowFile1.getEntryDate());
+
+        final ContentClaim claim = flowFile1.getContentClaim();
+        assertNotNull(claim);
+        assertEquals("default", claim.getResourceClaim().getContainer());
+        assertEquals("1", claim.getResourceClaim().getSection());
+        assertEquals("1460000000000-1", claim.getResourceClaim().getId());
+        assertEquals(100L, claim.getOffset());
+        assertEquals(50L, claim.getLength());
+        assertEquals(1, claimManager.getClaimantCount(claim.getResourceClaim()));
+
+        final FlowFileRecord flowFile2 = flowFiles.get(2L);
+        assertNotNull(flowFile2);
+        assertEquals("file-2.txt", flowFile2.getAttribute("filename"));
+        assertNull(flowFile2.getContentClaim());
+
+        // Recovery rewrote the snapshot using the current version. Ensure that the repository can be updated and recovered again.
+        final FlowFileQueue queue = queueProvider.getAllQueues().iterator().next();
+        final StandardRepositoryRecord deleteRecord = new StandardRepositoryRecord(queue, flowFile2);
+        deleteRecord.markForDelete();
+        repo.updateRepository(Collections.<RepositoryRecord> singletonList(deleteRecord));
+        repo.close();
+
+        flowFileCollection.clear();
+        final WriteAheadFlowFileRepository repo2 = new WriteAheadFlowFileRepository();
+        repo2.initialize(new StandardResourceClaimManager());
+        repo2.loadFlowFiles(queueProvider, 0L);
+        assertEquals(1, flowFileCollection.size());
+        assertEquals(1L, flowFileCollection.get(0).getId());
+        assertEquals("application/json", flowFileCollection.get(0).getAttribute("mime.type"));
+        repo2.close();
+    }
+
+    private Connection createConnection(final String identifier, final List<FlowFileRecord> flowFileCollection) {
+        final Connection connection = Mockito.mock(Connection.class);
+        when(connection.getIdentifier()).thenReturn(identifier);
+
+        final FlowFileQueue queue = Mockito.mock(FlowFileQueue.class);
+        when(queue.getIdentifier()).thenReturn(identifier);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                flowFileCollection.add((FlowFileRecord) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(queue).put(any(FlowFileRecord.class));
+
+        when(connection.getFlowFileQueue()).thenReturn(queue);
+        return connection;
+    }
+
     private static class TestQueueProvider implements QueueProvider {
         private List<Connection> connectionList = new ArrayList<>();
 
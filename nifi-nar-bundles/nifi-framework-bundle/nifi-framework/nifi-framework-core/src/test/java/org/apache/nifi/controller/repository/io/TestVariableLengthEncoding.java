@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestVariableLengthEncoding {
+
+    private final long[] values = new long[] {0L, 1L, 127L, 128L, 16383L, 16384L, Integer.MAX_VALUE, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+
+    @Test
+    public void testVarLongRoundTrip() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (final long value : values) {
+            final int sizeBefore = baos.size();
+            VariableLengthEncoding.writeVarLong(value, baos);
+            assertEquals(VariableLengthEncoding.varLongLength(value), baos.size() - sizeBefore);
+        }
+
+        final InputStream in = new ByteArrayInputStream(baos.toByteArray());
+        final ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+        for (final long value : values) {
+            assertEquals(value, VariableLengthEncoding.readVarLong(in));
+            assertEquals(value, VariableLengthEncoding.readVarLong(buffer));
+        }
+
+        try {
+            VariableLengthEncoding.readVarLong(in);
+            fail("Expected EOFException");
+        } catch (final EOFException eof) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNegativeVarIntIsRejected() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        VariableLengthEncoding.writeVarLong(-1L, baos);
+
+        try {
+            VariableLengthEncoding.readVarInt(new ByteArrayInputStream(baos.toByteArray()));
+            fail("Expected IOException");
+        } catch (final IOException ioe) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDictionaryStringRoundTrip() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final Map<String, Integer> writeDictionary = new HashMap<>();
+        VariableLengthEncoding.writeDictionaryString("filename", baos, writeDictionary);
+        VariableLengthEncoding.writeDictionaryString("path", baos, writeDictionary);
+        final int sizeBefore = baos.size();
+        VariableLengthEncoding.writeDictionaryString("filename", baos, writeDictionary);
+        assertEquals(1, baos.size() - sizeBefore);
+        VariableLengthEncoding.writeVarString("\u00fcnicode", baos);
+
+        final InputStream in = new ByteArrayInputStream(baos.toByteArray());
+        final List<String> readDictionary = new ArrayList<>();
+        assertEquals("filename", VariableLengthEncoding.readDictionaryString(in, readDictionary));
+        assertEquals("path", VariableLengthEncoding.readDictionaryString(in, readDictionary));
+        assertEquals("filename", VariableLengthEncoding.readDictionaryString(in, readDictionary));
+        assertEquals("\u00fcnicode", VariableLengthEncoding.readVarString(in));
+        assertEquals(2, readDictionary.size());
+    }
+
+    @Test
+    public void testDictionaryIsBounded() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final Map<String, Integer> writeDictionary = new HashMap<>();
+        for (int i = 0; i <= VariableLengthEncoding.MAX_DICTIONARY_SIZE; i++) {
+            VariableLengthEncoding.writeDictionaryString("value-" + i, baos, writeDictionary);
+        }
+        assertEquals(VariableLengthEncoding.MAX_DICTIONARY_SIZE, writeDictionary.size());
+
+        final InputStream in = new ByteArrayInputStream(baos.toByteArray());
+        final List<String> readDictionary = new ArrayList<>();
+        for (int i = 0; i <= VariableLengthEncoding.MAX_DICTIONARY_SIZE; i++) {
+            assertEquals("value-" + i, VariableLengthEncoding.readDictionaryString(in, readDictionary));
+        }
+        assertEquals(VariableLengthEncoding.MAX_DICTIONARY_SIZE, readDictionary.size());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestAdaptiveRunDuration {
+
+    @Test
+    public void testGrowsWhileCommitIsExpensiveAndWorkRemains() {
+        final AdaptiveRunDuration runDuration = new AdaptiveRunDuration(25, TimeUnit.MILLISECONDS);
+        assertEquals(0L, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+
+        // half of the batch was spent committing, so the Run Duration should grow
+        runDuration.adjust(1000L, 500L, true);
+        assertEquals(1L, runDuration.getRunDuration(TimeUnit.MILLISECONDS));
+
+        runDuration.adjust(1000L, 500L, true);
+        assertEquals(2L, runDuration.getRunDuration(TimeUnit.MILLISECONDS));
+
+        // commit was cheap, relative to the batch, so there is no reason to grow any further
+        runDuration.adjust(1000L, 10L, true);
+        assertEquals(2L, runDuration.getRunDuration(TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            runDuration.adjust(1000L, 500L, true);
+        }
+        assertEquals(25L, runDuration.getRunDuration(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testShrinksWhenWorkRunsOut() {
+        final AdaptiveRunDuration runDuration = new AdaptiveRunDuration(16, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            runDuration.adjust(1000L, 500L, true);
+        }
+        assertEquals(16L, runDuration.getRunDuration(TimeUnit.MILLISECONDS));
+
+        runDuration.adjust(1000L, 500L, false);
+        assertEquals(8L, runDuration.getRunDuration(TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            runDuration.adjust(1000L, 500L, false);
+        }
+        assertEquals(0L, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testDisabled() {
+        final AdaptiveRunDuration runDuration = new AdaptiveRunDuration(0, TimeUnit.MILLISECONDS);
+        runDuration.adjust(1000L, 900L, true);
+        assertEquals(0L, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testCommitsPerSecond() throws InterruptedException {
+        final AdaptiveRunDuration runDuration = new AdaptiveRunDuration(25, TimeUnit.MILLISECONDS, TimeUnit.MILLISECONDS.toNanos(100L));
+        assertEquals(0D, runDuration.getCommitsPerSecond(), 0D);
+
+        for (int i = 0; i < 10; i++) {
+            runDuration.recordCommit();
+        }
+
+        Thread.sleep(150L);
+
+        // 10 commits in at least 150 milliseconds
+        final double commitsPerSecond = runDuration.getCommitsPerSecond();
+        assertTrue(commitsPerSecond > 0D);
+        assertTrue(commitsPerSecond <= 10D / 0.15D);
+
+        // no commits during the next interval
+        Thread.sleep(150L);
+        assertEquals(0D, runDuration.getCommitsPerSecond(), 0D);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.controller.Triggerable;
+import org.apache.nifi.engine.FlowEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestWorkStealingSchedulingAgent {
+
+    private FlowEngine flowEngine;
+    private WorkStealingSchedulingAgent agent;
+    private final List<CountingTask> tasks = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        flowEngine = new FlowEngine(1, "Unit Test", true);
+        agent = new WorkStealingSchedulingAgent(null, flowEngine, null, null, 4) {
+            @Override
+            Callable<Boolean> createTask(final Connectable connectable, final ScheduleState scheduleState) {
+                final CountingTask task = new CountingTask();
+                tasks.add(task);
+                return task;
+            }
+        };
+    }
+
+    @After
+    public void cleanup() {
+        agent.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleComponentWaitsForEvent() throws InterruptedException {
+        final Connectable connectable = createConnectable(1);
+        agent.schedule(connectable, new ScheduleState());
+        assertEquals(1, tasks.size());
+
+        final CountingTask task = tasks.get(0);
+        task.awaitInvocations(1);
+        Thread.sleep(200L);
+
+        // with no work to do and no events, the component should not have been triggered again
+        assertEquals(1, task.getInvocations());
+
+        agent.onEvent(connectable);
+        task.awaitInvocations(2);
+        Thread.sleep(200L);
+        assertEquals(2, task.getInvocations());
+    }
+
+    @Test(timeout = 10000)
+    public void testComponentWithWorkIsTriggeredContinually() throws InterruptedException {
+        final Connectable connectable = createConnectable(2);
+        agent.schedule(connectable, new ScheduleState());
+        assertEquals(2, tasks.size());
+
+        for (final CountingTask task : tasks) {
+            task.setWorkAvailable(true);
+        }
+        agent.onEvent(connectable);
+        agent.onEvent(connectable);
+
+        for (final CountingTask task : tasks) {
+            task.awaitInvocations(100);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleComponentIsRecheckedPeriodically() throws InterruptedException {
+        final Connectable connectable = createConnectable(1);
+        agent.schedule(connectable, new ScheduleState());
+
+        final CountingTask task = tasks.get(0);
+        task.awaitInvocations(1);
+
+        // even if no event is ever received, the component should be checked for work again
+        task.awaitInvocations(2);
+    }
+
+    @Test(timeout = 10000)
+    public void testUnscheduledComponentIsNotTriggered() throws InterruptedException {
+        final Connectable connectable = createConnectable(1);
+        final ScheduleState scheduleState = new ScheduleState();
+        agent.schedule(connectable, scheduleState);
+
+        final CountingTask task = tasks.get(0);
+        task.awaitInvocations(1);
+
+        agent.unschedule(connectable, scheduleState);
+        agent.onEvent(connectable);
+        Thread.sleep(WorkStealingSchedulingAgent.IDLE_RECHECK_MILLIS + 200L);
+        assertEquals(1, task.getInvocations());
+    }
+
+    @Test(timeout = 10000)
+    public void testYieldedComponentIsTriggeredAfterYieldExpires() throws InterruptedException {
+        final AtomicLong yieldExpiration = new AtomicLong(0L);
+        final Connectable connectable = createConnectable(1);
+        Mockito.when(connectable.getYieldExpiration()).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(final InvocationOnMock invocation) {
+                return yieldExpiration.get();
+            }
+        });
+
+        yieldExpiration.set(System.currentTimeMillis() + 300L);
+        agent.schedule(connectable, new ScheduleState());
+        final CountingTask task = tasks.get(0);
+        task.setWorkAvailable(true);
+        task.awaitInvocations(1);
+
+        final long start = System.nanoTime();
+        task.awaitInvocations(2);
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Component was triggered again after only " + millis + " millis", millis >= 200L);
+    }
+
+    @Test(timeout = 10000)
+    public void testSetMaxThreadCount() throws InterruptedException {
+        final Connectable connectable = createConnectable(1);
+        agent.schedule(connectable, new ScheduleState());
+
+        final CountingTask task = tasks.get(0);
+        task.awaitInvocations(1);
+
+        agent.setMaxThreadCount(2);
+        agent.onEvent(connectable);
+        task.awaitInvocations(2);
+    }
+
+    /**
+     * Compares the Timer-Driven Scheduling Agent to the Work-Stealing Scheduling Agent when scheduling many components that
+     * almost never have any work to do. For each agent, reports how many times the components were triggered while idle,
+     * which is a proxy for the CPU that is spent polling, and how long it took for a component to be triggered after
+     * work became available for it.
+     */
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testManyIdleComponents() throws InterruptedException {
+        System.setProperty("nifi.properties.file.path", "src/test/resources/nifi.properties");
+
+        final int componentCount = 2000;
+        final int threads = 10;
+
+        final List<CountingTask> timerDrivenTasks = new ArrayList<>();
+        final FlowEngine timerDrivenEngine = new FlowEngine(threads, "Timer-Driven Process");
+        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(null, timerDrivenEngine, null, null) {
+            @Override
+            Callable<Boolean> createTask(final Connectable connectable, final ScheduleState scheduleState) {
+                final CountingTask task = new CountingTask();
+                timerDrivenTasks.add(task);
+                return task;
+            }
+        };
+        runIdleComponents("Timer-Driven", timerDrivenAgent, timerDrivenTasks, componentCount);
+
+        final List<CountingTask> workStealingTasks = new ArrayList<>();
+        final FlowEngine workStealingEngine = new FlowEngine(1, "Timer-Driven Process");
+        final WorkStealingSchedulingAgent workStealingAgent = new WorkStealingSchedulingAgent(null, workStealingEngine, null, null, threads) {
+            @Override
+            Callable<Boolean> createTask(final Connectable connectable, final ScheduleState scheduleState) {
+                final CountingTask task = new CountingTask();
+                workStealingTasks.add(task);
+                return task;
+            }
+        };
+        runIdleComponents("Work-Stealing", workStealingAgent, workStealingTasks, componentCount);
+    }
+
+    private void runIdleComponents(final String name, final SchedulingAgent schedulingAgent, final List<CountingTask> componentTasks, final int componentCount)
+            throws InterruptedException {
+        final List<Connectable> connectables = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            final Connectable connectable = createConnectable(1);
+            connectables.add(connectable);
+            schedulingAgent.schedule(connectable, new ScheduleState());
+        }
+
+        try {
+            // let things settle down and then measure how often idle components are triggered
+            Thread.sleep(2000L);
+            final long idleStart = System.nanoTime();
+            final long invocationsBefore = countInvocations(componentTasks);
+            Thread.sleep(5000L);
+            final long idleInvocations = countInvocations(componentTasks) - invocationsBefore;
+            final double idleSeconds = (System.nanoTime() - idleStart) / (double) TimeUnit.SECONDS.toNanos(1L);
+
+            // measure how long it takes for a component to be triggered after an event
+            final int iterations = 200;
+            long totalLatencyNanos = 0L;
+            long maxLatencyNanos = 0L;
+            for (int i = 0; i < iterations; i++) {
+                final int index = (i * 7919) % componentCount;
+                final CountingTask task = componentTasks.get(index);
+                final int invocations = task.getInvocations();
+
+                final long start = System.nanoTime();
+                schedulingAgent.onEvent(connectables.get(index));
+                task.awaitInvocations(invocations + 1);
+                final long latency = System.nanoTime() - start;
+
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                Thread.sleep(10L);
+            }
+
+            System.out.println(name + ": " + componentCount + " idle components were triggered " + (long) (idleInvocations / idleSeconds)
+                + " times per second; average event-to-trigger latency = " + TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos / iterations)
+                + " micros, max = " + TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos) + " micros");
+        } finally {
+            for (final Connectable connectable : connectables) {
+                schedulingAgent.unschedule(connectable, new ScheduleState());
+            }
+            schedulingAgent.shutdown();
+        }
+    }
+
+    private static long countInvocations(final List<CountingTask> componentTasks) {
+        long total = 0L;
+        for (final CountingTask task : componentTasks) {
+            total += task.getInvocations();
+        }
+        return total;
+    }
+
+    private static Connectable createConnectable(final int maxConcurrentTasks) {
+        final Connectable connectable = Mockito.mock(Connectable.class);
+        Mockito.when(connectable.getConnectableType()).thenReturn(ConnectableType.FUNNEL);
+        Mockito.when(connectable.getMaxConcurrentTasks()).thenReturn(maxConcurrentTasks);
+        Mockito.when(connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS)).thenReturn(Triggerable.MINIMUM_SCHEDULING_NANOS);
+        Mockito.when(connectable.getYieldExpiration()).thenReturn(0L);
+        return connectable;
+    }
+
+
+    /**
+     * A stand-in for the task that triggers a component, which counts how many times it is called and reports
+     * that there is no work to do unless told otherwise
+     */
+    private static class CountingTask implements Callable<Boolean> {
+        private final AtomicInteger invocations = new AtomicInteger(0);
+        private final AtomicBoolean workAvailable = new AtomicBoolean(false);
+        private volatile CountDownLatch latch = null;
+        private volatile int latchTarget = 0;
+
+        @Override
+        public Boolean call() {
+            final int count = invocations.incrementAndGet();
+            final CountDownLatch currentLatch = latch;
+            if (currentLatch != null && count >= latchTarget) {
+                currentLatch.countDown();
+            }
+
+            return !workAvailable.get();
+        }
+
+        public void setWorkAvailable(final boolean available) {
+            workAvailable.set(available);
+        }
+
+        public int getInvocations() {
+            return invocations.get();
+        }
+
+        public void awaitInvocations(final int count) throws InterruptedException {
+            final CountDownLatch countLatch = new CountDownLatch(1);
+            latchTarget = count;
+            latch = countLatch;
+
+            while (invocations.get() < count) {
+                countLatch.await(10, TimeUnit.MILLISECONDS);
+            }
+
+            latch = null;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.status.ConnectionStatus;
+import org.apache.nifi.controller.status.ProcessGroupStatus;
+import org.apache.nifi.controller.status.ProcessorStatus;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestPersistentComponentStatusRepository {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1L);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1L);
+
+    private final File directory = new File("target/status-repository");
+
+    @Before
+    public void setup() throws IOException {
+        if (directory.exists()) {
+            FileUtils.deleteFile(directory, true);
+        }
+    }
+
+    @Test
+    public void testProcessorHistory() throws IOException {
+        final PersistentComponentStatusRepository repo = createRepository(100);
+        final long start = System.currentTimeMillis() - 10 * MINUTE;
+        for (int i = 0; i < 3; i++) {
+            repo.capture(createGroupStatus(i, true), new Date(start + i * MINUTE));
+        }
+
+        final StatusHistory history = repo.getProcessorStatusHistory("proc-1", null, null, Integer.MAX_VALUE);
+        assertEquals("proc-1", history.getComponentDetails().get("Id"));
+        assertEquals("Processor 1", history.getComponentDetails().get("Name"));
+        assertEquals("root", history.getComponentDetails().get("Group Id"));
+        assertEquals("GenerateFlowFile", history.getComponentDetails().get("Type"));
+
+        final List<StatusSnapshot> snapshots = history.getStatusSnapshots();
+        assertEquals(3, snapshots.size());
+        for (int i = 0; i < 3; i++) {
+            final StatusSnapshot snapshot = snapshots.get(i);
+            assertEquals(start + i * MINUTE, snapshot.getTimestamp().getTime());
+            assertEquals(Long.valueOf(1000L * i), snapshot.getStatusMetrics().get(ProcessorStatusDescriptor.BYTES_READ.getDescriptor()));
+            assertEquals(Long.valueOf(1000L * i + 10L), snapshot.getStatusMetrics().get(ProcessorStatusDescriptor.BYTES_TRANSFERRED.getDescriptor()));
+            assertEquals(Long.valueOf(i), snapshot.getStatusMetrics().get(ProcessorStatusDescriptor.TASK_COUNT.getDescriptor()));
+        }
+
+        assertEquals(start + 2 * MINUTE, repo.getLastCaptureDate().getTime());
+    }
+
+    @Test
+    public void testHistoryIsRetainedAcrossRestarts() throws IOException {
+        PersistentComponentStatusRepository repo = createRepository(4);
+        final long start = System.currentTimeMillis() - 10 * MINUTE;
+        for (int i = 0; i < 6; i++) {
+            repo.capture(createGroupStatus(i, true), new Date(start + i * MINUTE));
+        }
+
+        // 4 captures are in a completed segment; the other 2 are in the partial segment
+        repo = createRepository(4);
+        assertEquals(start + 5 * MINUTE, repo.getLastCaptureDate().getTime());
+        assertConnectionHistory(repo, start, 0, 1, 2, 3, 4, 5);
+
+        repo.capture(createGroupStatus(6, true), new Date(start + 6 * MINUTE));
+        assertConnectionHistory(repo, start, 0, 1, 2, 3, 4, 5, 6);
+
+        final StatusHistory groupHistory = repo.getProcessGroupStatusHistory("root", null, null, Integer.MAX_VALUE);
+        assertEquals("Root", groupHistory.getComponentDetails().get("Name"));
+        assertEquals(7, groupHistory.getStatusSnapshots().size());
+    }
+
+    @Test
+    public void testStartAndEndDates() throws IOException {
+        final PersistentComponentStatusRepository repo = createRepository(3);
+        final long start = System.currentTimeMillis() - 20 * MINUTE;
+        for (int i = 0; i < 10; i++) {
+            repo.capture(createGroupStatus(i, true), new Date(start + i * MINUTE));
+        }
+
+        final List<StatusSnapshot> snapshots = repo.getProcessorStatusHistory("proc-1", new Date(start + 2 * MINUTE), new Date(start + 7 * MINUTE), Integer.MAX_VALUE)
+            .getStatusSnapshots();
+        assertEquals(6, snapshots.size());
+        assertEquals(start + 2 * MINUTE, snapshots.get(0).getTimestamp().getTime());
+        assertEquals(start + 7 * MINUTE, snapshots.get(5).getTimestamp().getTime());
+    }
+
+    @Test
+    public void testComponentNotPresentInEveryCapture() throws IOException {
+        final PersistentComponentStatusRepository repo = createRepository(3);
+        final long start = System.currentTimeMillis() - 20 * MINUTE;
+        for (int i = 0; i < 8; i++) {
+            repo.capture(createGroupStatus(i, i < 2 || i > 5), new Date(start + i * MINUTE));
+        }
+
+        final List<StatusSnapshot> snapshots = repo.getProcessorStatusHistory("proc-2", null, null, Integer.MAX_VALUE).getStatusSnapshots();
+        assertEquals(4, snapshots.size());
+        final long[] expectedCaptures = new long[] {0, 1, 6, 7};
+        for (int i = 0; i < expectedCaptures.length; i++) {
+            assertEquals(start + expectedCaptures[i] * MINUTE, snapshots.get(i).getTimestamp().getTime());
+            assertEquals(Long.valueOf(expectedCaptures[i]), snapshots.get(i).getStatusMetrics().get(ProcessorStatusDescriptor.TASK_COUNT.getDescriptor()));
+        }
+
+        assertEquals(8, repo.getProcessorStatusHistory("proc-1", null, null, Integer.MAX_VALUE).getStatusSnapshots().size());
+    }
+
+    @Test
+    public void testUnknownComponent() throws IOException {
+        final PersistentComponentStatusRepository repo = createRepository(3);
+        repo.capture(createGroupStatus(0, true));
+
+        final StatusHistory history = repo.getProcessorStatusHistory("unknown", null, null, Integer.MAX_VALUE);
+        assertEquals(Collections.singletonMap("Id", "unknown"), history.getComponentDetails());
+        assertTrue(history.getStatusSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testDirectoryNotCreatedUntilFirstUse() throws IOException {
+        // every repository listed as a service is instantiated at startup, even if it is not the configured one
+        final PersistentComponentStatusRepository repo = createRepository(3);
+        assertFalse(directory.exists());
+
+        repo.capture(createGroupStatus(0, true));
+        assertTrue(directory.exists());
+    }
+
+    @Test
+    public void testOldSegmentsAreDownsampled() throws IOException {
+        final PersistentComponentStatusRepository repo = createRepository(10);
+        final long start = System.currentTimeMillis() - 2 * DAY;
+        for (int i = 0; i < 10; i++) {
+            repo.capture(createGroupStatus(i, true), new Date(start + i * MINUTE));
+        }
+
+        final List<StatusSnapshot> snapshots = repo.getProcessorStatusHistory("proc-1", null, null, Integer.MAX_VALUE).getStatusSnapshots();
+        assertEquals(2, snapshots.size());
+        assertEquals(start, snapshots.get(0).getTimestamp().getTime());
+        assertEquals(start + 5 * MINUTE, snapshots.get(1).getTimestamp().getTime());
+
+        // averages of 0 through 4 and 5 through 9
+        assertEquals(Long.valueOf(2L), snapshots.get(0).getStatusMetrics().get(ProcessorStatusDescriptor.TASK_COUNT.getDescriptor()));
+        assertEquals(Long.valueOf(7L), snapshots.get(1).getStatusMetrics().get(ProcessorStatusDescriptor.TASK_COUNT.getDescriptor()));
+
+        final String[] segmentFiles = directory.list();
+        int downsampledCount = 0;
+        for (final String filename : segmentFiles) {
+            if (filename.endsWith(PersistentComponentStatusRepository.SEGMENT_SUFFIX)) {
+                assertTrue(filename.endsWith(PersistentComponentStatusRepository.DOWNSAMPLED_SEGMENT_SUFFIX));
+                downsampledCount++;
+            }
+        }
+        assertEquals(1, downsampledCount);
+
+        // the downsampled history is available after a restart
+        assertEquals(2, createRepository(10).getProcessorStatusHistory("proc-1", null, null, Integer.MAX_VALUE).getStatusSnapshots().size());
+    }
+
+    @Test
+    public void testExpiredSegmentsAreDeleted() throws IOException {
+        final PersistentComponentStatusRepository repo = createRepository(2);
+        final long now = System.currentTimeMillis();
+        repo.capture(createGroupStatus(0, true), new Date(now - 10 * DAY));
+        repo.capture(createGroupStatus(1, true), new Date(now - 10 * DAY + MINUTE));
+        repo.capture(createGroupStatus(2, true), new Date(now - MINUTE));
+        repo.capture(createGroupStatus(3, true), new Date(now));
+
+        final List<StatusSnapshot> snapshots = repo.getProcessorStatusHistory("proc-1", null, null, Integer.MAX_VALUE).getStatusSnapshots();
+        assertEquals(2, snapshots.size());
+        assertEquals(now - MINUTE, snapshots.get(0).getTimestamp().getTime());
+    }
+
+    /**
+     * Captures the status of a flow with many components and reports how much disk space the Status History takes, along
+     * with how long it takes to capture the status and to retrieve the history of a single Processor.
+     */
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testStorageSize() throws IOException {
+        final int processorCount = 2500;
+        final int captureCount = 1440;
+        final PersistentComponentStatusRepository repo = createRepository(PersistentComponentStatusRepository.DEFAULT_CAPTURES_PER_SEGMENT);
+
+        final long start = System.currentTimeMillis() - DAY;
+        final long captureStart = System.nanoTime();
+        for (int i = 0; i < captureCount; i++) {
+            final ProcessGroupStatus root = createGroupStatus(i, true);
+            final List<ProcessorStatus> processors = new ArrayList<>();
+            final List<ConnectionStatus> connections = new ArrayList<>();
+            for (int p = 0; p < processorCount; p++) {
+                processors.add(createProcessorStatus("proc-" + p, i * 31L + p, i % 7));
+                connections.add(createConnectionStatus("conn-" + p, i % 50 + p % 10));
+            }
+            root.setProcessorStatus(processors);
+            root.setConnectionStatus(connections);
+
+            repo.capture(root, new Date(start + i * MINUTE));
+        }
+        final long captureMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - captureStart);
+
+        final long queryStart = System.nanoTime();
+        final int snapshots = repo.getProcessorStatusHistory("proc-1234", null, null, Integer.MAX_VALUE).getStatusSnapshots().size();
+        final long queryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queryStart);
+
+        long bytes = 0L;
+        for (final File file : directory.listFiles()) {
+            bytes += file.length();
+        }
+
+        System.out.println(captureCount + " captures of " + processorCount + " Processors and " + processorCount + " Connections took " + bytes / 1024 / 1024
+            + " MB on disk (" + bytes / captureCount + " bytes per capture); average capture took " + captureMillis / captureCount + " millis; retrieving the history of "
+            + snapshots + " snapshots for one Processor took " + queryMillis + " millis");
+    }
+
+    private PersistentComponentStatusRepository createRepository(final int capturesPerSegment) throws IOException {
+        return new PersistentComponentStatusRepository(directory, 7 * DAY, DAY, capturesPerSegment);
+    }
+
+    private void assertConnectionHistory(final ComponentStatusRepository repo, final long start, final int... captures) {
+        final StatusHistory history = repo.getConnectionStatusHistory("conn-1", null, null, Integer.MAX_VALUE);
+        assertEquals("Connection 1", history.getComponentDetails().get("Name"));
+        assertEquals("Processor 1", history.getComponentDetails().get("Source Name"));
+
+        final List<StatusSnapshot> snapshots = history.getStatusSnapshots();
+        assertEquals(captures.length, snapshots.size());
+        for (int i = 0; i < captures.length; i++) {
+            assertEquals(start + captures[i] * MINUTE, snapshots.get(i).getTimestamp().getTime());
+            assertEquals(Long.valueOf(captures[i] * 5L), snapshots.get(i).getStatusMetrics().get(ConnectionStatusDescriptor.QUEUED_COUNT.getDescriptor()));
+        }
+    }
+
+    private static ProcessGroupStatus createGroupStatus(final int capture, final boolean includeSecondProcessor) {
+        final ProcessGroupStatus status = new ProcessGroupStatus();
+        status.setId("root");
+        status.setName("Root");
+        status.setInputCount(capture);
+        status.setInputContentSize(capture * 100L);
+        status.setOutputCount(capture);
+        status.setOutputContentSize(capture * 100L);
+        status.setBytesRead(capture * 1000L);
+        status.setBytesWritten(10L);
+        status.setQueuedCount(capture * 5);
+        status.setQueuedContentSize(capture * 500L);
+        status.setActiveThreadCount(1);
+
+        final List<ProcessorStatus> processors = new ArrayList<>();
+        processors.add(createProcessorStatus("proc-1", capture * 1000L, capture));
+        if (includeSecondProcessor) {
+            processors.add(createProcessorStatus("proc-2", capture * 2000L, capture));
+        }
+        status.setProcessorStatus(processors);
+        status.setConnectionStatus(Collections.singletonList(createConnectionStatus("conn-1", capture * 5)));
+        return status;
+    }
+
+    private static ProcessorStatus createProcessorStatus(final String id, final long bytesRead, final int invocations) {
+        final ProcessorStatus status = new ProcessorStatus();
+        status.setId(id);
+        status.setGroupId("root");
+        status.setName("Processor " + id.substring(id.indexOf('-') + 1));
+        status.setType("GenerateFlowFile");
+        status.setBytesRead(bytesRead);
+        status.setBytesWritten(10L);
+        status.setInvocations(invocations);
+        status.setProcessingNanos(invocations * 1000000L);
+        return status;
+    }
+
+    private static ConnectionStatus createConnectionStatus(final String id, final int queuedCount) {
+        final ConnectionStatus status = new ConnectionStatus();
+        status.setId(id);
+        status.setGroupId("root");
+        status.setName("Connection " + id.substring(id.indexOf('-') + 1));
+        status.setSourceName("Processor 1");
+        status.setDestinationName("Processor 2");
+        status.setQueuedCount(queuedCount);
+        status.setQueuedBytes(queuedCount * 100L);
+        return status;
+    }
+}
@@ -171,6 +171,19 @@ public class GetKafka extends AbstractProcessor {
             .defaultValue(LARGEST)
             .build();
 
+    public static final PropertyDescriptor PREFETCH_BUFFER_SIZE = new PropertyDescriptor.Builder()
+            .name("Prefetch Buffer Size")
+            .description("The maximum number of messages to prefetch for each partition. If greater than 0, one background thread per "
+                    + "partition consumes messages into a buffer and each task writes the buffered messages of a partition to FlowFiles "
+                    + "of up to <Batch Size> messages at once. Offsets are then committed to ZooKeeper only after all fetched messages have "
+                    + "been written, at the <Zookeeper Commit Frequency>, which briefly pauses the background threads. This requires "
+                    + "'consumer.timeout.ms' to not be -1. If 0, each task consumes messages directly from a Kafka stream.")
+            .required(true)
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .expressionLanguageSupported(false)
+            .defaultValue("0")
+            .build();
+
     public static final Relationship REL_SUCCESS = new Relationship.Builder()
             .name("success")
             .description("All FlowFiles that are created are routed to this relationship")
@@ -185,6 +198,18 @@ public class GetKafka extends AbstractProcessor {
 
     private volatile ExecutorService executor;
 
+    private volatile KafkaMessagePrefetcher prefetcher;
+
+    private final Runnable offsetCommitter = new Runnable() {
+        @Override
+        public void run() {
+            final ConsumerConnector consumer = GetKafka.this.consumer;
+            if (consumer != null) {
+                consumer.commitOffsets();
+            }
+        }
+    };
+
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
         final PropertyDescriptor clientNameWithDefault = new PropertyDescriptor.Builder()
@@ -207,6 +232,7 @@ public class GetKafka extends AbstractProcessor {
         props.add(KAFKA_TIMEOUT);
         props.add(ZOOKEEPER_TIMEOUT);
         props.add(AUTO_OFFSET_RESET);
+        props.add(PREFETCH_BUFFER_SIZE);
         return props;
     }
 
@@ -256,6 +282,12 @@ public class GetKafka extends AbstractProcessor {
             props.setProperty("consumer.timeout.ms", "1");
         }
 
+        final int prefetchBufferSize = context.getProperty(PREFETCH_BUFFER_SIZE).asInteger();
+        if (prefetchBufferSize > 0) {
+            // offsets are committed at the checkpoints of the prefetcher
+            props.setProperty("auto.commit.enable", "false");
+        }
+
         int partitionCount = KafkaUtils.retrievePartitionCountForTopic(
                 context.getProperty(ZOOKEEPER_CONNECTION_STRING).getValue(), context.getProperty(TOPIC).getValue());
 
@@ -265,7 +297,10 @@ public class GetKafka extends AbstractProcessor {
         final Map<String, Integer> topicCountMap = new HashMap<>(1);
 
         int concurrentTaskToUse = context.getMaxConcurrentTasks();
-        if (context.getMaxConcurrentTasks() < partitionCount){
+        if (prefetchBufferSize > 0) {
+            // streams are consumed by the prefetcher rather than by the tasks
+            concurrentTaskToUse = partitionCount;
+        } else if (context.getMaxConcurrentTasks() < partitionCount){
             this.getLogger().warn("The amount of concurrent tasks '" + context.getMaxConcurrentTasks() + "' configured for "
                     + "this processor is less than the amount of partitions '" + partitionCount + "' for topic '" + context.getProperty(TOPIC).getValue() + "'. "
                 + "Consider making it equal to the amount of partition count for most efficient event consumption.");
@@ -283,18 +318,45 @@ public class GetKafka extends AbstractProcessor {
 
         this.streamIterators.clear();
 
-        for (final KafkaStream<byte[], byte[]> stream : streams) {
-            streamIterators.add(stream.iterator());
+        if (prefetchBufferSize > 0) {
+            final List<ConsumerIterator<byte[], byte[]>> iterators = new ArrayList<>(streams.size());
+            for (final KafkaStream<byte[], byte[]> stream : streams) {
+                iterators.add(stream.iterator());
+            }
+            startPrefetching(iterators, prefetchBufferSize);
+        } else {
+            for (final KafkaStream<byte[], byte[]> stream : streams) {
+                streamIterators.add(stream.iterator());
+            }
         }
         this.consumerStreamsReady.set(true);
     }
 
+    /**
+     * Starts consuming the given stream iterators on background threads into
+     * buffers of the given size per partition.
+     */
+    protected void startPrefetching(final List<ConsumerIterator<byte[], byte[]>> iterators, final int bufferSize) {
+        final KafkaMessagePrefetcher prefetcher = new KafkaMessagePrefetcher(iterators, bufferSize);
+        prefetcher.start(this.executor);
+        this.prefetcher = prefetcher;
+    }
+
     @OnStopped
     public void shutdownConsumer() {
         this.consumerStreamsReady.set(false);
+        final KafkaMessagePrefetcher prefetcher = this.prefetcher;
+        this.prefetcher = null;
+        // messages that were prefetched but not written must not be committed, so that they are consumed again
+        final boolean commit = prefetcher == null || (prefetcher.stop(1000L) && prefetcher.getPendingMessageCount() == 0);
         if (consumer != null) {
             try {
-                consumer.commitOffsets();
+                if (commit) {
+                    consumer.commitOffsets();
+                } else {
+                    getLogger().warn("Not committing offsets to ZooKeeper because {} prefetched messages were not written to FlowFiles;"
+                            + " they will be consumed again", new Object[]{prefetcher.getPendingMessageCount()});
+                }
             } finally {
                 consumer.shutdown();
             }
@@ -336,6 +398,14 @@ public class GetKafka extends AbstractProcessor {
             if (this.executor == null || this.executor.isShutdown()) {
                 this.executor = Executors.newCachedThreadPool();
             }
+            final KafkaMessagePrefetcher failedPrefetcher = this.prefetcher;
+            if (failedPrefetcher != null && failedPrefetcher.isFailed()) {
+                // the partitions of a failed stream would never be consumed again, so start over with a new consumer
+                getLogger().error("Failed to fetch messages from Kafka; will recreate the consumer");
+                shutdownConsumer();
+                context.yield();
+                return;
+            }
             if (!this.consumerStreamsReady.get()) {
                 Future<Void> f = this.executor.submit(new Callable<Void>() {
                     @Override
@@ -361,7 +431,10 @@ public class GetKafka extends AbstractProcessor {
             }
         }
         //===
-        if (this.consumerStreamsReady.get()) {
+        final KafkaMessagePrefetcher prefetcher = this.prefetcher;
+        if (this.consumerStreamsReady.get() && prefetcher != null) {
+            writePrefetchedMessages(context, session, prefetcher);
+        } else if (this.consumerStreamsReady.get()) {
             Future<Void> consumptionFuture = this.executor.submit(new Callable<Void>() {
                 @Override
                 public Void call() throws Exception {
@@ -463,6 +536,85 @@ public class GetKafka extends AbstractProcessor {
         }
     }
 
+    /**
+     * Writes the messages buffered for one partition to FlowFiles of up to
+     * {@link #BATCH_SIZE} messages each. The session is committed before the
+     * messages are acknowledged to the prefetcher, so that the offsets are
+     * never committed ahead of the FlowFiles.
+     */
+    private void writePrefetchedMessages(final ProcessContext context, final ProcessSession session, final KafkaMessagePrefetcher prefetcher) {
+        final long commitInterval = context.getProperty(ZOOKEEPER_COMMIT_DELAY).asTimePeriod(TimeUnit.MILLISECONDS);
+        final KafkaMessagePrefetcher.PartitionBuffer buffer = prefetcher.claimPartition();
+        if (buffer == null) {
+            prefetcher.checkpoint(commitInterval, this.offsetCommitter);
+            context.yield();
+            return;
+        }
+
+        final int batchSize = context.getProperty(BATCH_SIZE).asInteger();
+        final String demarcator = context.getProperty(MESSAGE_DEMARCATOR).getValue().replace("\\n", "\n").replace("\\r", "\r").replace("\\t", "\t");
+        final byte[] demarcatorBytes = demarcator.getBytes(StandardCharsets.UTF_8);
+        final String topic = context.getProperty(TOPIC).getValue();
+
+        final List<MessageAndMetadata<byte[], byte[]>> messages = buffer.drain(context.getProperty(PREFETCH_BUFFER_SIZE).asInteger());
+        int acknowledgedCount = 0;
+        try {
+            for (int i = 0; i < messages.size(); i += batchSize) {
+                final long start = System.nanoTime();
+                final List<MessageAndMetadata<byte[], byte[]>> batch = messages.subList(i, Math.min(i + batchSize, messages.size()));
+
+                final Map<String, String> attributes = new HashMap<>();
+                attributes.put("kafka.topic", topic);
+                if (batchSize == 1) {
+                    final MessageAndMetadata<byte[], byte[]> mam = batch.get(0);
+                    if (mam.key() != null) {
+                        attributes.put("kafka.key", new String(mam.key(), StandardCharsets.UTF_8));
+                    }
+                    attributes.put("kafka.offset", String.valueOf(mam.offset()));
+                    attributes.put("kafka.partition", String.valueOf(mam.partition()));
+                }
+
+                // write the whole batch at once rather than appending each message
+                FlowFile flowFile = session.create();
+                flowFile = session.write(flowFile, new OutputStreamCallback() {
+                    @Override
+                    public void process(final OutputStream out) throws IOException {
+                        boolean firstMessage = true;
+                        for (final MessageAndMetadata<byte[], byte[]> mam : batch) {
+                            if (!firstMessage) {
+                                out.write(demarcatorBytes);
+                            }
+                            firstMessage = false;
+                            final byte[] message = mam.message();
+                            if (message != null) {
+                                out.write(message);
+                            }
+                        }
+                    }
+                });
+                this.releaseFlowFile(flowFile, session, attributes, start, topic, batch.size());
+            }
+            session.commit();
+            acknowledgedCount = messages.size();
+
+            // the counters hold the current values, so they are adjusted by the change since the last report
+            final String partitionName = "Kafka Partition " + buffer.getPartition();
+            session.adjustCounter(partitionName + " Buffered Messages", buffer.getBufferedCountDelta(), false);
+            session.adjustCounter(partitionName + " Messages/sec", buffer.getRateDelta(), false);
+        } catch (final Exception e) {
+            if (acknowledgedCount == 0) {
+                session.rollback();
+                buffer.requeue(messages);
+            }
+            getLogger().error("Failed to write messages received from Kafka partition {} due to {}", new Object[]{buffer.getPartition(), e});
+            context.yield();
+        } finally {
+            prefetcher.release(buffer, acknowledgedCount);
+        }
+
+        prefetcher.checkpoint(commitInterval, this.offsetCommitter);
+    }
+
     /**
      * Will release flow file. Releasing of the flow file in the context of this
      * operation implies the following:
@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import kafka.consumer.ConsumerIterator;
+import kafka.consumer.ConsumerTimeoutException;
+import kafka.message.MessageAndMetadata;
+
+/**
+ * Consumes Kafka streams on background threads, one thread per stream, and
+ * buffers the messages of each partition so that {@link GetKafka} tasks can
+ * write them to FlowFiles in bulk instead of pulling them one at a time.
+ * <p>
+ * Because the consumer position advances as soon as a message is fetched,
+ * offsets may only be committed once every fetched message has been written
+ * to a committed session. {@link #checkpoint(long, Runnable)} therefore
+ * pauses the fetch threads, waits for the buffers to be drained and only then
+ * runs the commit.
+ */
+class KafkaMessagePrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaMessagePrefetcher.class);
+
+    private static final long PAUSE_MILLIS = 10L;
+
+    private final List<ConsumerIterator<byte[], byte[]>> iterators;
+
+    private final int bufferSize;
+
+    private final ConcurrentMap<Integer, PartitionBuffer> partitionBuffers = new ConcurrentHashMap<>();
+
+    /*
+     * The number of messages that were fetched but not yet acknowledged as
+     * written to a committed session
+     */
+    private final AtomicLong pendingMessages = new AtomicLong();
+
+    /*
+     * The number of fetch threads that are guaranteed not to advance the
+     * consumer position, either because they are paused or because they exited
+     */
+    private final AtomicInteger idleFetchers = new AtomicInteger();
+
+    private final Lock checkpointLock = new ReentrantLock();
+
+    private final CountDownLatch fetchersStopped;
+
+    private volatile boolean running = true;
+
+    private volatile boolean paused;
+
+    private volatile boolean failed;
+
+    private volatile long lastCheckpoint = System.currentTimeMillis();
+
+    /**
+     * @param iterators
+     *            the iterators of the Kafka streams to consume
+     * @param bufferSize
+     *            the maximum number of messages to buffer for each partition
+     */
+    KafkaMessagePrefetcher(List<ConsumerIterator<byte[], byte[]>> iterators, int bufferSize) {
+        this.iterators = new ArrayList<>(iterators);
+        this.bufferSize = bufferSize;
+        this.fetchersStopped = new CountDownLatch(this.iterators.size());
+    }
+
+    /**
+     * Submits one fetch task for each of the streams to the given executor.
+     * The tasks run until {@link #stop(long)} is called or their stream ends
+     * or fails, see {@link #isFailed()}.
+     */
+    void start(ExecutorService executor) {
+        for (final ConsumerIterator<byte[], byte[]> iterator : this.iterators) {
+            executor.submit(new Fetcher(iterator));
+        }
+    }
+
+    /**
+     * Stops the fetch tasks and waits for them to exit.
+     *
+     * @return <code>true</code> if all fetch tasks exited within the given time
+     */
+    boolean stop(long timeoutMillis) {
+        this.running = false;
+        try {
+            return this.fetchersStopped.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Claims the partition with the most buffered messages that is not
+     * claimed by another task, so that the messages of a partition are always
+     * written in order. The partition must be given back through
+     * {@link #release(PartitionBuffer, int)}.
+     *
+     * @return the claimed partition or <code>null</code> if no messages are
+     *         available
+     */
+    PartitionBuffer claimPartition() {
+        while (true) {
+            PartitionBuffer fullest = null;
+            for (final PartitionBuffer buffer : this.partitionBuffers.values()) {
+                if (!buffer.claimed.get() && buffer.size() > 0 && (fullest == null || buffer.size() > fullest.size())) {
+                    fullest = buffer;
+                }
+            }
+            if (fullest == null) {
+                return null;
+            }
+            if (fullest.claimed.compareAndSet(false, true)) {
+                return fullest;
+            }
+        }
+    }
+
+    /**
+     * Gives back a partition claimed through {@link #claimPartition()}.
+     *
+     * @param acknowledgedCount
+     *            the number of messages drained from the partition that were
+     *            written to a committed session
+     */
+    void release(PartitionBuffer buffer, int acknowledgedCount) {
+        this.pendingMessages.addAndGet(-acknowledgedCount);
+        buffer.claimed.set(false);
+    }
+
+    /**
+     * Runs the given commit once the given interval has passed since the last
+     * checkpoint and every fetched message has been acknowledged. Until then
+     * the fetch tasks are paused, so this method must be called again after
+     * the remaining messages are written.
+     *
+     * @return <code>true</code> if the commit was run
+     */
+    boolean checkpoint(long intervalMillis, Runnable commit) {
+        if (!this.checkpointLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (!this.paused) {
+                if (System.currentTimeMillis() - this.lastCheckpoint < intervalMillis) {
+                    return false;
+                }
+                this.paused = true;
+            }
+
+            if (this.idleFetchers.get() < this.iterators.size() || this.pendingMessages.get() > 0) {
+                return false;
+            }
+
+            try {
+                commit.run();
+            } finally {
+                this.lastCheckpoint = System.currentTimeMillis();
+                this.paused = false;
+            }
+            return true;
+        } finally {
+            this.checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if a fetch task exited because its stream
+     *         failed. The stream cannot be consumed again, so the consumer
+     *         must be recreated.
+     */
+    boolean isFailed() {
+        return this.failed;
+    }
+
+    /**
+     * @return the number of messages that were fetched but not yet
+     *         acknowledged
+     */
+    long getPendingMessageCount() {
+        return this.pendingMessages.get();
+    }
+
+    private PartitionBuffer getPartitionBuffer(int partition) {
+        PartitionBuffer buffer = this.partitionBuffers.get(partition);
+        if (buffer == null) {
+            final PartitionBuffer newBuffer = new PartitionBuffer(partition, this.bufferSize);
+            buffer = this.partitionBuffers.putIfAbsent(partition, newBuffer);
+            if (buffer == null) {
+                buffer = newBuffer;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Moves the messages of a single stream into the partition buffers.
+     */
+    private class Fetcher implements Runnable {
+
+        private final ConsumerIterator<byte[], byte[]> iterator;
+
+        Fetcher(ConsumerIterator<byte[], byte[]> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void run() {
+            boolean idle = false;
+            try {
+                while (running) {
+                    if (paused) {
+                        if (!idle) {
+                            idle = true;
+                            idleFetchers.incrementAndGet();
+                        }
+                        Thread.sleep(PAUSE_MILLIS);
+                        continue;
+                    }
+                    if (idle) {
+                        // check again after leaving the idle state so that a checkpoint
+                        // never sees this fetcher as idle while it advances the consumer
+                        idle = false;
+                        idleFetchers.decrementAndGet();
+                        continue;
+                    }
+
+                    final MessageAndMetadata<byte[], byte[]> message;
+                    try {
+                        if (!this.iterator.hasNext()) {
+                            break;
+                        }
+                        message = this.iterator.next();
+                    } catch (ConsumerTimeoutException e) {
+                        continue;
+                    }
+                    pendingMessages.incrementAndGet();
+                    getPartitionBuffer(message.partition()).put(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // a failed Kafka iterator keeps failing, so the owner has to recreate the consumer
+                failed = true;
+                logger.error("Failed to fetch messages from Kafka.", e);
+            } finally {
+                if (!idle) {
+                    idleFetchers.incrementAndGet();
+                }
+                fetchersStopped.countDown();
+            }
+        }
+    }
+
+    /**
+     * The buffered messages of a single partition. Apart from
+     * {@link #size()}, the methods of this class may only be called by the
+     * task that claimed the partition.
+     */
+    class PartitionBuffer {
+
+        private final int partition;
+
+        private final BlockingQueue<MessageAndMetadata<byte[], byte[]>> queue;
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final AtomicLong receivedCount = new AtomicLong();
+
+        private volatile List<MessageAndMetadata<byte[], byte[]>> requeued = new ArrayList<>();
+
+        private long reportedBufferedCount;
+
+        private long reportedRate;
+
+        private long rateWindowStart = System.nanoTime();
+
+        private long rateWindowCount;
+
+        PartitionBuffer(int partition, int capacity) {
+            this.partition = partition;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        int getPartition() {
+            return this.partition;
+        }
+
+        int size() {
+            return this.queue.size() + this.requeued.size();
+        }
+
+        /**
+         * Removes up to the given number of messages from the buffer, starting
+         * with any messages that were requeued.
+         */
+        List<MessageAndMetadata<byte[], byte[]>> drain(int maxMessages) {
+            final List<MessageAndMetadata<byte[], byte[]>> messages = new ArrayList<>(Math.min(maxMessages, size()));
+            final List<MessageAndMetadata<byte[], byte[]>> requeued = this.requeued;
+            if (!requeued.isEmpty()) {
+                final int count = Math.min(maxMessages, requeued.size());
+                messages.addAll(requeued.subList(0, count));
+                this.requeued = new ArrayList<>(requeued.subList(count, requeued.size()));
+            }
+            this.queue.drainTo(messages, maxMessages - messages.size());
+            return messages;
+        }
+
+        /**
+         * Puts back drained messages that could not be written, so that they
+         * are drained again, in order, before any other messages.
+         */
+        void requeue(List<MessageAndMetadata<byte[], byte[]>> messages) {
+            final List<MessageAndMetadata<byte[], byte[]>> requeued = new ArrayList<>(messages);
+            requeued.addAll(this.requeued);
+            this.requeued = requeued;
+        }
+
+        /**
+         * @return the change of the number of buffered messages since the last
+         *         call, to be added to a counter that tracks the current value
+         */
+        long getBufferedCountDelta() {
+            final long bufferedCount = size();
+            final long delta = bufferedCount - this.reportedBufferedCount;
+            this.reportedBufferedCount = bufferedCount;
+            return delta;
+        }
+
+        /**
+         * @return the change of the rate at which messages were fetched from
+         *         the partition, in messages per second, since the last call.
+         *         The rate is recomputed at most once per second.
+         */
+        long getRateDelta() {
+            final long now = System.nanoTime();
+            final long elapsedNanos = now - this.rateWindowStart;
+            if (elapsedNanos < TimeUnit.SECONDS.toNanos(1)) {
+                return 0L;
+            }
+
+            final long count = this.receivedCount.get();
+            final long rate = (count - this.rateWindowCount) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            this.rateWindowStart = now;
+            this.rateWindowCount = count;
+
+            final long delta = rate - this.reportedRate;
+            this.reportedRate = rate;
+            return delta;
+        }
+
+        private void put(MessageAndMetadata<byte[], byte[]> message) throws InterruptedException {
+            while (running) {
+                if (this.queue.offer(message, PAUSE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    this.receivedCount.incrementAndGet();
+                    return;
+                }
+            }
+            // the message stays pending, which keeps the offsets from being committed on shutdown
+        }
+    }
+}
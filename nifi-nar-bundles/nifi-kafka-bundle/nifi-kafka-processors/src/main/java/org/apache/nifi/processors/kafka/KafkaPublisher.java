@@ -17,15 +17,12 @@
 package org.apache.nifi.processors.kafka;
 
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -37,7 +34,6 @@ import org.apache.nifi.stream.io.util.StreamScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import kafka.producer.KeyedMessage;
 import kafka.producer.Partitioner;
 
 /**
@@ -56,6 +52,12 @@ class KafkaPublisher implements AutoCloseable {
 
     private ProcessorLog processLog;
 
+    private final Object inFlightLock = new Object();
+
+    private long inFlightBytes;
+
+    private volatile long maxInFlightBytes = Long.MAX_VALUE;
+
     /**
      * Creates an instance of this class as well as the instance of the
      * corresponding Kafka {@link KafkaProducer} using provided Kafka
@@ -84,6 +86,22 @@ class KafkaPublisher implements AutoCloseable {
         this.processLog = processLog;
     }
 
+    /**
+     * Sets the maximum number of bytes that may have been sent to Kafka
+     * without being acknowledged yet. Sending blocks while the limit is
+     * reached, so that content is not read faster than Kafka accepts it.
+     */
+    void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    /**
+     * Returns the amount of time to wait for a message to be acknowledged
+     */
+    long getAckWaitTime() {
+        return this.ackWaitTime;
+    }
+
     /**
      * Publishes messages to Kafka topic. It supports three publishing
      * mechanisms.
@@ -119,14 +137,22 @@ class KafkaPublisher implements AutoCloseable {
      */
     BitSet publish(SplittableMessageContext messageContext, InputStream contentStream, Integer partitionKey,
             int maxBufferSize) {
-        List<Future<RecordMetadata>> sendFutures = this.split(messageContext, contentStream, partitionKey, maxBufferSize);
-        return this.publish(sendFutures);
+        PublishResult result = this.publishAsync(messageContext, contentStream, partitionKey, maxBufferSize);
+        if (!result.awaitCompletion(this.ackWaitTime)) {
+            result.expire();
+            logger.warn("Timed out while waiting for acks from Kafka");
+            if (this.processLog != null) {
+                this.processLog.warn("Timed out while waiting for acks from Kafka");
+            }
+        }
+        return result.getFailedSegments();
     }
 
     /**
-     * This method splits (if required) the incoming content stream into
-     * messages to publish to Kafka topic. See publish method for more
-     * details
+     * Splits (if required) the incoming content stream into messages and
+     * sends them to Kafka without waiting for them to be acknowledged. See
+     * publish method for more details. Only blocks while the maximum number
+     * of in-flight bytes is reached.
      *
      * @param messageContext
      *            instance of {@link SplittableMessageContext} which hold
@@ -139,65 +165,36 @@ class KafkaPublisher implements AutoCloseable {
      *            to provide a custom partition key instead of relying on
      *            variety of provided {@link Partitioner}(s)
      * @param maxBufferSize maximum message size
-     * @return The list of messages to publish
+     * @return The {@link PublishResult} that tracks the acknowledgements of
+     *         the messages
      */
-    List<Future<RecordMetadata>> split(SplittableMessageContext messageContext, InputStream contentStream, Integer partitionKey,
+    PublishResult publishAsync(SplittableMessageContext messageContext, InputStream contentStream, Integer partitionKey,
             int maxBufferSize) {
-        List<Future<RecordMetadata>> sendFutures = new ArrayList<>();
+        PublishResult result = new PublishResult();
         BitSet prevFailedSegmentIndexes = messageContext.getFailedSegments();
         int segmentCounter = 0;
         StreamScanner scanner = new StreamScanner(contentStream, messageContext.getDelimiterBytes(), maxBufferSize);
 
-        while (scanner.hasNext()) {
-            byte[] content = scanner.next();
-            if (content.length > 0){
-                byte[] key = messageContext.getKeyBytes();
-                String topicName = messageContext.getTopicName();
-                if (partitionKey == null && key != null) {
-                    partitionKey = this.getPartition(key, topicName);
-                }
-                if (prevFailedSegmentIndexes == null || prevFailedSegmentIndexes.get(segmentCounter)) {
-                    ProducerRecord<byte[], byte[]> message = new ProducerRecord<>(topicName, partitionKey, key, content);
-                    sendFutures.add(this.toKafka(message));
-                }
-                segmentCounter++;
-            }
-        }
-        return sendFutures;
-    }
-
-    /**
-     *
-     */
-    BitSet publish(List<Future<RecordMetadata>> sendFutures) {
-        int segmentCounter = 0;
-        BitSet failedSegments = new BitSet();
-        for (Future<RecordMetadata> future : sendFutures) {
-            try {
-                future.get(this.ackWaitTime, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                failedSegments.set(segmentCounter);
-                Thread.currentThread().interrupt();
-                logger.warn("Interrupted while waiting for acks from Kafka");
-                if (this.processLog != null) {
-                    this.processLog.warn("Interrupted while waiting for acks from Kafka");
-                }
-            } catch (ExecutionException e) {
-                failedSegments.set(segmentCounter);
-                logger.error("Failed while waiting for acks from Kafka", e);
-                if (this.processLog != null) {
-                    this.processLog.error("Failed while waiting for acks from Kafka", e);
-                }
-            } catch (TimeoutException e) {
-                failedSegments.set(segmentCounter);
-                logger.warn("Timed out while waiting for acks from Kafka");
-                if (this.processLog != null) {
-                    this.processLog.warn("Timed out while waiting for acks from Kafka");
+        try {
+            while (scanner.hasNext()) {
+                byte[] content = scanner.next();
+                if (content.length > 0){
+                    byte[] key = messageContext.getKeyBytes();
+                    String topicName = messageContext.getTopicName();
+                    if (partitionKey == null && key != null) {
+                        partitionKey = this.getPartition(key, topicName);
+                    }
+                    if (prevFailedSegmentIndexes == null || prevFailedSegmentIndexes.get(segmentCounter)) {
+                        ProducerRecord<byte[], byte[]> message = new ProducerRecord<>(topicName, partitionKey, key, content);
+                        this.toKafka(message, segmentCounter, result);
+                    }
+                    segmentCounter++;
                 }
             }
-            segmentCounter++;
+        } finally {
+            result.seal();
         }
-        return failedSegments;
+        return result;
     }
 
     /**
@@ -217,13 +214,166 @@ class KafkaPublisher implements AutoCloseable {
     }
 
     /**
-     * Sends the provided {@link KeyedMessage} to Kafka async returning
-     * {@link Future}
+     * Sends the provided {@link ProducerRecord} to Kafka async, recording its
+     * acknowledgement as the given segment of the given {@link PublishResult}
      */
-    private Future<RecordMetadata> toKafka(ProducerRecord<byte[], byte[]> message) {
+    private void toKafka(ProducerRecord<byte[], byte[]> message, final int segment, final PublishResult result) {
         if (logger.isDebugEnabled()) {
             logger.debug("Publishing message to '" + message.topic() + "' topic.");
         }
-        return this.producer.send(message);
+        final int size = message.value().length;
+        result.sending(segment);
+        if (!this.acquireInFlightBytes(size)) {
+            result.acknowledged(segment, false);
+            return;
+        }
+
+        try {
+            this.producer.send(message, new Callback() {
+                @Override
+                public void onCompletion(RecordMetadata metadata, Exception exception) {
+                    releaseInFlightBytes(size);
+                    if (exception != null) {
+                        logger.error("Failed while waiting for acks from Kafka", exception);
+                        if (processLog != null) {
+                            processLog.error("Failed while waiting for acks from Kafka", exception);
+                        }
+                    }
+                    result.acknowledged(segment, exception == null);
+                }
+            });
+        } catch (Exception e) {
+            this.releaseInFlightBytes(size);
+            logger.error("Failed while sending message to Kafka", e);
+            if (this.processLog != null) {
+                this.processLog.error("Failed while sending message to Kafka", e);
+            }
+            result.acknowledged(segment, false);
+        }
+    }
+
+    /**
+     * Waits until the given number of bytes can be sent without exceeding the
+     * maximum number of in-flight bytes. A message is always allowed if
+     * nothing else is in flight, so that larger messages are not blocked
+     * forever.
+     *
+     * @return <code>false</code> if the bytes could not be acquired within the
+     *         ack wait time
+     */
+    private boolean acquireInFlightBytes(int size) {
+        synchronized (this.inFlightLock) {
+            final long deadline = System.currentTimeMillis() + this.ackWaitTime;
+            while (this.inFlightBytes > 0 && this.inFlightBytes + size > this.maxInFlightBytes) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    logger.warn("Timed out while waiting for in-flight messages to be acknowledged by Kafka");
+                    if (this.processLog != null) {
+                        this.processLog.warn("Timed out while waiting for in-flight messages to be acknowledged by Kafka");
+                    }
+                    return false;
+                }
+                try {
+                    this.inFlightLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.warn("Interrupted while waiting for in-flight messages to be acknowledged by Kafka");
+                    return false;
+                }
+            }
+            this.inFlightBytes += size;
+            return true;
+        }
+    }
+
+    private void releaseInFlightBytes(int size) {
+        synchronized (this.inFlightLock) {
+            this.inFlightBytes -= size;
+            this.inFlightLock.notifyAll();
+        }
+    }
+
+    /**
+     * Tracks the acknowledgements of the messages sent for a single content
+     * stream. Segments that are still waiting for an acknowledgement when the
+     * result expires are considered failed.
+     */
+    static class PublishResult {
+
+        private final BitSet pendingSegments = new BitSet();
+
+        private final BitSet failedSegments = new BitSet();
+
+        private final CountDownLatch completion = new CountDownLatch(1);
+
+        private int messageCount;
+
+        private boolean sealed;
+
+        synchronized void sending(int segment) {
+            this.pendingSegments.set(segment);
+            this.messageCount++;
+        }
+
+        synchronized void acknowledged(int segment, boolean success) {
+            // acknowledgements that arrive after the result expired are ignored
+            if (this.pendingSegments.get(segment)) {
+                this.pendingSegments.clear(segment);
+                if (!success) {
+                    this.failedSegments.set(segment);
+                }
+                this.completeIfDone();
+            }
+        }
+
+        /**
+         * Called once all messages of the content stream were sent
+         */
+        synchronized void seal() {
+            this.sealed = true;
+            this.completeIfDone();
+        }
+
+        /**
+         * Considers all messages that were not acknowledged yet as failed
+         */
+        synchronized void expire() {
+            this.failedSegments.or(this.pendingSegments);
+            this.pendingSegments.clear();
+            this.sealed = true;
+            this.completeIfDone();
+        }
+
+        boolean isDone() {
+            return this.completion.getCount() == 0;
+        }
+
+        /**
+         * @return <code>true</code> if all messages were acknowledged within
+         *         the given time
+         */
+        boolean awaitCompletion(long timeoutMillis) {
+            try {
+                return this.completion.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for acks from Kafka");
+                return false;
+            }
+        }
+
+        synchronized BitSet getFailedSegments() {
+            return (BitSet) this.failedSegments.clone();
+        }
+
+        synchronized int getMessageCount() {
+            return this.messageCount;
+        }
+
+        private void completeIfDone() {
+            if (this.sealed && this.pendingSegments.isEmpty()) {
+                this.completion.countDown();
+            }
+        }
     }
 }
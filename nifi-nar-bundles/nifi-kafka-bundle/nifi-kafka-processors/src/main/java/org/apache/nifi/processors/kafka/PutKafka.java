@@ -30,12 +30,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.Future;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
-import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.nifi.annotation.behavior.DynamicProperty;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.InputRequirement.Requirement;
@@ -48,15 +52,15 @@ import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.ValidationContext;
 import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.flowfile.FlowFile;
-import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.AbstractSessionFactoryProcessor;
 import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.ProcessSessionFactory;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.io.InputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
-import org.apache.nifi.util.StopWatch;
 
 @InputRequirement(Requirement.INPUT_REQUIRED)
 @Tags({ "Apache", "Kafka", "Put", "Send", "Message", "PubSub" })
@@ -67,7 +71,7 @@ import org.apache.nifi.util.StopWatch;
         + " In the event a dynamic property represents a property that was already set as part of the static properties, its value wil be"
         + " overriden with warning message describing the override."
         + " For the list of available Kafka properties please refer to: http://kafka.apache.org/documentation.html#configuration.")
-public class PutKafka extends AbstractProcessor {
+public class PutKafka extends AbstractSessionFactoryProcessor {
 
     private static final String SINGLE_BROKER_REGEX = ".*?\\:\\d{3,5}";
 
@@ -184,6 +188,16 @@ public class PutKafka extends AbstractProcessor {
             .required(true)
             .defaultValue("1 MB")
             .build();
+    static final PropertyDescriptor MAX_IN_FLIGHT_SIZE = new PropertyDescriptor.Builder()
+            .name("Max In-Flight Data Size")
+            .description("The maximum amount of data that may have been sent to Kafka without being acknowledged yet. If set, FlowFiles are "
+                    + "not held until their messages are acknowledged; instead the next FlowFiles are sent while earlier ones are still in flight, "
+                    + "and each FlowFile is transferred once all of its messages were acknowledged. Sending blocks while this amount of data "
+                    + "is in flight. If not set, each FlowFile is transferred before the next one is sent.")
+            .required(false)
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .expressionLanguageSupported(false)
+            .build();
     public static final PropertyDescriptor TIMEOUT = new PropertyDescriptor.Builder()
             .name("Communications Timeout")
             .description("The amount of time to wait for a response from Kafka before determining that there is a communications error")
@@ -246,8 +260,31 @@ public class PutKafka extends AbstractProcessor {
 
     protected static final String ATTR_DELIMITER = "DELIMITER";
 
+    /*
+     * How often the in-flight FlowFiles are checked for acknowledgements when
+     * there are no new FlowFiles to send
+     */
+    private static final long IN_FLIGHT_POLL_MILLIS = 10L;
+
     private volatile KafkaPublisher kafkaPublisher;
 
+    private volatile boolean pipelined;
+
+    /*
+     * FlowFiles whose messages were sent but not yet acknowledged, in the
+     * order they were sent. Entries are only removed while holding the
+     * completion lock, so that their sessions are completed in that order.
+     */
+    private final Queue<InFlightFlowFile> inFlightFlowFiles = new ConcurrentLinkedQueue<>();
+
+    private final Lock completionLock = new ReentrantLock();
+
+    /*
+     * Completes acknowledged FlowFiles in the background while pipelined, so
+     * that they do not have to wait for new FlowFiles to trigger the processor
+     */
+    private volatile ScheduledExecutorService inFlightCompleter;
+
     private static final List<PropertyDescriptor> propertyDescriptors;
 
     private static final Set<Relationship> relationships;
@@ -263,6 +300,7 @@ public class PutKafka extends AbstractProcessor {
         _propertyDescriptors.add(MESSAGE_DELIMITER);
         _propertyDescriptors.add(MAX_BUFFER_SIZE);
         _propertyDescriptors.add(MAX_RECORD_SIZE);
+        _propertyDescriptors.add(MAX_IN_FLIGHT_SIZE);
         _propertyDescriptors.add(TIMEOUT);
         _propertyDescriptors.add(BATCH_NUM_MESSAGES);
         _propertyDescriptors.add(QUEUE_BUFFERING_MAX);
@@ -280,62 +318,172 @@ public class PutKafka extends AbstractProcessor {
      *
      */
     @OnScheduled
-    public void createKafkaPublisher(ProcessContext context) {
+    public void createKafkaPublisher(final ProcessContext context) {
         this.kafkaPublisher = new KafkaPublisher(this.buildKafkaConfigProperties(context));
         this.kafkaPublisher.setProcessLog(this.getLogger());
+        this.pipelined = context.getProperty(MAX_IN_FLIGHT_SIZE).isSet();
+        if (this.pipelined) {
+            this.kafkaPublisher.setMaxInFlightBytes(context.getProperty(MAX_IN_FLIGHT_SIZE).asDataSize(DataUnit.B).longValue());
+            this.inFlightCompleter = Executors.newSingleThreadScheduledExecutor();
+            this.inFlightCompleter.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        completeAcknowledgedFlowFiles(context);
+                    } catch (final Exception e) {
+                        getLogger().error("Failed to complete acknowledged FlowFiles due to {}", new Object[] { e }, e);
+                    }
+                }
+            }, IN_FLIGHT_POLL_MILLIS, IN_FLIGHT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     *
+     * Sends the content of a single FlowFile to Kafka. Unless 'Max In-Flight
+     * Data Size' is set, the session is completed once all messages were
+     * acknowledged. Otherwise the session is kept open until a subsequent
+     * invocation, or the background completer, finds all of its messages
+     * acknowledged, so that sending the next FlowFile does not have to wait
+     * for the acknowledgements of the previous ones.
      */
     @Override
-    public void onTrigger(final ProcessContext context, ProcessSession session) throws ProcessException {
-        FlowFile flowFile = session.get();
-        if (flowFile != null) {
+    public void onTrigger(final ProcessContext context, final ProcessSessionFactory sessionFactory) throws ProcessException {
+        this.completeAcknowledgedFlowFiles(context);
+
+        final ProcessSession session = sessionFactory.createSession();
+        final FlowFile flowFile = session.get();
+        if (flowFile == null) {
+            session.commit();
+            return;
+        }
+
+        try {
             final SplittableMessageContext messageContext = this.buildMessageContext(flowFile, context, session);
             final Integer partitionKey = this.determinePartition(messageContext, context, flowFile);
-            final AtomicReference<BitSet> failedSegmentsRef = new AtomicReference<BitSet>();
-            final List<Future<RecordMetadata>> sendFutures = new ArrayList<>();
+            final AtomicReference<KafkaPublisher.PublishResult> resultRef = new AtomicReference<>();
 
-            StopWatch timer = new StopWatch(true);
+            final long start = System.nanoTime();
             session.read(flowFile, new InputStreamCallback() {
                 @Override
                 public void process(InputStream contentStream) throws IOException {
                     int maxRecordSize = context.getProperty(MAX_RECORD_SIZE).asDataSize(DataUnit.B).intValue();
-                    sendFutures.addAll(kafkaPublisher.split(messageContext, contentStream, partitionKey, maxRecordSize));
-                    failedSegmentsRef.set(kafkaPublisher.publish(sendFutures));
+                    resultRef.set(kafkaPublisher.publishAsync(messageContext, contentStream, partitionKey, maxRecordSize));
                 }
             });
-            timer.stop();
 
-            final long duration = timer.getDuration(TimeUnit.MILLISECONDS);
-            final int messagesToSend = sendFutures.size();
-            final int messagesSent = messagesToSend - failedSegmentsRef.get().cardinality();
-            final String details = messagesSent + " message(s) over " + messagesToSend + " sent successfully";
-            if (failedSegmentsRef.get().isEmpty()) {
-                session.getProvenanceReporter().send(flowFile, "kafka://" + context.getProperty(SEED_BROKERS).getValue() + "/" + messageContext.getTopicName(), details, duration);
-                flowFile = this.cleanUpFlowFileIfNecessary(flowFile, session);
-                session.transfer(flowFile, REL_SUCCESS);
+            final InFlightFlowFile inFlight = new InFlightFlowFile(session, flowFile, messageContext, resultRef.get(), start);
+            if (this.pipelined) {
+                this.inFlightFlowFiles.add(inFlight);
             } else {
-                if(messagesSent != 0) {
-                    session.getProvenanceReporter().send(flowFile, "kafka://" + context.getProperty(SEED_BROKERS).getValue() + "/" + messageContext.getTopicName(), details, duration);
+                if (!inFlight.result.awaitCompletion(this.kafkaPublisher.getAckWaitTime())) {
+                    this.getLogger().warn("Timed out while waiting for acks from Kafka");
+                    inFlight.result.expire();
+                }
+                this.complete(inFlight, context);
+            }
+        } catch (final Exception e) {
+            session.rollback(true);
+            throw e instanceof ProcessException ? (ProcessException) e : new ProcessException(e);
+        }
+    }
+
+    /**
+     * Transfers the FlowFiles at the head of the in-flight queue whose
+     * messages were all acknowledged, or that waited longer than the ack wait
+     * time, in the order they were sent. Returns immediately if another
+     * thread is already completing them, so that sending never waits for it.
+     */
+    private void completeAcknowledgedFlowFiles(ProcessContext context) {
+        if (!this.completionLock.tryLock()) {
+            return;
+        }
+        try {
+            final long ackWaitNanos = TimeUnit.MILLISECONDS.toNanos(this.kafkaPublisher.getAckWaitTime());
+            InFlightFlowFile inFlight;
+            while ((inFlight = this.inFlightFlowFiles.peek()) != null) {
+                if (!inFlight.result.isDone()) {
+                    if (System.nanoTime() - inFlight.startNanos < ackWaitNanos) {
+                        return;
+                    }
+                    this.getLogger().warn("Timed out while waiting for acks from Kafka for {}", new Object[] { inFlight.flowFile });
+                    inFlight.result.expire();
                 }
-                flowFile = session.putAllAttributes(flowFile, this.buildFailedFlowFileAttributes(failedSegmentsRef.get(), messageContext));
-                session.transfer(session.penalize(flowFile), REL_FAILURE);
+                this.inFlightFlowFiles.remove();
+                this.complete(inFlight, context);
             }
+        } finally {
+            this.completionLock.unlock();
+        }
+    }
 
+    /**
+     * Transfers the FlowFile to 'success' if all of its messages were
+     * acknowledged, otherwise to 'failure' along with the attributes needed
+     * to resend only the failed messages, and commits its session.
+     */
+    private void complete(InFlightFlowFile inFlight, ProcessContext context) {
+        final ProcessSession session = inFlight.session;
+        final SplittableMessageContext messageContext = inFlight.messageContext;
+        final BitSet failedSegments = inFlight.result.getFailedSegments();
+        FlowFile flowFile = inFlight.flowFile;
+
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inFlight.startNanos);
+        final int messagesToSend = inFlight.result.getMessageCount();
+        final int messagesSent = messagesToSend - failedSegments.cardinality();
+        final String details = messagesSent + " message(s) over " + messagesToSend + " sent successfully";
+        if (failedSegments.isEmpty()) {
+            session.getProvenanceReporter().send(flowFile, "kafka://" + context.getProperty(SEED_BROKERS).getValue() + "/" + messageContext.getTopicName(), details, duration);
+            flowFile = this.cleanUpFlowFileIfNecessary(flowFile, session);
+            session.transfer(flowFile, REL_SUCCESS);
         } else {
-            context.yield();
+            if(messagesSent != 0) {
+                session.getProvenanceReporter().send(flowFile, "kafka://" + context.getProperty(SEED_BROKERS).getValue() + "/" + messageContext.getTopicName(), details, duration);
+            }
+            flowFile = session.putAllAttributes(flowFile, this.buildFailedFlowFileAttributes(failedSegments, messageContext));
+            session.transfer(session.penalize(flowFile), REL_FAILURE);
         }
+        session.commit();
     }
 
+    /**
+     * Stops the background completer and closes the publisher, which sends
+     * any buffered messages and invokes their callbacks, and then completes
+     * the FlowFiles that are still in flight. Messages that were not
+     * acknowledged by then are considered failed.
+     */
     @OnStopped
-    public void cleanup() {
+    public void cleanup(ProcessContext context) {
+        final ScheduledExecutorService completer = this.inFlightCompleter;
+        if (completer != null) {
+            completer.shutdown();
+            try {
+                if (!completer.awaitTermination(30000, TimeUnit.MILLISECONDS)) {
+                    completer.shutdownNow();
+                    getLogger().warn("In-flight completer did not stop in 30 sec. Terminated.");
+                }
+            } catch (InterruptedException e) {
+                completer.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            this.inFlightCompleter = null;
+        }
+
         try {
             this.kafkaPublisher.close();
         } catch (Exception e) {
             getLogger().warn("Failed while closing KafkaPublisher", e);
         }
+
+        this.completionLock.lock();
+        try {
+            InFlightFlowFile inFlight;
+            while ((inFlight = this.inFlightFlowFiles.poll()) != null) {
+                inFlight.result.expire();
+                this.complete(inFlight, context);
+            }
+        } finally {
+            this.completionLock.unlock();
+        }
     }
 
     @Override
@@ -488,4 +636,30 @@ public class PutKafka extends AbstractProcessor {
         }
         return properties;
     }
+
+    /**
+     * A FlowFile whose messages were sent to Kafka along with the session
+     * that holds it until the messages were acknowledged.
+     */
+    private static class InFlightFlowFile {
+
+        private final ProcessSession session;
+
+        private final FlowFile flowFile;
+
+        private final SplittableMessageContext messageContext;
+
+        private final KafkaPublisher.PublishResult result;
+
+        private final long startNanos;
+
+        InFlightFlowFile(ProcessSession session, FlowFile flowFile, SplittableMessageContext messageContext,
+                KafkaPublisher.PublishResult result, long startNanos) {
+            this.session = session;
+            this.flowFile = flowFile;
+            this.messageContext = messageContext;
+            this.result = result;
+            this.startNanos = startNanos;
+        }
+    }
 }
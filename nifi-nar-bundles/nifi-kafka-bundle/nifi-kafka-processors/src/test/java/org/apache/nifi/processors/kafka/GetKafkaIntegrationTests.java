@@ -28,6 +28,7 @@ import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class GetKafkaIntegrationTests {
@@ -167,4 +168,47 @@ public class GetKafkaIntegrationTests {
 
         getKafka.shutdownConsumer();
     }
+
+    /**
+     * Compares consuming directly from the streams with consuming through the
+     * prefetch buffers. Both runs read the same topic with their own group.
+     */
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testPrefetchPerformance() throws Exception {
+        final String topicName = "testPrefetchPerformance";
+        final int messageCount = 200000;
+        for (int i = 0; i < messageCount; i++) {
+            producerHelper.sendEvent(topicName, "Hello-" + i);
+        }
+
+        for (final String prefetchBufferSize : new String[] {"0", "10000"}) {
+            final GetKafka getKafka = new GetKafka();
+            final TestRunner runner = TestRunners.newTestRunner(getKafka);
+            runner.setProperty(GetKafka.ZOOKEEPER_CONNECTION_STRING, "localhost:" + kafkaLocal.getZookeeperPort());
+            runner.setProperty(GetKafka.TOPIC, topicName);
+            runner.setProperty(GetKafka.GROUP_ID, "perf-" + prefetchBufferSize);
+            runner.setProperty(GetKafka.BATCH_SIZE, "1000");
+            runner.setProperty(GetKafka.PREFETCH_BUFFER_SIZE, prefetchBufferSize);
+            runner.setProperty(GetKafka.AUTO_OFFSET_RESET, GetKafka.SMALLEST);
+            runner.setProperty("consumer.timeout.ms", "100");
+
+            final long start = System.nanoTime();
+            long received = 0;
+            boolean initialize = true;
+            while (received < messageCount && System.nanoTime() - start < 120000000000L) {
+                runner.run(1, false, initialize);
+                initialize = false;
+                for (final MockFlowFile flowFile : runner.getFlowFilesForRelationship(GetKafka.REL_SUCCESS)) {
+                    received += new String(flowFile.toByteArray()).split("\\n").length;
+                }
+                runner.clearTransferState();
+            }
+            final long millis = (System.nanoTime() - start) / 1000000L;
+            getKafka.shutdownConsumer();
+
+            System.out.println("Prefetch Buffer Size " + prefetchBufferSize + ": received " + received + " messages in " + millis
+                    + " millis (" + (received * 1000L / Math.max(1L, millis)) + " messages/sec)");
+        }
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import kafka.consumer.ConsumerIterator;
+import kafka.message.MessageAndMetadata;
+
+public class KafkaMessagePrefetcherTest {
+
+    private ExecutorService executor;
+
+    private CountDownLatch exhausted;
+
+    @Before
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        exhausted = new CountDownLatch(1);
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMessagesAreBufferedPerPartition() throws Exception {
+        final KafkaMessagePrefetcher prefetcher = startPrefetcher(10, 0, 1, 0, 0, 1);
+        assertEquals(5, prefetcher.getPendingMessageCount());
+
+        final KafkaMessagePrefetcher.PartitionBuffer fullest = prefetcher.claimPartition();
+        assertEquals(0, fullest.getPartition());
+        final KafkaMessagePrefetcher.PartitionBuffer other = prefetcher.claimPartition();
+        assertEquals(1, other.getPartition());
+        // both partitions are claimed
+        assertNull(prefetcher.claimPartition());
+
+        assertEquals(offsets(0, 2, 3), offsetsOf(fullest.drain(10)));
+        assertEquals(offsets(1, 4), offsetsOf(other.drain(10)));
+        prefetcher.release(fullest, 3);
+        prefetcher.release(other, 2);
+
+        assertEquals(0, prefetcher.getPendingMessageCount());
+        assertNull(prefetcher.claimPartition());
+        assertTrue(prefetcher.stop(1000L));
+    }
+
+    @Test
+    public void testRequeuedMessagesAreDrainedFirst() throws Exception {
+        final KafkaMessagePrefetcher prefetcher = startPrefetcher(10, 0, 0, 0, 0);
+
+        KafkaMessagePrefetcher.PartitionBuffer buffer = prefetcher.claimPartition();
+        final List<MessageAndMetadata<byte[], byte[]>> messages = buffer.drain(2);
+        assertEquals(offsets(0, 1), offsetsOf(messages));
+        buffer.requeue(messages);
+        prefetcher.release(buffer, 0);
+        assertEquals(4, prefetcher.getPendingMessageCount());
+
+        buffer = prefetcher.claimPartition();
+        assertNotNull(buffer);
+        assertEquals(4, buffer.size());
+        assertEquals(offsets(0), offsetsOf(buffer.drain(1)));
+        assertEquals(offsets(1, 2, 3), offsetsOf(buffer.drain(10)));
+        prefetcher.release(buffer, 4);
+        assertEquals(0, prefetcher.getPendingMessageCount());
+    }
+
+    @Test
+    public void testCheckpointWaitsForPendingMessages() throws Exception {
+        final KafkaMessagePrefetcher prefetcher = startPrefetcher(10, 0, 1);
+        final AtomicInteger commits = new AtomicInteger();
+        final Runnable commit = new Runnable() {
+            @Override
+            public void run() {
+                commits.incrementAndGet();
+            }
+        };
+
+        assertFalse(prefetcher.checkpoint(60000L, commit));
+        assertFalse(prefetcher.checkpoint(0L, commit));
+
+        KafkaMessagePrefetcher.PartitionBuffer buffer = prefetcher.claimPartition();
+        buffer.drain(10);
+        prefetcher.release(buffer, 1);
+        assertFalse(prefetcher.checkpoint(0L, commit));
+        assertEquals(0, commits.get());
+
+        buffer = prefetcher.claimPartition();
+        buffer.drain(10);
+        prefetcher.release(buffer, 1);
+        assertTrue(prefetcher.checkpoint(0L, commit));
+        assertEquals(1, commits.get());
+
+        // not yet due again
+        assertFalse(prefetcher.checkpoint(60000L, commit));
+        assertEquals(1, commits.get());
+    }
+
+    @Test
+    public void testFetchingBlocksWhenBufferIsFull() throws Exception {
+        final KafkaMessagePrefetcher prefetcher = new KafkaMessagePrefetcher(
+                Collections.singletonList(createIterator(0, 0, 0, 0, 0)), 2);
+        prefetcher.start(executor);
+
+        final long deadline = System.currentTimeMillis() + 10000L;
+        KafkaMessagePrefetcher.PartitionBuffer buffer = null;
+        while (buffer == null && System.currentTimeMillis() < deadline) {
+            buffer = prefetcher.claimPartition();
+        }
+        assertNotNull(buffer);
+        while (buffer.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+        // two buffered and one waiting to be buffered
+        Thread.sleep(50L);
+        assertEquals(2, buffer.size());
+        assertEquals(3, prefetcher.getPendingMessageCount());
+
+        final List<MessageAndMetadata<byte[], byte[]>> messages = new ArrayList<>();
+        while (messages.size() < 5 && System.currentTimeMillis() < deadline) {
+            messages.addAll(buffer.drain(10));
+        }
+        assertEquals(offsets(0, 1, 2, 3, 4), offsetsOf(messages));
+        prefetcher.release(buffer, 5);
+        assertTrue(exhausted.await(10, TimeUnit.SECONDS));
+        assertTrue(prefetcher.stop(1000L));
+        assertEquals(0, prefetcher.getPendingMessageCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedStreamIsReported() throws Exception {
+        final ConsumerIterator<byte[], byte[]> itr = Mockito.mock(ConsumerIterator.class);
+        Mockito.when(itr.hasNext()).thenThrow(new IllegalStateException("Iterator is in failed state"));
+
+        final KafkaMessagePrefetcher prefetcher = new KafkaMessagePrefetcher(Collections.singletonList(itr), 10);
+        assertFalse(prefetcher.isFailed());
+        prefetcher.start(executor);
+
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while (!prefetcher.isFailed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+        assertTrue(prefetcher.isFailed());
+        assertTrue(prefetcher.stop(1000L));
+    }
+
+    /**
+     * Starts a prefetcher over a single stream with one message for each of
+     * the given partitions and waits until all of them are buffered.
+     */
+    private KafkaMessagePrefetcher startPrefetcher(int bufferSize, int... partitions) throws InterruptedException {
+        final KafkaMessagePrefetcher prefetcher = new KafkaMessagePrefetcher(
+                Collections.singletonList(createIterator(partitions)), bufferSize);
+        prefetcher.start(executor);
+        assertTrue(exhausted.await(10, TimeUnit.SECONDS));
+        return prefetcher;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConsumerIterator<byte[], byte[]> createIterator(final int... partitions) {
+        final List<MessageAndMetadata<byte[], byte[]>> messages = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            final MessageAndMetadata<byte[], byte[]> mam = Mockito.mock(MessageAndMetadata.class);
+            Mockito.when(mam.partition()).thenReturn(partitions[i]);
+            Mockito.when(mam.offset()).thenReturn((long) i);
+            Mockito.when(mam.message()).thenReturn(("message-" + i).getBytes());
+            messages.add(mam);
+        }
+        final Iterator<MessageAndMetadata<byte[], byte[]>> messageItr = messages.iterator();
+
+        final ConsumerIterator<byte[], byte[]> itr = Mockito.mock(ConsumerIterator.class);
+        Mockito.doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                final boolean hasNext = messageItr.hasNext();
+                if (!hasNext) {
+                    exhausted.countDown();
+                }
+                return hasNext;
+            }
+        }).when(itr).hasNext();
+        Mockito.doAnswer(new Answer<MessageAndMetadata<byte[], byte[]>>() {
+            @Override
+            public MessageAndMetadata<byte[], byte[]> answer(final InvocationOnMock invocation) throws Throwable {
+                return messageItr.next();
+            }
+        }).when(itr).next();
+        return itr;
+    }
+
+    private List<Long> offsets(long... offsets) {
+        final List<Long> list = new ArrayList<>();
+        for (final long offset : offsets) {
+            list.add(offset);
+        }
+        return list;
+    }
+
+    private List<Long> offsetsOf(List<MessageAndMetadata<byte[], byte[]>> messages) {
+        final List<Long> list = new ArrayList<>();
+        for (final MessageAndMetadata<byte[], byte[]> mam : messages) {
+            list.add(mam.offset());
+        }
+        return list;
+    }
+}
@@ -17,12 +17,15 @@
 package org.apache.nifi.processors.kafka;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -160,6 +163,60 @@ public class KafkaPublisherTest {
         assertEquals(data, r);
     }
 
+    @Test
+    public void validateAsyncPublishWithInFlightLimit() throws Exception {
+        String topicName = "validateAsyncPublishWithInFlightLimit";
+
+        Properties kafkaProperties = this.buildProducerProperties();
+        KafkaPublisher publisher = new KafkaPublisher(kafkaProperties);
+        // smaller than a single message, so each message has to wait for the previous one
+        publisher.setMaxInFlightBytes(5);
+
+        SplittableMessageContext messageContext = new SplittableMessageContext(topicName, null, "\n".getBytes(StandardCharsets.UTF_8));
+        InputStream fis = new ByteArrayInputStream(
+                "Hello Kafka 1\nHello Kafka 2\nHello Kafka 3\nHello Kafka 4\n".getBytes(StandardCharsets.UTF_8));
+
+        KafkaPublisher.PublishResult result = publisher.publishAsync(messageContext, fis, null, 2000);
+        assertTrue(result.awaitCompletion(10000L));
+        assertTrue(result.isDone());
+        assertEquals(4, result.getMessageCount());
+        assertTrue(result.getFailedSegments().isEmpty());
+        publisher.close();
+
+        ConsumerIterator<byte[], byte[]> iter = this.buildConsumer(topicName);
+        for (int i = 1; i <= 4; i++) {
+            assertEquals("Hello Kafka " + i, new String(iter.next().message(), StandardCharsets.UTF_8));
+        }
+        try {
+            iter.next();
+            fail();
+        } catch (ConsumerTimeoutException e) {
+            // that's OK since this is the Kafka mechanism to unblock
+        }
+    }
+
+    @Test
+    public void validatePublishResultExpiry() {
+        KafkaPublisher.PublishResult result = new KafkaPublisher.PublishResult();
+        result.sending(0);
+        result.sending(1);
+        result.sending(2);
+        result.seal();
+        result.acknowledged(0, true);
+        result.acknowledged(2, false);
+        assertFalse(result.isDone());
+
+        result.expire();
+        assertTrue(result.isDone());
+        // acknowledgements after expiry are ignored
+        result.acknowledged(1, true);
+        BitSet failedSegments = result.getFailedSegments();
+        assertEquals(2, failedSegments.cardinality());
+        assertTrue(failedSegments.get(1));
+        assertTrue(failedSegments.get(2));
+        assertEquals(3, result.getMessageCount());
+    }
+
     private Properties buildProducerProperties() {
         Properties kafkaProperties = new Properties();
         kafkaProperties.setProperty("bootstrap.servers", "0.0.0.0:" + kafkaLocal.getKafkaPort());
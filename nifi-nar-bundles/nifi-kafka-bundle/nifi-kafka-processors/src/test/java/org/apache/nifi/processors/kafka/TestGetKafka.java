@@ -18,8 +18,11 @@ package org.apache.nifi.processors.kafka;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.BasicConfigurator;
@@ -109,6 +112,77 @@ public class TestGetKafka {
         mff.assertContentEquals("Hello\nGood-bye");
     }
 
+    @Test
+    public void testWithPrefetchBuffer() {
+        final List<String> messages = new ArrayList<>();
+        messages.add("Hello");
+        messages.add("Good-bye");
+        messages.add("Hi");
+
+        final PrefetchingTestableProcessor proc = new PrefetchingTestableProcessor(null, messages);
+        final TestRunner runner = TestRunners.newTestRunner(proc);
+        runner.setProperty(GetKafka.ZOOKEEPER_CONNECTION_STRING, "localhost:2181");
+        runner.setProperty(GetKafka.TOPIC, "testX");
+        runner.setProperty(GetKafka.KAFKA_TIMEOUT, "3 secs");
+        runner.setProperty(GetKafka.ZOOKEEPER_TIMEOUT, "3 secs");
+        runner.setProperty(GetKafka.MESSAGE_DEMARCATOR, "\\n");
+        runner.setProperty(GetKafka.BATCH_SIZE, "2");
+        runner.setProperty(GetKafka.PREFETCH_BUFFER_SIZE, "10");
+
+        runner.run();
+
+        // all prefetched messages of the partition are written at once
+        runner.assertAllFlowFilesTransferred(GetKafka.REL_SUCCESS, 2);
+        final List<MockFlowFile> flowFiles = runner.getFlowFilesForRelationship(GetKafka.REL_SUCCESS);
+        flowFiles.get(0).assertContentEquals("Hello\nGood-bye");
+        flowFiles.get(1).assertContentEquals("Hi");
+    }
+
+    private static class PrefetchingTestableProcessor extends TestableProcessor {
+
+        private final Iterator<String> messageItr;
+
+        public PrefetchingTestableProcessor(final byte[] key, final List<String> messages) {
+            super(key, messages);
+            messageItr = messages.iterator();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void createConsumers(ProcessContext context) {
+            final CountDownLatch exhausted = new CountDownLatch(1);
+            final ConsumerIterator<byte[], byte[]> itr = Mockito.mock(ConsumerIterator.class);
+            Mockito.doAnswer(new Answer<Boolean>() {
+                @Override
+                public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                    final boolean hasNext = messageItr.hasNext();
+                    if (!hasNext) {
+                        exhausted.countDown();
+                    }
+                    return hasNext;
+                }
+            }).when(itr).hasNext();
+            Mockito.doAnswer(new Answer<MessageAndMetadata<byte[], byte[]>>() {
+                @Override
+                public MessageAndMetadata<byte[], byte[]> answer(final InvocationOnMock invocation) throws Throwable {
+                    final MessageAndMetadata<byte[], byte[]> mam = Mockito.mock(MessageAndMetadata.class);
+                    Mockito.when(mam.partition()).thenReturn(0);
+                    Mockito.when(mam.message()).thenReturn(messageItr.next().getBytes());
+                    return mam;
+                }
+            }).when(itr).next();
+
+            startPrefetching(Collections.singletonList(itr), context.getProperty(PREFETCH_BUFFER_SIZE).asInteger());
+            try {
+                // wait for the background thread to buffer all messages so that the result is deterministic
+                exhausted.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.createConsumers(context);
+        }
+    }
+
     private static class TestableProcessor extends GetKafka {
 
         private final byte[] key;
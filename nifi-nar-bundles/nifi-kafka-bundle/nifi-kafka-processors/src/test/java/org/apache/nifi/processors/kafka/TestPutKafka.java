@@ -17,6 +17,7 @@
 package org.apache.nifi.processors.kafka;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -32,6 +33,7 @@ import java.util.Properties;
 import org.apache.nifi.processors.kafka.test.EmbeddedKafka;
 import org.apache.nifi.processors.kafka.test.EmbeddedKafkaProducerHelper;
 import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.MockProcessContext;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.AfterClass;
@@ -252,6 +254,81 @@ public class TestPutKafka {
         runner.shutdown();
     }
 
+    @Test
+    public void testPipelinedDelimitedMessages() {
+        String topicName = "testPipelinedDelimitedMessages";
+        PutKafka putKafka = new PutKafka();
+        TestRunner runner = TestRunners.newTestRunner(putKafka);
+        runner.setProperty(PutKafka.TOPIC, topicName);
+        runner.setProperty(PutKafka.CLIENT_NAME, "foo");
+        runner.setProperty(PutKafka.SEED_BROKERS, "localhost:" + kafkaLocal.getKafkaPort());
+        runner.setProperty(PutKafka.MESSAGE_DELIMITER, "\n");
+        // smaller than two messages, so that sending has to wait for acknowledgements
+        runner.setProperty(PutKafka.MAX_IN_FLIGHT_SIZE, "10 B");
+
+        for (int i = 0; i < 3; i++) {
+            runner.enqueue(("Hello " + i + "\nGoodbye " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        runner.run(5);
+
+        runner.assertAllFlowFilesTransferred(PutKafka.REL_SUCCESS, 3);
+        ConsumerIterator<byte[], byte[]> consumer = this.buildConsumer(topicName);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Hello " + i, new String(consumer.next().message(), StandardCharsets.UTF_8));
+            assertEquals("Goodbye " + i, new String(consumer.next().message(), StandardCharsets.UTF_8));
+        }
+        try {
+            consumer.next();
+            fail();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testEmptyQueueDoesNotYield() {
+        PutKafka putKafka = new PutKafka();
+        TestRunner runner = TestRunners.newTestRunner(putKafka);
+        runner.setProperty(PutKafka.TOPIC, "testEmptyQueueDoesNotYield");
+        runner.setProperty(PutKafka.CLIENT_NAME, "foo");
+        runner.setProperty(PutKafka.SEED_BROKERS, "localhost:" + kafkaLocal.getKafkaPort());
+
+        runner.run();
+
+        runner.assertTransferCount(PutKafka.REL_SUCCESS, 0);
+        runner.assertTransferCount(PutKafka.REL_FAILURE, 0);
+        assertFalse(((MockProcessContext) runner.getProcessContext()).isYieldCalled());
+    }
+
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testPipelinedPerformance() {
+        final int flowFileCount = 20000;
+        final byte[] content = "Hello Kafka 1\nHello Kafka 2\nHello Kafka 3\nHello Kafka 4".getBytes(StandardCharsets.UTF_8);
+        for (final String maxInFlight : new String[] { null, "1 MB" }) {
+            TestRunner runner = TestRunners.newTestRunner(new PutKafka());
+            runner.setProperty(PutKafka.TOPIC, "testPipelinedPerformance");
+            runner.setProperty(PutKafka.CLIENT_NAME, "foo");
+            runner.setProperty(PutKafka.SEED_BROKERS, "localhost:" + kafkaLocal.getKafkaPort());
+            runner.setProperty(PutKafka.MESSAGE_DELIMITER, "\n");
+            runner.setProperty(PutKafka.DELIVERY_GUARANTEE, PutKafka.DELIVERY_ONE_NODE);
+            runner.setProperty(PutKafka.QUEUE_BUFFERING_MAX, "5 ms");
+            if (maxInFlight != null) {
+                runner.setProperty(PutKafka.MAX_IN_FLIGHT_SIZE, maxInFlight);
+            }
+            for (int i = 0; i < flowFileCount; i++) {
+                runner.enqueue(content);
+            }
+
+            final long start = System.nanoTime();
+            runner.run(flowFileCount + 100);
+            final long millis = (System.nanoTime() - start) / 1000000L;
+
+            runner.assertAllFlowFilesTransferred(PutKafka.REL_SUCCESS, flowFileCount);
+            System.out.println("Max In-Flight Data Size " + maxInFlight + ": sent " + flowFileCount + " FlowFiles in " + millis + " millis");
+        }
+    }
+
     private ConsumerIterator<byte[], byte[]> buildConsumer(String topic) {
         Properties props = new Properties();
         props.put("zookeeper.connect", "0.0.0.0:" + kafkaLocal.getZookeeperPort());
@@ -48,6 +48,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -151,12 +152,12 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     private final ConcurrentMap<String, AsyncQuerySubmission> querySubmissionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AsyncLineageSubmission> lineageSubmissionMap = new ConcurrentHashMap<>();
 
-    private final AtomicLong writerIndex = new AtomicLong(0L);
     private final AtomicLong storageDirectoryIndex = new AtomicLong(0L);
     private final AtomicLong bytesWrittenSinceRollover = new AtomicLong(0L);
     private final AtomicInteger recordsWrittenSinceRollover = new AtomicInteger(0);
     private final AtomicInteger rolloverCompletions = new AtomicInteger(0);
     private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final AtomicBoolean sizeRolloverPending = new AtomicBoolean(false);
 
     private final AtomicInteger dirtyWriterCount = new AtomicInteger(0);
 
@@ -657,16 +658,33 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     }
 
     private void persistRecord(final Iterable<ProvenanceEventRecord> records) {
+        final Collection<ProvenanceEventRecord> recordCollection;
+        if (records instanceof Collection) {
+            recordCollection = (Collection<ProvenanceEventRecord>) records;
+        } else {
+            recordCollection = new ArrayList<>();
+            for (final ProvenanceEventRecord record : records) {
+                recordCollection.add(record);
+            }
+        }
+
+        if (recordCollection.isEmpty()) {
+            return;
+        }
+
         final long totalJournalSize;
         readLock.lock();
         try {
             long bytesWritten = 0L;
 
             // obtain a lock on one of the RecordWriter's so that no other thread is able to write to this writer until we're finished.
-            // Although the writer itself is thread-safe, we need to generate an event id and then write the event
-            // atomically, so we need to do this with a lock.
+            // Although the writer itself is thread-safe, we need to generate the event id's and then write the events
+            // atomically, so we need to do this with a lock. Each thread starts with the writer that it is assigned to, based on
+            // its Thread ID, so that threads generally do not contend with one another for the same writer; only if that
+            // writer is locked do we move on to the next writer.
             boolean locked = false;
             RecordWriter writer;
+            int writerOffset = 0;
             do {
                 final RecordWriter[] recordWriters = this.writers;
                 final int numDirty = dirtyWriterCount.get();
@@ -675,17 +693,20 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                         + "This most often happens as a result of the repository running out of disk space or the JMV running out of memory.");
                 }
 
-                final long idx = writerIndex.getAndIncrement();
+                final long idx = Thread.currentThread().getId() + writerOffset++;
                 writer = recordWriters[(int) (idx % recordWriters.length)];
                 locked = writer.tryLock();
             } while (!locked);
 
             try {
                 try {
-                    for (final ProvenanceEventRecord nextRecord : records) {
-                        final long eventId = idGenerator.getAndIncrement();
+                    // Allocate the event id's for all of the records at once. Because we hold the lock on the writer,
+                    // the id's that are written to the journal are still monotonically increasing.
+                    long eventId = idGenerator.getAndAdd(recordCollection.size());
+                    for (final ProvenanceEventRecord nextRecord : recordCollection) {
                         bytesWritten += writer.writeRecord(nextRecord, eventId);
                         logger.trace("Wrote record with ID {} to {}", eventId, writer);
+                        eventId++;
                     }
 
                     if (alwaysSync) {
@@ -743,29 +764,79 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             readLock.unlock();
         }
 
-        // If the total number of bytes written to the Journals is >= configured max, we need to roll over
-        if (totalJournalSize >= configuration.getMaxEventFileCapacity()) {
-            writeLock.lock();
+        // If the total number of bytes written to the Journals is >= configured max, we need to roll over. Only a single thread
+        // needs to do so; any other thread that reaches the threshold at the same time continues on rather than waiting in line
+        // for the write lock, only to find that the rollover has already been performed.
+        if (totalJournalSize >= configuration.getMaxEventFileCapacity() && sizeRolloverPending.compareAndSet(false, true)) {
             try {
-                logger.debug("Obtained write lock to perform rollover based on file size");
-
-                // now that we've obtained the lock, we need to verify that we still need to do the rollover, as
-                // another thread may have just done it.
-                if (bytesWrittenSinceRollover.get() >= configuration.getMaxEventFileCapacity()) {
-                    try {
-                        rollover(false);
-                    } catch (final IOException e) {
-                        logger.error("Failed to Rollover Provenance Event Repository file due to {}", e.toString());
-                        logger.error("", e);
-                        eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to Rollover Provenance Event Log due to " + e.toString());
-                    }
-                }
+                rolloverBySize();
+            } catch (final IOException e) {
+                logger.error("Failed to Rollover Provenance Event Repository file due to {}", e.toString());
+                logger.error("", e);
+                eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to Rollover Provenance Event Log due to " + e.toString());
             } finally {
-                writeLock.unlock();
+                sizeRolloverPending.set(false);
             }
         }
     }
 
+    /**
+     * Rolls over the journals because they have reached the maximum event file capacity. The write lock is held only
+     * while the new writers are swapped in; the old journals are closed and handed off to be merged after it is released,
+     * so that threads registering events do not wait for the journals to be flushed and closed. If backpressure must be
+     * applied, the entire rollover is performed while holding the write lock instead, as blocking the threads that
+     * register events is then the intent.
+     *
+     * @throws IOException if unable to create the new journals
+     */
+    private void rolloverBySize() throws IOException {
+        final RecordWriter[] writersToClose;
+        final int recordsWritten;
+        writeLock.lock();
+        try {
+            logger.debug("Obtained write lock to perform rollover based on file size");
+
+            // now that we've obtained the lock, we need to verify that we still need to do the rollover, as
+            // another thread may have just done it.
+            if (!configuration.isAllowRollover() || bytesWrittenSinceRollover.get() < configuration.getMaxEventFileCapacity()) {
+                return;
+            }
+
+            if (isBackpressureNeeded()) {
+                rollover(false);
+                return;
+            }
+
+            writersToClose = writers;
+            writers = createWriters(configuration, idGenerator.get());
+            dirtyWriterCount.set(0);
+            recordsWritten = recordsWrittenSinceRollover.getAndSet(0);
+            bytesWrittenSinceRollover.set(0);
+            streamStartTime.set(System.currentTimeMillis());
+        } finally {
+            writeLock.unlock();
+        }
+
+        // Writers are only used while holding the read lock, and we obtained the write lock after all of those threads
+        // released it, so no thread is still writing to the old journals.
+        final List<File> journalsToMerge = closeWriters(writersToClose);
+        try {
+            scheduleJournalMerge(journalsToMerge, recordsWritten);
+        } catch (final RejectedExecutionException ree) {
+            // the repository was closed in the meantime; the journals are merged when it is next initialized
+            logger.info("Provenance Repository was closed before journals {} could be merged; they will be merged on restart", journalsToMerge);
+        }
+    }
+
+    /**
+     * @return whether there are so many journals waiting to be merged, or the repository is so large, that rolling over
+     *         must block the threads that register events until the repository catches up
+     */
+    private boolean isBackpressureNeeded() {
+        return getJournalCount() > configuration.getJournalCount() * 5
+            || getSize(getLogFiles(), 0L) > (long) (configuration.getMaxStorageCapacity() * 1.1D);
+    }
+
     /**
      * @return all of the Provenance Event Log Files (not the journals, the merged files) available across all storage directories.
      */
@@ -1180,98 +1251,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         // If this is the first time we're creating the out stream, or if we
         // have written something to the stream, then roll over
         if (force || recordsWrittenSinceRollover.get() > 0L || dirtyWriterCount.get() > 0) {
-            final List<File> journalsToMerge = new ArrayList<>();
-            for (final RecordWriter writer : writers) {
-                if (!writer.isClosed()) {
-                    final File writerFile = writer.getFile();
-                    journalsToMerge.add(writerFile);
-                    try {
-                        writer.close();
-                    } catch (final IOException ioe) {
-                        logger.warn("Failed to close {} due to {}", writer, ioe.toString());
-                        if (logger.isDebugEnabled()) {
-                            logger.warn("", ioe);
-                        }
-                    }
-                }
-            }
-
-            if (logger.isDebugEnabled()) {
-                if (journalsToMerge.isEmpty()) {
-                    logger.debug("No journals to merge; all RecordWriters were already closed");
-                } else {
-                    logger.debug("Going to merge {} files for journals starting with ID {}", journalsToMerge.size(), LuceneUtil.substringBefore(journalsToMerge.get(0).getName(), "."));
-                }
-            }
-
-            // Choose a storage directory to store the merged file in.
-            final long storageDirIdx = storageDirectoryIndex.getAndIncrement();
-            final List<File> storageDirs = configuration.getStorageDirectories();
-            final File storageDir = storageDirs.get((int) (storageDirIdx % storageDirs.size()));
-
-            Future<?> future = null;
-            if (!journalsToMerge.isEmpty()) {
-                // Run the rollover logic in a background thread.
-                final AtomicReference<Future<?>> futureReference = new AtomicReference<>();
-                final int recordsWritten = recordsWrittenSinceRollover.getAndSet(0);
-                final Runnable rolloverRunnable = new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            final File fileRolledOver;
-
-                            try {
-                                fileRolledOver = mergeJournals(journalsToMerge, getMergeFile(journalsToMerge, storageDir), eventReporter);
-                            } catch (final IOException ioe) {
-                                logger.error("Failed to merge Journal Files {} into a Provenance Log File due to {}", journalsToMerge, ioe.toString());
-                                logger.error("", ioe);
-                                return;
-                            }
-
-                            if (fileRolledOver == null) {
-                                logger.debug("Couldn't merge journals. Will try again in 10 seconds. journalsToMerge: {}, storageDir: {}", journalsToMerge, storageDir);
-                                return;
-                            }
-                            final File file = fileRolledOver;
-
-                            // update our map of id to Path
-                            // We need to make sure that another thread doesn't also update the map at the same time. We cannot
-                            // use the write lock when purging old events, and we want to use the same approach here.
-                            boolean updated = false;
-                            final Long fileFirstEventId = Long.valueOf(LuceneUtil.substringBefore(fileRolledOver.getName(), "."));
-                            while (!updated) {
-                                final SortedMap<Long, Path> existingPathMap = idToPathMap.get();
-                                final SortedMap<Long, Path> newIdToPathMap = new TreeMap<>(new PathMapComparator());
-                                newIdToPathMap.putAll(existingPathMap);
-                                newIdToPathMap.put(fileFirstEventId, file.toPath());
-                                updated = idToPathMap.compareAndSet(existingPathMap, newIdToPathMap);
-                            }
-
-                            logger.info("Successfully Rolled over Provenance Event file containing {} records", recordsWritten);
-                            rolloverCompletions.getAndIncrement();
-
-                            // We have finished successfully. Cancel the future so that we don't run anymore
-                            Future<?> future;
-                            while ((future = futureReference.get()) == null) {
-                                try {
-                                    Thread.sleep(10L);
-                                } catch (final InterruptedException ie) {
-                                }
-                            }
-
-                            future.cancel(false);
-                        } catch (final Throwable t) {
-                            logger.error("Failed to rollover Provenance repository due to {}", t.toString());
-                            logger.error("", t);
-                        }
-                    }
-                };
-
-                // We are going to schedule the future to run immediately and then repeat every 10 seconds. This allows us to keep retrying if we
-                // fail for some reason. When we succeed, the Runnable will cancel itself.
-                future = rolloverExecutor.scheduleWithFixedDelay(rolloverRunnable, 0, 10, TimeUnit.SECONDS);
-                futureReference.set(future);
-            }
+            final List<File> journalsToMerge = closeWriters(writers);
+            final Future<?> future = scheduleJournalMerge(journalsToMerge, recordsWrittenSinceRollover.getAndSet(0));
 
             streamStartTime.set(System.currentTimeMillis());
             bytesWrittenSinceRollover.set(0);
@@ -1345,6 +1326,117 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     }
 
 
+    /**
+     * Closes the given writers, unless they are already closed.
+     *
+     * @return the journal files of the writers that were closed
+     */
+    private List<File> closeWriters(final RecordWriter[] writersToClose) {
+        final List<File> journalsToMerge = new ArrayList<>();
+        for (final RecordWriter writer : writersToClose) {
+            if (!writer.isClosed()) {
+                final File writerFile = writer.getFile();
+                journalsToMerge.add(writerFile);
+                try {
+                    writer.close();
+                } catch (final IOException ioe) {
+                    logger.warn("Failed to close {} due to {}", writer, ioe.toString());
+                    if (logger.isDebugEnabled()) {
+                        logger.warn("", ioe);
+                    }
+                }
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            if (journalsToMerge.isEmpty()) {
+                logger.debug("No journals to merge; all RecordWriters were already closed");
+            } else {
+                logger.debug("Going to merge {} files for journals starting with ID {}", journalsToMerge.size(), LuceneUtil.substringBefore(journalsToMerge.get(0).getName(), "."));
+            }
+        }
+
+        return journalsToMerge;
+    }
+
+    /**
+     * Schedules the given journals to be merged into a Provenance Event Log File in the background, retrying every
+     * 10 seconds until the merge succeeds.
+     *
+     * @return the future of the merge, or <code>null</code> if there are no journals to merge
+     */
+    private Future<?> scheduleJournalMerge(final List<File> journalsToMerge, final int recordsWritten) {
+        // Choose a storage directory to store the merged file in.
+        final long storageDirIdx = storageDirectoryIndex.getAndIncrement();
+        final List<File> storageDirs = configuration.getStorageDirectories();
+        final File storageDir = storageDirs.get((int) (storageDirIdx % storageDirs.size()));
+
+        Future<?> future = null;
+        if (!journalsToMerge.isEmpty()) {
+            // Run the rollover logic in a background thread.
+            final AtomicReference<Future<?>> futureReference = new AtomicReference<>();
+            final Runnable rolloverRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final File fileRolledOver;
+
+                        try {
+                            fileRolledOver = mergeJournals(journalsToMerge, getMergeFile(journalsToMerge, storageDir), eventReporter);
+                        } catch (final IOException ioe) {
+                            logger.error("Failed to merge Journal Files {} into a Provenance Log File due to {}", journalsToMerge, ioe.toString());
+                            logger.error("", ioe);
+                            return;
+                        }
+
+                        if (fileRolledOver == null) {
+                            logger.debug("Couldn't merge journals. Will try again in 10 seconds. journalsToMerge: {}, storageDir: {}", journalsToMerge, storageDir);
+                            return;
+                        }
+                        final File file = fileRolledOver;
+
+                        // update our map of id to Path
+                        // We need to make sure that another thread doesn't also update the map at the same time. We cannot
+                        // use the write lock when purging old events, and we want to use the same approach here.
+                        boolean updated = false;
+                        final Long fileFirstEventId = Long.valueOf(LuceneUtil.substringBefore(fileRolledOver.getName(), "."));
+                        while (!updated) {
+                            final SortedMap<Long, Path> existingPathMap = idToPathMap.get();
+                            final SortedMap<Long, Path> newIdToPathMap = new TreeMap<>(new PathMapComparator());
+                            newIdToPathMap.putAll(existingPathMap);
+                            newIdToPathMap.put(fileFirstEventId, file.toPath());
+                            updated = idToPathMap.compareAndSet(existingPathMap, newIdToPathMap);
+                        }
+
+                        logger.info("Successfully Rolled over Provenance Event file containing {} records", recordsWritten);
+                        rolloverCompletions.getAndIncrement();
+
+                        // We have finished successfully. Cancel the future so that we don't run anymore
+                        Future<?> future;
+                        while ((future = futureReference.get()) == null) {
+                            try {
+                                Thread.sleep(10L);
+                            } catch (final InterruptedException ie) {
+                            }
+                        }
+
+                        future.cancel(false);
+                    } catch (final Throwable t) {
+                        logger.error("Failed to rollover Provenance repository due to {}", t.toString());
+                        logger.error("", t);
+                    }
+                }
+            };
+
+            // We are going to schedule the future to run immediately and then repeat every 10 seconds. This allows us to keep retrying if we
+            // fail for some reason. When we succeed, the Runnable will cancel itself.
+            future = rolloverExecutor.scheduleWithFixedDelay(rolloverRunnable, 0, 10, TimeUnit.SECONDS);
+            futureReference.set(future);
+        }
+
+        return future;
+    }
+
     // protected for use in unit tests
     protected Set<File> recoverJournalFiles() throws IOException {
         if (!configuration.isAllowRollover()) {
@@ -1215,6 +1215,151 @@ public class TestPersistentProvenanceRepository {
         assertEquals(10000, counter);
     }
 
+    @Test
+    public void testConcurrentBatchesHaveContiguousEventIds() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(3, TimeUnit.SECONDS);
+        config.setJournalCount(4);
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter());
+
+        final int numThreads = 10;
+        final int batchesPerThread = 100;
+        final int eventsPerBatch = 5;
+
+        final Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int batch = 0; batch < batchesPerThread; batch++) {
+                        final Map<String, String> attributes = new HashMap<>();
+                        attributes.put("uuid", UUID.randomUUID().toString());
+                        attributes.put("batch", threadIndex + "-" + batch);
+
+                        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+                        builder.setEventTime(System.currentTimeMillis());
+                        builder.setEventType(ProvenanceEventType.RECEIVE);
+                        builder.setTransitUri("nifi://unit-test");
+                        builder.fromFlowFile(createFlowFile(batch, 3000L, attributes));
+                        builder.setComponentId("1234");
+                        builder.setComponentType("dummy processor");
+
+                        final List<ProvenanceEventRecord> events = new ArrayList<>(eventsPerBatch);
+                        for (int j = 0; j < eventsPerBatch; j++) {
+                            events.add(builder.build());
+                        }
+
+                        repo.registerEvents(events);
+                    }
+                }
+            });
+        }
+
+        for (final Thread t : threads) {
+            t.start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+
+        repo.waitForRollover();
+
+        final Map<String, List<Long>> eventIdsByBatch = new HashMap<>();
+        final File storageDir = config.getStorageDirectories().get(0);
+        long counter = 0;
+        for (final File file : storageDir.listFiles()) {
+            if (file.isFile()) {
+                try (RecordReader reader = RecordReaders.newRecordReader(file, null, 2048)) {
+                    ProvenanceEventRecord r = null;
+
+                    while ((r = reader.nextRecord()) != null) {
+                        assertEquals(counter++, r.getEventId());
+
+                        final String batch = r.getAttributes().get("batch");
+                        List<Long> eventIds = eventIdsByBatch.get(batch);
+                        if (eventIds == null) {
+                            eventIds = new ArrayList<>();
+                            eventIdsByBatch.put(batch, eventIds);
+                        }
+                        eventIds.add(r.getEventId());
+                    }
+                }
+            }
+        }
+
+        assertEquals(numThreads * batchesPerThread * eventsPerBatch, counter);
+        assertEquals(numThreads * batchesPerThread, eventIdsByBatch.size());
+        for (final List<Long> eventIds : eventIdsByBatch.values()) {
+            assertEquals(eventsPerBatch, eventIds.size());
+            for (int i = 1; i < eventIds.size(); i++) {
+                assertEquals(eventIds.get(0) + i, eventIds.get(i).longValue());
+            }
+        }
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testRegisterEventsThroughputWithManyThreads() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileCapacity(64 * 1024 * 1024L);
+        config.setMaxEventFileLife(5, TimeUnit.MINUTES);
+        config.setCompressOnRollover(false);
+        config.setJournalCount(16);
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "xyz");
+        attributes.put("xyz", "abc");
+        attributes.put("uuid", UUID.randomUUID().toString());
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        // register events in batches, as a Process Session does when it is committed
+        final List<ProvenanceEventRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(builder.build());
+        }
+
+        final int numThreads = 32;
+        final int batchesPerThread = 10000;
+        final Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < batchesPerThread; i++) {
+                    repo.registerEvents(batch);
+                }
+            }
+        };
+
+        final Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(r);
+        }
+
+        final long start = System.nanoTime();
+        for (final Thread t : threads) {
+            t.start();
+        }
+
+        for (final Thread t : threads) {
+            t.join();
+        }
+        final long nanos = System.nanoTime() - start;
+
+        final long events = (long) numThreads * batchesPerThread * batch.size();
+        final long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nanos));
+        System.out.println(millis + " millis for " + numThreads + " threads to register " + events + " events (" + (events * 1000L / millis) + " events/sec)");
+    }
+
     @Test
     public void testTruncateAttributes() throws IOException, InterruptedException {
         final RepositoryConfiguration config = createConfiguration();
@@ -56,7 +56,8 @@ import org.apache.nifi.util.StopWatch;
         + " Streaming is used so arbitrarily large result sets are supported. This processor can be scheduled to run on "
         + "a timer, or cron expression, using the standard scheduling methods, or it can be triggered by an incoming FlowFile. "
         + "If it is triggered by an incoming FlowFile, then attributes of that FlowFile will be available when evaluating the "
-        + "select query. FlowFile attribute 'executesql.row.count' indicates how many rows were selected.")
+        + "select query. FlowFile attribute 'executesql.row.count' indicates how many rows were selected. If the Max Rows Per Flow File "
+        + "property is set, the result set is split across several FlowFiles as it is read, each of which indicates how many rows it contains.")
 public class ExecuteSQL extends AbstractProcessor {
 
     public static final String RESULT_ROW_COUNT = "executesql.row.count";
@@ -97,6 +98,17 @@ public class ExecuteSQL extends AbstractProcessor {
             .sensitive(false)
             .build();
 
+    public static final PropertyDescriptor MAX_ROWS_PER_FLOW_FILE = new PropertyDescriptor.Builder()
+            .name("Max Rows Per Flow File")
+            .description("The maximum number of result rows that will be included in a single FlowFile. If the query returns more rows, "
+                    + "the incoming FlowFile (or the FlowFile created for the query) will contain the first rows and a child FlowFile will be "
+                    + "created for each subsequent set of rows. This allows very large result sets to be written as several smaller FlowFiles "
+                    + "while the result set is being read. If the value specified is zero, all rows are written to a single FlowFile.")
+            .defaultValue("0")
+            .required(true)
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
     private final List<PropertyDescriptor> propDescriptors;
 
     public ExecuteSQL() {
@@ -109,6 +121,7 @@ public class ExecuteSQL extends AbstractProcessor {
         pds.add(DBCP_SERVICE);
         pds.add(SQL_SELECT_QUERY);
         pds.add(QUERY_TIMEOUT);
+        pds.add(MAX_ROWS_PER_FLOW_FILE);
         propDescriptors = Collections.unmodifiableList(pds);
     }
 
@@ -140,6 +153,7 @@ public class ExecuteSQL extends AbstractProcessor {
         final DBCPService dbcpService = context.getProperty(DBCP_SERVICE).asControllerService(DBCPService.class);
         final String selectQuery = context.getProperty(SQL_SELECT_QUERY).evaluateAttributeExpressions(fileToProcess).getValue();
         final Integer queryTimeout = context.getProperty(QUERY_TIMEOUT).asTimePeriod(TimeUnit.SECONDS).intValue();
+        final int maxRowsPerFlowFile = context.getProperty(MAX_ROWS_PER_FLOW_FILE).asInteger();
         final StopWatch stopWatch = new StopWatch(true);
 
         try (final Connection con = dbcpService.getConnection();
@@ -149,27 +163,44 @@ public class ExecuteSQL extends AbstractProcessor {
             if (fileToProcess == null) {
                 fileToProcess = session.create();
             }
-            fileToProcess = session.write(fileToProcess, new OutputStreamCallback() {
-                @Override
-                public void process(final OutputStream out) throws IOException {
+
+            logger.debug("Executing query {}", new Object[]{selectQuery});
+            final ResultSet resultSet = st.executeQuery(selectQuery);
+            fileToProcess = writeResultSet(session, fileToProcess, resultSet, maxRowsPerFlowFile, nrOfRows);
+            logger.info("{} contains {} Avro records; transferring to 'success'",
+                    new Object[]{fileToProcess, nrOfRows.get()});
+            long totalRows = nrOfRows.get();
+
+            // If the number of rows per FlowFile is limited, keep creating FlowFiles until the result set is exhausted
+            final List<FlowFile> additionalFlowFiles = new ArrayList<>();
+            try {
+                while (maxRowsPerFlowFile > 0 && nrOfRows.get() == maxRowsPerFlowFile) {
+                    FlowFile additionalFlowFile = session.create(fileToProcess);
                     try {
-                        logger.debug("Executing query {}", new Object[]{selectQuery});
-                        final ResultSet resultSet = st.executeQuery(selectQuery);
-                        nrOfRows.set(JdbcCommon.convertToAvroStream(resultSet, out));
-                    } catch (final SQLException e) {
-                        throw new ProcessException(e);
+                        additionalFlowFile = writeResultSet(session, additionalFlowFile, resultSet, maxRowsPerFlowFile, nrOfRows);
+                    } catch (final ProcessException pe) {
+                        session.remove(additionalFlowFile);
+                        throw pe;
                     }
-                }
-            });
 
-            // set attribute how many rows were selected
-            fileToProcess = session.putAttribute(fileToProcess, RESULT_ROW_COUNT, nrOfRows.get().toString());
+                    if (nrOfRows.get() == 0) {
+                        session.remove(additionalFlowFile);
+                    } else {
+                        logger.info("{} contains {} Avro records; transferring to 'success'",
+                                new Object[]{additionalFlowFile, nrOfRows.get()});
+                        additionalFlowFiles.add(additionalFlowFile);
+                        totalRows += nrOfRows.get();
+                    }
+                }
+            } catch (final ProcessException pe) {
+                session.remove(additionalFlowFiles);
+                throw pe;
+            }
 
-            logger.info("{} contains {} Avro records; transferring to 'success'",
-                    new Object[]{fileToProcess, nrOfRows.get()});
-            session.getProvenanceReporter().modifyContent(fileToProcess, "Retrieved " + nrOfRows.get() + " rows",
+            session.getProvenanceReporter().modifyContent(fileToProcess, "Retrieved " + totalRows + " rows",
                     stopWatch.getElapsed(TimeUnit.MILLISECONDS));
             session.transfer(fileToProcess, REL_SUCCESS);
+            session.transfer(additionalFlowFiles, REL_SUCCESS);
         } catch (final ProcessException | SQLException e) {
             if (fileToProcess == null) {
                 // This can happen if any exceptions occur while setting up the connection, statement, etc.
@@ -190,4 +221,30 @@ public class ExecuteSQL extends AbstractProcessor {
             }
         }
     }
+
+    /**
+     * Writes up to <code>maxRows</code> rows of the given ResultSet to the given FlowFile as Avro records
+     *
+     * @param session the session that the FlowFile belongs to
+     * @param flowFile the FlowFile to write to
+     * @param resultSet the result set to read from
+     * @param maxRows the maximum number of rows to write, or 0 to write all of the remaining rows
+     * @param nrOfRows set to the number of rows that were written
+     * @return the FlowFile, with an attribute indicating how many rows it contains
+     */
+    private FlowFile writeResultSet(final ProcessSession session, final FlowFile flowFile, final ResultSet resultSet, final int maxRows, final LongHolder nrOfRows) {
+        FlowFile resultSetFlowFile = session.write(flowFile, new OutputStreamCallback() {
+            @Override
+            public void process(final OutputStream out) throws IOException {
+                try {
+                    nrOfRows.set(JdbcCommon.convertToAvroStream(resultSet, out, null, null, maxRows));
+                } catch (final SQLException e) {
+                    throw new ProcessException(e);
+                }
+            }
+        });
+
+        // set attribute how many rows were selected
+        return session.putAttribute(resultSetFlowFile, RESULT_ROW_COUNT, nrOfRows.get().toString());
+    }
 }
@@ -58,6 +58,7 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
@@ -70,6 +71,7 @@ import org.apache.nifi.processor.ProcessorInitializationContext;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.processors.standard.util.DirectoryScanner;
 
 @TriggerWhenEmpty
 @InputRequirement(Requirement.INPUT_FORBIDDEN)
@@ -199,6 +201,7 @@ public class GetFile extends AbstractProcessor {
     private final Lock queueLock = new ReentrantLock();
 
     private final Lock listingLock = new ReentrantLock();
+    private final DirectoryScanner directoryScanner = new DirectoryScanner();
 
     private final AtomicLong queueLastUpdated = new AtomicLong(0L);
 
@@ -240,6 +243,11 @@ public class GetFile extends AbstractProcessor {
         fileQueue.clear();
     }
 
+    @OnStopped
+    public void onStopped() {
+        directoryScanner.shutdown();
+    }
+
     private FileFilter createFileFilter(final ProcessContext context) {
         final long minSize = context.getProperty(MIN_SIZE).asDataSize(DataUnit.B).longValue();
         final Double maxSize = context.getProperty(MAX_SIZE).asDataSize(DataUnit.B);
@@ -304,21 +312,7 @@ public class GetFile extends AbstractProcessor {
             getLogger().warn("No read permission on directory {}", new Object[]{directory.toString()});
         }
 
-        final File[] children = directory.listFiles();
-        if (children == null) {
-            return queue;
-        }
-
-        for (final File child : children) {
-            if (child.isDirectory()) {
-                if (recurseSubdirectories) {
-                    queue.addAll(performListing(child, filter, recurseSubdirectories));
-                }
-            } else if (filter.accept(child)) {
-                queue.add(child);
-            }
-        }
-
+        queue.addAll(directoryScanner.scan(directory, recurseSubdirectories, filter));
         return queue;
     }
 
@@ -54,6 +54,7 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.state.Scope;
@@ -63,6 +64,7 @@ import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.ProcessorInitializationContext;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.processors.standard.util.DirectoryScanner;
 import org.apache.nifi.processors.standard.util.FileInfo;
 
 @TriggerSerially
@@ -185,6 +187,7 @@ public class ListFile extends AbstractListProcessor<FileInfo> {
     private List<PropertyDescriptor> properties;
     private Set<Relationship> relationships;
     private final AtomicReference<FileFilter> fileFilterRef = new AtomicReference<>();
+    private final DirectoryScanner directoryScanner = new DirectoryScanner();
 
     public static final String FILE_CREATION_TIME_ATTRIBUTE = "file.creationTime";
     public static final String FILE_LAST_MODIFY_TIME_ATTRIBUTE = "file.lastModifiedTime";
@@ -230,6 +233,11 @@ public class ListFile extends AbstractListProcessor<FileInfo> {
         fileFilterRef.set(createFileFilter(context));
     }
 
+    @OnStopped
+    public void onStopped() {
+        directoryScanner.shutdown();
+    }
+
     @Override
     protected Map<String, String> createAttributes(final FileInfo fileInfo, final ProcessContext context) {
         final Map<String, String> attributes = new HashMap<>();
@@ -326,23 +334,15 @@ public class ListFile extends AbstractListProcessor<FileInfo> {
     private List<FileInfo> scanDirectory(final File path, final FileFilter filter, final Boolean recurse,
                                          final Long minTimestamp) throws IOException {
         final List<FileInfo> listing = new ArrayList<>();
-        File[] files = path.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    if (recurse) {
-                        listing.addAll(scanDirectory(file, filter, true, minTimestamp));
-                    }
-                } else {
-                    if ((minTimestamp == null || file.lastModified() >= minTimestamp) && filter.accept(file)) {
-                        listing.add(new FileInfo.Builder()
-                                .directory(file.isDirectory())
-                                .filename(file.getName())
-                                .fullPathFileName(file.getAbsolutePath())
-                                .lastModifiedTime(file.lastModified())
-                                .build());
-                    }
-                }
+        for (final File file : directoryScanner.scan(path, recurse, filter)) {
+            final long lastModified = file.lastModified();
+            if (minTimestamp == null || lastModified >= minTimestamp) {
+                listing.add(new FileInfo.Builder()
+                        .directory(false)
+                        .filename(file.getName())
+                        .fullPathFileName(file.getAbsolutePath())
+                        .lastModifiedTime(lastModified)
+                        .build());
             }
         }
 
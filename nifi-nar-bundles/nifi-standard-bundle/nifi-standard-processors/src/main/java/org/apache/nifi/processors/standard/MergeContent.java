@@ -80,7 +80,6 @@ import org.apache.nifi.processor.util.FlowFileSessionWrapper;
 import org.apache.nifi.stream.io.BufferedInputStream;
 import org.apache.nifi.stream.io.BufferedOutputStream;
 import org.apache.nifi.stream.io.NonCloseableOutputStream;
-import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.util.FlowFilePackager;
 import org.apache.nifi.util.FlowFilePackagerV1;
 import org.apache.nifi.util.FlowFilePackagerV2;
@@ -560,28 +559,31 @@ public class MergeContent extends BinFiles {
             final ObjectHolder<String> bundleMimeTypeRef = new ObjectHolder<>(null);
             bundle = session.write(bundle, new OutputStreamCallback() {
                 @Override
-                public void process(final OutputStream out) throws IOException {
+                public void process(final OutputStream rawOut) throws IOException {
+                    final OutputStream out = new BufferedOutputStream(rawOut);
+                    writeContents(out);
+                    out.flush();
+                }
+
+                private void writeContents(final OutputStream out) throws IOException {
                     final byte[] header = getDelimiterContent(context, wrappers, HEADER);
                     if (header != null) {
                         out.write(header);
                     }
 
+                    // the demarcator is evaluated against the first FlowFile, so it is the same between every pair of FlowFiles
+                    final byte[] demarcator = getDelimiterContent(context, wrappers, DEMARCATOR);
+
                     boolean isFirst = true;
                     final Iterator<FlowFileSessionWrapper> itr = wrappers.iterator();
                     while (itr.hasNext()) {
                         final FlowFileSessionWrapper wrapper = itr.next();
-                        wrapper.getSession().read(wrapper.getFlowFile(), false, new InputStreamCallback() {
-                            @Override
-                            public void process(final InputStream in) throws IOException {
-                                StreamUtils.copy(in, out);
-                            }
-                        });
 
-                        if (itr.hasNext()) {
-                            final byte[] demarcator = getDelimiterContent(context, wrappers, DEMARCATOR);
-                            if (demarcator != null) {
-                                out.write(demarcator);
-                            }
+                        // export directly from the Content Repository rather than copying through a read callback
+                        wrapper.getSession().exportTo(wrapper.getFlowFile(), out);
+
+                        if (itr.hasNext() && demarcator != null) {
+                            out.write(demarcator);
                         }
 
                         final String flowFileMimeType = wrapper.getFlowFile().getAttribute(CoreAttributes.MIME_TYPE.key());
@@ -769,6 +771,18 @@ public class MergeContent extends BinFiles {
             this.mimeType = mimeType;
         }
 
+        private Map<String, String> getPackagedAttributes(final FlowFile flowFile) {
+            final Map<String, String> attributes = new HashMap<>(flowFile.getAttributes());
+
+            // for backward compatibility purposes, we add the "legacy" NiFi attributes
+            attributes.put("nf.file.name", attributes.get(CoreAttributes.FILENAME.key()));
+            attributes.put("nf.file.path", attributes.get(CoreAttributes.PATH.key()));
+            if (attributes.containsKey(CoreAttributes.MIME_TYPE.key())) {
+                attributes.put("content-type", attributes.get(CoreAttributes.MIME_TYPE.key()));
+            }
+            return attributes;
+        }
+
         @Override
         public FlowFile merge(final ProcessContext context, final ProcessSession session, final List<FlowFileSessionWrapper> wrappers) {
             FlowFile bundle = session.create(); // we don't pass the parents to the #create method because the parents belong to different sessions
@@ -783,20 +797,20 @@ public class MergeContent extends BinFiles {
 
                         for (final FlowFileSessionWrapper wrapper : wrappers) {
                             final FlowFile flowFile = wrapper.getFlowFile();
+
+                            // Version 3 content follows its header verbatim, so it can be exported directly from the
+                            // Content Repository; the older versions need the packager to read the content itself.
+                            if (packager instanceof FlowFilePackagerV3) {
+                                ((FlowFilePackagerV3) packager).writeHeader(out, getPackagedAttributes(flowFile), flowFile.getSize());
+                                wrapper.getSession().exportTo(flowFile, out);
+                                continue;
+                            }
+
                             wrapper.getSession().read(flowFile, false, new InputStreamCallback() {
                                 @Override
                                 public void process(final InputStream rawIn) throws IOException {
                                     try (final InputStream in = new BufferedInputStream(rawIn)) {
-                                        final Map<String, String> attributes = new HashMap<>(flowFile.getAttributes());
-
-                                        // for backward compatibility purposes, we add the "legacy" NiFi attributes
-                                        attributes.put("nf.file.name", attributes.get(CoreAttributes.FILENAME.key()));
-                                        attributes.put("nf.file.path", attributes.get(CoreAttributes.PATH.key()));
-                                        if (attributes.containsKey(CoreAttributes.MIME_TYPE.key())) {
-                                            attributes.put("content-type", attributes.get(CoreAttributes.MIME_TYPE.key()));
-                                        }
-
-                                        packager.packageFlowFile(in, out, attributes, flowFile.getSize());
+                                        packager.packageFlowFile(in, out, getPackagedAttributes(flowFile), flowFile.getSize());
                                     }
                                 }
                             });
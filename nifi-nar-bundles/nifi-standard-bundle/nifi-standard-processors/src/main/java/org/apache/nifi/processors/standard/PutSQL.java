@@ -26,6 +26,8 @@ import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.dbcp.DBCPService;
 import org.apache.nifi.flowfile.FlowFile;
@@ -60,11 +62,17 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -132,6 +140,16 @@ public class PutSQL extends AbstractProcessor {
         .allowableValues("true", "false")
         .defaultValue("false")
         .build();
+    static final PropertyDescriptor CONCURRENT_CONNECTIONS = new PropertyDescriptor.Builder()
+        .name("Concurrent Connections")
+        .description("FlowFiles that are pulled together are grouped by their SQL statement, and each statement is executed as a single batch. If this value is greater than 1, "
+            + "the batches for different statements are spread across up to this many connections from the JDBC Connection Pool and executed in parallel, each connection "
+            + "committing its own transaction. This is ignored if Obtain Generated Keys is true and for FlowFiles that belong to a fragmented transaction, which are always "
+            + "executed on a single connection in order.")
+        .required(true)
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .defaultValue("1")
+        .build();
 
     static final Relationship REL_SUCCESS = new Relationship.Builder()
         .name("success")
@@ -154,6 +172,8 @@ public class PutSQL extends AbstractProcessor {
     private static final String FRAGMENT_INDEX_ATTR = "fragment.index";
     private static final String FRAGMENT_COUNT_ATTR = "fragment.count";
 
+    private volatile ExecutorService executor;
+
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
         final List<PropertyDescriptor> properties = new ArrayList<>();
@@ -162,6 +182,7 @@ public class PutSQL extends AbstractProcessor {
         properties.add(TRANSACTION_TIMEOUT);
         properties.add(BATCH_SIZE);
         properties.add(OBTAIN_GENERATED_KEYS);
+        properties.add(CONCURRENT_CONNECTIONS);
         return properties;
     }
 
@@ -174,7 +195,28 @@ public class PutSQL extends AbstractProcessor {
         return rels;
     }
 
+    @OnScheduled
+    public void createExecutor(final ProcessContext context) {
+        if (context.getProperty(CONCURRENT_CONNECTIONS).asInteger() > 1) {
+            executor = Executors.newCachedThreadPool();
+        }
+    }
 
+    @OnStopped
+    public void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30000, TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                    getLogger().warn("Executor did not stop in 30 sec. Terminated.");
+                }
+                executor = null;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
@@ -190,6 +232,34 @@ public class PutSQL extends AbstractProcessor {
 
         final long startNanos = System.nanoTime();
         final boolean obtainKeys = context.getProperty(OBTAIN_GENERATED_KEYS).asBoolean();
+
+        // Read the SQL of every FlowFile up front so that FlowFiles with the same statement can be grouped together.
+        final List<String> sqlStatements = new ArrayList<>(flowFiles.size());
+        for (final FlowFile flowFile : flowFiles) {
+            sqlStatements.add(getSQL(session, flowFile));
+        }
+
+        // If the statements are independent of one another, the batch for each statement can be executed on its own connection.
+        final int concurrentConnections = context.getProperty(CONCURRENT_CONNECTIONS).asInteger();
+        if (!obtainKeys && !poll.isFragmentedTransaction() && concurrentConnections > 1 && executor != null) {
+            final Map<String, List<FlowFile>> statementGroups = new LinkedHashMap<>();
+            for (int i = 0; i < flowFiles.size(); i++) {
+                List<FlowFile> group = statementGroups.get(sqlStatements.get(i));
+                if (group == null) {
+                    group = new ArrayList<>();
+                    statementGroups.put(sqlStatements.get(i), group);
+                }
+                group.add(flowFiles.get(i));
+            }
+
+            if (statementGroups.size() > 1) {
+                executeConcurrently(context, session, statementGroups, concurrentConnections, startNanos);
+                return;
+            }
+        }
+
+        int batchCount = 0;
+        int batchedFlowFileCount = 0;
         final Map<String, StatementFlowFileEnclosure> statementMap = new HashMap<>(); // Map SQL to a PreparedStatement and FlowFiles
         final List<FlowFile> sentFlowFiles = new ArrayList<>(); // flowfiles that have been sent
         final List<FlowFile> processedFlowFiles = new ArrayList<>(); // all flowfiles that we have processed
@@ -207,9 +277,10 @@ public class PutSQL extends AbstractProcessor {
             try {
                 conn.setAutoCommit(false);
 
-                for (final FlowFile flowFile : flowFiles) {
+                for (int i = 0; i < flowFiles.size(); i++) {
+                    final FlowFile flowFile = flowFiles.get(i);
                     processedFlowFiles.add(flowFile);
-                    final String sql = getSQL(session, flowFile);
+                    final String sql = sqlStatements.get(i);
 
                     // Get the appropriate PreparedStatement to use.
                     final StatementFlowFileEnclosure enclosure;
@@ -274,6 +345,8 @@ public class PutSQL extends AbstractProcessor {
                         final PreparedStatement stmt = enclosure.getStatement();
                         stmt.executeBatch();
                         sentFlowFiles.addAll(enclosure.getFlowFiles());
+                        batchCount++;
+                        batchedFlowFileCount += enclosure.getFlowFiles().size();
                     } catch (final BatchUpdateException e) {
                         // If we get a BatchUpdateException, then we want to determine which FlowFile caused the failure,
                         // and route that FlowFile to failure while routing those that finished processing to success and those
@@ -295,45 +368,7 @@ public class PutSQL extends AbstractProcessor {
                             return;
                         }
 
-                        // In the presence of a BatchUpdateException, the driver has the option of either stopping when an error
-                        // occurs, or continuing. If it continues, then it must account for all statements in the batch and for
-                        // those that fail return a Statement.EXECUTE_FAILED for the number of rows updated.
-                        // So we will iterate over all of the update counts returned. If any is equal to Statement.EXECUTE_FAILED,
-                        // we will route the corresponding FlowFile to failure. Otherwise, the FlowFile will go to success
-                        // unless it has not yet been processed (its index in the List > updateCounts.length).
-                        int failureCount = 0;
-                        int successCount = 0;
-                        int retryCount = 0;
-                        for (int i = 0; i < updateCounts.length; i++) {
-                            final int updateCount = updateCounts[i];
-                            final FlowFile flowFile = batchFlowFiles.get(i);
-                            if (updateCount == Statement.EXECUTE_FAILED) {
-                                destinationRelationships.put(flowFile, REL_FAILURE);
-                                failureCount++;
-                            } else {
-                                destinationRelationships.put(flowFile, REL_SUCCESS);
-                                successCount++;
-                            }
-                        }
-
-                        if (failureCount == 0) {
-                            // if no failures found, the driver decided not to execute the statements after the
-                            // failure, so route the last one to failure.
-                            final FlowFile failedFlowFile = batchFlowFiles.get(updateCounts.length);
-                            destinationRelationships.put(failedFlowFile, REL_FAILURE);
-                            failureCount++;
-                        }
-
-                        if (updateCounts.length < batchFlowFiles.size()) {
-                            final List<FlowFile> unexecuted = batchFlowFiles.subList(updateCounts.length + 1, batchFlowFiles.size());
-                            for (final FlowFile flowFile : unexecuted) {
-                                destinationRelationships.put(flowFile, REL_RETRY);
-                                retryCount++;
-                            }
-                        }
-
-                        getLogger().error("Failed to update database due to a failed batch update. There were a total of {} FlowFiles that failed, {} that succeeded, "
-                            + "and {} that were not execute and will be routed to retry; ", new Object[] {failureCount, successCount, retryCount});
+                        routeFailedBatch(e, batchFlowFiles, destinationRelationships);
                     } catch (final SQLNonTransientException e) {
                         getLogger().error("Failed to update database for {} due to {}; routing to failure", new Object[] {enclosure.getFlowFiles(), e});
 
@@ -413,6 +448,187 @@ public class PutSQL extends AbstractProcessor {
         for (final Map.Entry<FlowFile, Relationship> entry : destinationRelationships.entrySet()) {
             session.transfer(entry.getKey(), entry.getValue());
         }
+
+        recordBatchMetrics(session, batchCount, batchedFlowFileCount, System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Executes the batches for the given statements on up to <code>concurrentConnections</code> connections in parallel,
+     * and then transfers all of the FlowFiles to the appropriate relationships
+     *
+     * @param context the process context
+     * @param session the process session that the FlowFiles belong to
+     * @param statementGroups the FlowFiles to execute, grouped by their SQL statement
+     * @param concurrentConnections the maximum number of connections to use
+     * @param startNanos the time at which processing of the FlowFiles began
+     */
+    private void executeConcurrently(final ProcessContext context, final ProcessSession session, final Map<String, List<FlowFile>> statementGroups,
+        final int concurrentConnections, final long startNanos) {
+        final DBCPService dbcpService = context.getProperty(CONNECTION_POOL).asControllerService(DBCPService.class);
+
+        // Assign the largest groups first, each to the connection that has the fewest FlowFiles so far, so that
+        // the connections finish at about the same time.
+        final int partitionCount = Math.min(concurrentConnections, statementGroups.size());
+        final List<Map<String, List<FlowFile>>> partitions = new ArrayList<>(partitionCount);
+        final int[] partitionSizes = new int[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new LinkedHashMap<String, List<FlowFile>>());
+        }
+
+        final List<Map.Entry<String, List<FlowFile>>> groups = new ArrayList<>(statementGroups.entrySet());
+        Collections.sort(groups, new Comparator<Map.Entry<String, List<FlowFile>>>() {
+            @Override
+            public int compare(final Map.Entry<String, List<FlowFile>> o1, final Map.Entry<String, List<FlowFile>> o2) {
+                return Integer.compare(o2.getValue().size(), o1.getValue().size());
+            }
+        });
+
+        for (final Map.Entry<String, List<FlowFile>> group : groups) {
+            int smallest = 0;
+            for (int i = 1; i < partitionCount; i++) {
+                if (partitionSizes[i] < partitionSizes[smallest]) {
+                    smallest = i;
+                }
+            }
+
+            partitions.get(smallest).put(group.getKey(), group.getValue());
+            partitionSizes[smallest] += group.getValue().size();
+        }
+
+        final List<Future<BatchResult>> futures = new ArrayList<>(partitionCount);
+        for (final Map<String, List<FlowFile>> partition : partitions) {
+            futures.add(executor.submit(new BatchTask(dbcpService, partition)));
+        }
+
+        // Once a batch has been submitted it may be committed at any time, so we wait for every connection to finish,
+        // even if interrupted; otherwise, we could not know where to route the FlowFiles.
+        final List<BatchResult> results = new ArrayList<>(partitionCount);
+        boolean interrupted = false;
+        for (int i = 0; i < partitionCount; i++) {
+            while (true) {
+                try {
+                    results.add(futures.get(i).get());
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    final BatchResult failed = new BatchResult();
+                    for (final List<FlowFile> group : partitions.get(i).values()) {
+                        for (final FlowFile flowFile : group) {
+                            failed.destinationRelationships.put(flowFile, REL_FAILURE);
+                        }
+                    }
+
+                    getLogger().error("Failed to update database for {} due to {}; routing to failure", new Object[] {failed.destinationRelationships.keySet(), e.getCause()}, e.getCause());
+                    results.add(failed);
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        String url = null;
+        int batchCount = 0;
+        int batchedFlowFileCount = 0;
+        final long transmissionMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        for (final BatchResult result : results) {
+            if (url == null) {
+                url = result.url;
+            }
+            batchCount += result.batchCount;
+            batchedFlowFileCount += result.batchedFlowFileCount;
+        }
+
+        for (final BatchResult result : results) {
+            for (final FlowFile flowFile : result.sentFlowFiles) {
+                session.getProvenanceReporter().send(flowFile, url == null ? "jdbc://unknown-host" : url, transmissionMillis, true);
+                session.transfer(flowFile, REL_SUCCESS);
+            }
+
+            for (final Map.Entry<FlowFile, Relationship> entry : result.destinationRelationships.entrySet()) {
+                session.transfer(entry.getKey(), entry.getValue());
+            }
+        }
+
+        recordBatchMetrics(session, batchCount, batchedFlowFileCount, System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Routes the FlowFiles of a batch that failed with the given BatchUpdateException.
+     *
+     * In the presence of a BatchUpdateException, the driver has the option of either stopping when an error
+     * occurs, or continuing. If it continues, then it must account for all statements in the batch and for
+     * those that fail return a Statement.EXECUTE_FAILED for the number of rows updated.
+     * So we will iterate over all of the update counts returned. If any is equal to Statement.EXECUTE_FAILED,
+     * we will route the corresponding FlowFile to failure. Otherwise, the FlowFile will go to success
+     * unless it has not yet been processed (its index in the List > updateCounts.length).
+     *
+     * @param e the exception thrown when executing the batch
+     * @param batchFlowFiles the FlowFiles that make up the batch, in the order that they were added to the batch
+     * @param destinationRelationships the map to add the destination of each FlowFile to
+     */
+    private void routeFailedBatch(final BatchUpdateException e, final List<FlowFile> batchFlowFiles, final Map<FlowFile, Relationship> destinationRelationships) {
+        final int[] updateCounts = e.getUpdateCounts();
+        int failureCount = 0;
+        int successCount = 0;
+        int retryCount = 0;
+        for (int i = 0; i < updateCounts.length; i++) {
+            final int updateCount = updateCounts[i];
+            final FlowFile flowFile = batchFlowFiles.get(i);
+            if (updateCount == Statement.EXECUTE_FAILED) {
+                destinationRelationships.put(flowFile, REL_FAILURE);
+                failureCount++;
+            } else {
+                destinationRelationships.put(flowFile, REL_SUCCESS);
+                successCount++;
+            }
+        }
+
+        if (failureCount == 0) {
+            // if no failures found, the driver decided not to execute the statements after the
+            // failure, so route the last one to failure.
+            final FlowFile failedFlowFile = batchFlowFiles.get(updateCounts.length);
+            destinationRelationships.put(failedFlowFile, REL_FAILURE);
+            failureCount++;
+        }
+
+        if (updateCounts.length < batchFlowFiles.size()) {
+            final List<FlowFile> unexecuted = batchFlowFiles.subList(updateCounts.length + 1, batchFlowFiles.size());
+            for (final FlowFile flowFile : unexecuted) {
+                destinationRelationships.put(flowFile, REL_RETRY);
+                retryCount++;
+            }
+        }
+
+        getLogger().error("Failed to update database due to a failed batch update. There were a total of {} FlowFiles that failed, {} that succeeded, "
+            + "and {} that were not execute and will be routed to retry; ", new Object[] {failureCount, successCount, retryCount});
+    }
+
+
+    /**
+     * Adds the number of batches executed and the number of FlowFiles in those batches to the processor's counters
+     *
+     * @param session the session to adjust the counters with
+     * @param batchCount the number of batches that were executed successfully
+     * @param batchedFlowFileCount the number of FlowFiles in those batches
+     * @param nanos how long it took to process the FlowFiles
+     */
+    private void recordBatchMetrics(final ProcessSession session, final int batchCount, final int batchedFlowFileCount, final long nanos) {
+        if (batchCount == 0) {
+            return;
+        }
+
+        session.adjustCounter("Batches Executed", batchCount, false);
+        session.adjustCounter("FlowFiles Executed in Batches", batchedFlowFileCount, false);
+
+        final long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nanos));
+        getLogger().debug("Executed {} FlowFiles in {} batches (average batch size {}) in {} millis, or {} FlowFiles per second",
+            new Object[] {batchedFlowFileCount, batchCount, batchedFlowFileCount / batchCount, millis, batchedFlowFileCount * 1000L / millis});
     }
 
 
@@ -541,16 +757,16 @@ public class PutSQL extends AbstractProcessor {
             // and close it.
             return new StatementFlowFileEnclosure(stmt);
         } else if (fragmentedTransaction) {
-            // We cannot use Batch Updates if we have a transaction that spans multiple FlowFiles.
-            // If we did, we could end up processing the statements out of order. It's quite possible
-            // that we could refactor the code some to allow for this, but as it is right now, this
-            // could cause problems. This is because we have a Map<String, StatementFlowFileEnclosure>.
+            // If we have a transaction that spans multiple FlowFiles, we must not process the statements out of order.
             // If we had a transaction that needed to execute Stmt A with some parameters, then Stmt B with
-            // some parameters, then Stmt A with different parameters, this would become problematic because
-            // the executeUpdate would be evaluated first for Stmt A (the 1st and 3rd statements, and then
-            // the second statement would be evaluated).
+            // some parameters, then Stmt A with different parameters, batching all of the Stmt A's together would
+            // evaluate the 1st and 3rd statements before the second. So we only batch consecutive FlowFiles that
+            // have the same SQL, by keeping only the most recent statement in the map.
+            stmtMap.clear();
             final PreparedStatement stmt = conn.prepareStatement(sql);
-            return new StatementFlowFileEnclosure(stmt);
+            enclosure = new StatementFlowFileEnclosure(stmt);
+            stmtMap.put(sql, enclosure);
+            return enclosure;
         }
 
         final PreparedStatement stmt = conn.prepareStatement(sql);
@@ -881,6 +1097,141 @@ public class PutSQL extends AbstractProcessor {
     }
 
 
+    /**
+     * Executes the batch for each of a set of statements on a single connection, which it obtains from the connection pool
+     * and commits once all of the batches have been executed. Because this runs on a background thread, it does not access
+     * the ProcessSession; instead, it records where each FlowFile should be routed in a BatchResult.
+     */
+    private class BatchTask implements Callable<BatchResult> {
+        private final DBCPService dbcpService;
+        private final Map<String, List<FlowFile>> statementGroups;
+
+        public BatchTask(final DBCPService dbcpService, final Map<String, List<FlowFile>> statementGroups) {
+            this.dbcpService = dbcpService;
+            this.statementGroups = statementGroups;
+        }
+
+        @Override
+        public BatchResult call() {
+            final BatchResult result = new BatchResult();
+            try (final Connection conn = dbcpService.getConnection()) {
+                final boolean originalAutoCommit = conn.getAutoCommit();
+                try {
+                    conn.setAutoCommit(false);
+                    for (final Map.Entry<String, List<FlowFile>> entry : statementGroups.entrySet()) {
+                        executeBatch(conn, entry.getKey(), entry.getValue(), result);
+                    }
+                    conn.commit();
+                } finally {
+                    // make sure that we try to set the auto commit back to whatever it was.
+                    if (originalAutoCommit) {
+                        try {
+                            conn.setAutoCommit(originalAutoCommit);
+                        } catch (final SQLException se) {
+                        }
+                    }
+                }
+
+                try {
+                    result.url = conn.getMetaData().getURL();
+                } catch (final SQLException sqle) {
+                }
+            } catch (final SQLException | ProcessException e) {
+                // nothing was committed on this connection, so none of the FlowFiles were sent.
+                result.sentFlowFiles.clear();
+                final List<FlowFile> unsent = new ArrayList<>();
+                for (final List<FlowFile> group : statementGroups.values()) {
+                    unsent.addAll(group);
+                }
+                routeUnrouted(unsent, e, result);
+            }
+
+            return result;
+        }
+
+        private void executeBatch(final Connection conn, final String sql, final List<FlowFile> flowFiles, final BatchResult result) {
+            final PreparedStatement stmt;
+            try {
+                stmt = conn.prepareStatement(sql);
+            } catch (final SQLException e) {
+                routeUnrouted(flowFiles, e, result);
+                return;
+            }
+
+            final List<FlowFile> batchFlowFiles = new ArrayList<>(flowFiles.size());
+            try {
+                for (final FlowFile flowFile : flowFiles) {
+                    try {
+                        setParameters(stmt, flowFile.getAttributes());
+                    } catch (final SQLException | ProcessException pe) {
+                        getLogger().error("Cannot update database for {} due to {}; routing to failure", new Object[] {flowFile, pe.toString()}, pe);
+                        result.destinationRelationships.put(flowFile, REL_FAILURE);
+                        continue;
+                    }
+
+                    stmt.addBatch();
+                    batchFlowFiles.add(flowFile);
+                }
+
+                if (!batchFlowFiles.isEmpty()) {
+                    stmt.executeBatch();
+                    result.sentFlowFiles.addAll(batchFlowFiles);
+                    result.batchCount++;
+                    result.batchedFlowFileCount += batchFlowFiles.size();
+                }
+            } catch (final BatchUpdateException e) {
+                routeFailedBatch(e, batchFlowFiles, result.destinationRelationships);
+            } catch (final SQLException e) {
+                routeUnrouted(flowFiles, e, result);
+            } finally {
+                try {
+                    stmt.close();
+                } catch (final SQLException se) {
+                }
+            }
+        }
+
+        /**
+         * Routes each of the given FlowFiles that has not already been routed to failure or retry to one of those, depending on the given exception
+         */
+        private void routeUnrouted(final List<FlowFile> flowFiles, final Exception e, final BatchResult result) {
+            final List<FlowFile> unrouted = new ArrayList<>(flowFiles.size());
+            for (final FlowFile flowFile : flowFiles) {
+                final Relationship destination = result.destinationRelationships.get(flowFile);
+                if (destination == null || destination == REL_SUCCESS) {
+                    unrouted.add(flowFile);
+                }
+            }
+
+            final Relationship relationship;
+            if (e instanceof SQLNonTransientException) {
+                getLogger().error("Failed to update database for {} due to {}; routing to failure", new Object[] {unrouted, e});
+                relationship = REL_FAILURE;
+            } else {
+                getLogger().error("Failed to update database for {} due to {}; it is possible that retrying the operation will succeed, so routing to retry", new Object[] {unrouted, e});
+                relationship = REL_RETRY;
+            }
+
+            for (final FlowFile flowFile : unrouted) {
+                result.destinationRelationships.put(flowFile, relationship);
+            }
+        }
+    }
+
+
+    /**
+     * The outcome of a BatchTask: the FlowFiles whose statements were committed, where each of the other FlowFiles
+     * should be routed, and the number of batches executed
+     */
+    private static class BatchResult {
+        private final List<FlowFile> sentFlowFiles = new ArrayList<>();
+        private final Map<FlowFile, Relationship> destinationRelationships = new HashMap<>();
+        private String url;
+        private int batchCount;
+        private int batchedFlowFileCount;
+    }
+
+
     /**
      * A simple, immutable data structure to hold a Prepared Statement and a List of FlowFiles
      * for which that statement should be evaluated.
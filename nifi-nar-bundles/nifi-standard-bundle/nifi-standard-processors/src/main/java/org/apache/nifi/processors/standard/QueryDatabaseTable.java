@@ -25,6 +25,7 @@ import org.apache.nifi.annotation.behavior.WritesAttribute;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.state.Scope;
 import org.apache.nifi.components.state.StateManager;
@@ -47,6 +48,7 @@ import org.apache.nifi.util.StopWatch;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Date;
@@ -54,6 +56,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
 import java.sql.Timestamp;
 import java.text.DecimalFormat;
 import java.text.ParseException;
@@ -64,6 +67,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static java.sql.Types.ARRAY;
@@ -101,7 +109,9 @@ import static java.sql.Types.VARCHAR;
         + " Streaming is used so arbitrarily large result sets are supported. This processor can be scheduled to run on "
         + "a timer, or cron expression, using the standard scheduling methods, or it can be triggered by an incoming FlowFile. "
         + "If it is triggered by an incoming FlowFile, then attributes of that FlowFile will be available when evaluating the "
-        + "select query. FlowFile attribute 'querydbtable.row.count' indicates how many rows were selected.")
+        + "select query. FlowFile attribute 'querydbtable.row.count' indicates how many rows were selected. If the Max Rows Per Flow File "
+        + "property is set, each FlowFile is committed as soon as it is written, while the rest of the result set is still being read. If a "
+        + "Partition Column is set, the query is split into several ranges of that column's values, which are queried concurrently.")
 @Stateful(scopes = Scope.CLUSTER, description = "After performing a query on the specified table, the maximum values for "
         + "the specified column(s) will be retained for use in future executions of the query. This allows the Processor "
         + "to fetch only those records that have max values greater than the retained values. This can be used for "
@@ -184,11 +194,42 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
             .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor MAX_ROWS_PER_FLOW_FILE = new PropertyDescriptor.Builder()
+            .name("Max Rows Per Flow File")
+            .description("The maximum number of result rows that will be included in a single FlowFile. If the query returns more rows, "
+                    + "each set of rows is written to its own FlowFile, which is transferred to 'success' as soon as it has been written, "
+                    + "while the rest of the result set is still being read. If the value specified is zero, all rows are written to a single FlowFile.")
+            .defaultValue("0")
+            .required(true)
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor PARTITION_COLUMN = new PropertyDescriptor.Builder()
+            .name("Partition Column")
+            .description("The name of an integer column whose values are used to split the query into several queries, each of which "
+                    + "selects a range of the column's values, so that the table can be queried over several connections concurrently. "
+                    + "The ranges are determined from the minimum and maximum values of the column each time the table is queried, so "
+                    + "the column should be indexed. Partitioning is used only if a Partition Column is set and the Partition Count is greater than 1.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor PARTITION_COUNT = new PropertyDescriptor.Builder()
+            .name("Partition Count")
+            .description("The number of ranges of the Partition Column's values to split the query into, each of which is queried on its own "
+                    + "connection from the Database Connection Pooling Service.")
+            .defaultValue("1")
+            .required(true)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
 
     private final List<PropertyDescriptor> propDescriptors;
 
     protected final Map<String, Integer> columnTypeMap = new HashMap<>();
 
+    private volatile ExecutorService executor;
+
     public QueryDatabaseTable() {
         final Set<Relationship> r = new HashSet<>();
         r.add(REL_SUCCESS);
@@ -202,6 +243,9 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
         pds.add(QUERY_TIMEOUT);
         pds.add(SQL_PREPROCESS_STRATEGY);
         pds.add(FETCH_SIZE);
+        pds.add(MAX_ROWS_PER_FLOW_FILE);
+        pds.add(PARTITION_COLUMN);
+        pds.add(PARTITION_COUNT);
         propDescriptors = Collections.unmodifiableList(pds);
     }
 
@@ -217,6 +261,10 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
 
     @OnScheduled
     public void setup(final ProcessContext context) {
+        if (context.getProperty(PARTITION_COLUMN).isSet() && context.getProperty(PARTITION_COUNT).asInteger() > 1) {
+            executor = Executors.newCachedThreadPool();
+        }
+
         // Try to fill the columnTypeMap with the types of the desired max-value columns
         final DBCPService dbcpService = context.getProperty(DBCP_SERVICE).asControllerService(DBCPService.class);
         final String tableName = context.getProperty(TABLE_NAME).getValue();
@@ -249,11 +297,24 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
         }
     }
 
+    @OnStopped
+    public void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30000, TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                    getLogger().warn("Executor did not stop in 30 sec. Terminated.");
+                }
+                executor = null;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSessionFactory sessionFactory) throws ProcessException {
-        ProcessSession session = sessionFactory.createSession();
-        FlowFile fileToProcess = null;
-
         final ProcessorLog logger = getLogger();
 
         final DBCPService dbcpService = context.getProperty(DBCP_SERVICE).asControllerService(DBCPService.class);
@@ -261,7 +322,8 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
         final String columnNames = context.getProperty(COLUMN_NAMES).getValue();
         final String maxValueColumnNames = context.getProperty(MAX_VALUE_COLUMN_NAMES).getValue();
         final String preProcessStrategy = context.getProperty(SQL_PREPROCESS_STRATEGY).getValue();
-        final Integer fetchSize = context.getProperty(FETCH_SIZE).asInteger();
+        final String partitionColumn = context.getProperty(PARTITION_COLUMN).getValue();
+        final int partitionCount = context.getProperty(PARTITION_COUNT).asInteger();
 
         final StateManager stateManager = context.getStateManager();
         final StateMap stateMap;
@@ -278,7 +340,119 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
         // set as the current state map (after the session has been committed)
         final Map<String, String> statePropertyMap = new HashMap<>(stateMap.toMap());
 
-        final String selectQuery = getQuery(tableName, columnNames, getColumns(maxValueColumnNames), stateMap, preProcessStrategy);
+        final List<String> maxValueColumns = getColumns(maxValueColumnNames);
+        final String selectQuery = getQuery(tableName, columnNames, maxValueColumns, stateMap, preProcessStrategy);
+
+        long nrOfRows = 0L;
+        try {
+            List<String> partitionConditions = Collections.emptyList();
+            if (partitionColumn != null && partitionCount > 1 && executor != null) {
+                final String boundsQuery = getQuery(tableName, "MIN(" + partitionColumn + "), MAX(" + partitionColumn + ")", maxValueColumns, stateMap, preProcessStrategy);
+                try (final Connection con = dbcpService.getConnection();
+                     final Statement st = con.createStatement()) {
+                    logger.debug("Executing query {}", new Object[]{boundsQuery});
+                    final ResultSet resultSet = st.executeQuery(boundsQuery);
+                    if (resultSet.next()) {
+                        final long min = resultSet.getLong(1);
+                        final long max = resultSet.getLong(2);
+                        if (!resultSet.wasNull()) {
+                            partitionConditions = getPartitionConditions(partitionColumn, min, max, partitionCount);
+                        }
+                    }
+                }
+            }
+
+            if (partitionConditions.isEmpty()) {
+                nrOfRows = fetchRows(context, sessionFactory, selectQuery, statePropertyMap);
+            } else {
+                // Query each partition on its own connection, tracking the maximum values separately for each, and merge
+                // the maximum values once all of the partitions have been read.
+                final List<Future<Long>> futures = new ArrayList<>(partitionConditions.size());
+                final List<Map<String, String>> partitionMaxValues = new ArrayList<>(partitionConditions.size());
+                final List<String> partitionQueries = new ArrayList<>(partitionConditions.size());
+                for (final String partitionCondition : partitionConditions) {
+                    final String partitionQuery = getQuery(tableName, columnNames, maxValueColumns, stateMap, preProcessStrategy, partitionCondition);
+                    partitionQueries.add(partitionQuery);
+                    final Map<String, String> maxValues = new HashMap<>(statePropertyMap);
+                    partitionMaxValues.add(maxValues);
+                    futures.add(executor.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() throws SQLException {
+                            return fetchRows(context, sessionFactory, partitionQuery, maxValues);
+                        }
+                    }));
+                }
+
+                // The partitions commit their FlowFiles as they go, so we must wait for all of them before updating the state,
+                // even if interrupted.
+                boolean failed = false;
+                boolean interrupted = false;
+                for (int i = 0; i < futures.size(); i++) {
+                    while (true) {
+                        try {
+                            nrOfRows += futures.get(i).get();
+                            break;
+                        } catch (final InterruptedException e) {
+                            interrupted = true;
+                        } catch (final ExecutionException e) {
+                            logger.error("Unable to execute SQL select query {} due to {}", new Object[]{partitionQueries.get(i), e.getCause()});
+                            failed = true;
+                            break;
+                        }
+                    }
+                }
+
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+
+                if (failed) {
+                    // Rows of the failed partition may have values lower than the maximum values observed in the other partitions,
+                    // so the maximum values are not updated; the rows of the other partitions will be selected again next time.
+                    logger.error("Not all partitions of {} could be queried; maximum observed values will not be updated", new Object[]{tableName});
+                    statePropertyMap.clear();
+                    statePropertyMap.putAll(stateMap.toMap());
+                } else {
+                    for (final Map<String, String> maxValues : partitionMaxValues) {
+                        mergeMaxValues(statePropertyMap, maxValues, preProcessStrategy);
+                    }
+                }
+            }
+        } catch (final ProcessException | SQLException e) {
+            logger.error("Unable to execute SQL select query {} due to {}", new Object[]{selectQuery, e});
+        } finally {
+            if (nrOfRows == 0) {
+                context.yield();
+            }
+
+            try {
+                // Update the state
+                stateManager.setState(statePropertyMap, Scope.CLUSTER);
+            } catch (IOException ioe) {
+                getLogger().error("{} failed to update State Manager, maximum observed values will not be recorded", new Object[]{this, ioe});
+            }
+        }
+    }
+
+    /**
+     * Executes the given query and writes the rows that it selects to one or more FlowFiles, committing a session for each FlowFile
+     *
+     * @param context the process context
+     * @param sessionFactory the factory to create sessions from
+     * @param selectQuery the query to execute
+     * @param maxValues the maximum values observed for the Maximum-value Columns, which will be updated with the values of the rows in each
+     *            FlowFile once its session has been committed
+     * @return the number of rows selected
+     * @throws SQLException if unable to execute the query
+     */
+    private long fetchRows(final ProcessContext context, final ProcessSessionFactory sessionFactory, final String selectQuery, final Map<String, String> maxValues)
+            throws SQLException {
+        final ProcessorLog logger = getLogger();
+        final DBCPService dbcpService = context.getProperty(DBCP_SERVICE).asControllerService(DBCPService.class);
+        final String tableName = context.getProperty(TABLE_NAME).getValue();
+        final String preProcessStrategy = context.getProperty(SQL_PREPROCESS_STRATEGY).getValue();
+        final Integer fetchSize = context.getProperty(FETCH_SIZE).asInteger();
+        final int maxRowsPerFlowFile = context.getProperty(MAX_ROWS_PER_FLOW_FILE).asInteger();
         final StopWatch stopWatch = new StopWatch(true);
 
         try (final Connection con = dbcpService.getConnection();
@@ -296,62 +470,71 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
             final Integer queryTimeout = context.getProperty(QUERY_TIMEOUT).asTimePeriod(TimeUnit.SECONDS).intValue();
             st.setQueryTimeout(queryTimeout); // timeout in seconds
 
-            final LongHolder nrOfRows = new LongHolder(0L);
-
-            fileToProcess = session.create();
-            fileToProcess = session.write(fileToProcess, new OutputStreamCallback() {
-                @Override
-                public void process(final OutputStream out) throws IOException {
-                    try {
-                        logger.debug("Executing query {}", new Object[]{selectQuery});
-                        final ResultSet resultSet = st.executeQuery(selectQuery);
-                        // Max values will be updated in the state property map by the callback
-                        final MaxValueResultSetRowCollector maxValCollector = new MaxValueResultSetRowCollector(statePropertyMap, preProcessStrategy);
-                        nrOfRows.set(JdbcCommon.convertToAvroStream(resultSet, out, tableName, maxValCollector));
-
-                    } catch (final SQLException e) {
-                        throw new ProcessException("Error during database query or conversion of records to Avro", e);
-                    }
+            String jdbcURL = "DBCPService";
+            try {
+                DatabaseMetaData databaseMetaData = con.getMetaData();
+                if (databaseMetaData != null) {
+                    jdbcURL = databaseMetaData.getURL();
+                }
+            } catch (SQLException se) {
+                // Ignore and use default JDBC URL. This shouldn't happen unless the driver doesn't implement getMetaData() properly
+            }
+
+            logger.debug("Executing query {}", new Object[]{selectQuery});
+            final ResultSet resultSet = st.executeQuery(selectQuery);
+            // Max values will be updated in a copy of the given map by the callback, and copied to the given map once the rows are committed,
+            // so that the rows of a FlowFile that is rolled back are selected again next time
+            final Map<String, String> observedMaxValues = new HashMap<>(maxValues);
+            final MaxValueResultSetRowCollector maxValCollector = new MaxValueResultSetRowCollector(observedMaxValues, preProcessStrategy);
+
+            long totalRows = 0L;
+            while (true) {
+                final ProcessSession session = sessionFactory.createSession();
+                final LongHolder nrOfRows = new LongHolder(0L);
+
+                FlowFile fileToProcess = session.create();
+                try {
+                    fileToProcess = session.write(fileToProcess, new OutputStreamCallback() {
+                        @Override
+                        public void process(final OutputStream out) throws IOException {
+                            try {
+                                nrOfRows.set(JdbcCommon.convertToAvroStream(resultSet, out, tableName, maxValCollector, maxRowsPerFlowFile));
+                            } catch (final SQLException e) {
+                                throw new ProcessException("Error during database query or conversion of records to Avro", e);
+                            }
+                        }
+                    });
+                } catch (final ProcessException pe) {
+                    session.rollback();
+                    throw pe;
+                }
+
+                if (nrOfRows.get() == 0) {
+                    // If there were no rows returned, don't send the flowfile
+                    session.remove(fileToProcess);
+                    session.commit();
+                    break;
                 }
-            });
 
-            if (nrOfRows.get() > 0) {
                 // set attribute how many rows were selected
                 fileToProcess = session.putAttribute(fileToProcess, RESULT_ROW_COUNT, nrOfRows.get().toString());
 
                 logger.info("{} contains {} Avro records; transferring to 'success'",
                         new Object[]{fileToProcess, nrOfRows.get()});
-                String jdbcURL = "DBCPService";
-                try {
-                    DatabaseMetaData databaseMetaData = con.getMetaData();
-                    if (databaseMetaData != null) {
-                        jdbcURL = databaseMetaData.getURL();
-                    }
-                } catch (SQLException se) {
-                    // Ignore and use default JDBC URL. This shouldn't happen unless the driver doesn't implement getMetaData() properly
-                }
                 session.getProvenanceReporter().receive(fileToProcess, jdbcURL, stopWatch.getElapsed(TimeUnit.MILLISECONDS));
                 session.transfer(fileToProcess, REL_SUCCESS);
-            } else {
-                // If there were no rows returned, don't send the flowfile
-                session.remove(fileToProcess);
-                context.yield();
-            }
+                session.commit();
+                maxValues.putAll(observedMaxValues);
+                totalRows += nrOfRows.get();
 
-        } catch (final ProcessException | SQLException e) {
-            logger.error("Unable to execute SQL select query {} due to {}", new Object[]{selectQuery, e});
-            if (fileToProcess != null) {
-                session.remove(fileToProcess);
-            }
-            context.yield();
-        } finally {
-            session.commit();
-            try {
-                // Update the state
-                stateManager.setState(statePropertyMap, Scope.CLUSTER);
-            } catch (IOException ioe) {
-                getLogger().error("{} failed to update State Manager, maximum observed values will not be recorded", new Object[]{this, ioe});
+                // Fewer rows than the maximum means that the result set has been exhausted
+                if (maxRowsPerFlowFile == 0 || nrOfRows.get() < maxRowsPerFlowFile) {
+                    break;
+                }
+                stopWatch.start();
             }
+
+            return totalRows;
         }
     }
 
@@ -374,15 +557,20 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
 
     protected String getQuery(String tableName, String columnNames, List<String> maxValColumnNames,
                               StateMap stateMap, String preProcessStrategy) {
+        return getQuery(tableName, columnNames, maxValColumnNames, stateMap, preProcessStrategy, null);
+    }
+
+    protected String getQuery(String tableName, String columnNames, List<String> maxValColumnNames,
+                              StateMap stateMap, String preProcessStrategy, String partitionCondition) {
         if (StringUtils.isEmpty(tableName)) {
             throw new IllegalArgumentException("Table name must be specified");
         }
         final StringBuilder query = new StringBuilder(getSelectFromClause(tableName, columnNames));
+        final List<String> whereClauses = new ArrayList<>();
 
         // Check state map for last max values
         if (stateMap != null && stateMap.getVersion() != -1 && maxValColumnNames != null) {
             Map<String, String> stateProperties = stateMap.toMap();
-            List<String> whereClauses = new ArrayList<>(maxValColumnNames.size());
             for (String colName : maxValColumnNames) {
                 String maxValue = stateProperties.get(colName.toLowerCase());
                 if (!StringUtils.isEmpty(maxValue)) {
@@ -395,15 +583,123 @@ public class QueryDatabaseTable extends AbstractSessionFactoryProcessor {
                     whereClauses.add(colName + " > " + getLiteralByType(type, maxValue, preProcessStrategy));
                 }
             }
-            if (!whereClauses.isEmpty()) {
-                query.append(" WHERE ");
-                query.append(StringUtils.join(whereClauses, " AND "));
-            }
+        }
+
+        if (partitionCondition != null) {
+            whereClauses.add(partitionCondition);
+        }
+
+        if (!whereClauses.isEmpty()) {
+            query.append(" WHERE ");
+            query.append(StringUtils.join(whereClauses, " AND "));
         }
 
         return query.toString();
     }
 
+    /**
+     * Returns the conditions that split the range of values of the given column into the given number of partitions of
+     * (nearly) equal width. The first partition also includes rows whose value is null, and the first and last partitions
+     * are unbounded below and above, respectively, so every row belongs to exactly one partition. If the range cannot be
+     * split, an empty list is returned.
+     *
+     * @param partitionColumn the name of the column to partition by
+     * @param min the minimum value of the column
+     * @param max the maximum value of the column
+     * @param partitionCount the number of partitions
+     * @return the condition for each partition, to be added to the WHERE clause of the query
+     */
+    protected List<String> getPartitionConditions(String partitionColumn, long min, long max, int partitionCount) {
+        final BigInteger lowest = BigInteger.valueOf(min);
+        final BigInteger highest = BigInteger.valueOf(max);
+        final BigInteger count = BigInteger.valueOf(partitionCount);
+        // round the width up so that the partitions cover the whole range
+        final BigInteger width = highest.subtract(lowest).add(count).divide(count);
+
+        final List<String> conditions = new ArrayList<>(partitionCount);
+        BigInteger lowerBound = null;
+        for (int i = 1; i < partitionCount; i++) {
+            final BigInteger upperBound = lowest.add(width.multiply(BigInteger.valueOf(i)));
+            if (upperBound.compareTo(highest) > 0) {
+                break;
+            }
+
+            if (lowerBound == null) {
+                conditions.add("(" + partitionColumn + " < " + upperBound + " OR " + partitionColumn + " IS NULL)");
+            } else {
+                conditions.add(partitionColumn + " >= " + lowerBound + " AND " + partitionColumn + " < " + upperBound);
+            }
+            lowerBound = upperBound;
+        }
+
+        if (lowerBound == null) {
+            return Collections.emptyList();
+        }
+
+        conditions.add(partitionColumn + " >= " + lowerBound);
+        return conditions;
+    }
+
+    /**
+     * Updates the given maximum values with any of the other maximum values that are greater
+     *
+     * @param maxValues the maximum values to update
+     * @param otherMaxValues the maximum values to merge into them
+     * @param preProcessStrategy the SQL pre-processing strategy, which determines the format of timestamp values
+     */
+    protected void mergeMaxValues(Map<String, String> maxValues, Map<String, String> otherMaxValues, String preProcessStrategy) {
+        for (final Map.Entry<String, String> entry : otherMaxValues.entrySet()) {
+            final String colName = entry.getKey();
+            final String otherValue = entry.getValue();
+            final String maxValue = maxValues.get(colName);
+            final Integer type = columnTypeMap.get(colName);
+            if (otherValue == null || otherValue.equals(maxValue) || type == null) {
+                continue;
+            }
+
+            if (maxValue == null || compareValues(type, otherValue, maxValue, preProcessStrategy) > 0) {
+                maxValues.put(colName, otherValue);
+            }
+        }
+    }
+
+    private int compareValues(int type, String value, String otherValue, String preProcessStrategy) {
+        switch (type) {
+            case CHAR:
+            case LONGNVARCHAR:
+            case LONGVARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case VARCHAR:
+            case ROWID:
+                return value.compareTo(otherValue);
+            case INTEGER:
+            case SMALLINT:
+            case TINYINT:
+            case BIGINT:
+                return Long.compare(Long.parseLong(value), Long.parseLong(otherValue));
+            case FLOAT:
+            case REAL:
+            case DOUBLE:
+                return Double.compare(Double.parseDouble(value), Double.parseDouble(otherValue));
+            case DECIMAL:
+            case NUMERIC:
+                return new BigDecimal(value).compareTo(new BigDecimal(otherValue));
+            case DATE:
+                return java.sql.Date.valueOf(value).compareTo(java.sql.Date.valueOf(otherValue));
+            case TIME:
+                return Time.valueOf(value).compareTo(Time.valueOf(otherValue));
+            case TIMESTAMP:
+                // Oracle timestamp values are kept in java.sql.Date format
+                if (SQL_PREPROCESS_STRATEGY_ORACLE.equals(preProcessStrategy)) {
+                    return java.sql.Date.valueOf(value).compareTo(java.sql.Date.valueOf(otherValue));
+                }
+                return Timestamp.valueOf(value).compareTo(Timestamp.valueOf(otherValue));
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Returns a basic SELECT ... FROM clause with the given column names and table name. If no column names are found,
      * the wildcard (*) is used to select all columns.
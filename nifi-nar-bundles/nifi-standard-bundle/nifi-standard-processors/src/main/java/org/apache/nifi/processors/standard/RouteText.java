@@ -63,6 +63,8 @@ import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.io.InputStreamCallback;
 import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.processors.standard.util.MultiPatternMatcher;
+import org.apache.nifi.processors.standard.util.MultiPatternMatcher.MatchType;
 import org.apache.nifi.processors.standard.util.NLKBufferedReader;
 
 
@@ -202,6 +204,14 @@ public class RouteText extends AbstractProcessor {
     private volatile Map<Relationship, PropertyValue> propertyMap = new HashMap<>();
     private volatile Pattern groupingRegex = null;
 
+    /**
+     * The dynamic properties compiled into a single matcher during {@link #onScheduled(ProcessContext)}, or <code>null</code> if
+     * the properties must be evaluated against each FlowFile. The index of each Relationship in {@link #compiledRoutes} is the
+     * index of its property value in the matcher.
+     */
+    private volatile MultiPatternMatcher compiledMatcher = null;
+    private volatile List<Relationship> compiledRoutes = null;
+
     @Override
     protected void init(final ProcessorInitializationContext context) {
         final Set<Relationship> set = new HashSet<>();
@@ -295,6 +305,29 @@ public class RouteText extends AbstractProcessor {
         }
 
         this.propertyMap = newPropertyMap;
+
+        // If none of the values depends on the FlowFile, compile them once rather than for every FlowFile
+        final String matchStrategy = context.getProperty(MATCH_STRATEGY).getValue();
+        boolean expressionLanguagePresent = matchStrategy.equals(satisfiesExpression);
+        for (final PropertyDescriptor descriptor : context.getProperties().keySet()) {
+            if (descriptor.isDynamic() && context.isExpressionLanguagePresent(descriptor)) {
+                expressionLanguagePresent = true;
+            }
+        }
+
+        if (expressionLanguagePresent) {
+            this.compiledMatcher = null;
+            this.compiledRoutes = null;
+        } else {
+            final List<Relationship> routes = new ArrayList<>(newPropertyMap.keySet());
+            final List<String> values = new ArrayList<>(routes.size());
+            for (final Relationship route : routes) {
+                values.add(newPropertyMap.get(route).evaluateAttributeExpressions().getValue());
+            }
+
+            this.compiledRoutes = routes;
+            this.compiledMatcher = new MultiPatternMatcher(getMatchType(matchStrategy), values, context.getProperty(IGNORE_CASE).asBoolean());
+        }
     }
 
     @Override
@@ -347,7 +380,6 @@ public class RouteText extends AbstractProcessor {
     }
 
     @Override
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public void onTrigger(final ProcessContext context, final ProcessSession session) {
         final FlowFile originalFlowFile = session.get();
         if (originalFlowFile == null) {
@@ -361,28 +393,26 @@ public class RouteText extends AbstractProcessor {
         final String matchStrategy = context.getProperty(MATCH_STRATEGY).getValue();
         final boolean ignoreCase = context.getProperty(IGNORE_CASE).asBoolean();
 
-        final boolean compileRegex = matchStrategy.equals(matchesRegularExpressionValue) || matchStrategy.equals(containsRegularExpressionValue);
         final boolean usePropValue = matchStrategy.equals(satisfiesExpression);
 
-        // Build up a Map of Relationship to object, where the object is the
-        // thing that each line is compared against
-        final Map<Relationship, Object> propValueMap;
+        // Unless each line must be evaluated against an Expression, all of the property values are compiled into
+        // a single matcher, which evaluates a line against every one of them at once
+        final List<Relationship> routes;
+        final MultiPatternMatcher matcher;
         final Map<Relationship, PropertyValue> propMap = this.propertyMap;
         if (usePropValue) {
-            // If we are using an Expression Language we want a Map where the value is the
-            // PropertyValue, so we can just use the 'propMap' - no need to copy it.
-            propValueMap = (Map) propMap;
+            routes = null;
+            matcher = null;
+        } else if (this.compiledMatcher != null) {
+            routes = this.compiledRoutes;
+            matcher = this.compiledMatcher;
         } else {
-            propValueMap = new HashMap<>(propMap.size());
-            for (final Map.Entry<Relationship, PropertyValue> entry : propMap.entrySet()) {
-                final String value = entry.getValue().evaluateAttributeExpressions(originalFlowFile).getValue();
-
-                Pattern compiledRegex = null;
-                if (compileRegex) {
-                    compiledRegex = ignoreCase ? Pattern.compile(value, Pattern.CASE_INSENSITIVE) : Pattern.compile(value);
-                }
-                propValueMap.put(entry.getKey(), compileRegex ? compiledRegex : value);
+            routes = new ArrayList<>(propMap.keySet());
+            final List<String> values = new ArrayList<>(routes.size());
+            for (final Relationship route : routes) {
+                values.add(propMap.get(route).evaluateAttributeExpressions(originalFlowFile).getValue());
             }
+            matcher = new MultiPatternMatcher(getMatchType(matchStrategy), values, ignoreCase);
         }
 
         final Map<Relationship, Map<Group, FlowFile>> flowFileMap = new HashMap<>();
@@ -395,6 +425,7 @@ public class RouteText extends AbstractProcessor {
                     final NLKBufferedReader reader = new NLKBufferedReader(inReader)) {
 
                     final Map<String, String> variables = new HashMap<>(2);
+                    final boolean[] matched = matcher == null ? null : new boolean[matcher.getPatternCount()];
 
                     int lineCount = 0;
                     String line;
@@ -423,48 +454,69 @@ public class RouteText extends AbstractProcessor {
                             matchLine = lineWithoutEndings;
                         }
 
-                        variables.put("line", line);
-                        variables.put("lineNo", String.valueOf(++lineCount));
-
-                        int propertiesThatMatchedLine = 0;
-                        for (final Map.Entry<Relationship, Object> entry : propValueMap.entrySet()) {
-                            boolean lineMatchesProperty = lineMatches(matchLine, entry.getValue(), context.getProperty(MATCH_STRATEGY).getValue(), ignoreCase, originalFlowFile, variables);
-                            if (lineMatchesProperty) {
-                                propertiesThatMatchedLine++;
-                            }
-
-                            if (lineMatchesProperty && ROUTE_TO_MATCHING_PROPERTY_NAME.getValue().equals(routeStrategy)) {
-                                // route each individual line to each Relationship that matches. This one matches.
-                                final Relationship relationship = entry.getKey();
+                        lineCount++;
 
-                                final Group group = getGroup(matchLine, groupPattern);
-                                appendLine(session, flowFileMap, relationship, originalFlowFile, line, charset, group);
-                                continue;
+                        final Relationship relationship;
+                        if (matcher != null) {
+                            if (ROUTE_TO_MATCHING_PROPERTY_NAME.getValue().equals(routeStrategy)) {
+                                // route each individual line to each Relationship that matches
+                                if (matcher.match(matchLine, matched) > 0) {
+                                    final Group group = getGroup(matchLine, groupPattern);
+                                    for (int i = 0; i < matched.length; i++) {
+                                        if (matched[i]) {
+                                            appendLine(session, flowFileMap, routes.get(i), originalFlowFile, line, charset, group);
+                                        }
+                                    }
+                                    relationship = null;
+                                } else {
+                                    relationship = REL_NO_MATCH;
+                                }
+                            } else if (ROUTE_TO_MATCHED_WHEN_ANY_PROPERTY_MATCHES.getValue().equals(routeStrategy)) {
+                                relationship = matcher.matchesAny(matchLine) ? REL_MATCH : REL_NO_MATCH;
+                            } else {
+                                relationship = matcher.matchesAll(matchLine) ? REL_MATCH : REL_NO_MATCH;
                             }
-
-                            // break as soon as possible to avoid calculating things we don't need to calculate.
-                            if (lineMatchesProperty && ROUTE_TO_MATCHED_WHEN_ANY_PROPERTY_MATCHES.getValue().equals(routeStrategy)) {
-                                break;
+                        } else {
+                            variables.put("line", line);
+                            variables.put("lineNo", String.valueOf(lineCount));
+
+                            int propertiesThatMatchedLine = 0;
+                            for (final Map.Entry<Relationship, PropertyValue> entry : propMap.entrySet()) {
+                                boolean lineMatchesProperty = lineMatches(matchLine, entry.getValue(), matchStrategy, ignoreCase, originalFlowFile, variables);
+                                if (lineMatchesProperty) {
+                                    propertiesThatMatchedLine++;
+                                }
+
+                                if (lineMatchesProperty && ROUTE_TO_MATCHING_PROPERTY_NAME.getValue().equals(routeStrategy)) {
+                                    // route each individual line to each Relationship that matches. This one matches.
+                                    final Group group = getGroup(matchLine, groupPattern);
+                                    appendLine(session, flowFileMap, entry.getKey(), originalFlowFile, line, charset, group);
+                                    continue;
+                                }
+
+                                // break as soon as possible to avoid calculating things we don't need to calculate.
+                                if (lineMatchesProperty && ROUTE_TO_MATCHED_WHEN_ANY_PROPERTY_MATCHES.getValue().equals(routeStrategy)) {
+                                    break;
+                                }
+
+                                if (!lineMatchesProperty && ROUTE_TO_MATCHED_WHEN_ALL_PROPERTIES_MATCH.getValue().equals(routeStrategy)) {
+                                    break;
+                                }
                             }
 
-                            if (!lineMatchesProperty && ROUTE_TO_MATCHED_WHEN_ALL_PROPERTIES_MATCH.getValue().equals(routeStrategy)) {
-                                break;
+                            if (ROUTE_TO_MATCHING_PROPERTY_NAME.getValue().equals(routeStrategy) && propertiesThatMatchedLine > 0) {
+                                // Set relationship to null so that we do not append the line to each FlowFile again. #appendLine is called
+                                // above within the loop, as the line may need to go to multiple different FlowFiles.
+                                relationship = null;
+                            } else if (ROUTE_TO_MATCHED_WHEN_ANY_PROPERTY_MATCHES.getValue().equals(routeStrategy) && propertiesThatMatchedLine > 0) {
+                                relationship = REL_MATCH;
+                            } else if (ROUTE_TO_MATCHED_WHEN_ALL_PROPERTIES_MATCH.getValue().equals(routeStrategy) && propertiesThatMatchedLine == propMap.size()) {
+                                relationship = REL_MATCH;
+                            } else {
+                                relationship = REL_NO_MATCH;
                             }
                         }
 
-                        final Relationship relationship;
-                        if (ROUTE_TO_MATCHING_PROPERTY_NAME.getValue().equals(routeStrategy) && propertiesThatMatchedLine > 0) {
-                            // Set relationship to null so that we do not append the line to each FlowFile again. #appendLine is called
-                            // above within the loop, as the line may need to go to multiple different FlowFiles.
-                            relationship = null;
-                        } else if (ROUTE_TO_MATCHED_WHEN_ANY_PROPERTY_MATCHES.getValue().equals(routeStrategy) && propertiesThatMatchedLine > 0) {
-                            relationship = REL_MATCH;
-                        } else if (ROUTE_TO_MATCHED_WHEN_ALL_PROPERTIES_MATCH.getValue().equals(routeStrategy) && propertiesThatMatchedLine == propValueMap.size()) {
-                            relationship = REL_MATCH;
-                        } else {
-                            relationship = REL_NO_MATCH;
-                        }
-
                         if (relationship != null) {
                             final Group group = getGroup(matchLine, groupPattern);
                             appendLine(session, flowFileMap, relationship, originalFlowFile, line, charset, group);
@@ -544,6 +596,25 @@ public class RouteText extends AbstractProcessor {
     }
 
 
+    private static MatchType getMatchType(final String matchStrategy) {
+        switch (matchStrategy) {
+            case startsWithValue:
+                return MatchType.STARTS_WITH;
+            case endsWithValue:
+                return MatchType.ENDS_WITH;
+            case containsValue:
+                return MatchType.CONTAINS;
+            case equalsValue:
+                return MatchType.EQUALS;
+            case matchesRegularExpressionValue:
+                return MatchType.MATCHES_REGULAR_EXPRESSION;
+            case containsRegularExpressionValue:
+                return MatchType.CONTAINS_REGULAR_EXPRESSION;
+            default:
+                throw new IllegalArgumentException("Matching Strategy " + matchStrategy + " cannot be compiled into a matcher");
+        }
+    }
+
     protected static boolean lineMatches(final String line, final Object comparison, final String matchingStrategy, final boolean ignoreCase,
         final FlowFile flowFile, final Map<String, String> variables) {
         switch (matchingStrategy) {
@@ -20,7 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,12 +52,8 @@ import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.io.InputStreamCallback;
 import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
-import org.apache.nifi.stream.io.BufferedInputStream;
-import org.apache.nifi.stream.io.BufferedOutputStream;
 import org.apache.nifi.stream.io.ByteArrayOutputStream;
-import org.apache.nifi.stream.io.ByteCountingInputStream;
 import org.apache.nifi.util.IntegerHolder;
-import org.apache.nifi.util.NaiveSearchRingBuffer;
 import org.apache.nifi.util.ObjectHolder;
 
 @EventDriven
@@ -157,166 +153,14 @@ public class SplitText extends AbstractProcessor {
         return properties;
     }
 
-    private int readLines(final InputStream in, final int maxNumLines, final OutputStream out, final boolean keepAllNewLines, final byte[] leadingNewLineBytes,final String endOfLine) throws IOException {
-        final EndOfLineBuffer eolBuffer = new EndOfLineBuffer();
-
-        int numLines = 0;
-        byte[] leadingBytes = leadingNewLineBytes;
-        for (int i = 0; i < maxNumLines; i++) {
-            final EndOfLineMarker eolMarker = locateEndOfLine(in, out, false, eolBuffer, leadingBytes,endOfLine);
-            leadingBytes = eolMarker.getLeadingNewLineBytes();
-
-            if (keepAllNewLines && out != null) {
-                if (leadingBytes != null) {
-                    out.write(leadingBytes);
-                    leadingBytes = null;
-                }
-
-                eolBuffer.drainTo(out);
-            }
-
-            if (eolBuffer.length() > 0 || eolMarker.getBytesConsumed() > 0L) {
-                numLines++;
-            }
-
-            if (eolMarker.isStreamEnded()) {
-                break;
-            }
-        }
-
-        return numLines;
-    }
-
-    private EndOfLineMarker locateEndOfLine(final InputStream in, final OutputStream out, final boolean includeLineDelimiter,
-        final EndOfLineBuffer eolBuffer, final byte[] leadingNewLineBytes,final String endOfLine) throws IOException {
-
-        int lastByte = -1;
-        long bytesRead = 0L;
-        byte[] bytesToWriteFirst = leadingNewLineBytes;
-        final NaiveSearchRingBuffer buffer = new NaiveSearchRingBuffer(getBytes(endOfLine));
-
-        while (true) {
-            //in.mark(1);
-            final int nextByte = in.read();
-            // if we hit end of stream or new line we're done
-            if (nextByte == -1) {
-                /*if (lastByte == '\r') {
-                    eolBuffer.addEndOfLine(true, false);
-                }*/
-
-                return new EndOfLineMarker(bytesRead, eolBuffer, true, bytesToWriteFirst);
-            }
-            
-            boolean isNewLineChar =buffer.addAndCompare((byte)nextByte); 
-            
-            if(nextByte=='\r' && "CRLF".equals(endOfLine) && !isNewLineChar){
-            	in.mark(1);
-            	int byteAhead=in.read();
-            	if(byteAhead=='\n'){
-            		isNewLineChar=true;
-            	}else{
-            		in.reset();
-            	}
-            }
-            
-            //final boolean isNewLineChar =buffer.addAndCompare((byte)nextByte);
-
-            // If we get a character that's not an end-of-line char, then
-            // we need to write out the EOL's that we have buffered (if out != null).
-            // Then, we need to reset our EOL buffer because we no longer have consecutive EOL's
-            bytesRead++;
-            if (!isNewLineChar) {
-            	
-                if (bytesToWriteFirst != null) {
-                    if (out != null) {
-                        out.write(bytesToWriteFirst);
-                    }
-
-                    bytesToWriteFirst = null;
-                }
-
-                if (out != null) {
-                    eolBuffer.drainTo(out);
-                }
-
-                eolBuffer.clear();
-            }
-
-            // if there's an OutputStream to copy the data to, copy it, if appropriate.
-            // "if appropriate" means that it's not a line delimiter or that we want to copy line delimiters
-            
-            if (out != null && (includeLineDelimiter || !isNewLineChar)) {
-                if (bytesToWriteFirst != null) {
-                    out.write(bytesToWriteFirst);
-                    bytesToWriteFirst = null;
-                }
-                out.write(nextByte);
-            }
-
-            // if we have a new line, then we're done
-            if (isNewLineChar) {            		
-            	eolBuffer.addEndOfLine(endOfLine);
-                return new EndOfLineMarker(bytesRead, eolBuffer, false, bytesToWriteFirst);
-            }
-
-            // we didn't get a new line but if last byte was carriage return we've reached a new-line.
-            // so we roll back the last byte that we read and return
-            /*if (lastByte == '\r') {
-                in.reset();
-                bytesRead--;    // we reset the stream by 1 byte so decrement the number of bytes read by 1
-                eolBuffer.addEndOfLine(true, false);
-                return new EndOfLineMarker(bytesRead, eolBuffer, false, bytesToWriteFirst);
-            }*/
-
-            // keep track of what the last byte was that we read so that we can detect \r followed by some other
-            // character.
-            lastByte = nextByte;
-        }
-    }
-    
-    private byte[] getBytes(final String endOfLine){
-    	if("CRLF".equals(endOfLine)){
-    		byte[] bytes={'\r','\n'};
-    		return bytes;
-    	}else if("CR".equals(endOfLine)){
-    		byte[] bytes={'\r'};
-    		return bytes;
-    	}else if("LF".equals(endOfLine)){
-    		byte[] bytes={'\n'};
-    		return bytes;
-    	}else{
-    		byte[] bytes={'\n'};
-    		return bytes;
-    	}
-    }
-    private SplitInfo locateSplitPoint(final InputStream in, final int numLines, final boolean keepAllNewLines,final String endOfLine) throws IOException {
-        final SplitInfo info = new SplitInfo();
-        final EndOfLineBuffer eolBuffer = new EndOfLineBuffer();
-
-        while (info.lengthLines < numLines) {
-            final boolean keepNewLine = keepAllNewLines || (info.lengthLines != numLines - 1);
-
-            final EndOfLineMarker eolMarker = locateEndOfLine(in, null, keepNewLine, eolBuffer, null,endOfLine);
-            long bytesTillNext = eolMarker.getBytesConsumed();
-
-            info.lengthLines++;
-
-            // if this is the last line in the split and we don't want to keep all lines
-            // (i.e., we want to remove trailing new lines), then decrement out lengthBytes
-            final boolean isLastLine = eolMarker.isStreamEnded() || info.lengthLines >= numLines;
-            if (isLastLine && !keepAllNewLines) {
-                bytesTillNext -= eolBuffer.length();
-            }
-
-            info.lengthBytes += bytesTillNext;
-
-            if (eolMarker.isStreamEnded()) {
-                info.endOfStream = true;
-                break;
-            }
+    private static byte[] getEndOfLineBytes(final String endOfLine) {
+        if ("CRLF".equals(endOfLine)) {
+            return new byte[] {'\r', '\n'};
+        } else if ("CR".equals(endOfLine)) {
+            return new byte[] {'\r'};
+        } else {
+            return new byte[] {'\n'};
         }
-
-        return info;
     }
 
     @Override
@@ -330,105 +174,67 @@ public class SplitText extends AbstractProcessor {
         final int headerCount = context.getProperty(HEADER_LINE_COUNT).asInteger();
         final int splitCount = context.getProperty(LINE_SPLIT_COUNT).asInteger();
         final boolean removeTrailingNewlines = context.getProperty(REMOVE_TRAILING_NEWLINES).asBoolean();
-        final String endOfLine = context.getProperty(LINE_END_CHAR).getValue();
+        final byte[] endOfLine = getEndOfLineBytes(context.getProperty(LINE_END_CHAR).getValue());
         final ObjectHolder<String> errorMessage = new ObjectHolder<>(null);
-        final ArrayList<SplitInfo> splitInfos = new ArrayList<>();
+        final SplitIndex splitIndex = new SplitIndex();
 
         final long startNanos = System.nanoTime();
         final List<FlowFile> splits = new ArrayList<>();
         session.read(flowFile, new InputStreamCallback() {
             @Override
-            public void process(final InputStream rawIn) throws IOException {
-                try (final BufferedInputStream bufferedIn = new BufferedInputStream(rawIn);
-                        final ByteCountingInputStream in = new ByteCountingInputStream(bufferedIn)) {
-
-                    // if we have header lines, copy them into a ByteArrayOutputStream
-                    final ByteArrayOutputStream headerStream = new ByteArrayOutputStream();
+            public void process(final InputStream in) throws IOException {
+                final LineScanner scanner = new LineScanner(in, endOfLine);
+
+                // if we have header lines, copy them into a ByteArrayOutputStream
+                final ByteArrayOutputStream headerStream = new ByteArrayOutputStream();
+                final int headerLinesCopied = scanner.copyLines(headerStream, null, 0, headerCount, true);
+                if (headerLinesCopied < headerCount) {
+                    errorMessage.set("Header Line Count is set to " + headerCount + " but file had only " + headerLinesCopied + " lines");
+                    return;
+                }
 
-                    final int headerLinesCopied = readLines(in, headerCount, headerStream, true, null,endOfLine);
-                    if (headerLinesCopied < headerCount) {
-                        errorMessage.set("Header Line Count is set to " + headerCount + " but file had only " + headerLinesCopied + " lines");
-                        return;
-                    }
-                    
-                    final NaiveSearchRingBuffer buffer = new NaiveSearchRingBuffer(getBytes(endOfLine));
-                    // Break header apart into trailing newlines and
+                if (headerCount > 0) {
+                    // Break the header apart into its trailing new lines and the rest. If we are removing trailing new lines,
+                    // the header's own trailing new lines are written only if the split has content following the header.
                     final byte[] headerBytes = headerStream.toByteArray();
-                    int headerNewLineByteCount = 0;
-                    for (int i = headerBytes.length - 1; i >= 0; i--) {
-                        final byte headerByte = headerBytes[i];
-                        if (buffer.addAndCompare((byte)headerByte)) {
-                            headerNewLineByteCount++;
-                        } else {
-                            break;
-                        }
-                    }
-
-                    final byte[] headerNewLineBytes;
-                    final byte[] headerBytesWithoutTrailingNewLines;
-                    if (headerNewLineByteCount == 0) {
-                        headerNewLineBytes = null;
-                        headerBytesWithoutTrailingNewLines = headerBytes;
-                    } else {
-                        headerNewLineBytes = new byte[headerNewLineByteCount];
-                        System.arraycopy(headerBytes, headerBytes.length - headerNewLineByteCount, headerNewLineBytes, 0, headerNewLineByteCount);
-
-                        headerBytesWithoutTrailingNewLines = new byte[headerBytes.length - headerNewLineByteCount];
-                        System.arraycopy(headerBytes, 0, headerBytesWithoutTrailingNewLines, 0, headerBytes.length - headerNewLineByteCount);
+                    int headerLength = headerBytes.length;
+                    int headerNewLineCount = 0;
+                    while (endsWith(headerBytes, headerLength, endOfLine)) {
+                        headerLength -= endOfLine.length;
+                        headerNewLineCount++;
                     }
-                	
-                    while (true) {
-                        if (headerCount > 0) {
-                            // if we have header lines, create a new FlowFile, copy the header lines to that file,
-                            // and then start copying lines
-                            final IntegerHolder linesCopied = new IntegerHolder(0);
-                            FlowFile splitFile = session.create(flowFile);
-                            try {
-                                splitFile = session.write(splitFile, new OutputStreamCallback() {
-                                    @Override
-                                    public void process(final OutputStream rawOut) throws IOException {
-                                        try (final BufferedOutputStream out = new BufferedOutputStream(rawOut)) {
-                                            out.write(headerBytesWithoutTrailingNewLines);
-                                            linesCopied.set(readLines(in, splitCount, out, !removeTrailingNewlines, headerNewLineBytes,endOfLine));
-                                        }
-                                    }
-                                });
-                                splitFile = session.putAttribute(splitFile, SPLIT_LINE_COUNT, String.valueOf(linesCopied.get()));
-                                logger.debug("Created Split File {} with {} lines", new Object[]{splitFile, linesCopied.get()});
-                            } finally {
-                                if (linesCopied.get() > 0) {
-                                    splits.add(splitFile);
-                                } else {
-                                    // if the number of content lines is a multiple of the SPLIT_LINE_COUNT,
-                                    // the last flow file will contain just a header; don't forward that one
-                                    session.remove(splitFile);
-                                }
-                            }
-
-                            // If we copied fewer lines than what we want, then we're done copying data (we've hit EOF).
-                            if (linesCopied.get() < splitCount) {
-                                break;
-                            }
-                        } else {
-                            // We have no header lines, so we can simply demarcate the original File via the
-                            // ProcessSession#clone method.
-                            long beforeReadingLines = in.getBytesConsumed();
-                            final SplitInfo info = locateSplitPoint(in, splitCount, !removeTrailingNewlines,endOfLine);
-                            if (info.lengthBytes > 0) {
-                                info.offsetBytes = beforeReadingLines;
-                                splitInfos.add(info);
-                                final long procNanos = System.nanoTime() - startNanos;
-                                final long procMillis = TimeUnit.MILLISECONDS.convert(procNanos, TimeUnit.NANOSECONDS);
-                                logger.debug("Detected start of Split File in {} at byte offset {} with a length of {} bytes; "
-                                        + "total splits = {}; total processing time = {} ms",
-                                        new Object[]{flowFile, beforeReadingLines, info.lengthBytes, splitInfos.size(), procMillis});
-                            }
 
-                            if (info.endOfStream) {
-                                break;
+                    final byte[] header = removeTrailingNewlines ? Arrays.copyOf(headerBytes, headerLength) : headerBytes;
+                    final int headerNewLinesToDefer = removeTrailingNewlines ? headerNewLineCount : 0;
+
+                    // With header lines, each split needs its own content. Create a new FlowFile and copy the header and
+                    // the split's lines into it directly from the scanner's buffer. If the number of content lines is a
+                    // multiple of the Line Split Count, there is no data left, so we never create a split of just a header.
+                    while (scanner.hasMoreData()) {
+                        final IntegerHolder linesCopied = new IntegerHolder(0);
+                        FlowFile splitFile = session.create(flowFile);
+                        splitFile = session.write(splitFile, new OutputStreamCallback() {
+                            @Override
+                            public void process(final OutputStream out) throws IOException {
+                                linesCopied.set(scanner.copyLines(out, header, headerNewLinesToDefer, splitCount, !removeTrailingNewlines));
                             }
+                        });
+                        splitFile = session.putAttribute(splitFile, SPLIT_LINE_COUNT, String.valueOf(linesCopied.get()));
+                        splits.add(splitFile);
+                        logger.debug("Created Split File {} with {} lines", new Object[]{splitFile, linesCopied.get()});
+                    }
+                } else {
+                    // We have no header lines, so we can simply demarcate the original File via the
+                    // ProcessSession#clone method. Only the offset, length and line count of each split is kept.
+                    while (scanner.hasMoreData()) {
+                        scanner.locateSplit(splitCount, !removeTrailingNewlines);
+                        if (scanner.getSplitLength() > 0) {
+                            splitIndex.add(scanner.getSplitOffset(), scanner.getSplitLength(), scanner.getSplitLineCount());
                         }
                     }
+
+                    final long procMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                    logger.debug("Located {} splits in {} in {} millis", new Object[]{splitIndex.size(), flowFile, procMillis});
                 }
             }
         });
@@ -442,13 +248,11 @@ public class SplitText extends AbstractProcessor {
             return;
         }
 
-        if (!splitInfos.isEmpty()) {
-            // Create the splits
-            for (final SplitInfo info : splitInfos) {
-                FlowFile split = session.clone(flowFile, info.offsetBytes, info.lengthBytes);
-                split = session.putAttribute(split, SPLIT_LINE_COUNT, String.valueOf(info.lengthLines));
-                splits.add(split);
-            }
+        // Create the splits
+        for (int i = 0; i < splitIndex.size(); i++) {
+            FlowFile split = session.clone(flowFile, splitIndex.getOffset(i), splitIndex.getLength(i));
+            split = session.putAttribute(split, SPLIT_LINE_COUNT, String.valueOf(splitIndex.getLineCount(i)));
+            splits.add(split);
         }
         finishFragmentAttributes(session, flowFile, splits);
 
@@ -462,6 +266,20 @@ public class SplitText extends AbstractProcessor {
         session.transfer(splits, REL_SPLITS);
     }
 
+    private static boolean endsWith(final byte[] bytes, final int length, final byte[] suffix) {
+        if (length < suffix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < suffix.length; i++) {
+            if (bytes[length - suffix.length + i] != suffix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private void finishFragmentAttributes(final ProcessSession session, final FlowFile source, final List<FlowFile> splits) {
         final String originalFilename = source.getAttribute(CoreAttributes.FILENAME.key());
 
@@ -480,115 +298,287 @@ public class SplitText extends AbstractProcessor {
         }
     }
 
-    private static class SplitInfo {
-        public long offsetBytes;
-        public long lengthBytes;
-        public long lengthLines;
-        public boolean endOfStream;
-
-        public SplitInfo() {
-            super();
-            this.offsetBytes = 0L;
-            this.lengthBytes = 0L;
-            this.lengthLines = 0L;
-            this.endOfStream = false;
+    /**
+     * The offset, length, and line count of each split that is to be created by cloning a region of the original
+     * FlowFile. The values are kept in a single array, rather than in an object per split, so that locating millions
+     * of splits does not create millions of objects before the splits themselves are created.
+     */
+    private static class SplitIndex {
+        private long[] entries = new long[3 * 64];
+        private int size = 0;
+
+        public void add(final long offset, final long length, final long lineCount) {
+            if (3 * (size + 1) > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+
+            final int index = 3 * size++;
+            entries[index] = offset;
+            entries[index + 1] = length;
+            entries[index + 2] = lineCount;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getOffset(final int split) {
+            return entries[3 * split];
         }
 
-        @SuppressWarnings("unused")
-        public SplitInfo(long offsetBytes, long lengthBytes, long lengthLines) {
-            super();
-            this.offsetBytes = offsetBytes;
-            this.lengthBytes = lengthBytes;
-            this.lengthLines = lengthLines;
+        public long getLength(final int split) {
+            return entries[3 * split + 1];
+        }
+
+        public long getLineCount(final int split) {
+            return entries[3 * split + 2];
         }
     }
 
-    public static class EndOfLineBuffer {
-        private static final byte CARRIAGE_RETURN = (byte) '\r';
-        private static final byte NEWLINE = (byte) '\n';
+    /**
+     * Reads lines from a FlowFile's content through a single buffer, locating line boundaries by scanning the buffered
+     * bytes for the end-of-line sequence. Lines are either copied to an OutputStream in bulk or only measured, so that a
+     * split without a header can be created as a reference into the original content.
+     */
+    private static class LineScanner {
+        private static final int BUFFER_SIZE = 65536;
+
+        private final InputStream in;
+        private final byte[] endOfLine;
+        private final byte lastEndOfLineByte;
+        private final boolean multiByteEndOfLine;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+        private long bufferOffset = 0L;
+        private boolean streamEnded = false;
+
+        private final byte[] outputBuffer = new byte[BUFFER_SIZE];
+        private int outputCount = 0;
+        private OutputStream out;
+        private int deferredNewLines = 0;
+
+        // the line most recently read by nextLine
+        private long lineStart;
+        private long contentEnd;
+        private boolean lineTerminated;
+
+        // the split most recently located by locateSplit
+        private long splitOffset;
+        private long splitLength;
+        private int splitLineCount;
+
+        public LineScanner(final InputStream in, final byte[] endOfLine) {
+            this.in = in;
+            this.endOfLine = endOfLine;
+            this.lastEndOfLineByte = endOfLine[endOfLine.length - 1];
+            this.multiByteEndOfLine = endOfLine.length > 1;
+        }
 
-        private final BitSet buffer = new BitSet();
-        private int index = 0;
+        /**
+         * @return <code>true</code> if there is at least one more byte, and therefore at least one more line, to be read
+         * @throws IOException if unable to read from the stream
+         */
+        public boolean hasMoreData() throws IOException {
+            while (position >= limit && !streamEnded) {
+                fill();
+            }
 
-        public void clear() {
-            index = 0;
+            return position < limit;
         }
-        
-        public void addEndOfLine(final String endOfLine) {
-        	if("CRLF".equals(endOfLine)){
-	            buffer.set(index++, true);
-	            buffer.set(index++, true);
-        	}else if("LF".equals(endOfLine)){
-	            buffer.set(index++, false);
-	            buffer.set(index++, true);
-        	}else if("CR".equals(endOfLine)){
-	            buffer.set(index++, true);
-	            buffer.set(index++, false);
-        	}
+
+        /**
+         * Reads up to <code>maxLines</code> lines, recording the offset and length of the region that they occupy
+         *
+         * @param maxLines the maximum number of lines to read
+         * @param keepTrailingNewLines whether or not the new lines after the last non-empty line belong to the region
+         * @throws IOException if unable to read from the stream
+         */
+        public void locateSplit(final int maxLines, final boolean keepTrailingNewLines) throws IOException {
+            splitOffset = getPosition();
+            long lastContentEnd = splitOffset;
+            int lineCount = 0;
+            while (lineCount < maxLines && nextLine(false, false)) {
+                lineCount++;
+                if (contentEnd > lineStart) {
+                    lastContentEnd = contentEnd;
+                }
+            }
+
+            splitLength = (keepTrailingNewLines ? getPosition() : lastContentEnd) - splitOffset;
+            splitLineCount = lineCount;
         }
-        
-        public void addEndOfLine(final boolean carriageReturn, final boolean newLine) {
-            buffer.set(index++, carriageReturn);
-            buffer.set(index++, newLine);
+
+        public long getSplitOffset() {
+            return splitOffset;
         }
 
-        private void drainTo(final OutputStream out) throws IOException {
-            for (int i = 0; i < index; i += 2) {
-                final boolean cr = buffer.get(i);
-                final boolean nl = buffer.get(i + 1);
+        public long getSplitLength() {
+            return splitLength;
+        }
 
-                // we've consumed all data in the buffer
-                if (!cr && !nl) {
-                    return;
-                }
+        public int getSplitLineCount() {
+            return splitLineCount;
+        }
 
-                if (cr) {
-                    out.write(CARRIAGE_RETURN);
+        /**
+         * Copies up to <code>maxLines</code> lines to the given stream
+         *
+         * @param destination the stream to copy to
+         * @param prefix the bytes to write before the first line, or <code>null</code>
+         * @param prefixNewLines the number of new lines that follow the prefix; these are treated as though they ended lines
+         *            that were copied, so they are not written unless followed by content when trailing new lines are removed
+         * @param maxLines the maximum number of lines to copy
+         * @param keepTrailingNewLines whether or not to write the new lines after the last non-empty line
+         * @return the number of lines copied
+         * @throws IOException if unable to read from the stream or write to the destination
+         */
+        public int copyLines(final OutputStream destination, final byte[] prefix, final int prefixNewLines, final int maxLines,
+            final boolean keepTrailingNewLines) throws IOException {
+            out = destination;
+            outputCount = 0;
+            if (prefix != null) {
+                write(prefix, 0, prefix.length);
+            }
+            deferredNewLines = prefixNewLines;
+
+            int lineCount = 0;
+            try {
+                while (lineCount < maxLines && nextLine(true, keepTrailingNewLines)) {
+                    lineCount++;
+                    if (lineTerminated && !keepTrailingNewLines) {
+                        deferredNewLines++;
+                    }
                 }
 
-                if (nl) {
-                    out.write(NEWLINE);
-                }
+                flush();
+            } finally {
+                out = null;
             }
 
-            clear();
+            return lineCount;
+        }
+
+        private long getPosition() {
+            return bufferOffset + position;
         }
 
         /**
-         * @return the number of line endings in the buffer
+         * Reads the next line, copying it to the current output stream if <code>copy</code> is <code>true</code>.
+         *
+         * @param copy whether or not to copy the content of the line
+         * @param includeNewLine whether or not to copy the line's end-of-line bytes along with its content
+         * @return <code>false</code> if the stream has no more lines
+         * @throws IOException if unable to read from the stream or write to the output stream
          */
-        public int length() {
-            return index / 2;
+        private boolean nextLine(final boolean copy, final boolean includeNewLine) throws IOException {
+            lineStart = getPosition();
+
+            while (true) {
+                final int endOfLineIndex = indexOfEndOfLine();
+                if (endOfLineIndex >= 0) {
+                    final int lineEnd = endOfLineIndex + endOfLine.length;
+                    if (copy) {
+                        writeContent(position, includeNewLine ? lineEnd : endOfLineIndex);
+                    }
+
+                    contentEnd = bufferOffset + endOfLineIndex;
+                    lineTerminated = true;
+                    position = lineEnd;
+                    return true;
+                }
+
+                // There is no end of line in the buffer, so all of it belongs to the current line, except that a trailing
+                // carriage return may be the start of a CRLF; that byte is kept in the buffer until we know.
+                int available = limit;
+                if (multiByteEndOfLine && !streamEnded && available > position && buffer[available - 1] == endOfLine[0]) {
+                    available--;
+                }
+
+                if (copy) {
+                    writeContent(position, available);
+                }
+                position = available;
+
+                if (streamEnded) {
+                    contentEnd = getPosition();
+                    lineTerminated = false;
+                    return contentEnd > lineStart;
+                }
+
+                fill();
+            }
         }
-    }
 
-    public static class EndOfLineMarker {
-        private final long bytesConsumed;
-        private final EndOfLineBuffer eolBuffer;
-        private final boolean streamEnded;
-        private final byte[] leadingNewLineBytes;
-
-        public EndOfLineMarker(final long bytesCounted, final EndOfLineBuffer eolBuffer, final boolean streamEnded, final byte[] leadingNewLineBytes) {
-            this.bytesConsumed = bytesCounted;
-            this.eolBuffer = eolBuffer;
-            this.streamEnded = streamEnded;
-            this.leadingNewLineBytes = leadingNewLineBytes;
+        private int indexOfEndOfLine() {
+            final byte[] buffer = this.buffer;
+            final byte last = lastEndOfLineByte;
+            for (int i = position; i < limit; i++) {
+                if (buffer[i] == last) {
+                    if (!multiByteEndOfLine) {
+                        return i;
+                    }
+
+                    // A carriage return that precedes the buffer's position has been consumed as content, so only
+                    // look back within the unconsumed bytes
+                    if (i > position && buffer[i - 1] == endOfLine[0]) {
+                        return i - 1;
+                    }
+                }
+            }
+
+            return -1;
         }
 
-        public long getBytesConsumed() {
-            return bytesConsumed;
+        private void fill() throws IOException {
+            final int remaining = limit - position;
+            if (remaining > 0) {
+                System.arraycopy(buffer, position, buffer, 0, remaining);
+            }
+
+            bufferOffset += position;
+            position = 0;
+            limit = remaining;
+
+            final int bytesRead = in.read(buffer, limit, buffer.length - limit);
+            if (bytesRead < 0) {
+                streamEnded = true;
+            } else {
+                limit += bytesRead;
+            }
         }
 
-        public EndOfLineBuffer getEndOfLineBuffer() {
-            return eolBuffer;
+        private void writeContent(final int start, final int end) throws IOException {
+            if (end <= start) {
+                return;
+            }
+
+            // new lines that have been held back are not trailing after all
+            for (; deferredNewLines > 0; deferredNewLines--) {
+                write(endOfLine, 0, endOfLine.length);
+            }
+
+            write(buffer, start, end - start);
         }
 
-        public boolean isStreamEnded() {
-            return streamEnded;
+        private void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length > outputBuffer.length - outputCount) {
+                flush();
+                if (length >= outputBuffer.length) {
+                    out.write(bytes, offset, length);
+                    return;
+                }
+            }
+
+            System.arraycopy(bytes, offset, outputBuffer, outputCount, length);
+            outputCount += length;
         }
 
-        public byte[] getLeadingNewLineBytes() {
-            return leadingNewLineBytes;
+        private void flush() throws IOException {
+            if (outputCount > 0) {
+                out.write(outputBuffer, 0, outputCount);
+                outputCount = 0;
+            }
         }
     }
 }
@@ -27,18 +27,33 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedInputStream;
 import java.util.zip.Checksum;
@@ -48,12 +63,15 @@ import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.InputRequirement.Requirement;
 import org.apache.nifi.annotation.behavior.Stateful;
 import org.apache.nifi.annotation.behavior.TriggerSerially;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.components.state.Scope;
 import org.apache.nifi.components.state.StateMap;
 import org.apache.nifi.flowfile.FlowFile;
@@ -79,9 +97,11 @@ import org.apache.nifi.util.LongHolder;
     + "with log files, an optional Rolling Filename Pattern can be used to retrieve data from files that have rolled over, even if the rollover occurred while NiFi "
     + "was not running (provided that the data still exists upon restart of NiFi). It is generally advisable to set the Run Schedule to a few seconds, rather than running "
     + "with the default value of 0 secs, as this Processor will consume a lot of resources if scheduled very aggressively. At this time, this Processor does not support "
-    + "ingesting files that have been compressed when 'rolled over'.")
+    + "ingesting files that have been compressed when 'rolled over'. When the Tailing Mode is 'Multiple files', every file in the Base Directory whose name matches "
+    + "the File to Tail pattern is tailed by this one Processor, and only the files that changed since the last run are read.")
 @Stateful(scopes = {Scope.LOCAL, Scope.CLUSTER}, description = "Stores state about where in the Tailed File it left off so that on restart it does not have to duplicate data. "
-    + "State is stored either local or clustered depend on the <File Location> property.")
+    + "When tailing multiple files, the position of every file is stored. State is stored either local or clustered depend on the <File Location> property.")
+@WritesAttribute(attribute = "tailfile.original.path", description = "The path of the file that the data was read from, when the Tailing Mode is 'Multiple files'")
 public class TailFile extends AbstractProcessor {
 
     static final AllowableValue LOCATION_LOCAL = new AllowableValue("Local", "Local", "File is located on a local disk drive. Each node in a cluster will tail a different file.");
@@ -95,13 +115,34 @@ public class TailFile extends AbstractProcessor {
     static final AllowableValue START_CURRENT_TIME = new AllowableValue("Current Time", "Current Time",
         "Start with the data at the end of the File to Tail. Do not ingest any data thas has already been rolled over or any data in the File to Tail that has already been written.");
 
+    static final AllowableValue MODE_SINGLE_FILE = new AllowableValue("Single file", "Single file", "Tail the one file named by the File to Tail property.");
+    static final AllowableValue MODE_MULTIPLE_FILES = new AllowableValue("Multiple files", "Multiple files",
+        "Tail every file in the Base Directory whose name matches the regular expression given by the File to Tail property. Files that are rolled over "
+        + "are consumed up to their end if they are still open when they are renamed or removed, but the Rolling Filename Pattern is not used, and files "
+        + "found after the first run are always tailed from their beginning.");
+
     static final PropertyDescriptor FILENAME = new PropertyDescriptor.Builder()
         .name("File to Tail")
-        .description("Fully-qualified filename of the file that should be tailed")
+        .description("Fully-qualified filename of the file that should be tailed or, if the Tailing Mode is 'Multiple files', a regular expression "
+            + "that the names of the files to tail in the Base Directory must match")
         .expressionLanguageSupported(false)
         .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
         .required(true)
         .build();
+    static final PropertyDescriptor MODE = new PropertyDescriptor.Builder()
+        .name("Tailing Mode")
+        .description("Specifies whether this Processor tails a single file or all files of a directory that match a pattern")
+        .allowableValues(MODE_SINGLE_FILE, MODE_MULTIPLE_FILES)
+        .defaultValue(MODE_SINGLE_FILE.getValue())
+        .required(true)
+        .build();
+    static final PropertyDescriptor BASE_DIRECTORY = new PropertyDescriptor.Builder()
+        .name("Base Directory")
+        .description("The directory that contains the files to tail. Required if the Tailing Mode is 'Multiple files'.")
+        .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+        .expressionLanguageSupported(false)
+        .required(false)
+        .build();
     static final PropertyDescriptor ROLLING_FILENAME_PATTERN = new PropertyDescriptor.Builder()
         .name("Rolling Filename Pattern")
         .description("If the file to tail \"rolls over\" as would be the case with log files, this filename pattern will be used to "
@@ -139,14 +180,36 @@ public class TailFile extends AbstractProcessor {
         .description("All FlowFiles are routed to this Relationship.")
         .build();
 
+    /*
+     * When tailing multiple files, the checksum that identifies a file covers at most this many bytes from the beginning of the file,
+     * so that recovering the state of a file does not require reading everything that was consumed from it
+     */
+    static final long MAX_CHECKSUM_LENGTH = 65536L;
+
     private volatile TailFileState state = new TailFileState(null, null, null, 0L, 0L, null, ByteBuffer.allocate(65536));
     private volatile Long expectedRecoveryChecksum;
     private volatile boolean tailFileChanged = false;
 
+    // reused for every line that is read; only accessed from onTrigger, which is never run concurrently
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
+    // the files that are tailed when the Tailing Mode is 'Multiple files', by filename
+    private final Map<String, TailedFile> tailedFiles = new TreeMap<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(65536);
+    private final Set<String> changedFilenames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean rescanRequired;
+    private volatile boolean startAtCurrentTime;
+    private volatile File baseDirectory;
+    private volatile Pattern filenamePattern;
+    private volatile WatchService watchService;
+    private volatile ExecutorService watcherExecutor;
+
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
         final List<PropertyDescriptor> properties = new ArrayList<>();
         properties.add(FILENAME);
+        properties.add(MODE);
+        properties.add(BASE_DIRECTORY);
         properties.add(ROLLING_FILENAME_PATTERN);
         properties.add(STATE_FILE);
         properties.add(START_POSITION);
@@ -159,6 +222,37 @@ public class TailFile extends AbstractProcessor {
         return Collections.singleton(REL_SUCCESS);
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final Collection<ValidationResult> results = new ArrayList<>();
+
+        if (MODE_MULTIPLE_FILES.getValue().equals(context.getProperty(MODE).getValue())) {
+            if (!context.getProperty(BASE_DIRECTORY).isSet()) {
+                results.add(new ValidationResult.Builder()
+                    .explanation("Base Directory must be set when tailing multiple files")
+                    .valid(false)
+                    .subject(BASE_DIRECTORY.getName())
+                    .build());
+            }
+
+            final String filenamePattern = context.getProperty(FILENAME).getValue();
+            if (filenamePattern != null) {
+                try {
+                    Pattern.compile(filenamePattern);
+                } catch (final PatternSyntaxException e) {
+                    results.add(new ValidationResult.Builder()
+                        .explanation("File to Tail must be a valid regular expression when tailing multiple files: " + e.getDescription())
+                        .valid(false)
+                        .subject(FILENAME.getName())
+                        .input(filenamePattern)
+                        .build());
+                }
+            }
+        }
+
+        return results;
+    }
+
     @Override
     public void onPropertyModified(final PropertyDescriptor descriptor, final String oldValue, final String newValue) {
         if (isConfigurationRestored() && FILENAME.equals(descriptor)) {
@@ -175,6 +269,13 @@ public class TailFile extends AbstractProcessor {
         // State Manager. But we do this only if nothing has ever been stored in the State Manager.
         final Scope scope = getStateScope(context);
         final StateMap stateMap = context.getStateManager().getState(scope);
+        if (isTailingMultipleFiles(context)) {
+            recoverTailedFiles(context, stateMap.toMap());
+            watcherExecutor = Executors.newSingleThreadExecutor();
+            startWatcher();
+            return;
+        }
+
         if (stateMap.getVersion() == -1L) {
             // State has never been stored in the State Manager. Try to recover state from a file, if one exists.
             final Map<String, String> stateFromFile = recoverStateValuesFromFile(context);
@@ -283,11 +384,11 @@ public class TailFile extends AbstractProcessor {
             final Checksum checksum = new CRC32();
             final File existingTailFile = new File(storedStateFilename);
             if (existingTailFile.length() >= position) {
-                try (final InputStream tailFileIs = new FileInputStream(existingTailFile);
-                    final CheckedInputStream in = new CheckedInputStream(tailFileIs, checksum)) {
-                    StreamUtils.copy(in, new NullOutputStream(), state.getPosition());
+                final FileChannel channel = FileChannel.open(existingTailFile.toPath(), StandardOpenOption.READ);
+                try {
+                    readRange(channel, 0L, state.getPosition(), state.getBuffer(), null, checksum);
 
-                    final long checksumResult = in.getChecksum().getValue();
+                    final long checksumResult = checksum.getValue();
                     if (checksumResult == expectedRecoveryChecksum) {
                         // Checksums match. This means that we want to resume reading from where we left off.
                         // So we will populate the reader object so that it will be used in onTrigger. If the
@@ -296,7 +397,7 @@ public class TailFile extends AbstractProcessor {
                         // beginning of the file.
                         getLogger().debug("When recovering state, checksum of tailed file matches the stored checksum. Will resume where left off.");
                         tailFile = existingTailFile;
-                        reader = FileChannel.open(tailFile.toPath(), StandardOpenOption.READ);
+                        reader = channel;
                         getLogger().debug("Created FileChannel {} for {} in recoverState", new Object[] {reader, tailFile});
 
                         reader.position(position);
@@ -304,6 +405,10 @@ public class TailFile extends AbstractProcessor {
                         // we don't seek the reader to the position, so our reader will start at beginning of file.
                         getLogger().debug("When recovering state, checksum of tailed file does not match the stored checksum. Will begin tailing current file from beginning.");
                     }
+                } finally {
+                    if (reader == null) {
+                        channel.close();
+                    }
                 }
             } else {
                 // fewer bytes than our position, so we know we weren't already reading from this file. Keep reader at a position of 0.
@@ -351,6 +456,11 @@ public class TailFile extends AbstractProcessor {
 
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        if (isTailingMultipleFiles(context)) {
+            tailFiles(context, session);
+            return;
+        }
+
         // If user changes the file that is being tailed, we need to consume the already-rolled-over data according
         // to the Initial Start Position property
         boolean rolloverOccurred;
@@ -375,11 +485,7 @@ public class TailFile extends AbstractProcessor {
                     final long position = file.length();
                     final long timestamp = file.lastModified();
 
-                    try (final InputStream fis = new FileInputStream(file);
-                        final CheckedInputStream in = new CheckedInputStream(fis, checksum)) {
-                        StreamUtils.copy(in, new NullOutputStream(), position);
-                    }
-
+                    readRange(fileChannel, 0L, position, state.getBuffer(), null, checksum);
                     fileChannel.position(position);
                     cleanup();
                     state = new TailFileState(filename, file, fileChannel, position, timestamp, checksum, state.getBuffer());
@@ -468,7 +574,9 @@ public class TailFile extends AbstractProcessor {
             @Override
             public void process(final OutputStream rawOut) throws IOException {
                 try (final OutputStream out = new BufferedOutputStream(rawOut)) {
-                    positionHolder.set(readLines(fileReader, currentState.getBuffer(), out, chksum));
+                    final long newPosition = readLines(fileReader, fileReader.position(), currentState.getBuffer(), out, chksum);
+                    fileReader.position(newPosition);
+                    positionHolder.set(newPosition);
                 }
             }
         });
@@ -478,18 +586,8 @@ public class TailFile extends AbstractProcessor {
             session.remove(flowFile);
             getLogger().debug("No data to consume; removed created FlowFile");
         } else {
-            // determine filename for FlowFile by using <base filename of log file>.<initial offset>-<final offset>.<extension>
-            final String tailFilename = file.getName();
-            final String baseName = StringUtils.substringBeforeLast(tailFilename, ".");
-            final String flowFileName;
-            if (baseName.length() < tailFilename.length()) {
-                flowFileName = baseName + "." + position + "-" + positionHolder.get() + "." + StringUtils.substringAfterLast(tailFilename, ".");
-            } else {
-                flowFileName = baseName + "." + position + "-" + positionHolder.get();
-            }
-
             final Map<String, String> attributes = new HashMap<>(2);
-            attributes.put(CoreAttributes.FILENAME.key(), flowFileName);
+            attributes.put(CoreAttributes.FILENAME.key(), getFlowFileName(file.getName(), position, positionHolder.get()));
             attributes.put(CoreAttributes.MIME_TYPE.key(), "text/plain");
             flowFile = session.putAllAttributes(flowFile, attributes);
 
@@ -519,81 +617,137 @@ public class TailFile extends AbstractProcessor {
 
     /**
      * Read new lines from the given FileChannel, copying it to the given Output Stream. The Checksum is used in order to later determine whether or not
-     * data has been consumed.
+     * data has been consumed. The data is read with positional reads, so the position of the FileChannel is not changed.
      *
      * @param reader The FileChannel to read data from
+     * @param startPosition the position in the file to start reading from
      * @param buffer the buffer to use for copying data
      * @param out the OutputStream to copy the data to
-     * @param checksum the Checksum object to use in order to calculate checksum for recovery purposes
+     * @param checksum the Checksum object to use in order to calculate checksum for recovery purposes, or <code>null</code> if no checksum is needed
      *
-     * @return The new position after the lines have been read
+     * @return The position following the last line that was read
      * @throws java.io.IOException if an I/O error occurs.
      */
-    private long readLines(final FileChannel reader, final ByteBuffer buffer, final OutputStream out, final Checksum checksum) throws IOException {
-        getLogger().debug("Reading lines starting at position {}", new Object[] {reader.position()});
-
-        try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            long pos = reader.position();
-            long rePos = pos; // position to re-read
+    private long readLines(final FileChannel reader, final long startPosition, final ByteBuffer buffer, final OutputStream out, final Checksum checksum) throws IOException {
+        getLogger().debug("Reading lines starting at position {}", new Object[] {startPosition});
+
+        final ByteArrayOutputStream baos = lineBuffer;
+        baos.reset();
+
+        long pos = startPosition;
+        long rePos = pos; // position to re-read
+
+        int num;
+        int linesRead = 0;
+        boolean seenCR = false;
+        buffer.clear();
+
+        while (((num = reader.read(buffer, pos)) != -1)) {
+            for (int i = 0; i < num; i++) {
+                byte ch = buffer.get(i);
+
+                switch (ch) {
+                    case '\n':
+                        baos.write(ch);
+                        seenCR = false;
+                        baos.writeTo(out);
+                        updateChecksum(checksum, baos);
+                        baos.reset();
+                        rePos = pos + i + 1;
+                        linesRead++;
+                        break;
+                    case '\r':
+                        baos.write(ch);
+                        seenCR = true;
+                        break;
+                    default:
+                        if (seenCR) {
+                            seenCR = false;
+                            baos.writeTo(out);
+                            updateChecksum(checksum, baos);
+                            linesRead++;
+                            baos.reset();
+                            baos.write(ch);
+                            rePos = pos + i;
+                        } else {
+                            baos.write(ch);
+                        }
+                }
+            }
 
-            int num;
-            int linesRead = 0;
-            boolean seenCR = false;
+            pos += num;
             buffer.clear();
+        }
 
-            while (((num = reader.read(buffer)) != -1)) {
-                buffer.flip();
+        if (rePos < pos) {
+            getLogger().debug("Read {} lines; will continue from {} rather than {}", new Object[] {linesRead, rePos, pos});
+        }
 
-                for (int i = 0; i < num; i++) {
-                    byte ch = buffer.get(i);
+        baos.reset();
+        return rePos;
+    }
 
-                    switch (ch) {
-                        case '\n':
-                            baos.write(ch);
-                            seenCR = false;
-                            baos.writeTo(out);
-                            checksum.update(baos.getUnderlyingBuffer(), 0, baos.size());
-                            if (getLogger().isTraceEnabled()) {
-                                getLogger().trace("Checksum updated to {}", new Object[] {checksum.getValue()});
-                            }
+    private void updateChecksum(final Checksum checksum, final ByteArrayOutputStream line) {
+        if (checksum == null) {
+            return;
+        }
 
-                            baos.reset();
-                            rePos = pos + i + 1;
-                            linesRead++;
-                            break;
-                        case '\r':
-                            baos.write(ch);
-                            seenCR = true;
-                            break;
-                        default:
-                            if (seenCR) {
-                                seenCR = false;
-                                baos.writeTo(out);
-                                checksum.update(baos.getUnderlyingBuffer(), 0, baos.size());
-                                if (getLogger().isTraceEnabled()) {
-                                    getLogger().trace("Checksum updated to {}", new Object[] {checksum.getValue()});
-                                }
-
-                                linesRead++;
-                                baos.reset();
-                                baos.write(ch);
-                                rePos = pos + i;
-                            } else {
-                                baos.write(ch);
-                            }
-                    }
-                }
+        checksum.update(line.getUnderlyingBuffer(), 0, line.size());
+        if (getLogger().isTraceEnabled()) {
+            getLogger().trace("Checksum updated to {}", new Object[] {checksum.getValue()});
+        }
+    }
 
-                pos = reader.position();
+    /**
+     * Reads the bytes of the given FileChannel from the given start position up to the given end position, or up to the end of the file if it is
+     * shorter, without changing the position of the FileChannel.
+     *
+     * @param channel the FileChannel to read data from
+     * @param startPosition the position of the first byte to read
+     * @param endPosition the position following the last byte to read
+     * @param buffer the buffer to use for reading data
+     * @param out the OutputStream to copy the data to, or <code>null</code> if the data is not to be copied
+     * @param checksum the Checksum to update with the data, or <code>null</code> if no checksum is needed
+     *
+     * @return the position following the last byte that was read
+     * @throws IOException if an I/O error occurs
+     */
+    private long readRange(final FileChannel channel, final long startPosition, final long endPosition, final ByteBuffer buffer, final OutputStream out,
+        final Checksum checksum) throws IOException {
+        long pos = startPosition;
+        while (pos < endPosition) {
+            buffer.clear();
+            if (endPosition - pos < buffer.capacity()) {
+                buffer.limit((int) (endPosition - pos));
             }
 
-            if (rePos < reader.position()) {
-                getLogger().debug("Read {} lines; repositioning reader from {} to {}", new Object[] {linesRead, pos, rePos});
-                reader.position(rePos); // Ensure we can re-read if necessary
+            final int num = channel.read(buffer, pos);
+            if (num == -1) {
+                break;
             }
 
-            return rePos;
+            if (out != null) {
+                out.write(buffer.array(), buffer.arrayOffset(), num);
+            }
+            if (checksum != null) {
+                checksum.update(buffer.array(), buffer.arrayOffset(), num);
+            }
+            pos += num;
         }
+
+        return pos;
+    }
+
+    /**
+     * Determines the filename for a FlowFile by using &lt;base filename of log file&gt;.&lt;initial offset&gt;-&lt;final offset&gt;.&lt;extension&gt;
+     */
+    private String getFlowFileName(final String tailFilename, final long startPosition, final long endPosition) {
+        final String baseName = StringUtils.substringBeforeLast(tailFilename, ".");
+        if (baseName.length() < tailFilename.length()) {
+            return baseName + "." + startPosition + "-" + endPosition + "." + StringUtils.substringAfterLast(tailFilename, ".");
+        }
+
+        return baseName + "." + startPosition + "-" + endPosition;
     }
 
 
@@ -870,6 +1024,590 @@ public class TailFile extends AbstractProcessor {
         return state;
     }
 
+    private boolean isTailingMultipleFiles(final ProcessContext context) {
+        return MODE_MULTIPLE_FILES.getValue().equals(context.getProperty(MODE).getValue());
+    }
+
+    /**
+     * Recovers the positions of the files that are tailed when the Tailing Mode is 'Multiple files'. A file is tailed from the stored position only if
+     * it is at least that long and the checksum of its first bytes matches the stored checksum; otherwise it is assumed to be a new file and is tailed
+     * from the beginning.
+     *
+     * @param context the ProcessContext
+     * @param stateValues the values that were recovered from state that was previously stored. This Map should be populated with the keys defined
+     *            in {@link TailedFile}.
+     */
+    private void recoverTailedFiles(final ProcessContext context, final Map<String, String> stateValues) {
+        closeTailedFiles();
+        baseDirectory = new File(context.getProperty(BASE_DIRECTORY).getValue());
+        filenamePattern = Pattern.compile(context.getProperty(FILENAME).getValue());
+
+        int index = 0;
+        for (; stateValues.containsKey(TailedFile.getStateKey(index, TailedFile.FILENAME_KEY)); index++) {
+            final String filename = stateValues.get(TailedFile.getStateKey(index, TailedFile.FILENAME_KEY));
+            if (!filenamePattern.matcher(filename).matches() || !new File(baseDirectory, filename).isFile()) {
+                continue;
+            }
+
+            final long position = Long.parseLong(stateValues.get(TailedFile.getStateKey(index, TailedFile.POSITION_KEY)));
+            final long checksumValue = Long.parseLong(stateValues.get(TailedFile.getStateKey(index, TailedFile.CHECKSUM_KEY)));
+            final long checksumLength = Long.parseLong(stateValues.get(TailedFile.getStateKey(index, TailedFile.CHECKSUM_LENGTH_KEY)));
+
+            final TailedFile tailedFile = openTailedFile(filename);
+            if (tailedFile == null) {
+                continue;
+            }
+
+            try {
+                final long checksummed = readRange(tailedFile.getReader(), 0L, checksumLength, readBuffer, null, tailedFile.getChecksum());
+                if (checksummed == checksumLength && tailedFile.getChecksum().getValue() == checksumValue && tailedFile.getReader().size() >= position) {
+                    getLogger().debug("When recovering state, checksum of {} matches the stored checksum. Will resume at position {}.", new Object[] {tailedFile.getFile(), position});
+                    tailedFile.setPosition(position);
+                    tailedFile.setChecksumLength(checksumLength);
+                } else {
+                    getLogger().debug("When recovering state, {} does not match the stored checksum and position. Will begin tailing it from beginning.", new Object[] {tailedFile.getFile()});
+                    tailedFile.getChecksum().reset();
+                }
+            } catch (final IOException ioe) {
+                getLogger().warn("Failed to verify checksum of {} due to {}; will begin tailing it from beginning", new Object[] {tailedFile.getFile(), ioe});
+                tailedFile.getChecksum().reset();
+            }
+
+            tailedFiles.put(filename, tailedFile);
+        }
+
+        // the Initial Start Position only applies to the files that are found before any state was stored
+        startAtCurrentTime = index == 0 && START_CURRENT_TIME.getValue().equals(context.getProperty(START_POSITION).getValue());
+        rescanRequired = true;
+        getLogger().debug("Recovered state of {} tailed files", new Object[] {tailedFiles.size()});
+    }
+
+    /**
+     * Registers the Base Directory with a WatchService and starts a thread that records the names of the files that are created, modified or removed,
+     * so that only those files have to be checked for new data. If the directory cannot be watched, every file is checked on each run instead.
+     */
+    private void startWatcher() {
+        final ExecutorService executor = watcherExecutor;
+        if (executor == null) {
+            return;
+        }
+
+        final Path directory = baseDirectory.toPath();
+        WatchService service = null;
+        try {
+            service = directory.getFileSystem().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (final IOException ioe) {
+            getLogger().debug("Unable to watch {} for changes due to {}; will check all files for new data", new Object[] {directory, ioe});
+            closeWatchService(service);
+            return;
+        }
+
+        // files may have changed before the directory was registered
+        rescanRequired = true;
+        watchService = service;
+        executor.submit(new DirectoryWatcher(service));
+    }
+
+    private void closeWatchService(final WatchService service) {
+        if (service == null) {
+            return;
+        }
+
+        try {
+            service.close();
+        } catch (final IOException ioe) {
+            getLogger().warn("Failed to close watch service due to {}", new Object[] {ioe});
+        }
+    }
+
+    @OnStopped
+    public void stopTailingFiles() {
+        final WatchService service = watchService;
+        watchService = null;
+        closeWatchService(service);
+
+        final ExecutorService executor = watcherExecutor;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30000, TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                    getLogger().warn("Executor did not stop in 30 sec. Terminated.");
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            watcherExecutor = null;
+        }
+
+        closeTailedFiles();
+    }
+
+    private void closeTailedFiles() {
+        for (final TailedFile tailedFile : tailedFiles.values()) {
+            closeReader(tailedFile);
+        }
+        tailedFiles.clear();
+    }
+
+    private void closeReader(final TailedFile tailedFile) {
+        try {
+            tailedFile.getReader().close();
+            getLogger().debug("Closed FileChannel {}", new Object[] {tailedFile.getReader()});
+        } catch (final IOException ioe) {
+            getLogger().warn("Failed to close file handle for {} due to {}", new Object[] {tailedFile.getFile(), ioe});
+        }
+    }
+
+    /**
+     * Consumes new data from the files of the Base Directory whose names match the File to Tail pattern. Only the files that the watch service reported
+     * as changed are checked, unless all files have to be checked because the directory could not be watched or events were lost. The data of all files
+     * is written within this one session, after which the state of all files is persisted as a single state map.
+     *
+     * @param context the ProcessContext
+     * @param session the ProcessSession
+     */
+    private void tailFiles(final ProcessContext context, final ProcessSession session) {
+        if (watchService == null) {
+            startWatcher();
+        }
+
+        final Set<String> filenames = new TreeSet<>();
+        final boolean fullScan = rescanRequired || watchService == null;
+        if (fullScan) {
+            rescanRequired = false;
+            changedFilenames.clear();
+            filenames.addAll(tailedFiles.keySet());
+            try (final DirectoryStream<Path> dirStream = Files.newDirectoryStream(baseDirectory.toPath())) {
+                for (final Path path : dirStream) {
+                    final String filename = path.getFileName().toString();
+                    if (filenamePattern.matcher(filename).matches()) {
+                        filenames.add(filename);
+                    }
+                }
+            } catch (final IOException ioe) {
+                getLogger().warn("Failed to list files in {} due to {}", new Object[] {baseDirectory, ioe});
+            }
+        } else {
+            final Iterator<String> itr = changedFilenames.iterator();
+            while (itr.hasNext()) {
+                filenames.add(itr.next());
+                itr.remove();
+            }
+        }
+
+        trackRenamedFiles(filenames);
+
+        boolean stateChanged = false;
+        for (final String filename : filenames) {
+            stateChanged |= checkTailedFile(filename, session);
+        }
+
+        if (fullScan) {
+            startAtCurrentTime = false;
+        }
+
+        if (!stateChanged) {
+            getLogger().debug("No data to consume from {} files; created no FlowFiles", new Object[] {filenames.size()});
+            context.yield();
+            return;
+        }
+
+        // We must commit session before persisting state in order to avoid data loss on restart
+        session.commit();
+        persistTailedFiles(context);
+    }
+
+    /**
+     * Continues tailing a file under its new name if it was renamed to a name that matches the File to Tail pattern, as is the case when a file is
+     * rolled over into the same directory under a name that also matches, so that the data that was already consumed is not consumed again.
+     *
+     * @param filenames the names of the files that changed
+     */
+    private void trackRenamedFiles(final Set<String> filenames) {
+        Map<Object, TailedFile> filesByKey = null;
+        for (final String filename : filenames) {
+            if (tailedFiles.containsKey(filename)) {
+                continue;
+            }
+
+            final Object fileKey = getFileKey(new File(baseDirectory, filename));
+            if (fileKey == null) {
+                continue;
+            }
+
+            if (filesByKey == null) {
+                filesByKey = new HashMap<>();
+                for (final TailedFile tailedFile : tailedFiles.values()) {
+                    if (tailedFile.getFileKey() != null) {
+                        filesByKey.put(tailedFile.getFileKey(), tailedFile);
+                    }
+                }
+            }
+
+            final TailedFile renamedFile = filesByKey.remove(fileKey);
+            if (renamedFile != null && !fileKey.equals(getFileKey(renamedFile.getFile()))) {
+                getLogger().debug("{} was renamed to {}; will continue tailing it at position {}", new Object[] {renamedFile.getFile(), filename, renamedFile.getPosition()});
+                tailedFiles.remove(renamedFile.getFile().getName());
+                renamedFile.setFile(new File(baseDirectory, filename));
+                tailedFiles.put(filename, renamedFile);
+            }
+        }
+    }
+
+    /**
+     * Consumes the new data of the given file. If the file was removed or replaced by another file, any data that remains in the file that was being
+     * tailed is consumed and tailing continues with the new file, if any. If the file was truncated, tailing starts over from its beginning.
+     *
+     * @param filename the name of the file in the Base Directory
+     * @param session the ProcessSession
+     * @return <code>true</code> if the state of the file changed
+     */
+    private boolean checkTailedFile(final String filename, final ProcessSession session) {
+        final File file = new File(baseDirectory, filename);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (final IOException ioe) {
+            attributes = null;
+        }
+        final boolean exists = attributes != null && attributes.isRegularFile();
+
+        boolean stateChanged = false;
+        TailedFile tailedFile = tailedFiles.get(filename);
+        if (tailedFile != null) {
+            final boolean replaced = !exists || (tailedFile.getFileKey() != null && !tailedFile.getFileKey().equals(attributes.fileKey()));
+            final String newFilename = replaced ? findRenamedFile(tailedFile) : null;
+            if (newFilename != null) {
+                // the file was renamed to a name that is tailed as well, so continue where we left off
+                getLogger().debug("{} was renamed to {}; will continue tailing it at position {}", new Object[] {file, newFilename, tailedFile.getPosition()});
+                tailedFiles.remove(filename);
+                tailedFile.setFile(new File(baseDirectory, newFilename));
+                tailedFiles.put(newFilename, tailedFile);
+                try {
+                    consumeTailedFile(tailedFile, false, session);
+                } catch (final ProcessException pe) {
+                    retryLater(tailedFile, pe);
+                }
+                tailedFile = null;
+                stateChanged = true;
+            } else if (replaced || attributes.size() < tailedFile.getPosition()) {
+                if (replaced) {
+                    // no more data will be written to the file, so consume all of it rather than only complete lines
+                    getLogger().debug("{} was rolled over; consuming remainder of the file", new Object[] {file});
+                    try {
+                        consumeTailedFile(tailedFile, true, session);
+                    } catch (final ProcessException pe) {
+                        // keep the file that was rolled over, so that its remainder is consumed before tailing the new file
+                        retryLater(tailedFile, pe);
+                        return stateChanged;
+                    }
+                } else {
+                    getLogger().debug("{} was truncated; will begin tailing it from beginning", new Object[] {file});
+                }
+
+                closeReader(tailedFile);
+                tailedFiles.remove(filename);
+                tailedFile = null;
+                stateChanged = true;
+            }
+        }
+
+        if (!exists) {
+            return stateChanged;
+        }
+
+        if (tailedFile == null) {
+            tailedFile = openTailedFile(filename);
+            if (tailedFile == null) {
+                return stateChanged;
+            }
+
+            if (startAtCurrentTime) {
+                tailedFile.setPosition(attributes.size());
+                updateChecksum(tailedFile);
+            }
+            tailedFiles.put(filename, tailedFile);
+            stateChanged = true;
+        }
+
+        if (attributes.size() > tailedFile.getPosition()) {
+            try {
+                stateChanged |= consumeTailedFile(tailedFile, false, session);
+            } catch (final ProcessException pe) {
+                retryLater(tailedFile, pe);
+            }
+        }
+
+        return stateChanged;
+    }
+
+    /**
+     * @return the name under which the given file can now be found in the Base Directory, if it was renamed to a name that matches the File to Tail
+     *         pattern and is not tailed yet, or <code>null</code> otherwise
+     */
+    private String findRenamedFile(final TailedFile tailedFile) {
+        if (tailedFile.getFileKey() == null) {
+            return null;
+        }
+
+        try (final DirectoryStream<Path> dirStream = Files.newDirectoryStream(baseDirectory.toPath())) {
+            for (final Path path : dirStream) {
+                final String filename = path.getFileName().toString();
+                if (!tailedFiles.containsKey(filename) && filenamePattern.matcher(filename).matches() && tailedFile.getFileKey().equals(getFileKey(path.toFile()))) {
+                    return filename;
+                }
+            }
+        } catch (final IOException ioe) {
+            getLogger().warn("Failed to list files in {} due to {}", new Object[] {baseDirectory, ioe});
+        }
+
+        return null;
+    }
+
+    private TailedFile openTailedFile(final String filename) {
+        final File file = new File(baseDirectory, filename);
+        final FileChannel reader = createReader(file, 0L);
+        if (reader == null) {
+            return null;
+        }
+
+        return new TailedFile(file, reader, getFileKey(file));
+    }
+
+    /**
+     * @return the object that uniquely identifies the given file, such as its inode, or <code>null</code> if the file system does not provide one
+     *         or the file does not exist
+     */
+    private Object getFileKey(final File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (final IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * Transfers the lines that were written to the given file since it was last read to a new FlowFile. If the file is not written to anymore, the data
+     * following the last line is transferred as well.
+     *
+     * @param tailedFile the file to consume
+     * @param remainder whether to consume all data up to the end of the file rather than only complete lines
+     * @param session the ProcessSession
+     * @return <code>true</code> if any data was consumed
+     * @throws ProcessException if unable to read from the file, in which case its position is left unchanged
+     */
+    private boolean consumeTailedFile(final TailedFile tailedFile, final boolean remainder, final ProcessSession session) throws ProcessException {
+        final long startNanos = System.nanoTime();
+        final File file = tailedFile.getFile();
+        final FileChannel reader = tailedFile.getReader();
+        final long position = tailedFile.getPosition();
+        final LongHolder positionHolder = new LongHolder(position);
+
+        FlowFile flowFile = session.create();
+        try {
+            flowFile = session.write(flowFile, new OutputStreamCallback() {
+                @Override
+                public void process(final OutputStream rawOut) throws IOException {
+                    try (final OutputStream out = new BufferedOutputStream(rawOut)) {
+                        long newPosition = readLines(reader, position, readBuffer, out, null);
+                        if (remainder) {
+                            newPosition = readRange(reader, newPosition, reader.size(), readBuffer, out, null);
+                        }
+                        positionHolder.set(newPosition);
+                    }
+                }
+            });
+        } catch (final ProcessException pe) {
+            session.remove(flowFile);
+            throw pe;
+        }
+
+        if (flowFile.getSize() == 0) {
+            session.remove(flowFile);
+            return false;
+        }
+
+        final Map<String, String> attributes = new HashMap<>(3);
+        attributes.put(CoreAttributes.FILENAME.key(), getFlowFileName(file.getName(), position, positionHolder.get()));
+        attributes.put(CoreAttributes.MIME_TYPE.key(), "text/plain");
+        attributes.put("tailfile.original.path", file.getAbsolutePath());
+        flowFile = session.putAllAttributes(flowFile, attributes);
+
+        session.getProvenanceReporter().receive(flowFile, file.toURI().toString(), "FlowFile contains bytes " + position + " through " + positionHolder.get() + " of source file",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        session.transfer(flowFile, REL_SUCCESS);
+        getLogger().debug("Created {} from {} and routed to success", new Object[] {flowFile, file});
+
+        tailedFile.setPosition(positionHolder.get());
+        updateChecksum(tailedFile);
+        return true;
+    }
+
+    /**
+     * Has the given file checked again on the next run after it could not be read, since the watch service does not report the file again
+     * unless it changes.
+     */
+    private void retryLater(final TailedFile tailedFile, final ProcessException pe) {
+        getLogger().error("Failed to read from {} due to {}; will try again", new Object[] {tailedFile.getFile(), pe});
+        changedFilenames.add(tailedFile.getFile().getName());
+    }
+
+    /**
+     * Extends the checksum of the given file over the data that was consumed from it, up to {@link #MAX_CHECKSUM_LENGTH} bytes.
+     */
+    private void updateChecksum(final TailedFile tailedFile) {
+        final long checksumEnd = Math.min(tailedFile.getPosition(), MAX_CHECKSUM_LENGTH);
+        if (tailedFile.getChecksumLength() >= checksumEnd) {
+            return;
+        }
+
+        try {
+            tailedFile.setChecksumLength(readRange(tailedFile.getReader(), tailedFile.getChecksumLength(), checksumEnd, readBuffer, null, tailedFile.getChecksum()));
+        } catch (final IOException ioe) {
+            getLogger().warn("Failed to compute checksum of {} due to {}", new Object[] {tailedFile.getFile(), ioe});
+        }
+    }
+
+    private void persistTailedFiles(final ProcessContext context) {
+        final Map<String, String> stateValues = new HashMap<>(tailedFiles.size() * 4);
+        int index = 0;
+        for (final TailedFile tailedFile : tailedFiles.values()) {
+            tailedFile.addToStateMap(stateValues, index++);
+        }
+
+        persistState(stateValues, context);
+    }
+
+    // for testing purposes
+    Map<String, TailedFile> getTailedFiles() {
+        return tailedFiles;
+    }
+
+    /**
+     * Records the names of the files in the Base Directory that were created, modified or removed, until the watch service is closed.
+     */
+    private class DirectoryWatcher implements Runnable {
+
+        private final WatchService service;
+
+        DirectoryWatcher(final WatchService service) {
+            this.service = service;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final WatchKey key = service.take();
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescanRequired = true;
+                            continue;
+                        }
+
+                        final String filename = ((Path) event.context()).toString();
+                        if (filenamePattern.matcher(filename).matches()) {
+                            changedFilenames.add(filename);
+                        }
+                    }
+
+                    if (!key.reset()) {
+                        // the directory is no longer accessible; check all files and watch the directory again on the next run
+                        getLogger().debug("{} can no longer be watched for changes", new Object[] {baseDirectory});
+                        if (watchService == service) {
+                            watchService = null;
+                        }
+                        closeWatchService(service);
+                        return;
+                    }
+                }
+            } catch (final ClosedWatchServiceException e) {
+                // the Processor was stopped
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The state of a file that is tailed when the Tailing Mode is 'Multiple files'. Unlike {@link TailFileState}, the checksum of a tailed file covers
+     * only its first {@link TailFile#MAX_CHECKSUM_LENGTH} bytes.
+     */
+    static class TailedFile {
+        private static final String FILENAME_KEY = "filename";
+        private static final String POSITION_KEY = "position";
+        private static final String CHECKSUM_KEY = "checksum";
+        private static final String CHECKSUM_LENGTH_KEY = "checksum.length";
+
+        private File file;
+        private final FileChannel reader;
+        private final Object fileKey;
+        private final Checksum checksum = new CRC32();
+        private long position;
+        private long checksumLength;
+
+        TailedFile(final File file, final FileChannel reader, final Object fileKey) {
+            this.file = file;
+            this.reader = reader;
+            this.fileKey = fileKey;
+        }
+
+        static String getStateKey(final int index, final String name) {
+            return "file." + index + "." + name;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        void setFile(final File file) {
+            this.file = file;
+        }
+
+        FileChannel getReader() {
+            return reader;
+        }
+
+        Object getFileKey() {
+            return fileKey;
+        }
+
+        Checksum getChecksum() {
+            return checksum;
+        }
+
+        long getPosition() {
+            return position;
+        }
+
+        void setPosition(final long position) {
+            this.position = position;
+        }
+
+        long getChecksumLength() {
+            return checksumLength;
+        }
+
+        void setChecksumLength(final long checksumLength) {
+            this.checksumLength = checksumLength;
+        }
+
+        void addToStateMap(final Map<String, String> map, final int index) {
+            map.put(getStateKey(index, FILENAME_KEY), file.getName());
+            map.put(getStateKey(index, POSITION_KEY), String.valueOf(position));
+            map.put(getStateKey(index, CHECKSUM_KEY), String.valueOf(checksum.getValue()));
+            map.put(getStateKey(index, CHECKSUM_LENGTH_KEY), String.valueOf(checksumLength));
+        }
+
+        @Override
+        public String toString() {
+            return "TailedFile[file=" + file + ", position=" + position + ", checksum=" + checksum.getValue() + ", checksumLength=" + checksumLength + "]";
+        }
+    }
+
     /**
      * A simple Java class to hold information about our state so that we can maintain this state across multiple invocations of the Processor
      */
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.standard.util;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the files of a directory tree, walking subdirectories in parallel on a
+ * fork/join pool.
+ * <p>
+ * The entries of every directory are kept in an index along with the
+ * directory's last modified time. A directory whose last modified time did not
+ * change since it was last read has neither gained nor lost entries, so later
+ * scans take its entries from the index instead of reading the directory
+ * again. The last modified time of a directory does not reflect changes to the
+ * contents of its files or to its subdirectories, so every file is still
+ * passed to the filter and every subdirectory is still visited.
+ * <p>
+ * The index holds at most a given number of entries in total. Once full, the
+ * directories that were least recently scanned are dropped from it, and a
+ * directory with more entries than the index may hold is never indexed.
+ * <p>
+ * A scanner may be used for any number of scans, one at a time. The index
+ * lives as long as the scanner.
+ */
+public class DirectoryScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryScanner.class);
+
+    /*
+     * Directories modified within this time before they are read are not
+     * indexed, since file systems with a coarse timestamp resolution may not
+     * change the last modified time for entries added shortly after the read
+     */
+    static final long TIMESTAMP_RESOLUTION_MILLIS = 2000L;
+
+    /*
+     * The default maximum number of file and directory names in the index,
+     * which amounts to roughly 100 MB for names of typical length
+     */
+    static final int DEFAULT_MAX_INDEXED_ENTRIES = 1000000;
+
+    private final int parallelism;
+
+    private final int maxIndexedEntries;
+
+    // access-ordered so that the least recently scanned directory is dropped first. Guarded by synchronizing on 'index'.
+    private final Map<Path, DirectoryListing> index = new LinkedHashMap<>(16, 0.75F, true);
+
+    // the number of names held by the listings in the index. Guarded by synchronizing on 'index'.
+    private long indexedEntries = 0L;
+
+    private ForkJoinPool pool;
+
+    public DirectoryScanner() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param parallelism the number of directories that may be read concurrently
+     */
+    public DirectoryScanner(final int parallelism) {
+        this(parallelism, DEFAULT_MAX_INDEXED_ENTRIES);
+    }
+
+    /**
+     * @param parallelism the number of directories that may be read concurrently
+     * @param maxIndexedEntries the maximum number of file and directory names to keep in the index
+     */
+    public DirectoryScanner(final int parallelism, final int maxIndexedEntries) {
+        this.parallelism = parallelism;
+        this.maxIndexedEntries = maxIndexedEntries;
+    }
+
+    /**
+     * Lists the files of the given directory that are accepted by the given
+     * filter. Directories that cannot be read are skipped.
+     *
+     * @param directory the directory to list
+     * @param recurse whether to list the files of subdirectories as well
+     * @param filter the filter that the listed files must be accepted by
+     * @return the accepted files, in no particular order
+     */
+    public synchronized List<File> scan(final File directory, final boolean recurse, final FileFilter filter) {
+        if (!directory.exists()) {
+            return Collections.emptyList();
+        }
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        final Queue<File> files = new ConcurrentLinkedQueue<>();
+        final Set<Path> visited = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+        pool.invoke(new ScanTask(directory.toPath(), recurse, filter, files, visited));
+
+        // forget the directories that no longer exist or are no longer scanned
+        synchronized (index) {
+            final Iterator<Map.Entry<Path, DirectoryListing>> itr = index.entrySet().iterator();
+            while (itr.hasNext()) {
+                final Map.Entry<Path, DirectoryListing> entry = itr.next();
+                if (!visited.contains(entry.getKey())) {
+                    itr.remove();
+                    indexedEntries -= entry.getValue().getEntryCount();
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * @return the number of directories whose entries are indexed
+     */
+    public int getIndexedDirectoryCount() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    /**
+     * @return the number of file and directory names in the index
+     */
+    public long getIndexedEntryCount() {
+        synchronized (index) {
+            return indexedEntries;
+        }
+    }
+
+    /**
+     * Removes all directories from the index, so that the next scan reads
+     * every directory.
+     */
+    public void clearIndex() {
+        synchronized (index) {
+            index.clear();
+            indexedEntries = 0L;
+        }
+    }
+
+    /**
+     * Stops the threads of this scanner. The index is kept, and the threads
+     * are started again by the next scan.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private DirectoryListing listDirectory(final Path directory) throws IOException {
+        final long readStart = System.currentTimeMillis();
+        final long lastModified = Files.getLastModifiedTime(directory).toMillis();
+        final DirectoryListing indexed;
+        synchronized (index) {
+            indexed = index.get(directory);
+        }
+        if (indexed != null && indexed.lastModified == lastModified) {
+            return indexed;
+        }
+
+        final List<String> fileNames = new ArrayList<>();
+        final List<String> directoryNames = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (final Path entry : stream) {
+                if (Files.isDirectory(entry)) {
+                    directoryNames.add(entry.getFileName().toString());
+                } else {
+                    fileNames.add(entry.getFileName().toString());
+                }
+            }
+        }
+
+        final DirectoryListing listing = new DirectoryListing(lastModified,
+                fileNames.toArray(new String[fileNames.size()]), directoryNames.toArray(new String[directoryNames.size()]));
+        updateIndex(directory, listing, lastModified < readStart - TIMESTAMP_RESOLUTION_MILLIS);
+        return listing;
+    }
+
+    /**
+     * Replaces the indexed listing of the given directory, if any, with the
+     * given listing, and drops the least recently scanned directories from
+     * the index if it then holds too many entries.
+     */
+    private void updateIndex(final Path directory, final DirectoryListing listing, final boolean indexable) {
+        synchronized (index) {
+            final DirectoryListing previous = index.remove(directory);
+            if (previous != null) {
+                indexedEntries -= previous.getEntryCount();
+            }
+            if (!indexable || listing.getEntryCount() > maxIndexedEntries) {
+                return;
+            }
+
+            index.put(directory, listing);
+            indexedEntries += listing.getEntryCount();
+
+            final Iterator<DirectoryListing> itr = index.values().iterator();
+            while (indexedEntries > maxIndexedEntries && itr.hasNext()) {
+                indexedEntries -= itr.next().getEntryCount();
+                itr.remove();
+            }
+        }
+    }
+
+    /**
+     * Lists a single directory and forks a task for each of its
+     * subdirectories.
+     */
+    private class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final boolean recurse;
+        private final FileFilter filter;
+        private final Queue<File> files;
+        private final Set<Path> visited;
+
+        ScanTask(final Path directory, final boolean recurse, final FileFilter filter, final Queue<File> files, final Set<Path> visited) {
+            this.directory = directory;
+            this.recurse = recurse;
+            this.filter = filter;
+            this.files = files;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            final DirectoryListing listing;
+            try {
+                listing = listDirectory(directory);
+            } catch (final IOException e) {
+                logger.debug("Unable to list directory {} due to {}", new Object[] {directory, e.toString()});
+                return;
+            }
+            visited.add(directory);
+
+            final File directoryFile = directory.toFile();
+            for (final String fileName : listing.fileNames) {
+                final File file = new File(directoryFile, fileName);
+                if (filter.accept(file)) {
+                    files.add(file);
+                }
+            }
+
+            if (recurse && listing.directoryNames.length > 0) {
+                final List<ScanTask> subtasks = new ArrayList<>(listing.directoryNames.length);
+                for (final String directoryName : listing.directoryNames) {
+                    subtasks.add(new ScanTask(directory.resolve(directoryName), true, filter, files, visited));
+                }
+                invokeAll(subtasks);
+            }
+        }
+    }
+
+    /**
+     * The entries of a directory as of its last modified time.
+     */
+    private static class DirectoryListing {
+
+        private final long lastModified;
+        private final String[] fileNames;
+        private final String[] directoryNames;
+
+        DirectoryListing(final long lastModified, final String[] fileNames, final String[] directoryNames) {
+            this.lastModified = lastModified;
+            this.fileNames = fileNames;
+            this.directoryNames = directoryNames;
+        }
+
+        int getEntryCount() {
+            return fileNames.length + directoryNames.length;
+        }
+    }
+}
@@ -79,6 +79,26 @@ public class JdbcCommon {
 
     public static long convertToAvroStream(final ResultSet rs, final OutputStream outStream, String recordName, ResultSetRowCallback callback)
             throws SQLException, IOException {
+        return convertToAvroStream(rs, outStream, recordName, callback, 0);
+    }
+
+    /**
+     * Writes the rows of the given ResultSet to the given stream as an Avro data file, stopping after <code>maxRows</code> rows
+     * have been written. Because the ResultSet is not advanced past the last row written, calling this method again with the
+     * same ResultSet writes the next rows to a new data file, which allows a large result set to be split into several files
+     * while it is being read.
+     *
+     * @param rs the ResultSet to read from
+     * @param outStream the stream to write the Avro data file to
+     * @param recordName the name of the Avro record, or <code>null</code> to use the name of the table
+     * @param callback a callback to invoke for each row, may be <code>null</code>
+     * @param maxRows the maximum number of rows to write, or 0 to write all of the remaining rows
+     * @return the number of rows written
+     * @throws SQLException if unable to read from the ResultSet
+     * @throws IOException if unable to write to the stream
+     */
+    public static long convertToAvroStream(final ResultSet rs, final OutputStream outStream, String recordName, ResultSetRowCallback callback, final long maxRows)
+            throws SQLException, IOException {
         final Schema schema = createSchema(rs, recordName);
         final GenericRecord rec = new GenericData.Record(schema);
 
@@ -89,7 +109,7 @@ public class JdbcCommon {
             final ResultSetMetaData meta = rs.getMetaData();
             final int nrOfColumns = meta.getColumnCount();
             long nrOfRows = 0;
-            while (rs.next()) {
+            while ((maxRows <= 0 || nrOfRows < maxRows) && rs.next()) {
                 if (callback != null) {
                     callback.processRow(rs);
                 }
@@ -0,0 +1,739 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.standard.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.nifi.util.search.SearchTerm;
+import org.apache.nifi.util.search.ahocorasick.AhoCorasick;
+import org.apache.nifi.util.search.ahocorasick.Node;
+
+/**
+ * <p>
+ * Evaluates a line of text against many patterns at once, so that the cost of evaluating a line grows with the length
+ * of the line rather than with the number of patterns.
+ * </p>
+ *
+ * <p>
+ * All literal patterns are compiled into a single Aho-Corasick automaton, which is walked over the UTF-8 encoding of
+ * the line. The way that the walk is interpreted depends on the {@link MatchType}: for {@link MatchType#STARTS_WITH}
+ * and {@link MatchType#EQUALS} the walk follows only the trie and stops as soon as the line leaves it; for
+ * {@link MatchType#CONTAINS} every term found along the way matches; and for {@link MatchType#ENDS_WITH} only the terms
+ * that end at the last byte of the line match. Regular Expressions that contain no meta-characters are treated as
+ * literals, since they are by far the most common kind of Regular Expression used to route text.
+ * </p>
+ *
+ * <p>
+ * Any other Regular Expression that begins with a literal, such as <code>ERROR .*timed out</code>, cannot match a line
+ * that does not contain that literal. Those literals are added to the same automaton, so that the scan that finds the
+ * literal patterns also finds the Regular Expressions that are worth evaluating; the others are skipped without being
+ * run at all. A Regular Expression whose literal cannot be determined, for instance because it uses alternation, is
+ * evaluated against every line.
+ * </p>
+ *
+ * <p>
+ * When there are only a few terms, each is instead searched for directly with the String methods, which for a handful
+ * of terms is faster than walking the automaton.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class MultiPatternMatcher {
+
+    public static enum MatchType {
+        STARTS_WITH,
+        ENDS_WITH,
+        CONTAINS,
+        EQUALS,
+        MATCHES_REGULAR_EXPRESSION,
+        CONTAINS_REGULAR_EXPRESSION;
+    }
+
+    private static enum CaseFolding {
+        NONE,
+        ASCII,
+        UNICODE;
+    }
+
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String REGEX_QUANTIFIERS = "?*+{";
+
+    // Below this many terms, searching for each term with the String methods, which the JVM heavily optimizes, is
+    // faster than walking the automaton
+    private static final int MIN_AUTOMATON_TERMS = 12;
+
+    private final int patternCount;
+
+    private final MatchType literalMatchType;
+    private final CaseFolding caseFolding;
+    private final AhoCorasick<Targets> automaton;
+    private final int[] byteClasses = new int[256];
+    private int byteClassCount;
+    private int[] transitions;
+    private Targets[] stateOutputs;
+    private final Targets[] directTerms;
+    private final int[] emptyLiteralIndices;
+    private final int literalCount;
+    private final int maxLiteralLength;
+
+    private final boolean fullMatch;
+    private final int[] regexIndices;
+    private final Pattern[] regexes;
+    private final boolean[] regexPrefiltered;
+    private final boolean prefilter;
+
+    private final ThreadLocal<MatchBuffers> buffers = new ThreadLocal<MatchBuffers>() {
+        @Override
+        protected MatchBuffers initialValue() {
+            return new MatchBuffers(regexes.length);
+        }
+    };
+
+    /**
+     * Compiles the given patterns
+     *
+     * @param matchType how the patterns are to be compared against each line
+     * @param patterns the patterns. The index of each pattern in this list identifies it in the results of
+     *            {@link #match(CharSequence, boolean[])}
+     * @param ignoreCase whether or not capitalization should be taken into account
+     * @throws PatternSyntaxException if the match type is a Regular Expression match type and any of the patterns is
+     *             not a valid Regular Expression
+     */
+    public MultiPatternMatcher(final MatchType matchType, final List<String> patterns, final boolean ignoreCase) {
+        this(matchType, patterns, ignoreCase, MIN_AUTOMATON_TERMS);
+    }
+
+    // exposed for unit tests
+    MultiPatternMatcher(final MatchType matchType, final List<String> patterns, final boolean ignoreCase, final int minAutomatonTerms) {
+        this.patternCount = patterns.size();
+
+        final boolean regexMatchType = matchType == MatchType.MATCHES_REGULAR_EXPRESSION || matchType == MatchType.CONTAINS_REGULAR_EXPRESSION;
+        this.fullMatch = matchType == MatchType.MATCHES_REGULAR_EXPRESSION;
+
+        if (regexMatchType) {
+            literalMatchType = fullMatch ? MatchType.EQUALS : MatchType.CONTAINS;
+            // Pattern.CASE_INSENSITIVE only folds US-ASCII characters, so literals must be folded the same way
+            caseFolding = ignoreCase ? CaseFolding.ASCII : CaseFolding.NONE;
+        } else {
+            literalMatchType = matchType;
+            caseFolding = ignoreCase ? CaseFolding.UNICODE : CaseFolding.NONE;
+        }
+
+        final List<Integer> emptyLiterals = new ArrayList<>();
+        final List<Integer> regexIndexList = new ArrayList<>();
+        final List<Pattern> regexList = new ArrayList<>();
+        final List<Boolean> prefilteredList = new ArrayList<>();
+        final Map<SearchTerm<Targets>, Targets> terms = new LinkedHashMap<>();
+        final MatchBuffers termBuffers = new MatchBuffers(0);
+        final int flags = ignoreCase ? Pattern.CASE_INSENSITIVE : 0;
+
+        int maxLength = 0;
+        int literals = 0;
+        for (int i = 0; i < patterns.size(); i++) {
+            final String pattern = patterns.get(i);
+            if (regexMatchType && !isLiteral(pattern)) {
+                final String requiredLiteral = getRequiredLiteral(pattern);
+                if (!requiredLiteral.isEmpty()) {
+                    getTargets(terms, requiredLiteral, termBuffers).addRegex(regexList.size());
+                }
+
+                regexIndexList.add(i);
+                regexList.add(Pattern.compile(pattern, flags));
+                prefilteredList.add(!requiredLiteral.isEmpty());
+            } else if (pattern.isEmpty()) {
+                emptyLiterals.add(i);
+                literals++;
+            } else {
+                // each term in the automaton can reference only one value, so all of the patterns that are the same
+                // once their case is folded share a term
+                getTargets(terms, pattern, termBuffers).addLiteral(i);
+                maxLength = Math.max(maxLength, pattern.length());
+                literals++;
+            }
+        }
+
+        this.emptyLiteralIndices = toArray(emptyLiterals);
+        this.literalCount = literals;
+        this.maxLiteralLength = maxLength;
+
+        if (terms.isEmpty() || terms.size() < minAutomatonTerms) {
+            automaton = null;
+            directTerms = terms.values().toArray(new Targets[terms.size()]);
+        } else {
+            directTerms = null;
+
+            final Set<SearchTerm<Targets>> dictionary = new LinkedHashSet<>(terms.size());
+            for (final Map.Entry<SearchTerm<Targets>, Targets> entry : terms.entrySet()) {
+                dictionary.add(new SearchTerm<>(entry.getKey().getBytes(), false, entry.getValue()));
+            }
+
+            automaton = new AhoCorasick<>();
+            automaton.initializeDictionary(dictionary);
+            compileTransitions();
+        }
+
+        this.regexIndices = toArray(regexIndexList);
+        this.regexes = regexList.toArray(new Pattern[regexList.size()]);
+        this.regexPrefiltered = new boolean[regexes.length];
+        boolean anyPrefiltered = false;
+        for (int i = 0; i < regexes.length; i++) {
+            regexPrefiltered[i] = prefilteredList.get(i);
+            anyPrefiltered |= regexPrefiltered[i];
+        }
+        this.prefilter = anyPrefiltered;
+    }
+
+    /**
+     * Flattens the automaton into a table of transitions, indexed by state and byte class, so that scanning a line
+     * costs one array lookup per byte rather than a walk of the failure nodes. Bytes that appear in no term all share a
+     * single class, which keeps the table small. The output of each state holds the targets of its own term and of all
+     * of the terms in its chain of output nodes.
+     */
+    private void compileTransitions() {
+        final Map<Node, Integer> stateIds = new IdentityHashMap<>();
+        final List<Node> states = new ArrayList<>();
+        final Node root = automaton.getRootNode();
+        stateIds.put(root, 0);
+        states.add(root);
+
+        final boolean[] used = new boolean[256];
+        for (int i = 0; i < states.size(); i++) {
+            final Node node = states.get(i);
+            for (int b = 0; b < 256; b++) {
+                final Node neighbor = node.getNeighbor(b);
+                if (neighbor != null) {
+                    used[b] = true;
+                    stateIds.put(neighbor, states.size());
+                    states.add(neighbor);
+                }
+            }
+        }
+
+        final List<Integer> representatives = new ArrayList<>();
+        representatives.add(-1);
+        for (int b = 0; b < 256; b++) {
+            if (used[b]) {
+                byteClasses[b] = representatives.size();
+                representatives.add(b);
+            }
+        }
+        byteClassCount = representatives.size();
+
+        // any byte that appears in no term leads from every state back to the root, which is state 0
+        transitions = new int[states.size() * byteClassCount];
+        stateOutputs = new Targets[states.size()];
+        for (int state = 0; state < states.size(); state++) {
+            final Node node = states.get(state);
+            Targets outputs = null;
+            for (Node output = node.hasMatch() ? node : node.getOutputNode(); output != null; output = output.getOutputNode()) {
+                outputs = getTargets(output).mergeInto(outputs);
+            }
+            stateOutputs[state] = outputs;
+        }
+
+        // Each transition holds the offset of the next state's row in the table, rather than its number, so that a scan
+        // need not multiply on every byte. The offset is complemented if the next state has any outputs.
+        for (int state = 0; state < states.size(); state++) {
+            final Node node = states.get(state);
+            for (int byteClass = 1; byteClass < byteClassCount; byteClass++) {
+                final int next = stateIds.get(automaton.nextNode(node, representatives.get(byteClass)));
+                final int offset = next * byteClassCount;
+                transitions[state * byteClassCount + byteClass] = stateOutputs[next] == null ? offset : ~offset;
+            }
+        }
+    }
+
+    private Targets getTargets(final Map<SearchTerm<Targets>, Targets> terms, final String literal, final MatchBuffers termBuffers) {
+        final int length = encode(literal, Integer.MAX_VALUE, termBuffers);
+        final SearchTerm<Targets> term = new SearchTerm<>(Arrays.copyOf(termBuffers.bytes, length), false, null);
+
+        Targets targets = terms.get(term);
+        if (targets == null) {
+            targets = new Targets(fold(literal));
+            terms.put(term, targets);
+        }
+        return targets;
+    }
+
+    /**
+     * @return the number of patterns that lines are evaluated against
+     */
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Evaluates the given line against every pattern
+     *
+     * @param line the line to evaluate
+     * @param matched an array with at least {@link #getPatternCount()} elements. It is cleared and then, for each
+     *            pattern that the line matches, the element at the index of that pattern is set to <code>true</code>
+     * @return the number of patterns that the line matches
+     */
+    public int match(final CharSequence line, final boolean[] matched) {
+        Arrays.fill(matched, 0, patternCount, false);
+
+        final MatchBuffers matchBuffers = buffers.get();
+        int count = scan(line, matched, false, matchBuffers);
+
+        for (int i = 0; i < regexes.length; i++) {
+            if (isCandidate(i, matchBuffers) && evaluate(i, line, matchBuffers)) {
+                matched[regexIndices[i]] = true;
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param line the line to evaluate
+     * @return <code>true</code> if the line matches at least one pattern
+     */
+    public boolean matchesAny(final CharSequence line) {
+        final MatchBuffers matchBuffers = buffers.get();
+        if (scan(line, matchBuffers.getMatched(patternCount), true, matchBuffers) > 0) {
+            return true;
+        }
+
+        for (int i = 0; i < regexes.length; i++) {
+            if (isCandidate(i, matchBuffers) && evaluate(i, line, matchBuffers)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param line the line to evaluate
+     * @return <code>true</code> if the line matches every pattern
+     */
+    public boolean matchesAll(final CharSequence line) {
+        final MatchBuffers matchBuffers = buffers.get();
+        if (scan(line, matchBuffers.getMatched(patternCount), false, matchBuffers) < literalCount) {
+            return false;
+        }
+
+        for (int i = 0; i < regexes.length; i++) {
+            if (!isCandidate(i, matchBuffers) || !evaluate(i, line, matchBuffers)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isCandidate(final int regex, final MatchBuffers matchBuffers) {
+        return !regexPrefiltered[regex] || matchBuffers.candidates[regex];
+    }
+
+    private boolean evaluate(final int regex, final CharSequence line, final MatchBuffers matchBuffers) {
+        final Matcher matcher = matchBuffers.getMatcher(regexes, regex);
+        matcher.reset(line);
+        return fullMatch ? matcher.matches() : matcher.find();
+    }
+
+    /**
+     * Walks the automaton over the given line, marking the literal patterns that match in <code>matched</code> and the
+     * Regular Expressions whose required literal was found in the candidates of the given buffers
+     *
+     * @return the number of literal patterns that match
+     */
+    private int scan(final CharSequence line, final boolean[] matched, final boolean stopAtFirst, final MatchBuffers matchBuffers) {
+        if (prefilter) {
+            Arrays.fill(matchBuffers.candidates, false);
+        }
+
+        int count = 0;
+        if (emptyLiteralIndices.length > 0 && (literalMatchType != MatchType.EQUALS || line.length() == 0)) {
+            count = mark(emptyLiteralIndices, matched, count);
+            if (stopAtFirst) {
+                return count;
+            }
+        }
+
+        if (automaton == null) {
+            return scanDirectly(line, matched, stopAtFirst, matchBuffers, count);
+        }
+
+        // a line can only start with or equal a literal if its beginning is no longer than the longest literal. Folding the
+        // case of a character may turn it into a surrogate pair, so allow for twice as many chars as the longest literal has.
+        final boolean prefixOnly = !prefilter && (literalMatchType == MatchType.STARTS_WITH || literalMatchType == MatchType.EQUALS);
+        final int length = encode(line, prefixOnly ? 2 * maxLiteralLength : Integer.MAX_VALUE, matchBuffers);
+        final byte[] bytes = matchBuffers.bytes;
+        final Node root = automaton.getRootNode();
+        switch (literalMatchType) {
+            case STARTS_WITH: {
+                Node node = root;
+                for (int i = 0; i < length; i++) {
+                    node = node.getNeighbor(bytes[i] & 0xFF);
+                    if (node == null) {
+                        break;
+                    }
+                    if (node.hasMatch()) {
+                        count = mark(getTargets(node).literals, matched, count);
+                        if (stopAtFirst && count > 0) {
+                            return count;
+                        }
+                    }
+                }
+                break;
+            }
+            case EQUALS: {
+                if (line.length() <= 2 * maxLiteralLength) {
+                    Node node = root;
+                    for (int i = 0; i < length && node != null; i++) {
+                        node = node.getNeighbor(bytes[i] & 0xFF);
+                    }
+                    if (node != null && node.hasMatch()) {
+                        count = mark(getTargets(node).literals, matched, count);
+                        if (stopAtFirst && count > 0) {
+                            return count;
+                        }
+                    }
+                }
+
+                if (prefilter) {
+                    findCandidates(bytes, length, matchBuffers);
+                }
+                break;
+            }
+            case CONTAINS: {
+                final int[] table = transitions;
+                final int[] classes = byteClasses;
+                int offset = 0;
+                for (int i = 0; i < length; i++) {
+                    offset = table[offset + classes[bytes[i] & 0xFF]];
+                    if (offset < 0) {
+                        offset = ~offset;
+                        final Targets outputs = stateOutputs[offset / byteClassCount];
+                        count = mark(outputs.literals, matched, count);
+                        for (final int regex : outputs.regexes) {
+                            matchBuffers.candidates[regex] = true;
+                        }
+
+                        if ((stopAtFirst && count > 0) || (!prefilter && count == literalCount)) {
+                            break;
+                        }
+                    }
+                }
+                break;
+            }
+            case ENDS_WITH: {
+                final int[] table = transitions;
+                final int[] classes = byteClasses;
+                int offset = 0;
+                for (int i = 0; i < length; i++) {
+                    offset = table[offset + classes[bytes[i] & 0xFF]];
+                    if (offset < 0) {
+                        offset = ~offset;
+                    }
+                }
+
+                final Targets outputs = stateOutputs[offset / byteClassCount];
+                if (outputs != null) {
+                    count = mark(outputs.literals, matched, count);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unexpected literal match type " + literalMatchType);
+        }
+
+        return count;
+    }
+
+    private int scanDirectly(final CharSequence line, final boolean[] matched, final boolean stopAtFirst, final MatchBuffers matchBuffers, final int initialCount) {
+        int count = initialCount;
+        if (directTerms.length == 0) {
+            return count;
+        }
+
+        final String foldedLine = fold(line);
+        for (final Targets targets : directTerms) {
+            final boolean found;
+            switch (literalMatchType) {
+                case STARTS_WITH:
+                    found = foldedLine.startsWith(targets.term);
+                    break;
+                case ENDS_WITH:
+                    found = foldedLine.endsWith(targets.term);
+                    break;
+                case EQUALS:
+                    found = foldedLine.equals(targets.term);
+                    break;
+                default:
+                    found = foldedLine.contains(targets.term);
+                    break;
+            }
+
+            if (found) {
+                count = mark(targets.literals, matched, count);
+                if (stopAtFirst && count > 0) {
+                    return count;
+                }
+            }
+
+            if (targets.regexes.length > 0 && (found || foldedLine.contains(targets.term))) {
+                for (final int regex : targets.regexes) {
+                    matchBuffers.candidates[regex] = true;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private void findCandidates(final byte[] bytes, final int length, final MatchBuffers matchBuffers) {
+        final int[] table = transitions;
+        final int[] classes = byteClasses;
+        int offset = 0;
+        for (int i = 0; i < length; i++) {
+            offset = table[offset + classes[bytes[i] & 0xFF]];
+            if (offset < 0) {
+                offset = ~offset;
+                for (final int regex : stateOutputs[offset / byteClassCount].regexes) {
+                    matchBuffers.candidates[regex] = true;
+                }
+            }
+        }
+    }
+
+    private static Targets getTargets(final Node node) {
+        return (Targets) node.getMatchingTerm().getReference();
+    }
+
+    private static int mark(final int[] indices, final boolean[] matched, final int count) {
+        int updated = count;
+        for (final int index : indices) {
+            if (!matched[index]) {
+                matched[index] = true;
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Folds the case of, and UTF-8 encodes, up to <code>maxChars</code> chars of the given text into the byte buffer of
+     * the given buffers, returning the number of bytes written. Unpaired surrogates are encoded as if they were
+     * characters, so that the encoding never needs to substitute a replacement character.
+     */
+    private int encode(final CharSequence text, final int maxChars, final MatchBuffers matchBuffers) {
+        final int charCount = Math.min(text.length(), maxChars);
+        byte[] bytes = matchBuffers.ensureCapacity(charCount * 3);
+
+        int position = 0;
+        for (int i = 0; i < charCount; i++) {
+            int c = text.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < charCount && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            }
+
+            switch (caseFolding) {
+                case ASCII:
+                    if (c >= 'A' && c <= 'Z') {
+                        c += 'a' - 'A';
+                    }
+                    break;
+                case UNICODE:
+                    c = Character.toLowerCase(c);
+                    break;
+                default:
+                    break;
+            }
+
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c < 0x10000) {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                // a pair of chars needs no more than the 6 bytes allowed for it, but folding may turn a single char into a pair
+                if (position + 4 > bytes.length) {
+                    bytes = matchBuffers.ensureCapacity(position + 4 + (charCount - i) * 3);
+                }
+                bytes[position++] = (byte) (0xF0 | (c >> 18));
+                bytes[position++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Folds the case of the given text in the same way as {@link #encode(CharSequence, int, MatchBuffers)} does
+     */
+    private String fold(final CharSequence text) {
+        if (caseFolding == CaseFolding.NONE) {
+            return text.toString();
+        }
+
+        final StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            int c = text.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            }
+
+            if (caseFolding == CaseFolding.ASCII) {
+                sb.appendCodePoint(c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+            } else {
+                sb.appendCodePoint(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isLiteral(final String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the literal text that the given Regular Expression begins with, which any text that the Regular
+     * Expression matches must contain, or an empty string if there is no such text. This is deliberately conservative:
+     * an expression that uses alternation anywhere is considered to have no required literal, and a character that is
+     * followed by a quantifier is not considered part of the literal.
+     */
+    static String getRequiredLiteral(final String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = regex.startsWith("^") ? 1 : 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (REGEX_META_CHARACTERS.indexOf(c) >= 0) {
+                if (REGEX_QUANTIFIERS.indexOf(c) >= 0 && sb.length() > 0) {
+                    sb.setLength(sb.length() - 1);
+                }
+                break;
+            }
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        final int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+
+    /**
+     * The patterns that a term of the automaton stands for: the literal patterns that are equal to it, and the Regular
+     * Expressions that require it
+     */
+    private static class Targets {
+        private final String term;
+        private int[] literals = new int[0];
+        private int[] regexes = new int[0];
+
+        public Targets(final String term) {
+            this.term = term;
+        }
+
+        public void addLiteral(final int patternIndex) {
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literals[literals.length - 1] = patternIndex;
+        }
+
+        public void addRegex(final int regexIndex) {
+            regexes = Arrays.copyOf(regexes, regexes.length + 1);
+            regexes[regexes.length - 1] = regexIndex;
+        }
+
+        public Targets mergeInto(final Targets other) {
+            final Targets merged = new Targets(term);
+            merged.literals = concat(literals, other == null ? new int[0] : other.literals);
+            merged.regexes = concat(regexes, other == null ? new int[0] : other.regexes);
+            return merged;
+        }
+
+        private static int[] concat(final int[] first, final int[] second) {
+            final int[] result = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+    }
+
+    /**
+     * Per-thread buffers, so that evaluating a line does not allocate
+     */
+    private static class MatchBuffers {
+        private final boolean[] candidates;
+        private final Matcher[] matchers;
+        private byte[] bytes = new byte[256];
+        private boolean[] matched = new boolean[0];
+
+        public MatchBuffers(final int regexCount) {
+            candidates = new boolean[regexCount];
+            matchers = new Matcher[regexCount];
+        }
+
+        public byte[] ensureCapacity(final int capacity) {
+            if (bytes.length < capacity) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+            return bytes;
+        }
+
+        public boolean[] getMatched(final int patternCount) {
+            if (matched.length < patternCount) {
+                matched = new boolean[patternCount];
+            } else {
+                Arrays.fill(matched, false);
+            }
+            return matched;
+        }
+
+        public Matcher getMatcher(final Pattern[] regexes, final int index) {
+            if (matchers[index] == null) {
+                matchers[index] = regexes[index].matcher("");
+            }
+            return matchers[index];
+        }
+    }
+}
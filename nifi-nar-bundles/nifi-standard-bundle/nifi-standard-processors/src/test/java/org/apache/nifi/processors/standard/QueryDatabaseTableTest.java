@@ -27,12 +27,14 @@ import org.apache.nifi.controller.AbstractControllerService;
 import org.apache.nifi.dbcp.DBCPService;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.fusesource.hawtbuf.ByteArrayInputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
@@ -40,12 +42,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -119,6 +123,19 @@ public class QueryDatabaseTableTest {
         assertEquals("SELECT * FROM myTable WHERE id > 509 AND DATE_CREATED > to_date('2016-03-07 12:34:56', 'yyyy-mm-dd HH24:MI:SS')", query);
     }
 
+    @Test
+    public void testGetPartitionConditions() throws Exception {
+        assertEquals(Arrays.asList("(id < 26 OR id IS NULL)", "id >= 26 AND id < 51", "id >= 51 AND id < 76", "id >= 76"),
+                processor.getPartitionConditions("id", 1, 100, 4));
+        assertEquals(Arrays.asList("(id < 2 OR id IS NULL)", "id >= 2"), processor.getPartitionConditions("id", 1, 2, 4));
+        assertTrue(processor.getPartitionConditions("id", 5, 5, 4).isEmpty());
+
+        final List<String> conditions = processor.getPartitionConditions("id", Long.MIN_VALUE, Long.MAX_VALUE, 2);
+        assertEquals(Arrays.asList("(id < 0 OR id IS NULL)", "id >= 0"), conditions);
+
+        assertEquals("SELECT * FROM myTable WHERE id >= 76", processor.getQuery("myTable", null, null, null, "None", "id >= 76"));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetQueryNoTable() throws Exception {
         processor.getQuery(null, null, null, null, "None");
@@ -254,6 +271,85 @@ public class QueryDatabaseTableTest {
     }
 
 
+    @Test
+    public void testMaxRowsPerFlowFile() throws ClassNotFoundException, SQLException, InitializationException, IOException {
+        createIntegerTable("TEST_QUERY_DB_TABLE_ROWS", 95);
+
+        runner.setProperty(QueryDatabaseTable.TABLE_NAME, "TEST_QUERY_DB_TABLE_ROWS");
+        runner.setIncomingConnection(false);
+        runner.setProperty(QueryDatabaseTable.MAX_VALUE_COLUMN_NAMES, "ID");
+        runner.setProperty(QueryDatabaseTable.MAX_ROWS_PER_FLOW_FILE, "10");
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(QueryDatabaseTable.REL_SUCCESS, 10);
+        long rows = 0;
+        for (final MockFlowFile flowFile : runner.getFlowFilesForRelationship(QueryDatabaseTable.REL_SUCCESS)) {
+            final long records = getNumberOfRecordsFromStream(new ByteArrayInputStream(flowFile.toByteArray()));
+            flowFile.assertAttributeEquals(QueryDatabaseTable.RESULT_ROW_COUNT, String.valueOf(records));
+            rows += records;
+        }
+        assertEquals(95, rows);
+        assertEquals("94", runner.getStateManager().getState(Scope.CLUSTER).get("id"));
+
+        // Run again, this time no flowfiles/rows should be transferred
+        runner.clearTransferState();
+        runner.run();
+        runner.assertAllFlowFilesTransferred(QueryDatabaseTable.REL_SUCCESS, 0);
+    }
+
+    @Test
+    public void testPartitionedQuery() throws ClassNotFoundException, SQLException, InitializationException, IOException {
+        final Statement stmt = createIntegerTable("TEST_QUERY_DB_TABLE_PARTS", 100);
+        stmt.execute("insert into TEST_QUERY_DB_TABLE_PARTS (id, val) VALUES (100, NULL)");
+
+        runner.setProperty(QueryDatabaseTable.TABLE_NAME, "TEST_QUERY_DB_TABLE_PARTS");
+        runner.setIncomingConnection(false);
+        runner.setProperty(QueryDatabaseTable.MAX_VALUE_COLUMN_NAMES, "ID");
+        runner.setProperty(QueryDatabaseTable.PARTITION_COLUMN, "VAL");
+        runner.setProperty(QueryDatabaseTable.PARTITION_COUNT, "4");
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(QueryDatabaseTable.REL_SUCCESS, 4);
+        long rows = 0;
+        for (final MockFlowFile flowFile : runner.getFlowFilesForRelationship(QueryDatabaseTable.REL_SUCCESS)) {
+            rows += getNumberOfRecordsFromStream(new ByteArrayInputStream(flowFile.toByteArray()));
+        }
+        assertEquals(101, rows);
+
+        // the maximum values of all partitions are merged
+        assertEquals("100", runner.getStateManager().getState(Scope.CLUSTER).get("id"));
+
+        stmt.execute("insert into TEST_QUERY_DB_TABLE_PARTS (id, val) VALUES (101, 5)");
+        runner.clearTransferState();
+        runner.run();
+        runner.assertAllFlowFilesTransferred(QueryDatabaseTable.REL_SUCCESS, 1);
+        assertEquals("101", runner.getStateManager().getState(Scope.CLUSTER).get("id"));
+    }
+
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testPartitionedQueryPerformance() throws ClassNotFoundException, SQLException, InitializationException, IOException {
+        createIntegerTable("TEST_QUERY_DB_TABLE_PERF", 500000);
+
+        runner.setProperty(QueryDatabaseTable.TABLE_NAME, "TEST_QUERY_DB_TABLE_PERF");
+        runner.setIncomingConnection(false);
+
+        for (final String[] settings : new String[][] {{"0", "1"}, {"10000", "1"}, {"10000", "4"}, {"10000", "8"}}) {
+            runner.setProperty(QueryDatabaseTable.MAX_ROWS_PER_FLOW_FILE, settings[0]);
+            runner.setProperty(QueryDatabaseTable.PARTITION_COLUMN, "ID");
+            runner.setProperty(QueryDatabaseTable.PARTITION_COUNT, settings[1]);
+
+            for (int i = 0; i < 3; i++) {
+                runner.clearTransferState();
+                final long start = System.nanoTime();
+                runner.run();
+                final long millis = (System.nanoTime() - start) / 1000000L;
+                System.out.println("Max Rows Per Flow File " + settings[0] + ", Partition Count " + settings[1] + ": "
+                        + runner.getFlowFilesForRelationship(QueryDatabaseTable.REL_SUCCESS).size() + " FlowFiles in " + millis + " millis");
+            }
+        }
+    }
+
     @Test
     public void testWithNullIntColumn() throws SQLException {
         // remove previous test database, if any
@@ -310,6 +406,32 @@ public class QueryDatabaseTableTest {
         assertTrue(runner.getFlowFilesForRelationship(QueryDatabaseTable.REL_SUCCESS).isEmpty());
     }
 
+    private Statement createIntegerTable(final String tableName, final int rowCount) throws SQLException {
+        final Connection con = ((DBCPService) runner.getControllerService("dbcp")).getConnection();
+        final Statement stmt = con.createStatement();
+
+        try {
+            stmt.execute("drop table " + tableName);
+        } catch (final SQLException sqle) {
+            // Ignore, usually due to Derby not having DROP TABLE IF EXISTS
+        }
+
+        stmt.execute("create table " + tableName + " (id integer not null, val integer, constraint " + tableName + "_pk primary key (id))");
+        try (final PreparedStatement insert = con.prepareStatement("insert into " + tableName + " (id, val) VALUES (?, ?)")) {
+            for (int i = 0; i < rowCount; i++) {
+                insert.setInt(1, i);
+                insert.setInt(2, i);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        return stmt;
+    }
+
     private long getNumberOfRecordsFromStream(InputStream in) throws IOException {
         final DatumReader<GenericRecord> datumReader = new GenericDatumReader<>();
         try (DataFileStream<GenericRecord> dataFileReader = new DataFileStream<>(in, datumReader)) {
@@ -152,6 +152,46 @@ public class TestExecuteSQL {
         runner.getFlowFilesForRelationship(ExecuteSQL.REL_SUCCESS).get(0).assertAttributeEquals(ExecuteSQL.RESULT_ROW_COUNT, "2");
     }
 
+    @Test
+    public void testMaxRowsPerFlowFile() throws SQLException {
+        // remove previous test database, if any
+        final File dbLocation = new File(DB_LOCATION);
+        dbLocation.delete();
+
+        // load test data to database
+        final Connection con = ((DBCPService) runner.getControllerService("dbcp")).getConnection();
+        Statement stmt = con.createStatement();
+
+        try {
+            stmt.execute("drop table TEST_MAX_ROWS");
+        } catch (final SQLException sqle) {
+        }
+
+        stmt.execute("create table TEST_MAX_ROWS (id integer not null, constraint max_rows_pk primary key (id))");
+        for (int i = 0; i < 25; i++) {
+            stmt.execute("insert into TEST_MAX_ROWS (id) VALUES (" + i + ")");
+        }
+
+        runner.setIncomingConnection(true);
+        runner.setProperty(ExecuteSQL.SQL_SELECT_QUERY, "SELECT * FROM TEST_MAX_ROWS");
+        runner.setProperty(ExecuteSQL.MAX_ROWS_PER_FLOW_FILE, "10");
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("person.id", "10");
+        runner.enqueue("Hello".getBytes(), attributes);
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(ExecuteSQL.REL_SUCCESS, 3);
+        final List<MockFlowFile> flowfiles = runner.getFlowFilesForRelationship(ExecuteSQL.REL_SUCCESS);
+        int nrOfRows = 0;
+        for (final MockFlowFile flowFile : flowfiles) {
+            // every FlowFile carries the attributes of the incoming FlowFile
+            flowFile.assertAttributeEquals("person.id", "10");
+            nrOfRows += Integer.parseInt(flowFile.getAttribute(ExecuteSQL.RESULT_ROW_COUNT));
+        }
+        assertEquals(25, nrOfRows);
+        runner.assertQueueEmpty();
+    }
+
     @Test
     public void testWithSqlException() throws SQLException {
         // remove previous test database, if any
@@ -521,6 +521,41 @@ public class TestPutSQL {
     }
 
 
+    @Test
+    public void testStatementsBatchedAcrossConcurrentConnections() throws InitializationException, ProcessException, SQLException, IOException {
+        final TestRunner runner = TestRunners.newTestRunner(PutSQL.class);
+        runner.addControllerService("dbcp", service);
+        runner.enableControllerService(service);
+        runner.setProperty(PutSQL.CONNECTION_POOL, "dbcp");
+        runner.setProperty(PutSQL.CONCURRENT_CONNECTIONS, "2");
+
+        recreateTable("PERSONS", createPersons);
+
+        // interleave two different statements; each should be executed as a single batch
+        for (int i = 1; i <= 10; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put("sql.args.1.type", String.valueOf(Types.INTEGER));
+            attributes.put("sql.args.1.value", String.valueOf(i));
+
+            final String name = (i % 2 == 0) ? "Mark" : "George";
+            runner.enqueue(("INSERT INTO PERSONS (ID, NAME, CODE) VALUES (?, '" + name + "', 84)").getBytes(), attributes);
+        }
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(PutSQL.REL_SUCCESS, 10);
+        assertEquals(2L, runner.getCounterValue("Batches Executed").longValue());
+        assertEquals(10L, runner.getCounterValue("FlowFiles Executed in Batches").longValue());
+
+        try (final Connection conn = service.getConnection()) {
+            try (final Statement stmt = conn.createStatement()) {
+                final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM PERSONS WHERE NAME = 'Mark'");
+                assertTrue(rs.next());
+                assertEquals(5, rs.getInt(1));
+            }
+        }
+    }
+
+
     @Test
     public void testTransactionTimeout() throws InitializationException, ProcessException, SQLException, IOException {
         final TestRunner runner = TestRunners.newTestRunner(PutSQL.class);
@@ -23,15 +23,21 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processors.standard.util.MultiPatternMatcher;
+import org.apache.nifi.processors.standard.util.MultiPatternMatcher.MatchType;
 import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class TestRouteText {
@@ -211,6 +217,49 @@ public class TestRouteText {
         runner.getFlowFilesForRelationship("original").get(0).assertContentEquals(originalText);
     }
 
+    @Test
+    public void testRouteLineToMultipleRelationshipsWithRegularExpressions() throws IOException {
+        final TestRunner runner = TestRunners.newTestRunner(new RouteText());
+        runner.setProperty(RouteText.MATCH_STRATEGY, RouteText.CONTAINS_REGULAR_EXPRESSION);
+        runner.setProperty("literal", "end");
+        runner.setProperty("same-literal", "end");
+        runner.setProperty("digits", "\\d+");
+        runner.setProperty("repeated", "(\\w)\\1");
+
+        final String originalText = "start center end\nnot a match\n42 end\nletter";
+        runner.enqueue(originalText.getBytes("UTF-8"));
+        runner.run();
+
+        runner.assertTransferCount("literal", 1);
+        runner.assertTransferCount("same-literal", 1);
+        runner.assertTransferCount("digits", 1);
+        runner.assertTransferCount("repeated", 1);
+        runner.assertTransferCount("unmatched", 1);
+        runner.assertTransferCount("original", 1);
+
+        runner.getFlowFilesForRelationship("literal").get(0).assertContentEquals("start center end\n42 end\n");
+        runner.getFlowFilesForRelationship("same-literal").get(0).assertContentEquals("start center end\n42 end\n");
+        runner.getFlowFilesForRelationship("digits").get(0).assertContentEquals("42 end\n");
+        runner.getFlowFilesForRelationship("repeated").get(0).assertContentEquals("letter");
+        runner.getFlowFilesForRelationship("unmatched").get(0).assertContentEquals("not a match\n");
+    }
+
+    @Test
+    public void testPropertyValueReferencesAttribute() throws IOException {
+        final TestRunner runner = TestRunners.newTestRunner(new RouteText());
+        runner.setProperty(RouteText.MATCH_STRATEGY, RouteText.STARTS_WITH);
+        runner.setProperty("simple", "${prefix}");
+
+        runner.enqueue("start middle end\nnot match".getBytes("UTF-8"), Collections.singletonMap("prefix", "not"));
+        runner.enqueue("start middle end\nnot match".getBytes("UTF-8"), Collections.singletonMap("prefix", "start"));
+        runner.run(2);
+
+        runner.assertTransferCount("simple", 2);
+        runner.assertTransferCount("unmatched", 2);
+        runner.getFlowFilesForRelationship("simple").get(0).assertContentEquals("not match");
+        runner.getFlowFilesForRelationship("simple").get(1).assertContentEquals("start middle end\n");
+    }
+
     @Test
     public void testGroupSameRelationship() throws IOException {
         final TestRunner runner = TestRunners.newTestRunner(new RouteText());
@@ -763,6 +812,62 @@ public class TestRouteText {
         outOriginal.assertContentEquals(Paths.get("src/test/resources/TestXml/XmlBundle.xsd"));
     }
 
+    @Test
+    @Ignore("For manual performance testing only")
+    public void testMatchingPerformance() {
+        final String[] levels = new String[] {"INFO", "DEBUG", "WARN", "TRACE"};
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            lines.add("2016-01-01 00:00:" + (i % 60) + " " + levels[i % levels.length] + " [thread-" + (i % 16) + "] org.apache.nifi.Component" + (i % 500)
+                + " - processed record " + i + " of batch " + (i / 1000) + " in " + (i % 97) + " millis");
+        }
+
+        for (final boolean regex : new boolean[] {false, true}) {
+            for (final int routeCount : new int[] {1, 10, 100}) {
+                final List<String> values = new ArrayList<>();
+                for (int i = 0; i < routeCount; i++) {
+                    values.add(regex ? "Component" + (i * 7) + " .*batch 4\\d" : "Component" + (i * 7) + " ");
+                }
+
+                final List<Object> comparisons = new ArrayList<>();
+                for (final String value : values) {
+                    comparisons.add(regex ? Pattern.compile(value) : value);
+                }
+                final String strategy = regex ? RouteText.CONTAINS_REGULAR_EXPRESSION.getValue() : RouteText.CONTAINS.getValue();
+                final MultiPatternMatcher matcher = new MultiPatternMatcher(regex ? MatchType.CONTAINS_REGULAR_EXPRESSION : MatchType.CONTAINS, values, false);
+                final boolean[] matched = new boolean[routeCount];
+
+                // report the best of several runs, so that warming up and garbage collection do not skew the results
+                long individualNanos = Long.MAX_VALUE;
+                long combinedNanos = Long.MAX_VALUE;
+                for (int iteration = 0; iteration < 10; iteration++) {
+                    long individualMatches = 0L;
+                    long start = System.nanoTime();
+                    for (final String line : lines) {
+                        for (final Object comparison : comparisons) {
+                            if (RouteText.lineMatches(line, comparison, strategy, false, null, null)) {
+                                individualMatches++;
+                            }
+                        }
+                    }
+                    individualNanos = Math.min(individualNanos, System.nanoTime() - start);
+
+                    long combinedMatches = 0L;
+                    start = System.nanoTime();
+                    for (final String line : lines) {
+                        combinedMatches += matcher.match(line, matched);
+                    }
+                    combinedNanos = Math.min(combinedNanos, System.nanoTime() - start);
+
+                    assertEquals(individualMatches, combinedMatches);
+                }
+
+                System.out.println(strategy + ", " + routeCount + " routes: " + lines.size() * 1000000000L / individualNanos + " lines/second individually, "
+                    + lines.size() * 1000000000L / combinedNanos + " lines/second combined");
+            }
+        }
+    }
+
     public static int countLines(String str) {
         if (str == null || str.isEmpty()) {
             return 0;
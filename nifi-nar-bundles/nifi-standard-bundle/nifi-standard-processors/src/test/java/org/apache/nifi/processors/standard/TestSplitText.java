@@ -22,13 +22,16 @@ import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class TestSplitText {
 
@@ -640,4 +643,71 @@ public class TestSplitText {
         splits.get(1).assertContentEquals("");
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testLinesSpanningBuffer() {
+        final StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 65535; i++) {
+            longLine.append('a');
+        }
+
+        // the CRLF that ends the long line, and the lone CR in the last line, straddle the end of the read buffer
+        final TestRunner runner = TestRunners.newTestRunner(new SplitText());
+        runner.setProperty(SplitText.HEADER_LINE_COUNT, "0");
+        runner.setProperty(SplitText.LINE_SPLIT_COUNT, "1");
+        runner.setProperty(SplitText.LINE_END_CHAR, "CRLF");
+        runner.enqueue(longLine + "\r\nb\rc\r\nd");
+        runner.enqueue(longLine + "\ry\r\n");
+        runner.run(2);
+
+        runner.assertTransferCount(SplitText.REL_SPLITS, 4);
+        List<MockFlowFile> splits = runner.getFlowFilesForRelationship(SplitText.REL_SPLITS);
+        splits.get(0).assertContentEquals(longLine.toString());
+        splits.get(1).assertContentEquals("b\rc");
+        splits.get(2).assertContentEquals("d");
+        splits.get(3).assertContentEquals(longLine + "\ry");
+
+        runner.clearTransferState();
+        runner.setProperty(SplitText.HEADER_LINE_COUNT, "1");
+        runner.setProperty(SplitText.LINE_SPLIT_COUNT, "2");
+        runner.enqueue("H\r\n" + longLine + "\r\nb\rc\r\n\r\nd\r\n");
+        runner.run();
+
+        runner.assertTransferCount(SplitText.REL_SPLITS, 2);
+        splits = runner.getFlowFilesForRelationship(SplitText.REL_SPLITS);
+        splits.get(0).assertContentEquals("H\r\n" + longLine + "\r\nb\rc");
+        splits.get(0).assertAttributeEquals(SplitText.SPLIT_LINE_COUNT, "2");
+        splits.get(1).assertContentEquals("H\r\n\r\nd");
+        splits.get(1).assertAttributeEquals(SplitText.SPLIT_LINE_COUNT, "2");
+    }
+
+    @Ignore("For manual performance testing only")
+    @Test
+    public void testSplitPerformance() {
+        final StringBuilder sb = new StringBuilder("Header\n");
+        for (int i = 0; i < 200000; i++) {
+            sb.append("Record number ").append(i).append(" with a moderately sized payload\n");
+        }
+        final byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (final int splitCount : new int[] {1, 1000}) {
+            for (final int headerCount : new int[] {0, 1}) {
+                long bestNanos = Long.MAX_VALUE;
+                for (int i = 0; i < 5; i++) {
+                    final TestRunner runner = TestRunners.newTestRunner(new SplitText());
+                    runner.setProperty(SplitText.HEADER_LINE_COUNT, String.valueOf(headerCount));
+                    runner.setProperty(SplitText.LINE_SPLIT_COUNT, String.valueOf(splitCount));
+                    runner.enqueue(data);
+
+                    final long start = System.nanoTime();
+                    runner.run();
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                    runner.assertTransferCount(SplitText.REL_SPLITS, (200001 - headerCount + splitCount - 1) / splitCount);
+                }
+
+                System.out.println("Line Split Count " + splitCount + ", Header Line Count " + headerCount + ": split " + data.length
+                    + " bytes in " + TimeUnit.NANOSECONDS.toMillis(bestNanos) + " millis");
+            }
+        }
+    }
+}
@@ -25,6 +25,10 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.nifi.components.state.Scope;
 
 import org.apache.nifi.processors.standard.TailFile.TailFileState;
 import org.apache.nifi.util.MockFlowFile;
@@ -40,6 +44,7 @@ public class TestTailFile {
     private TailFile processor;
     private RandomAccessFile raf;
     private TestRunner runner;
+    private File baseDir;
 
     @Before
     public void setup() throws IOException {
@@ -72,6 +77,10 @@ public class TestTailFile {
         runner.assertValid();
 
         raf = new RandomAccessFile(file, "rw");
+
+        baseDir = new File("target/tailed");
+        FileUtils.deleteDirectory(baseDir);
+        assertTrue(baseDir.mkdirs());
     }
 
     @After
@@ -81,6 +90,7 @@ public class TestTailFile {
         }
 
         processor.cleanup();
+        processor.stopTailingFiles();
     }
 
 
@@ -513,4 +523,163 @@ public class TestTailFile {
         runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 0);
     }
 
+    @Test
+    public void testMultipleFilesValidation() {
+        runner.setProperty(TailFile.MODE, TailFile.MODE_MULTIPLE_FILES.getValue());
+        runner.setProperty(TailFile.FILENAME, ".*\\.log");
+        runner.assertNotValid();
+
+        runner.setProperty(TailFile.BASE_DIRECTORY, baseDir.getPath());
+        runner.assertValid();
+
+        runner.setProperty(TailFile.FILENAME, "*.log");
+        runner.assertNotValid();
+    }
+
+    @Test
+    public void testMultipleFilesTailedIndependently() throws IOException {
+        setupMultipleFiles(".*\\.log");
+        append("a.log", "hello\n");
+        append("b.log", "world\npartial");
+        append("c.txt", "ignored\n");
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 2);
+        assertContents("a.log", "hello\n");
+        assertContents("b.log", "world\n");
+        final MockFlowFile flowFile = runner.getFlowFilesForRelationship(TailFile.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals("filename", "a.0-6.log");
+        flowFile.assertAttributeEquals("tailfile.original.path", new File(baseDir, "a.log").getAbsolutePath());
+        runner.clearTransferState();
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 0);
+
+        append("b.log", " line\n");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 1);
+        assertContents("b.log", "partial line\n");
+
+        runner.getStateManager().assertStateEquals("file.0.filename", "a.log", Scope.LOCAL);
+        runner.getStateManager().assertStateEquals("file.0.position", "6", Scope.LOCAL);
+        runner.getStateManager().assertStateEquals("file.1.filename", "b.log", Scope.LOCAL);
+        runner.getStateManager().assertStateEquals("file.1.position", "19", Scope.LOCAL);
+        runner.getStateManager().assertStateNotSet("file.2.filename", Scope.LOCAL);
+    }
+
+    @Test
+    public void testMultipleFilesStartOverIfReplacedWhileStopped() throws IOException {
+        setupMultipleFiles(".*\\.log");
+        append("a.log", "hello\n");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 1);
+        runner.clearTransferState();
+
+        // same length as the consumed data, but different content
+        assertTrue(new File(baseDir, "a.log").delete());
+        append("a.log", "HELLO\n");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 1);
+        assertContents("a.log", "HELLO\n");
+        runner.clearTransferState();
+
+        // truncated
+        FileUtils.writeStringToFile(new File(baseDir, "a.log"), "bye\n");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 1);
+        assertContents("a.log", "bye\n");
+    }
+
+    @Test
+    public void testMultipleFilesStartAtCurrentTime() throws IOException {
+        setupMultipleFiles(".*\\.log");
+        runner.setProperty(TailFile.START_POSITION, TailFile.START_CURRENT_TIME.getValue());
+        append("a.log", "old\n");
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 0);
+
+        append("a.log", "new\n");
+        append("b.log", "created later\n");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 2);
+        assertContents("a.log", "new\n");
+        assertContents("b.log", "created later\n");
+    }
+
+    @Test
+    public void testMultipleFilesChangesDetectedWhileRunning() throws IOException, InterruptedException {
+        setupMultipleFiles(".*\\.log");
+        append("a.log", "hello\n");
+        runner.run(1, false, true);
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 1);
+        runner.clearTransferState();
+
+        append("b.log", "world\n");
+        runUntilTransferred(1);
+        assertContents("b.log", "world\n");
+        runner.clearTransferState();
+
+        // roll over a.log to a name that is not tailed while part of a line remains
+        append("a.log", "rest");
+        assertTrue(new File(baseDir, "a.log").renameTo(new File(baseDir, "a.log.1")));
+        append("a.log", "new file\n");
+        runUntilTransferred(2);
+        final List<MockFlowFile> flowFiles = runner.getFlowFilesForRelationship(TailFile.REL_SUCCESS);
+        flowFiles.get(0).assertContentEquals("rest");
+        flowFiles.get(1).assertContentEquals("new file\n");
+        runner.run(1, true, false);
+    }
+
+    @Test
+    public void testMultipleFilesRenamedToTailedName() throws IOException, InterruptedException {
+        setupMultipleFiles("app.*\\.log");
+        append("app.log", "first\n");
+        runner.run(1, false, true);
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 1);
+        runner.clearTransferState();
+
+        // the rolled over file matches the pattern as well, so it must not be consumed again
+        append("app.log", "second\n");
+        assertTrue(new File(baseDir, "app.log").renameTo(new File(baseDir, "app-1.log")));
+        append("app.log", "third\n");
+        runUntilTransferred(2);
+        assertContents("app-1.log", "second\n");
+        assertContents("app.log", "third\n");
+        assertEquals(2, processor.getTailedFiles().size());
+
+        runner.run(1, true, false);
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, 2);
+    }
+
+    private void setupMultipleFiles(final String pattern) {
+        runner.setProperty(TailFile.MODE, TailFile.MODE_MULTIPLE_FILES.getValue());
+        runner.setProperty(TailFile.BASE_DIRECTORY, baseDir.getPath());
+        runner.setProperty(TailFile.FILENAME, pattern);
+        runner.assertValid();
+    }
+
+    private void append(final String filename, final String data) throws IOException {
+        FileUtils.writeStringToFile(new File(baseDir, filename), data, true);
+    }
+
+    private void assertContents(final String filename, final String data) {
+        final String path = new File(baseDir, filename).getAbsolutePath();
+        for (final MockFlowFile flowFile : runner.getFlowFilesForRelationship(TailFile.REL_SUCCESS)) {
+            if (path.equals(flowFile.getAttribute("tailfile.original.path"))) {
+                flowFile.assertContentEquals(data);
+                return;
+            }
+        }
+        Assert.fail("No FlowFile was created from " + filename);
+    }
+
+    private void runUntilTransferred(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while (runner.getFlowFilesForRelationship(TailFile.REL_SUCCESS).size() < count && System.currentTimeMillis() < deadline) {
+            runner.run(1, false, false);
+            Thread.sleep(10L);
+        }
+        runner.assertAllFlowFilesTransferred(TailFile.REL_SUCCESS, count);
+    }
 }
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.standard.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDirectoryScanner {
+
+    private static final FileFilter ACCEPT_ALL = new FileFilter() {
+        @Override
+        public boolean accept(final File file) {
+            return true;
+        }
+    };
+
+    private final File root = new File("target/test/data/scanner");
+
+    private DirectoryScanner scanner;
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteDirectory(root);
+        assertTrue(root.mkdirs());
+        scanner = new DirectoryScanner(4);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        scanner.shutdown();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testScanNestedDirectories() throws IOException {
+        createFile("a.txt");
+        createFile("one/b.txt");
+        createFile("one/two/c.txt");
+        createFile("three/d.log");
+        assertTrue(new File(root, "empty").mkdirs());
+
+        assertEquals(names("a.txt", "b.txt", "c.txt", "d.log"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        assertEquals(names("a.txt"), namesOf(scanner.scan(root, false, ACCEPT_ALL)));
+
+        final FileFilter txtOnly = new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.getName().endsWith(".txt");
+            }
+        };
+        assertEquals(names("a.txt", "b.txt", "c.txt"), namesOf(scanner.scan(root, true, txtOnly)));
+    }
+
+    @Test
+    public void testMissingDirectory() {
+        assertTrue(scanner.scan(new File(root, "missing"), true, ACCEPT_ALL).isEmpty());
+        assertEquals(0, scanner.getIndexedDirectoryCount());
+    }
+
+    @Test
+    public void testUnchangedDirectoriesAreNotReadAgain() throws IOException {
+        createFile("a.txt");
+        createFile("one/b.txt");
+        final long past = age("", "one");
+
+        assertEquals(names("a.txt", "b.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        assertEquals(2, scanner.getIndexedDirectoryCount());
+
+        // an entry added without changing the last modified time of the directory is taken from the index
+        createFile("one/hidden.txt");
+        assertTrue(new File(root, "one").setLastModified(past));
+        assertEquals(names("a.txt", "b.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+
+        // once the last modified time changes, the directory is read again
+        createFile("one/c.txt");
+        assertEquals(names("a.txt", "b.txt", "c.txt", "hidden.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        assertEquals(1, scanner.getIndexedDirectoryCount());
+
+        scanner.clearIndex();
+        assertEquals(0, scanner.getIndexedDirectoryCount());
+    }
+
+    @Test
+    public void testFilterIsAppliedToIndexedDirectories() throws IOException {
+        final File file = createFile("one/a.txt");
+        age("", "one");
+        final FileFilter nonEmpty = new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.length() > 0;
+            }
+        };
+
+        assertEquals(names("a.txt"), namesOf(scanner.scan(root, true, nonEmpty)));
+        assertEquals(2, scanner.getIndexedDirectoryCount());
+
+        // truncating a file does not change the last modified time of its directory
+        FileUtils.writeStringToFile(file, "");
+        assertTrue(scanner.scan(root, true, nonEmpty).isEmpty());
+    }
+
+    @Test
+    public void testRemovedDirectoriesAreDroppedFromIndex() throws IOException {
+        createFile("one/a.txt");
+        createFile("one/two/b.txt");
+        age("", "one", "one/two");
+
+        assertEquals(names("a.txt", "b.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        assertEquals(3, scanner.getIndexedDirectoryCount());
+
+        // removing a directory also changes the last modified time of its parent
+        FileUtils.deleteDirectory(new File(root, "one/two"));
+        assertEquals(names("a.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        assertEquals(1, scanner.getIndexedDirectoryCount());
+
+        age("one");
+        assertEquals(names("a.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        assertEquals(2, scanner.getIndexedDirectoryCount());
+
+        // directories below the root are not visited, and so not kept, without recursion
+        assertTrue(scanner.scan(root, false, ACCEPT_ALL).isEmpty());
+        assertEquals(1, scanner.getIndexedDirectoryCount());
+    }
+
+    @Test
+    public void testIndexIsBoundedByEntryCount() throws IOException {
+        final DirectoryScanner boundedScanner = new DirectoryScanner(4, 3);
+        try {
+            createFile("big/a.txt");
+            createFile("big/b.txt");
+            createFile("big/c.txt");
+            createFile("big/d.txt");
+            createFile("small/e.txt");
+            age("", "big", "small");
+
+            // the root and 'small' fit in the index, but 'big' alone holds more entries than allowed
+            assertEquals(names("a.txt", "b.txt", "c.txt", "d.txt", "e.txt"), namesOf(boundedScanner.scan(root, true, ACCEPT_ALL)));
+            assertEquals(2, boundedScanner.getIndexedDirectoryCount());
+            assertEquals(3, boundedScanner.getIndexedEntryCount());
+
+            // once the index is full, other directories are dropped to make room
+            createFile("other/f.txt");
+            age("", "other");
+            assertEquals(names("a.txt", "b.txt", "c.txt", "d.txt", "e.txt", "f.txt"), namesOf(boundedScanner.scan(root, true, ACCEPT_ALL)));
+            assertTrue(boundedScanner.getIndexedEntryCount() <= 3);
+            assertEquals(names("a.txt", "b.txt", "c.txt", "d.txt", "e.txt", "f.txt"), namesOf(boundedScanner.scan(root, true, ACCEPT_ALL)));
+            assertTrue(boundedScanner.getIndexedEntryCount() <= 3);
+        } finally {
+            boundedScanner.shutdown();
+        }
+    }
+
+    @Test
+    public void testScanAfterShutdown() throws IOException {
+        createFile("a.txt");
+        assertEquals(names("a.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+        scanner.shutdown();
+        assertEquals(names("a.txt"), namesOf(scanner.scan(root, true, ACCEPT_ALL)));
+    }
+
+    private File createFile(final String path) throws IOException {
+        final File file = new File(root, path);
+        FileUtils.writeStringToFile(file, "Hello, World");
+        return file;
+    }
+
+    /**
+     * Sets the last modified time of the given directories far enough in the
+     * past for their entries to be indexed.
+     */
+    private long age(final String... directories) {
+        final long past = System.currentTimeMillis() - 60000L;
+        for (final String directory : directories) {
+            assertTrue(new File(root, directory).setLastModified(past));
+        }
+        return past;
+    }
+
+    private Set<String> names(final String... names) {
+        final Set<String> set = new HashSet<>();
+        for (final String name : names) {
+            set.add(name);
+        }
+        return set;
+    }
+
+    private Set<String> namesOf(final List<File> files) {
+        final Set<String> set = new HashSet<>();
+        for (final File file : files) {
+            set.add(file.getName());
+        }
+        assertEquals(files.size(), set.size());
+        return set;
+    }
+}
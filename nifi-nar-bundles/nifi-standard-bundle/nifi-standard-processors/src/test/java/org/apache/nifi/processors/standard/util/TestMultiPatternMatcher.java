@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.standard.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.nifi.processors.standard.util.MultiPatternMatcher.MatchType;
+import org.junit.Test;
+
+public class TestMultiPatternMatcher {
+
+    private static final List<String> LINES = Arrays.asList("", "he", "she sells", "ushers", "HIS hers", "Hers", "héllo wörld", "a😀b", "his", "error: 42");
+
+    @Test
+    public void testStartsWith() {
+        verifyAgainstIndividualMatching(MatchType.STARTS_WITH, Arrays.asList("he", "she", "his", "hers", "h", "a😀"));
+    }
+
+    @Test
+    public void testEndsWith() {
+        verifyAgainstIndividualMatching(MatchType.ENDS_WITH, Arrays.asList("he", "she", "his", "hers", "s", "wörld", "😀b"));
+    }
+
+    @Test
+    public void testContains() {
+        verifyAgainstIndividualMatching(MatchType.CONTAINS, Arrays.asList("he", "she", "his", "hers", "é", "ö", "😀", "rs"));
+    }
+
+    @Test
+    public void testEquals() {
+        verifyAgainstIndividualMatching(MatchType.EQUALS, Arrays.asList("he", "she", "his", "hers", "Hers", "héllo wörld"));
+    }
+
+    @Test
+    public void testRegularExpressions() {
+        final List<String> regexes = Arrays.asList("he", "h.s", "(\\w)\\1", "error: \\d+", "\\Qhe)\\E", "[a-z]+ [a-z]+", "HIS", "she|his", "hers?", "^his", "u?sh.*");
+        verifyAgainstIndividualMatching(MatchType.CONTAINS_REGULAR_EXPRESSION, regexes);
+        verifyAgainstIndividualMatching(MatchType.MATCHES_REGULAR_EXPRESSION, regexes);
+    }
+
+    @Test
+    public void testRequiredLiteral() {
+        assertEquals("error: ", MultiPatternMatcher.getRequiredLiteral("error: \\d+"));
+        assertEquals("error", MultiPatternMatcher.getRequiredLiteral("^error.*"));
+        assertEquals("error", MultiPatternMatcher.getRequiredLiteral("errors?"));
+        assertEquals("error", MultiPatternMatcher.getRequiredLiteral("errors{0,2}"));
+        assertEquals("", MultiPatternMatcher.getRequiredLiteral("error|warn"));
+        assertEquals("", MultiPatternMatcher.getRequiredLiteral("(?i)error"));
+        assertEquals("", MultiPatternMatcher.getRequiredLiteral("\\Qerror\\E"));
+    }
+
+    @Test
+    public void testDuplicatePatterns() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(MatchType.CONTAINS, Arrays.asList("he", "HE", "he"), true, 0);
+        final boolean[] matched = new boolean[3];
+        assertEquals(3, matcher.match("the end", matched));
+        assertTrue(matched[0] && matched[1] && matched[2]);
+    }
+
+    @Test
+    public void testEmptyPattern() {
+        final MultiPatternMatcher contains = new MultiPatternMatcher(MatchType.CONTAINS, Arrays.asList("", "x"), false, 0);
+        assertTrue(contains.matchesAny("abc"));
+        assertFalse(contains.matchesAll("abc"));
+        assertTrue(contains.matchesAll("xyz"));
+
+        final MultiPatternMatcher equals = new MultiPatternMatcher(MatchType.EQUALS, Arrays.asList(""), false);
+        assertTrue(equals.matchesAny(""));
+        assertFalse(equals.matchesAny("abc"));
+    }
+
+    private void verifyAgainstIndividualMatching(final MatchType matchType, final List<String> patterns) {
+        for (final boolean ignoreCase : new boolean[] {false, true}) {
+            // search for the terms both with the automaton and directly
+            verifyAgainstIndividualMatching(new MultiPatternMatcher(matchType, patterns, ignoreCase, 0), matchType, patterns, ignoreCase);
+            verifyAgainstIndividualMatching(new MultiPatternMatcher(matchType, patterns, ignoreCase, Integer.MAX_VALUE), matchType, patterns, ignoreCase);
+        }
+    }
+
+    private void verifyAgainstIndividualMatching(final MultiPatternMatcher matcher, final MatchType matchType, final List<String> patterns, final boolean ignoreCase) {
+        final boolean[] matched = new boolean[patterns.size()];
+
+        for (final String line : LINES) {
+            int expectedCount = 0;
+            for (int i = 0; i < patterns.size(); i++) {
+                final boolean expected = matches(matchType, patterns.get(i), line, ignoreCase);
+                if (expected) {
+                    expectedCount++;
+                }
+
+                matcher.match(line, matched);
+                assertEquals(matchType + " '" + patterns.get(i) + "' against '" + line + "' with ignoreCase=" + ignoreCase, expected, matched[i]);
+            }
+
+            assertEquals(expectedCount, matcher.match(line, matched));
+            assertEquals(expectedCount > 0, matcher.matchesAny(line));
+            assertEquals(expectedCount == patterns.size(), matcher.matchesAll(line));
+        }
+    }
+
+    private boolean matches(final MatchType matchType, final String pattern, final String line, final boolean ignoreCase) {
+        final String lowerLine = line.toLowerCase();
+        final String lowerPattern = pattern.toLowerCase();
+        switch (matchType) {
+            case STARTS_WITH:
+                return ignoreCase ? lowerLine.startsWith(lowerPattern) : line.startsWith(pattern);
+            case ENDS_WITH:
+                return ignoreCase ? lowerLine.endsWith(lowerPattern) : line.endsWith(pattern);
+            case CONTAINS:
+                return ignoreCase ? lowerLine.contains(lowerPattern) : line.contains(pattern);
+            case EQUALS:
+                return ignoreCase ? line.equalsIgnoreCase(pattern) : line.equals(pattern);
+            case MATCHES_REGULAR_EXPRESSION:
+                return Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).matcher(line).matches();
+            default:
+                return Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).matcher(line).find();
+        }
+    }
+}